@@ -0,0 +1,97 @@
+package com.engineersbox.httpproxy.connection.threading;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.connection.handler.BaseTrafficHandler;
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thread manager running every acceptor and handler task on its own virtual thread, via two independent
+ * thread-per-task {@link ExecutorService}'s.
+ *
+ * <br/><br/>
+ *
+ * Blocking socket reads within a task unmount the virtual thread from its carrier, so concurrency is bounded by the
+ * amount of open sockets rather than the pool sizes configured via {@link Config}, which are not used in this mode.
+ * Requires a Java 21 runtime and is only compiled with the {@code java21} build profile.
+ */
+public class VirtualThreadManager implements ThreadManager {
+
+    private final Logger logger = LogManager.getLogger(VirtualThreadManager.class);
+
+    private final ExecutorService acceptorExecutorService;
+    private final ExecutorService handlerExecutorService;
+
+    @Inject
+    public VirtualThreadManager(final Config config) {
+        this.acceptorExecutorService = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("acceptor-", 0).factory()
+        );
+        this.logger.info("Reserved acceptor virtual thread per task executor");
+        this.handlerExecutorService = Executors.newThreadPerTaskExecutor(
+                Thread.ofVirtual().name("handler-", 0).factory()
+        );
+        this.logger.info("Reserved handler virtual thread per task executor");
+    }
+
+    /**
+     * Submits an acceptor task to a new virtual thread of the acceptor executor service
+     * ({@link VirtualThreadManager#acceptorExecutorService})
+     *
+     * @param task Acceptor as an instance of {@link BaseTrafficHandler}
+     */
+    @Override
+    public void submitAcceptor(final BaseTrafficHandler task) {
+        try {
+            this.acceptorExecutorService.execute(task);
+        } catch (final RejectedExecutionException e) {
+            logger.error(String.format(
+                    "Acceptor task %s was rejected after shutdown",
+                    task.getClass().getName()
+            ), e);
+        }
+    }
+
+    /**
+     * Submits a handler task to a new virtual thread of the handler executor service
+     * ({@link VirtualThreadManager#handlerExecutorService})
+     *
+     * @param task Handler as an instance of {@link BaseTrafficHandler}
+     */
+    @Override
+    public void submitHandler(final BaseTrafficHandler task) {
+        try {
+            this.handlerExecutorService.execute(task);
+        } catch (final RejectedExecutionException e) {
+            logger.error(String.format(
+                    "Handler task %s was rejected after shutdown",
+                    task.getClass().getName()
+            ), e);
+        }
+    }
+
+    /**
+     * Every handler task is started on its own virtual thread as soon as it is submitted, so none are ever queued
+     *
+     * @return {@code 0}
+     */
+    @Override
+    public double getHandlerBacklog() {
+        return 0;
+    }
+
+    /**
+     * Schedule a shutdown operation for both the acceptor and handler executor services
+     */
+    @Override
+    public void shutdown() {
+        this.acceptorExecutorService.shutdown();
+        this.handlerExecutorService.shutdown();
+    }
+
+}
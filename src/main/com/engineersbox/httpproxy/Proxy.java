@@ -1,11 +1,22 @@
 package com.engineersbox.httpproxy;
 
+import com.engineersbox.httpproxy.buffer.BufferPool;
 import com.engineersbox.httpproxy.configuration.Config;
 import com.engineersbox.httpproxy.configuration.ConfigModule;
+import com.engineersbox.httpproxy.configuration.domain.servlet.ThreadingMode;
+import com.engineersbox.httpproxy.configuration.domain.servlet.Transport;
 import com.engineersbox.httpproxy.connection.ConnectionModule;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
 import com.engineersbox.httpproxy.formatting.FormattingModule;
+import com.engineersbox.httpproxy.formatting.compression.CodecContexts;
+import com.engineersbox.httpproxy.formatting.compression.CompressionLevelController;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledPolicies;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponses;
+import com.engineersbox.httpproxy.servlet.AbstractServlet;
 import com.engineersbox.httpproxy.servlet.ProxyServlet;
+import com.engineersbox.httpproxy.servlet.SelectorProxyServlet;
 import com.engineersbox.httpproxy.connection.threading.PoolManager;
+import com.engineersbox.httpproxy.connection.threading.ThreadManager;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import org.apache.logging.log4j.LogManager;
@@ -18,6 +29,11 @@ import java.io.IOException;
  */
 public class Proxy {
 
+    static {
+        // Log4j is stopped by Proxy#logPoolStatistics() rather than its own shutdown hook, which could stop it first
+        System.setProperty("log4j.shutdownHookEnabled", "false");
+    }
+
     private static final Logger logger = LogManager.getLogger(Proxy.class);
 
     private static final String CONFIG_PATH_ARG_NAME = "config.path";
@@ -25,10 +41,22 @@ public class Proxy {
     private static final String DEFAULT_CONFIG_PATH = "config.json";
 
     public static Config config;
-    public static PoolManager poolManager;
+    public static ThreadManager poolManager;
+    public static UpstreamConnectionPool upstreamPool;
+    public static BufferPool bufferPool;
+    public static PreEncodedResponses preEncodedResponses;
+    public static CompressionLevelController compressionLevels;
+    public static CompiledPolicies compiledPolicies;
 
     /**
-     * Main proxy program, using {@link Injector} to instantiate {@link PoolManager} and {@link ProxyServlet} instances
+     * Main proxy program, using {@link Injector} to instantiate {@link ThreadManager} and {@link AbstractServlet} instances.
+     * The {@link ThreadManager} implementation is chosen via the configured {@link ThreadingMode}, defaulting to
+     * {@link PoolManager}. A single {@link UpstreamConnectionPool} and {@link BufferPool} are shared between all connections,
+     * as are the {@link PreEncodedResponses} serialized once here, the {@link CompiledPolicies} compiled once here and
+     * the {@link CompressionLevelController} sampling the load of the {@link ThreadManager}.
+     * A {@link SelectorProxyServlet} is used when the configured {@link Transport} is {@link Transport#SELECTOR},
+     * otherwise a {@link ProxyServlet} is used. The effectiveness of the shared pools is logged once the proxy shuts
+     * down, see {@link Proxy#logPoolStatistics()}.
      *
      * @param args Array of {@link String} program arguments
      */
@@ -45,16 +73,44 @@ public class Proxy {
         Injector injector = Guice.createInjector(
                 new ConfigModule()
         );
-        poolManager = injector.getInstance(PoolManager.class);
+        final ThreadingMode mode = config.servlet.threading.mode != null
+                ? config.servlet.threading.mode
+                : ThreadingMode.POOLED;
+        poolManager = injector.getInstance(mode.getManagerClass());
+        upstreamPool = injector.getInstance(UpstreamConnectionPool.class);
+        bufferPool = injector.getInstance(BufferPool.class);
+        preEncodedResponses = injector.getInstance(PreEncodedResponses.class);
+        compressionLevels = new CompressionLevelController(config, poolManager);
+        compiledPolicies = injector.getInstance(CompiledPolicies.class);
+        Runtime.getRuntime().addShutdownHook(new Thread(Proxy::logPoolStatistics, "pool-statistics"));
 
         injector = Guice.createInjector(
                 new ConfigModule(),
                 new FormattingModule(),
                 new ConnectionModule()
         );
-        final ProxyServlet proxyServlet = injector.getInstance(ProxyServlet.class);
+        final AbstractServlet proxyServlet = config.servlet.threading.transport == Transport.SELECTOR
+                ? injector.getInstance(SelectorProxyServlet.class)
+                : injector.getInstance(ProxyServlet.class);
         proxyServlet.init();
         proxyServlet.serve();
     }
 
+    /**
+     * Log the gauges of the {@link BufferPool} and the hit and miss counts of the codec context pools of
+     * {@link CodecContexts}, which are shared between all connections, then stop logging
+     */
+    private static void logPoolStatistics() {
+        logger.info(String.format(
+                "Buffer pool statistics: [ALLOCATED BYTES: %d] [LEASED: %d] [AVAILABLE: %d] [LEAKED: %d] [UNPOOLED: %d]",
+                bufferPool.getAllocatedBytes(),
+                bufferPool.getLeasedCount(),
+                bufferPool.getAvailableCount(),
+                bufferPool.getLeakedCount(),
+                bufferPool.getUnpooledCount()
+        ));
+        logger.info("Codec context pool statistics:" + System.lineSeparator() + CodecContexts.describe());
+        LogManager.shutdown();
+    }
+
 }
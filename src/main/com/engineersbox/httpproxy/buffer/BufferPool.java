@@ -0,0 +1,378 @@
+package com.engineersbox.httpproxy.buffer;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.ref.PhantomReference;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool of fixed size heap and direct buffers shared between all connections, sized from
+ * {@code servlet.connections.readerBufferSize} and {@code servlet.connections.writeBufferSize} via {@link Config}.
+ *
+ * <br/><br/>
+ *
+ * Each configured size is a size class, and a buffer is leased from the smallest class that fits the requested
+ * capacity. Buffers larger than every class are allocated without pooling. Direct buffers of a class are sliced from
+ * a single slab of {@link BufferPool#SLAB_SEGMENTS} segments, heap buffers are allocated in batches of the same amount,
+ * and a new slab is only added once all existing segments of the class are leased. Released segments are kept in a
+ * small cache local to the releasing thread's stripe, falling back to a queue shared by all threads, so that the
+ * threads of a connection mostly lease and release without contention.
+ *
+ * <br/><br/>
+ *
+ * A {@link Lease} must be held for as long as its buffer is in use, and released exactly once via
+ * {@link Lease#release()}. Leases that become unreachable without being released are detected, logged as leaks and
+ * their segments returned to the pool. Releasing a lease more than once is logged as an error and otherwise ignored.
+ */
+public class BufferPool {
+
+    private static final Logger logger = LogManager.getLogger(BufferPool.class);
+
+    private static final int SLAB_SEGMENTS = 64;
+    private static final int STRIPE_CAPACITY = 8;
+
+    private final SizeClass[] heapClasses;
+    private final SizeClass[] directClasses;
+    private final int stripeCount;
+    private final ReferenceQueue<Lease> leakQueue;
+    private final Set<LeakTracker> trackers;
+    private final AtomicLong leaked;
+    private final AtomicLong unpooled;
+
+    @Inject
+    public BufferPool(final Config config) {
+        final TreeSet<Integer> capacities = new TreeSet<>();
+        capacities.add(Math.max(config.servlet.connections.readerBufferSize, 1));
+        capacities.add(Math.max(config.servlet.connections.writeBufferSize, 1));
+        this.stripeCount = Integer.highestOneBit(Math.max(Runtime.getRuntime().availableProcessors(), 1)) << 1;
+        this.heapClasses = new SizeClass[capacities.size()];
+        this.directClasses = new SizeClass[capacities.size()];
+        int index = 0;
+        for (final int capacity : capacities) {
+            this.heapClasses[index] = new SizeClass(capacity, false);
+            this.directClasses[index] = new SizeClass(capacity, true);
+            index++;
+        }
+        this.leakQueue = new ReferenceQueue<>();
+        this.trackers = ConcurrentHashMap.newKeySet();
+        this.leaked = new AtomicLong();
+        this.unpooled = new AtomicLong();
+        logger.info("Created buffer pool with size classes: " + capacities);
+    }
+
+    /**
+     * Lease a heap buffer backed by a {@code byte[]}, accessible via {@link Lease#array()}
+     *
+     * @param minCapacity Minimum capacity of the buffer in bytes
+     * @return {@link Lease} of a buffer with at least {@code minCapacity} bytes
+     */
+    public Lease acquireHeap(final int minCapacity) {
+        return acquire(this.heapClasses, minCapacity);
+    }
+
+    /**
+     * Lease a direct buffer, accessible only via {@link Lease#byteBuffer()}. Direct buffers are read into and written
+     * from by channels without an intermediate copy.
+     *
+     * @param minCapacity Minimum capacity of the buffer in bytes
+     * @return {@link Lease} of a buffer with at least {@code minCapacity} bytes
+     */
+    public Lease acquireDirect(final int minCapacity) {
+        return acquire(this.directClasses, minCapacity);
+    }
+
+    private Lease acquire(final SizeClass[] classes, final int minCapacity) {
+        reclaimLeaks();
+        for (final SizeClass sizeClass : classes) {
+            if (sizeClass.capacity >= minCapacity) {
+                return track(sizeClass.acquire());
+            }
+        }
+        this.unpooled.incrementAndGet();
+        final boolean direct = classes == this.directClasses;
+        return track(new Segment(
+                null,
+                direct ? null : new byte[minCapacity],
+                direct ? ByteBuffer.allocateDirect(minCapacity) : null
+        ));
+    }
+
+    private Lease track(final Segment segment) {
+        final Lease lease = new Lease(this, segment);
+        lease.tracker = new LeakTracker(
+                lease,
+                this.leakQueue,
+                segment,
+                logger.isDebugEnabled() ? new Throwable("Buffer leased here") : null
+        );
+        this.trackers.add(lease.tracker);
+        return lease;
+    }
+
+    private void release(final Lease lease) {
+        if (lease.released) {
+            logger.error("Buffer of " + lease.capacity() + " bytes released more than once", new IllegalStateException());
+            return;
+        }
+        lease.released = true;
+        this.trackers.remove(lease.tracker);
+        lease.tracker.clear();
+        if (lease.segment.sizeClass != null) {
+            lease.segment.sizeClass.release(lease.segment);
+        }
+    }
+
+    /**
+     * Return the segments of any leases that were collected without being released to their size class
+     */
+    private void reclaimLeaks() {
+        Reference<? extends Lease> reference;
+        while ((reference = this.leakQueue.poll()) != null) {
+            final LeakTracker tracker = (LeakTracker) reference;
+            if (!this.trackers.remove(tracker)) {
+                continue;
+            }
+            this.leaked.incrementAndGet();
+            if (tracker.origin != null) {
+                logger.warn("Buffer of " + tracker.segment.capacity() + " bytes was not released before being collected", tracker.origin);
+            } else {
+                logger.warn("Buffer of " + tracker.segment.capacity() + " bytes was not released before being collected, enable debug logging to record where it was leased");
+            }
+            if (tracker.segment.sizeClass != null) {
+                tracker.segment.sizeClass.release(tracker.segment);
+            }
+        }
+    }
+
+    private long sum(final boolean leased) {
+        long total = 0;
+        for (int i = 0; i < this.heapClasses.length; i++) {
+            total += leased
+                    ? this.heapClasses[i].leased.get() + this.directClasses[i].leased.get()
+                    : this.heapClasses[i].allocated.get() + this.directClasses[i].allocated.get();
+        }
+        return total;
+    }
+
+    /**
+     * @return Total amount of bytes allocated to pooled segments, whether leased or available
+     */
+    public long getAllocatedBytes() {
+        long total = 0;
+        for (int i = 0; i < this.heapClasses.length; i++) {
+            total += (long) this.heapClasses[i].capacity * (this.heapClasses[i].allocated.get() + this.directClasses[i].allocated.get());
+        }
+        return total;
+    }
+
+    /**
+     * @return Amount of pooled segments currently leased
+     */
+    public long getLeasedCount() {
+        return sum(true);
+    }
+
+    /**
+     * @return Amount of pooled segments available to be leased without allocating
+     */
+    public long getAvailableCount() {
+        return sum(false) - sum(true);
+    }
+
+    /**
+     * @return Amount of leases that were collected without being released since the pool was created
+     */
+    public long getLeakedCount() {
+        return this.leaked.get();
+    }
+
+    /**
+     * @return Amount of buffers allocated outside of the pool, as they were larger than every size class
+     */
+    public long getUnpooledCount() {
+        return this.unpooled.get();
+    }
+
+    private void logOccupancy() {
+        if (!logger.isDebugEnabled()) {
+            return;
+        }
+        final StringBuilder sb = new StringBuilder("Buffer pool occupancy:");
+        for (int i = 0; i < this.heapClasses.length; i++) {
+            sb.append(" [").append(this.heapClasses[i].capacity).append(" bytes")
+                    .append(" heap: ").append(this.heapClasses[i].leased.get()).append('/').append(this.heapClasses[i].allocated.get())
+                    .append(" direct: ").append(this.directClasses[i].leased.get()).append('/').append(this.directClasses[i].allocated.get())
+                    .append(']');
+        }
+        sb.append(" leaked: ").append(getLeakedCount()).append(" unpooled: ").append(getUnpooledCount());
+        logger.debug(sb.toString());
+    }
+
+    /**
+     * Segments of a single capacity and kind, cached per stripe of threads ahead of a queue shared by all threads
+     */
+    private class SizeClass {
+        final int capacity;
+        final boolean direct;
+        final ArrayDeque<Segment>[] stripes;
+        final ConcurrentLinkedQueue<Segment> shared;
+        final AtomicInteger allocated;
+        final AtomicInteger leased;
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        SizeClass(final int capacity, final boolean direct) {
+            this.capacity = capacity;
+            this.direct = direct;
+            this.stripes = new ArrayDeque[BufferPool.this.stripeCount];
+            for (int i = 0; i < this.stripes.length; i++) {
+                this.stripes[i] = new ArrayDeque<>(STRIPE_CAPACITY);
+            }
+            this.shared = new ConcurrentLinkedQueue<>();
+            this.allocated = new AtomicInteger();
+            this.leased = new AtomicInteger();
+        }
+
+        private ArrayDeque<Segment> stripe() {
+            return this.stripes[(int) (Thread.currentThread().getId() & (this.stripes.length - 1))];
+        }
+
+        Segment acquire() {
+            this.leased.incrementAndGet();
+            final ArrayDeque<Segment> stripe = stripe();
+            Segment segment;
+            synchronized (stripe) {
+                segment = stripe.pollLast();
+            }
+            while (segment == null && (segment = this.shared.poll()) == null) {
+                addSlab();
+            }
+            return segment;
+        }
+
+        void release(final Segment segment) {
+            this.leased.decrementAndGet();
+            final ArrayDeque<Segment> stripe = stripe();
+            synchronized (stripe) {
+                if (stripe.size() < STRIPE_CAPACITY) {
+                    stripe.addLast(segment);
+                    return;
+                }
+            }
+            this.shared.offer(segment);
+        }
+
+        private synchronized void addSlab() {
+            if (!this.shared.isEmpty()) {
+                return;
+            }
+            if (this.direct) {
+                final ByteBuffer slab = ByteBuffer.allocateDirect(this.capacity * SLAB_SEGMENTS);
+                for (int i = 0; i < SLAB_SEGMENTS; i++) {
+                    slab.limit((i + 1) * this.capacity).position(i * this.capacity);
+                    this.shared.offer(new Segment(this, null, slab.slice()));
+                }
+            } else {
+                for (int i = 0; i < SLAB_SEGMENTS; i++) {
+                    this.shared.offer(new Segment(this, new byte[this.capacity], null));
+                }
+            }
+            this.allocated.addAndGet(SLAB_SEGMENTS);
+            logOccupancy();
+        }
+    }
+
+    /**
+     * Storage of a single buffer, reused by every lease of it
+     */
+    private static class Segment {
+        final SizeClass sizeClass;
+        final byte[] array;
+        final ByteBuffer buffer;
+
+        Segment(final SizeClass sizeClass, final byte[] array, final ByteBuffer buffer) {
+            this.sizeClass = sizeClass;
+            this.array = array;
+            this.buffer = buffer != null ? buffer : ByteBuffer.wrap(array);
+        }
+
+        int capacity() {
+            return this.buffer.capacity();
+        }
+    }
+
+    /**
+     * Holds the segment of a lease strongly, so that it can be returned to the pool once the lease is collected
+     */
+    private static class LeakTracker extends PhantomReference<Lease> {
+        final Segment segment;
+        final Throwable origin;
+
+        LeakTracker(final Lease lease,
+                    final ReferenceQueue<Lease> queue,
+                    final Segment segment,
+                    final Throwable origin) {
+            super(lease, queue);
+            this.segment = segment;
+            this.origin = origin;
+        }
+    }
+
+    /**
+     * A buffer leased from a {@link BufferPool}. The buffer must not be used after the lease is released.
+     */
+    public static class Lease {
+        private final BufferPool pool;
+        private final Segment segment;
+        private LeakTracker tracker;
+        private boolean released = false;
+
+        private Lease(final BufferPool pool, final Segment segment) {
+            this.pool = pool;
+            this.segment = segment;
+        }
+
+        /**
+         * @return {@code byte[]} backing a heap buffer
+         * @throws UnsupportedOperationException If the buffer is direct
+         */
+        public byte[] array() {
+            if (this.segment.array == null) {
+                throw new UnsupportedOperationException("Direct buffer is not backed by an array");
+            }
+            return this.segment.array;
+        }
+
+        /**
+         * @return {@link ByteBuffer} over the buffer, which is not cleared between leases
+         */
+        public ByteBuffer byteBuffer() {
+            return this.segment.buffer;
+        }
+
+        /**
+         * @return Capacity of the buffer in bytes, which is at least the capacity requested
+         */
+        public int capacity() {
+            return this.segment.capacity();
+        }
+
+        /**
+         * Return the buffer to the pool it was leased from
+         */
+        public void release() {
+            this.pool.release(this);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package com.engineersbox.httpproxy.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable sequence of bytes stored as a list of primitive {@code byte[]} chunks. Unlike a {@link java.io.ByteArrayOutputStream}
+ * the bytes already written are never copied when it grows, as each new chunk is simply appended. Chunks double in size
+ * up to {@link ByteAccumulator#MAX_CHUNK_SIZE}, so the amount of chunks stays small for large bodies.
+ *
+ * <br/><br/>
+ *
+ * The accumulated bytes can be consumed without copying them through {@link ByteAccumulator#writeTo(OutputStream)},
+ * {@link ByteAccumulator#toByteBuffers()} and {@link ByteAccumulator#inputStream()}. {@link ByteAccumulator#toByteArray()} only copies when the bytes span more
+ * than one chunk, or do not fill the single chunk exactly.
+ */
+public class ByteAccumulator extends OutputStream {
+
+    private static final int DEFAULT_CHUNK_SIZE = 4096;
+    private static final int MAX_CHUNK_SIZE = 1 << 20;
+
+    private final List<byte[]> chunks;
+    private byte[] current;
+    private int currentLength;
+    private int size;
+
+    public ByteAccumulator() {
+        this(DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * @param initialChunkSize Size of the first chunk, which should be the expected amount of bytes if known
+     */
+    public ByteAccumulator(final int initialChunkSize) {
+        this.chunks = new ArrayList<>();
+        this.current = new byte[Math.max(initialChunkSize, 1)];
+        this.currentLength = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Create an accumulator holding the given bytes, without copying them. The array must not be modified afterwards.
+     *
+     * @param bytes Bytes to hold
+     * @return Instance of {@link ByteAccumulator} with {@code bytes} as its only chunk
+     */
+    public static ByteAccumulator wrap(final byte[] bytes) {
+        final ByteAccumulator accumulator = new ByteAccumulator(0);
+        accumulator.current = bytes;
+        accumulator.currentLength = bytes.length;
+        accumulator.size = bytes.length;
+        return accumulator;
+    }
+
+    /**
+     * Retire the current chunk if it is full, starting a new chunk double its size
+     */
+    private void ensureSpace() {
+        if (this.currentLength < this.current.length) {
+            return;
+        }
+        this.chunks.add(this.current);
+        this.current = new byte[Math.min(Math.max(this.current.length * 2, DEFAULT_CHUNK_SIZE), MAX_CHUNK_SIZE)];
+        this.currentLength = 0;
+    }
+
+    @Override
+    public void write(final int b) {
+        ensureSpace();
+        this.current[this.currentLength++] = (byte) b;
+        this.size++;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) {
+        int written = 0;
+        while (written < length) {
+            ensureSpace();
+            final int copy = Math.min(length - written, this.current.length - this.currentLength);
+            System.arraycopy(bytes, offset + written, this.current, this.currentLength, copy);
+            this.currentLength += copy;
+            written += copy;
+        }
+        this.size += length;
+    }
+
+    /**
+     * Read from {@code in} until it ends, directly into the chunks of this accumulator
+     *
+     * @param in Stream to read from
+     * @return Amount of bytes read
+     * @throws IOException If an I/O error occurs
+     */
+    public long transferFrom(final InputStream in) throws IOException {
+        long transferred = 0;
+        while (true) {
+            ensureSpace();
+            final int read = in.read(this.current, this.currentLength, this.current.length - this.currentLength);
+            if (read < 0) {
+                return transferred;
+            }
+            this.currentLength += read;
+            this.size += read;
+            transferred += read;
+        }
+    }
+
+    /**
+     * @return Amount of bytes accumulated
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Write the accumulated bytes to {@code out} directly from the chunks they are held in
+     *
+     * @param out Stream to write to
+     * @throws IOException If the write failed
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        for (final byte[] chunk : this.chunks) {
+            out.write(chunk);
+        }
+        out.write(this.current, 0, this.currentLength);
+    }
+
+    /**
+     * Wrap the chunks holding the accumulated bytes as buffers, without copying them. Bytes written afterwards are not
+     * visible through the returned buffers.
+     *
+     * @return {@code ByteBuffer[]} over the accumulated bytes in order
+     */
+    public ByteBuffer[] toByteBuffers() {
+        final ByteBuffer[] buffers = new ByteBuffer[this.chunks.size() + (this.currentLength > 0 ? 1 : 0)];
+        for (int i = 0; i < this.chunks.size(); i++) {
+            buffers[i] = ByteBuffer.wrap(this.chunks.get(i));
+        }
+        if (this.currentLength > 0) {
+            buffers[buffers.length - 1] = ByteBuffer.wrap(this.current, 0, this.currentLength);
+        }
+        return buffers;
+    }
+
+    /**
+     * Copy the accumulated bytes into {@code destination}
+     *
+     * @param destination Array to copy into, which must have at least {@link ByteAccumulator#size()} bytes available
+     *                    from {@code offset}
+     * @param offset Index in {@code destination} to start copying to
+     */
+    public void copyTo(final byte[] destination, final int offset) {
+        int position = offset;
+        for (final byte[] chunk : this.chunks) {
+            System.arraycopy(chunk, 0, destination, position, chunk.length);
+            position += chunk.length;
+        }
+        System.arraycopy(this.current, 0, destination, position, this.currentLength);
+    }
+
+    /**
+     * Get the accumulated bytes as a single array. If they are held in a single exactly filled chunk, that chunk is
+     * returned without copying, so the returned array must not be modified.
+     *
+     * @return {@code byte[]} of the accumulated bytes
+     */
+    public byte[] toByteArray() {
+        if (this.chunks.isEmpty() && this.currentLength == this.current.length) {
+            return this.current;
+        }
+        final byte[] bytes = new byte[this.size];
+        copyTo(bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Decode the accumulated bytes as a {@link String}
+     *
+     * @param charset Encoding of the bytes
+     * @return Decoded {@link String}
+     */
+    public String toString(final Charset charset) {
+        if (this.chunks.isEmpty()) {
+            return new String(this.current, 0, this.currentLength, charset);
+        }
+        return new String(toByteArray(), charset);
+    }
+
+    /**
+     * Open a stream over the accumulated bytes, reading directly from the chunks they are held in. Bytes written after
+     * the stream is opened are not visible to it.
+     *
+     * @return {@link InputStream} over the accumulated bytes
+     */
+    public InputStream inputStream() {
+        final List<byte[]> views = new ArrayList<>(this.chunks);
+        final int lastLength = this.currentLength;
+        views.add(this.current);
+        return new InputStream() {
+            private int chunk = 0;
+            private int position = 0;
+
+            private int limit() {
+                return this.chunk == views.size() - 1 ? lastLength : views.get(this.chunk).length;
+            }
+
+            @Override
+            public int read() {
+                final byte[] single = new byte[1];
+                return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(final byte[] destination, final int offset, final int length) {
+                if (length == 0) {
+                    return 0;
+                }
+                while (this.position == limit()) {
+                    if (this.chunk == views.size() - 1) {
+                        return -1;
+                    }
+                    this.chunk++;
+                    this.position = 0;
+                }
+                final int read = Math.min(length, limit() - this.position);
+                System.arraycopy(views.get(this.chunk), this.position, destination, offset, read);
+                this.position += read;
+                return read;
+            }
+        };
+    }
+
+}
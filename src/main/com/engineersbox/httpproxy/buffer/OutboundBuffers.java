@@ -0,0 +1,113 @@
+package com.engineersbox.httpproxy.buffer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Sequence of buffers to be written out in order as though they were one contiguous buffer, without ever being copied
+ * into one. On a channel the buffers are written with a single gathering write
+ * ({@link GatheringByteChannel#write(ByteBuffer[], int, int)}), so that a message made up of a start line, a header
+ * block and several slices of a body is handed to the socket in one call.
+ *
+ * <br/><br/>
+ *
+ * Progress is tracked through the positions of the buffers themselves, so a partial write to a non-blocking channel
+ * can be resumed by writing again once the channel is writable.
+ */
+public class OutboundBuffers {
+
+    private final ByteBuffer[] buffers;
+    private final long length;
+    private int first;
+
+    public OutboundBuffers(final ByteBuffer ...buffers) {
+        this.buffers = buffers;
+        long total = 0;
+        for (final ByteBuffer buffer : buffers) {
+            total += buffer.remaining();
+        }
+        this.length = total;
+        this.first = 0;
+        skipWritten();
+    }
+
+    private void skipWritten() {
+        while (this.first < this.buffers.length && !this.buffers[this.first].hasRemaining()) {
+            this.first++;
+        }
+    }
+
+    /**
+     * @return Total amount of bytes across all buffers, including any already written
+     */
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * @return {@code true} if any buffer has bytes left to be written, {@code false} otherwise
+     */
+    public boolean hasRemaining() {
+        return this.first < this.buffers.length;
+    }
+
+    /**
+     * Write as many of the remaining bytes as the channel accepts with a single gathering write
+     *
+     * @param channel Channel to write to
+     * @return Amount of bytes written
+     * @throws IOException If an I/O error occurs during the write
+     */
+    public long writeTo(final GatheringByteChannel channel) throws IOException {
+        if (!hasRemaining()) {
+            return 0;
+        }
+        final long written = channel.write(this.buffers, this.first, this.buffers.length - this.first);
+        skipWritten();
+        return written;
+    }
+
+    /**
+     * Write all remaining bytes to a stream, one buffer at a time. Buffers backed by an array are written directly
+     * from it.
+     *
+     * @param out Stream to write to
+     * @throws IOException If an I/O error occurs during the write
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        for (; this.first < this.buffers.length; this.first++) {
+            final ByteBuffer buffer = this.buffers[this.first];
+            if (buffer.hasArray()) {
+                out.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+                buffer.position(buffer.limit());
+                continue;
+            }
+            final byte[] bytes = new byte[buffer.remaining()];
+            buffer.get(bytes);
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Copy the remaining bytes of all buffers into a single array, without consuming them
+     *
+     * @return {@code byte[]} of the remaining bytes
+     */
+    public byte[] toByteArray() {
+        int total = 0;
+        for (int i = this.first; i < this.buffers.length; i++) {
+            total += this.buffers[i].remaining();
+        }
+        final byte[] bytes = new byte[total];
+        int offset = 0;
+        for (int i = this.first; i < this.buffers.length; i++) {
+            final ByteBuffer view = this.buffers[i].duplicate();
+            final int remaining = view.remaining();
+            view.get(bytes, offset, remaining);
+            offset += remaining;
+        }
+        return bytes;
+    }
+}
@@ -4,6 +4,7 @@ import com.engineersbox.httpproxy.configuration.domain.Target;
 import com.engineersbox.httpproxy.configuration.domain.policies.Policies;
 import com.engineersbox.httpproxy.configuration.domain.policies.RuleSet;
 import com.engineersbox.httpproxy.configuration.domain.policies.Replacement;
+import com.engineersbox.httpproxy.configuration.domain.servlet.ContentTypeLevels;
 import com.engineersbox.httpproxy.configuration.domain.servlet.Servlet;
 import com.google.gson.*;
 import org.apache.commons.lang3.builder.EqualsBuilder;
@@ -15,6 +16,7 @@ import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 public class Config {
 
@@ -68,6 +70,15 @@ public class Config {
             "[CONFIG: Servlet > Threading] Scheduling Policy: %s",
             this.servlet.threading.schedulingPolicy
         ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Threading] Mode: %s",
+            this.servlet.threading.mode
+        ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Threading] Transport: %s [EVENT LOOPS: %d]",
+            this.servlet.threading.transport,
+            this.servlet.threading.eventLoopPoolSize
+        ));
         logger.info(String.format(
             "[CONFIG: Servlet > Connections] Queue Sizes: [ACCEPTOR: %d] [HANDLER: %d]",
             this.servlet.connections.acceptorQueueSize,
@@ -86,11 +97,57 @@ public class Config {
             "[CONFIG: Servlet > Messages] Max Body Size: %d",
             this.servlet.messages.maxBodySize
         ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Messages] Streaming: %s",
+            this.servlet.messages.streaming
+        ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Messages] HTML Rewriter: %s",
+            this.servlet.messages.htmlRewriter
+        ));
         logger.info(String.format(
             "[CONFIG: Servlet > Binding] Local Host [HOST: %s] [PORT: %d]",
             this.servlet.binding.host,
             this.servlet.binding.port
         ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Upstream] Max Connections: %d [MAX IDLE TIME: %d] [VALIDATE AFTER: %d]",
+            this.servlet.upstream.maxConnections,
+            this.servlet.upstream.maxIdleTime,
+            this.servlet.upstream.validateAfter
+        ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Keep Alive] Idle Timeout: %d [MAX REQUESTS: %d]",
+            this.servlet.keepAlive.idleTimeout,
+            this.servlet.keepAlive.maxRequests
+        ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Compression] Enabled: %s [MIN LENGTH: %d]",
+            this.servlet.compression.enabled,
+            this.servlet.compression.minLength
+        ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Compression > Adaptive] Enabled: %s [IDLE LOAD: %.2f] [SATURATED LOAD: %.2f] [SAMPLE INTERVAL: %d]",
+            this.servlet.compression.adaptive.enabled,
+            this.servlet.compression.adaptive.idleLoad,
+            this.servlet.compression.adaptive.saturatedLoad,
+            this.servlet.compression.adaptive.sampleInterval
+        ));
+        logger.info(String.format(
+            "[CONFIG: Servlet > Compression > Adaptive] Effort: [FLOOR: %.2f] [CEILING: %.2f]",
+            this.servlet.compression.adaptive.floor,
+            this.servlet.compression.adaptive.ceiling
+        ));
+        for (int i = 0; i < this.servlet.compression.adaptive.contentTypes.size(); i++) {
+            final ContentTypeLevels levels = this.servlet.compression.adaptive.contentTypes.get(i);
+            logger.info(String.format(
+                "[CONFIG: Servlet > Compression > Adaptive] Content type %d: [PATTERN: /%s/] [FLOOR: %.2f] [CEILING: %.2f]",
+                i,
+                levels.pattern.pattern(),
+                levels.floor,
+                levels.ceiling
+            ));
+        }
         logger.info(String.format(
             "[CONFIG: Policy > Enforcement] Behaviour: [IP: %s] [URL: %s]",
             this.policies.enforcement.whitelistBehaviour.ip,
@@ -143,6 +200,14 @@ public class Config {
                     replacement.to
             ));
         }
+        logger.info(String.format(
+            "[CONFIG: Policy > Passthrough] Content Types: [%s]",
+            this.policies.passthrough.contentTypes.stream().map(Pattern::pattern).collect(Collectors.joining(", "))
+        ));
+        logger.info(String.format(
+            "[CONFIG: Policy > Passthrough] Paths: [%s]",
+            this.policies.passthrough.paths.stream().map(Pattern::pattern).collect(Collectors.joining(", "))
+        ));
         logger.info(String.format(
             "[CONFIG: Target] Server Host: [HOST: %s] [PORT: %d]",
             this.target.host,
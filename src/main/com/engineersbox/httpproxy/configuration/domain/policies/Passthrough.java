@@ -0,0 +1,30 @@
+package com.engineersbox.httpproxy.configuration.domain.policies;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+public class Passthrough {
+    public final List<Pattern> contentTypes;
+    public final List<Pattern> paths;
+
+    public Passthrough(final List<Pattern> contentTypes, final List<Pattern> paths) {
+        this.contentTypes = contentTypes;
+        this.paths = paths;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final Passthrough that = (Passthrough) o;
+
+        return new EqualsBuilder()
+                .append(contentTypes, that.contentTypes)
+                .append(paths, that.paths)
+                .isEquals();
+    }
+}
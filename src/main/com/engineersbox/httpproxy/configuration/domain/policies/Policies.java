@@ -9,12 +9,14 @@ public class Policies {
     public final List<RuleSet> rulesets;
     public final List<Replacement> textReplacements;
     public final List<Replacement> linkReplacements;
+    public final Passthrough passthrough;
 
-    public Policies(final Enforcement enforcement, final List<RuleSet> rulesets, final List<Replacement> textReplacements, final List<Replacement> linkReplacements) {
+    public Policies(final Enforcement enforcement, final List<RuleSet> rulesets, final List<Replacement> textReplacements, final List<Replacement> linkReplacements, final Passthrough passthrough) {
         this.enforcement = enforcement;
         this.rulesets = rulesets;
         this.textReplacements = textReplacements;
         this.linkReplacements = linkReplacements;
+        this.passthrough = passthrough;
     }
 
     @Override
@@ -30,6 +32,7 @@ public class Policies {
                 .append(rulesets, policies.rulesets)
                 .append(textReplacements, policies.textReplacements)
                 .append(linkReplacements, policies.linkReplacements)
+                .append(passthrough, policies.passthrough)
                 .isEquals();
     }
 }
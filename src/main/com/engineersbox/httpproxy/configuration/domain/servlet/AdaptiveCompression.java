@@ -0,0 +1,50 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+
+import java.util.List;
+
+public class AdaptiveCompression {
+    public final boolean enabled;
+    public final double idleLoad;
+    public final double saturatedLoad;
+    public final int sampleInterval;
+    public final double floor;
+    public final double ceiling;
+    public final List<ContentTypeLevels> contentTypes;
+
+    public AdaptiveCompression(final boolean enabled,
+                               final double idleLoad,
+                               final double saturatedLoad,
+                               final int sampleInterval,
+                               final double floor,
+                               final double ceiling,
+                               final List<ContentTypeLevels> contentTypes) {
+        this.enabled = enabled;
+        this.idleLoad = idleLoad;
+        this.saturatedLoad = saturatedLoad;
+        this.sampleInterval = sampleInterval;
+        this.floor = floor;
+        this.ceiling = ceiling;
+        this.contentTypes = contentTypes;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final AdaptiveCompression that = (AdaptiveCompression) o;
+
+        return new EqualsBuilder()
+                .append(enabled, that.enabled)
+                .append(idleLoad, that.idleLoad)
+                .append(saturatedLoad, that.saturatedLoad)
+                .append(sampleInterval, that.sampleInterval)
+                .append(floor, that.floor)
+                .append(ceiling, that.ceiling)
+                .append(contentTypes, that.contentTypes)
+                .isEquals();
+    }
+}
@@ -0,0 +1,30 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+
+public class Compression {
+    public final boolean enabled;
+    public final int minLength;
+    public final AdaptiveCompression adaptive;
+
+    public Compression(final boolean enabled, final int minLength, final AdaptiveCompression adaptive) {
+        this.enabled = enabled;
+        this.minLength = minLength;
+        this.adaptive = adaptive;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final Compression compression = (Compression) o;
+
+        return new EqualsBuilder()
+                .append(enabled, compression.enabled)
+                .append(minLength, compression.minLength)
+                .append(adaptive, compression.adaptive)
+                .isEquals();
+    }
+}
@@ -0,0 +1,32 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+
+import java.util.regex.Pattern;
+
+public class ContentTypeLevels {
+    public final Pattern pattern;
+    public final double floor;
+    public final double ceiling;
+
+    public ContentTypeLevels(final Pattern pattern, final double floor, final double ceiling) {
+        this.pattern = pattern;
+        this.floor = floor;
+        this.ceiling = ceiling;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final ContentTypeLevels that = (ContentTypeLevels) o;
+
+        return new EqualsBuilder()
+                .append(pattern, that.pattern)
+                .append(floor, that.floor)
+                .append(ceiling, that.ceiling)
+                .isEquals();
+    }
+}
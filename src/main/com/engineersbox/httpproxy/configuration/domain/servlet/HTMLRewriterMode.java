@@ -0,0 +1,25 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import com.engineersbox.httpproxy.formatting.content.BaseContentFormatter;
+import com.engineersbox.httpproxy.formatting.content.ContentFormatter;
+import com.engineersbox.httpproxy.formatting.content.StreamingContentFormatter;
+
+/**
+ * Rewriting of HTML response bodies, mapped to the {@link BaseContentFormatter} implementation that provides it.
+ *
+ * <br/><br/>
+ *
+ * With {@code STREAMING}, HTML responses are also streamed through a
+ * {@link com.engineersbox.httpproxy.formatting.content.html.HTMLTokenRewriter} on the blocking transport when
+ * {@link Messages#streaming} is enabled, rather than being read in full before they are rewritten.
+ */
+public enum HTMLRewriterMode {
+    DOM(ContentFormatter.class),
+    STREAMING(StreamingContentFormatter.class);
+
+    public final Class<? extends BaseContentFormatter> formatterClass;
+
+    HTMLRewriterMode(final Class<? extends BaseContentFormatter> formatterClass) {
+        this.formatterClass = formatterClass;
+    }
+}
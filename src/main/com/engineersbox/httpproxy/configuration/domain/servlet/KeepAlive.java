@@ -0,0 +1,27 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+
+public class KeepAlive {
+    public final int idleTimeout;
+    public final int maxRequests;
+
+    public KeepAlive(final int idleTimeout, final int maxRequests) {
+        this.idleTimeout = idleTimeout;
+        this.maxRequests = maxRequests;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final KeepAlive keepAlive = (KeepAlive) o;
+
+        return new EqualsBuilder()
+                .append(idleTimeout, keepAlive.idleTimeout)
+                .append(maxRequests, keepAlive.maxRequests)
+                .isEquals();
+    }
+}
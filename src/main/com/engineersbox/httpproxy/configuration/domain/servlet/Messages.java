@@ -5,9 +5,13 @@ import org.apache.commons.lang3.builder.EqualsBuilder;
 public class Messages {
 
     public final int maxBodySize;
+    public final boolean streaming;
+    public final HTMLRewriterMode htmlRewriter;
 
-    public Messages(final int maxBodySize) {
+    public Messages(final int maxBodySize, final boolean streaming, final HTMLRewriterMode htmlRewriter) {
         this.maxBodySize = maxBodySize;
+        this.streaming = streaming;
+        this.htmlRewriter = htmlRewriter;
     }
 
     @Override
@@ -20,6 +24,8 @@ public class Messages {
 
         return new EqualsBuilder()
                 .append(maxBodySize, messages.maxBodySize)
+                .append(streaming, messages.streaming)
+                .append(htmlRewriter, messages.htmlRewriter)
                 .isEquals();
     }
 }
@@ -7,12 +7,18 @@ public class Servlet {
     public final Connections connections;
     public final Messages messages;
     public final Binding binding;
+    public final Upstream upstream;
+    public final KeepAlive keepAlive;
+    public final Compression compression;
 
-    public Servlet(final Threading threading, final Connections connections, final Messages messages, final Binding binding) {
+    public Servlet(final Threading threading, final Connections connections, final Messages messages, final Binding binding, final Upstream upstream, final KeepAlive keepAlive, final Compression compression) {
         this.threading = threading;
         this.connections = connections;
         this.messages = messages;
         this.binding = binding;
+        this.upstream = upstream;
+        this.keepAlive = keepAlive;
+        this.compression = compression;
     }
 
     @Override
@@ -28,6 +34,9 @@ public class Servlet {
                 .append(connections, servlet.connections)
                 .append(messages, servlet.messages)
                 .append(binding, servlet.binding)
+                .append(upstream, servlet.upstream)
+                .append(keepAlive, servlet.keepAlive)
+                .append(compression, servlet.compression)
                 .isEquals();
     }
 }
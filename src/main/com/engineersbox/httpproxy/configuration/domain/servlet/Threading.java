@@ -7,12 +7,18 @@ public class Threading {
     public final int handlerPoolSize;
     public final int classMatcherPoolSize;
     public final SchedulingPolicy schedulingPolicy;
+    public final Transport transport;
+    public final int eventLoopPoolSize;
+    public final ThreadingMode mode;
 
-    public Threading(final int acceptorPoolSize, final int handlerPoolSize, final int classMatcherPoolSize, final SchedulingPolicy schedulingPolicy) {
+    public Threading(final int acceptorPoolSize, final int handlerPoolSize, final int classMatcherPoolSize, final SchedulingPolicy schedulingPolicy, final Transport transport, final int eventLoopPoolSize, final ThreadingMode mode) {
         this.acceptorPoolSize = acceptorPoolSize;
         this.handlerPoolSize = handlerPoolSize;
         this.classMatcherPoolSize = classMatcherPoolSize;
         this.schedulingPolicy = schedulingPolicy;
+        this.transport = transport;
+        this.eventLoopPoolSize = eventLoopPoolSize;
+        this.mode = mode;
     }
 
     @Override
@@ -28,6 +34,9 @@ public class Threading {
                 .append(handlerPoolSize, threading.handlerPoolSize)
                 .append(classMatcherPoolSize, threading.classMatcherPoolSize)
                 .append(schedulingPolicy, threading.schedulingPolicy)
+                .append(transport, threading.transport)
+                .append(eventLoopPoolSize, threading.eventLoopPoolSize)
+                .append(mode, threading.mode)
                 .isEquals();
     }
 }
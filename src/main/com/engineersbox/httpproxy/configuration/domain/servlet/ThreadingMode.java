@@ -0,0 +1,39 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import com.engineersbox.httpproxy.connection.threading.PoolManager;
+import com.engineersbox.httpproxy.connection.threading.ThreadManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * Scheduling mode for acceptor and handler tasks, mapped to the {@link ThreadManager} implementation that provides it.
+ *
+ * <br/><br/>
+ *
+ * Implementations are referenced by name since {@code VIRTUAL} is only compiled when building with the {@code java21}
+ * profile.
+ */
+public enum ThreadingMode {
+    POOLED("com.engineersbox.httpproxy.connection.threading.PoolManager"),
+    VIRTUAL("com.engineersbox.httpproxy.connection.threading.VirtualThreadManager");
+
+    private final Logger logger = LogManager.getLogger(ThreadingMode.class);
+
+    public final String managerClassName;
+
+    ThreadingMode(final String managerClassName) {
+        this.managerClassName = managerClassName;
+    }
+
+    public Class<? extends ThreadManager> getManagerClass() {
+        try {
+            return Class.forName(this.managerClassName).asSubclass(ThreadManager.class);
+        } catch (final ClassNotFoundException | ClassCastException e) {
+            logger.error(String.format(
+                    "Could not load ThreadManager implementation: %s, defaulting to PoolManager. Was the proxy built with the java21 profile?",
+                    this.managerClassName
+            ), e);
+            return PoolManager.class;
+        }
+    }
+}
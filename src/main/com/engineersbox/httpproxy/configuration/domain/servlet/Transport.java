@@ -0,0 +1,15 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+/**
+ * Socket transport used by the servlet to accept and service connections
+ */
+public enum Transport {
+    /**
+     * Blocking {@link java.net.ServerSocket} accept with a pooled thread per traffic direction of each connection
+     */
+    BLOCKING,
+    /**
+     * Non-blocking {@link java.nio.channels.Selector} event loops multiplexing all client and server channels
+     */
+    SELECTOR
+}
@@ -0,0 +1,30 @@
+package com.engineersbox.httpproxy.configuration.domain.servlet;
+
+import org.apache.commons.lang3.builder.EqualsBuilder;
+
+public class Upstream {
+    public final int maxConnections;
+    public final int maxIdleTime;
+    public final int validateAfter;
+
+    public Upstream(final int maxConnections, final int maxIdleTime, final int validateAfter) {
+        this.maxConnections = maxConnections;
+        this.maxIdleTime = maxIdleTime;
+        this.validateAfter = validateAfter;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) return true;
+
+        if (o == null || getClass() != o.getClass()) return false;
+
+        final Upstream upstream = (Upstream) o;
+
+        return new EqualsBuilder()
+                .append(maxConnections, upstream.maxConnections)
+                .append(maxIdleTime, upstream.maxIdleTime)
+                .append(validateAfter, upstream.validateAfter)
+                .isEquals();
+    }
+}
@@ -1,6 +1,8 @@
 package com.engineersbox.httpproxy.connection;
 
 import com.engineersbox.httpproxy.Proxy;
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
 import com.engineersbox.httpproxy.connection.stream.ContentCollector;
 import com.engineersbox.httpproxy.connection.stream.StreamCollector;
 import com.engineersbox.httpproxy.connection.threading.ThreadManager;
@@ -15,6 +17,8 @@ import com.google.inject.TypeLiteral;
  * <ul>
  *     <li>{@link ContentCollector}</li>
  *     <li>{@link ThreadManager}</li>
+ *     <li>{@link UpstreamConnectionPool}</li>
+ *     <li>{@link BufferPool}</li>
  * </ul>
  */
 public class ConnectionModule extends AbstractModule {
@@ -27,5 +31,9 @@ public class ConnectionModule extends AbstractModule {
                 .to(new TypeLiteral<StreamCollector<HTTPResponseStartLine>>(){});
         bind(ThreadManager.class)
                 .toInstance(Proxy.poolManager);
+        bind(UpstreamConnectionPool.class)
+                .toInstance(Proxy.upstreamPool);
+        bind(BufferPool.class)
+                .toInstance(Proxy.bufferPool);
     }
 }
@@ -1,18 +1,17 @@
 package com.engineersbox.httpproxy.connection;
 
 import com.engineersbox.httpproxy.configuration.ConfigModule;
-import com.engineersbox.httpproxy.configuration.domain.servlet.Connections;
 import com.engineersbox.httpproxy.connection.handler.BackwardTrafficHandler;
 import com.engineersbox.httpproxy.connection.handler.BaseTrafficHandler;
 import com.engineersbox.httpproxy.connection.handler.ForwardTrafficHandler;
-import com.engineersbox.httpproxy.exceptions.socket.FailedToCreateServerSocketException;
+import com.engineersbox.httpproxy.connection.handler.InFlightRequests;
 import com.engineersbox.httpproxy.formatting.FormattingModule;
-import com.engineersbox.httpproxy.connection.socket.SingletonSocketFactory;
 import com.engineersbox.httpproxy.connection.threading.ThreadManager;
 import com.engineersbox.httpproxy.resolver.ResolverModule;
 import com.google.inject.AbstractModule;
 import com.google.inject.Guice;
 import com.google.inject.Injector;
+import com.google.inject.Singleton;
 import com.google.inject.name.Names;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -21,46 +20,25 @@ import java.io.*;
 import java.net.Socket;
 
 /**
- * Handles an accepted connection to a configured {@link java.net.ServerSocket}, to a server and client {@link Socket}
- * instance.
+ * Handles an accepted connection to a configured {@link java.net.ServerSocket}, to a client {@link Socket} instance.
+ * Server connections are leased from the {@link com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool} for
+ * each request by the {@link BackwardTrafficHandler}.
  */
 public class ProxyConnectionAcceptor extends BaseTrafficHandler {
 
     private final Logger logger = LogManager.getLogger(ProxyConnectionAcceptor.class);
 
-    private Connections connectionsConfig;
-
-    private Socket server;
     private final Socket localSocket;
-    private final String host;
-    private final int port;
     private final ThreadManager poolManager;
 
     private InputStream inClient;
-    private InputStream inServer;
     private OutputStream outClient;
-    private OutputStream outServer;
 
-    public ProxyConnectionAcceptor(final Socket localSocket, final String host, final int port, final ThreadManager poolManager) {
+    public ProxyConnectionAcceptor(final Socket localSocket, final ThreadManager poolManager) {
         this.localSocket = localSocket;
-        this.host = host;
-        this.port = port;
         this.poolManager = poolManager;
     }
 
-    /**
-     * Supplies a configuration for {@link Connections} to use with {@link Socket} and {@link InputStream}/{@link OutputStream}
-     * instantiation
-     *
-     * @param connectionsConfig Configuration for {@link Socket}'s and {@link InputStream}/{@link OutputStream}'s via an
-     *                          instantiation of {@link Connections}
-     * @return Current instance of {@link ProxyConnectionAcceptor} with applied configs
-     */
-    public ProxyConnectionAcceptor withSocketConfigs(final Connections connectionsConfig) {
-        this.connectionsConfig = connectionsConfig;
-        return this;
-    }
-
     /**
      * Module containing all bindings for:
      *
@@ -68,6 +46,7 @@ public class ProxyConnectionAcceptor extends BaseTrafficHandler {
      *     <li>{@link Socket}'s</li>
      *     <li>{@link InputStream}'s</li>
      *     <li>/{@link OutputStream}'s</li>
+     *     <li>{@link InFlightRequests} shared between both handlers</li>
      * </ul>
      */
     class TrafficHandlerModule extends AbstractModule {
@@ -76,21 +55,14 @@ public class ProxyConnectionAcceptor extends BaseTrafficHandler {
             bind(InputStream.class)
                     .annotatedWith(Names.named("Client In"))
                     .toInstance(inClient);
-            bind(InputStream.class)
-                    .annotatedWith(Names.named("Server In"))
-                    .toInstance(inServer);
             bind(OutputStream.class)
                     .annotatedWith(Names.named("Client Out"))
                     .toInstance(outClient);
-            bind(OutputStream.class)
-                    .annotatedWith(Names.named("Server Out"))
-                    .toInstance(outServer);
             bind(Socket.class)
                     .annotatedWith(Names.named("Client Socket"))
                     .toInstance(localSocket);
-            bind(Socket.class)
-                    .annotatedWith(Names.named("Server Socket"))
-                    .toInstance(server);
+            bind(InFlightRequests.class)
+                    .in(Singleton.class);
         }
     }
 
@@ -110,22 +82,6 @@ public class ProxyConnectionAcceptor extends BaseTrafficHandler {
         logger.debug("Accepted client connection");
         this.outClient = localSocket.getOutputStream();
         this.inClient = localSocket.getInputStream();
-        try {
-            this.server = new SingletonSocketFactory()
-                    .withSocketConfigs(this.connectionsConfig)
-                    .createSocket(host, port);
-            logger.debug("Established connection to server");
-        } catch (IOException e) {
-            final PrintWriter out = new PrintWriter(new OutputStreamWriter(localSocket.getOutputStream()));
-            out.flush();
-            throw new FailedToCreateServerSocketException(
-                    "Could not create socket for [Host: " + this.host + "] [Port: " + this.port + "]",
-                    e
-            );
-        }
-
-        this.outServer = server.getOutputStream();
-        this.inServer = server.getInputStream();
         final Injector injector = Guice.createInjector(
                 new ConfigModule(),
                 new FormattingModule(),
@@ -0,0 +1,43 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * Base interface for a handler attached to one or more {@link SelectionKey}'s registered with an {@link EventLoop}.
+ * All methods are invoked on the thread of the owning {@link EventLoop}.
+ */
+public interface ChannelEventHandler {
+
+    /**
+     * Handle a readiness event for one of the channels this handler is attached to
+     *
+     * @param key The selected {@link SelectionKey}
+     */
+    void handleEvent(final SelectionKey key);
+
+    /**
+     * Retrieve the time in milliseconds of the last I/O activity observed by this handler
+     *
+     * @return Epoch time in milliseconds of last activity
+     */
+    long lastActivity();
+
+    /**
+     * Retrieve the time in milliseconds this handler may go without I/O activity in its current state before being
+     * timed out. A value of {@code 0} or less disables the timeout.
+     *
+     * @return Idle timeout in milliseconds
+     */
+    long idleTimeout();
+
+    /**
+     * Invoked when no I/O activity has been observed for longer than {@link ChannelEventHandler#idleTimeout()}
+     */
+    void timeout();
+
+    /**
+     * Close all channels associated with this handler
+     */
+    void close();
+
+}
@@ -0,0 +1,933 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.buffer.OutboundBuffers;
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.connection.handler.BaseTrafficHandler;
+import com.engineersbox.httpproxy.connection.handler.ForwardTrafficHandler;
+import com.engineersbox.httpproxy.connection.stream.ContentCollector;
+import com.engineersbox.httpproxy.connection.stream.PassthroughClassifier;
+import com.engineersbox.httpproxy.connection.threading.ThreadManager;
+import com.engineersbox.httpproxy.exceptions.socket.SocketStreamReadError;
+import com.engineersbox.httpproxy.formatting.compression.CompressionLevelController;
+import com.engineersbox.httpproxy.formatting.compression.ContentCodingNegotiator;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPFraming;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMethod;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
+import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponse;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponses;
+import com.engineersbox.httpproxy.resolver.ResourceResolver;
+import com.google.inject.Injector;
+import com.google.inject.Key;
+import com.google.inject.TypeLiteral;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Non-blocking equivalent of a {@link com.engineersbox.httpproxy.connection.ProxyConnectionAcceptor} and its traffic
+ * handlers, driving a single client connection and the server connection leased for each of its requests from an
+ * {@link EventLoop}.
+ *
+ * <br/><br/>
+ *
+ * All socket I/O happens on the loop thread. Once a full request or response has been received, the message is
+ * handed to the handler pool of the {@link ThreadManager} to be parsed and resolved with a {@link ContentCollector}
+ * and {@link ResourceResolver} in the same way as the blocking transport. The resulting bytes are passed back to the
+ * loop to be written.
+ *
+ * <br/><br/>
+ *
+ * Once a response has been written, the exchange returns to reading the next request from the client if the
+ * connection is persistent, as per <a href="https://tools.ietf.org/html/rfc7230#section-6.3" target="_top">RFC 7230 Section 6.3</a>.
+ * Each request is written to a server connection leased from the {@link UpstreamChannelPool} of the loop, or to a new
+ * one if none is idle. The server connection is returned to the pool once the response has been received in full, if
+ * the server keeps it alive and the end of the response was determined by its framing, see
+ * {@link ChannelExchange#releaseServer(boolean)}.
+ *
+ * <br/><br/>
+ *
+ * Responses classified by the {@link PassthroughClassifier} are not buffered. Once their head has been rewritten, the
+ * body is relayed from the server channel to the client channel through a direct buffer as it is received. When
+ * streaming is enabled, the same applies to any response that no resource handler would rewrite.
+ */
+public class ChannelExchange implements ChannelEventHandler {
+
+    private final Logger logger = LogManager.getLogger(ChannelExchange.class);
+
+    private static final int INITIAL_INBOUND_CAPACITY = 1024;
+
+    private static final TypeLiteral<ContentCollector<HTTPRequestStartLine>> REQUEST_COLLECTOR = new TypeLiteral<ContentCollector<HTTPRequestStartLine>>(){};
+    private static final TypeLiteral<ContentCollector<HTTPResponseStartLine>> RESPONSE_COLLECTOR = new TypeLiteral<ContentCollector<HTTPResponseStartLine>>(){};
+
+    private enum State {
+        READING_REQUEST,
+        PROCESSING_REQUEST,
+        CONNECTING,
+        WRITING_REQUEST,
+        READING_RESPONSE,
+        PROCESSING_RESPONSE,
+        WRITING_RESPONSE,
+        RELAYING_RESPONSE,
+        CLOSED
+    }
+
+    private final EventLoop loop;
+    private final SocketChannel client;
+    private final Config config;
+    private final ThreadManager poolManager;
+    private final BufferPool bufferPool;
+    private final Injector injector;
+    private final ResourceResolver resolver;
+    private final PassthroughClassifier passthroughClassifier;
+    private final PreEncodedResponses preEncodedResponses;
+    private final CompressionLevelController compressionLevels;
+
+    private SelectionKey clientKey;
+    private SocketChannel server;
+    private SelectionKey serverKey;
+    private boolean serverReusable;
+
+    private State state = State.READING_REQUEST;
+    private long lastActivity = System.currentTimeMillis();
+    private byte[] inbound = new byte[0];
+    private int inboundLength = 0;
+    private OutboundBuffers outbound;
+    private byte[] pipelined = new byte[0];
+    private int served = 0;
+    private String requestTarget;
+    private boolean headRequest = false;
+    private String acceptEncoding;
+    private boolean lastRequest = false;
+    private boolean closeAfterResponse = true;
+
+    private BufferPool.Lease relayBuffer;
+    private int relayHeadLength;
+    private boolean relayDeclined;
+    private ChunkedBodyScanner relayChunks;
+    private long relayRemaining;
+    private long relayed;
+    private boolean relayDone;
+    private boolean serverEnded;
+
+    public ChannelExchange(final EventLoop loop,
+                           final SocketChannel client,
+                           final Config config,
+                           final ThreadManager poolManager,
+                           final BufferPool bufferPool,
+                           final Injector injector,
+                           final ResourceResolver resolver) {
+        this.loop = loop;
+        this.client = client;
+        this.config = config;
+        this.poolManager = poolManager;
+        this.bufferPool = bufferPool;
+        this.injector = injector;
+        this.resolver = resolver;
+        this.passthroughClassifier = injector.getInstance(PassthroughClassifier.class);
+        this.preEncodedResponses = injector.getInstance(PreEncodedResponses.class);
+        this.compressionLevels = injector.getInstance(CompressionLevelController.class);
+    }
+
+    /**
+     * Register the client channel with the owning {@link EventLoop}. Must be invoked on the loop thread.
+     *
+     * @throws IOException If the channel could not be registered
+     */
+    public void register() throws IOException {
+        this.clientKey = this.loop.register(this.client, SelectionKey.OP_READ, this);
+        logger.debug("Accepted client connection");
+    }
+
+    @Override
+    public long lastActivity() {
+        return this.lastActivity;
+    }
+
+    /**
+     * Between requests on a persistent client connection the exchange may be idle for {@code keepAlive.idleTimeout}
+     * milliseconds, otherwise for {@code connections.dropAfter} milliseconds.
+     *
+     * @return Idle timeout in milliseconds for the current state
+     */
+    @Override
+    public long idleTimeout() {
+        if (this.state == State.READING_REQUEST && this.served > 0 && this.inboundLength == 0) {
+            return this.config.servlet.keepAlive.idleTimeout;
+        }
+        return this.config.servlet.connections.dropAfter;
+    }
+
+    @Override
+    public void handleEvent(final SelectionKey key) {
+        this.lastActivity = System.currentTimeMillis();
+        try {
+            if (key.channel() == this.client) {
+                if (key.isReadable()) {
+                    readClient();
+                } else if (key.isWritable()) {
+                    if (this.state == State.RELAYING_RESPONSE) {
+                        flushRelay();
+                    } else {
+                        flushClient();
+                    }
+                }
+            } else {
+                if (key.isConnectable()) {
+                    finishConnect();
+                } else if (key.isReadable()) {
+                    if (this.state == State.RELAYING_RESPONSE) {
+                        relayServer();
+                    } else {
+                        readServer();
+                    }
+                } else if (key.isWritable()) {
+                    flushServer();
+                }
+            }
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+            close();
+        }
+    }
+
+    /**
+     * Drain all currently available bytes from a channel into the inbound buffer, stopping once it holds more than
+     * {@link ChannelExchange#inboundLimit()} bytes
+     *
+     * @param channel Channel to read from
+     * @return {@code false} if the end of stream was reached, {@code true} otherwise
+     * @throws IOException If an I/O error occurs during the read
+     */
+    private boolean drain(final SocketChannel channel) throws IOException {
+        final ByteBuffer buffer = this.loop.readBuffer();
+        final int limit = inboundLimit();
+        int read = 0;
+        while (this.inboundLength <= limit && (read = channel.read(buffer)) > 0) {
+            buffer.flip();
+            appendInbound(buffer);
+            buffer.clear();
+        }
+        return read >= 0;
+    }
+
+    /**
+     * @return Maximum amount of bytes of a single message buffered before it is processed, being
+     * {@link HTTPFraming#MAX_HEAD_LENGTH} and {@link com.engineersbox.httpproxy.configuration.domain.servlet.Messages#maxBodySize}
+     * combined
+     */
+    private int inboundLimit() {
+        return (int) Math.min(Integer.MAX_VALUE - 8L, (long) HTTPFraming.MAX_HEAD_LENGTH + this.config.servlet.messages.maxBodySize);
+    }
+
+    private void appendInbound(final ByteBuffer buffer) {
+        final int required = this.inboundLength + buffer.remaining();
+        if (required > this.inbound.length) {
+            this.inbound = Arrays.copyOf(this.inbound, Math.max(required, Math.max(INITIAL_INBOUND_CAPACITY, this.inbound.length * 2)));
+        }
+        final int count = buffer.remaining();
+        buffer.get(this.inbound, this.inboundLength, count);
+        this.inboundLength += count;
+    }
+
+    /**
+     * Take the first {@code length} bytes of the inbound buffer, retaining any bytes past them. Bytes past the end of
+     * a request are held aside whilst the response is received, as they belong to a subsequent pipelined request.
+     *
+     * @param length Amount of bytes to take
+     * @return The taken bytes
+     */
+    private byte[] takeInbound(final int length) {
+        final byte[] bytes = Arrays.copyOf(this.inbound, length);
+        final int remaining = this.inboundLength - length;
+        if (remaining > 0) {
+            System.arraycopy(this.inbound, length, this.inbound, 0, remaining);
+        } else {
+            this.inbound = new byte[0];
+        }
+        this.inboundLength = remaining;
+        return bytes;
+    }
+
+    private void readClient() throws IOException {
+        if (this.state != State.READING_REQUEST) {
+            return;
+        }
+        final boolean open = drain(this.client);
+        if (!processRequest() && !open) {
+            close();
+        }
+    }
+
+    /**
+     * Submit the next request in the inbound buffer for processing if it has been received in full. Requests without
+     * framing headers have no body. Requests with invalid framing are answered with a {@code 400 (Bad Request)} and the
+     * connection closed, as their end, and so the start of any subsequent request, cannot be determined. The same
+     * applies to requests too large to be buffered, see {@link ChannelExchange#oversizedRequestRejection(int)}.
+     *
+     * @return {@code true} if a request was submitted or rejected, {@code false} otherwise
+     */
+    private boolean processRequest() {
+        final int end = MessageFraming.messageEnd(this.inbound, this.inboundLength, true);
+        if (end == MessageFraming.MALFORMED) {
+            final int headEnd = MessageFraming.headEnd(this.inbound, this.inboundLength);
+            final String malformation = MessageFraming.framing(this.inbound, headEnd, true).malformation();
+            logger.error("Received request with invalid message framing" + (malformation != null ? ": " + malformation : ""));
+            takeInbound(this.inboundLength);
+            respond(this.preEncodedResponses.badRequest.toBuffers(), true);
+            return true;
+        }
+        final PreEncodedResponse rejection = oversizedRequestRejection(end);
+        if (rejection != null) {
+            logger.error("Received request larger than the maximum supported size, rejecting with " + rejection.startLine.toDisplayableString());
+            takeInbound(this.inboundLength);
+            respond(rejection.toBuffers(), true);
+            return true;
+        } else if (end < 0) {
+            return false;
+        }
+        this.state = State.PROCESSING_REQUEST;
+        this.served++;
+        this.clientKey.interestOps(0);
+        final byte[] request = takeInbound(end);
+        this.pipelined = takeInbound(this.inboundLength);
+        this.poolManager.submitHandler(new RequestProcessor(request, this.served));
+        return true;
+    }
+
+    /**
+     * Determine whether the next request in the inbound buffer is too large to be buffered. The start line and headers
+     * may be at most {@link HTTPFraming#MAX_HEAD_LENGTH} bytes, and the body at most
+     * {@link com.engineersbox.httpproxy.configuration.domain.servlet.Messages#maxBodySize} bytes, as given by its
+     * {@code Content-Length} header or the amount of body bytes received so far if it has not been received in full.
+     *
+     * @param end Index of the first byte after the request, or {@code -1} if it has not been received in full
+     * @return {@code 431 (Request Header Fields Too Large)} or {@code 413 (Payload Too Large)} to reject the request
+     * with, or {@code null} if it is not too large
+     */
+    private PreEncodedResponse oversizedRequestRejection(final int end) {
+        final int headEnd = MessageFraming.headEnd(this.inbound, this.inboundLength);
+        if (headEnd > HTTPFraming.MAX_HEAD_LENGTH || (headEnd < 0 && this.inboundLength > HTTPFraming.MAX_HEAD_LENGTH)) {
+            return this.preEncodedResponses.headersTooLarge;
+        } else if (headEnd < 0) {
+            return null;
+        }
+        final int maxBodySize = this.config.servlet.messages.maxBodySize;
+        if (MessageFraming.framing(this.inbound, headEnd, true).contentLength() > maxBodySize
+                || (end < 0 && this.inboundLength - headEnd > maxBodySize)) {
+            return this.preEncodedResponses.payloadTooLarge;
+        }
+        return null;
+    }
+
+    private void connectServer(final InetSocketAddress address,
+                               final OutboundBuffers request,
+                               final HTTPRequestStartLine startLine,
+                               final String acceptEncoding,
+                               final boolean lastRequest) {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.requestTarget = startLine.target;
+        this.relayDeclined = false;
+        this.headRequest = startLine.method == HTTPMethod.HEAD;
+        this.acceptEncoding = acceptEncoding;
+        this.lastRequest = lastRequest;
+        this.serverReusable = false;
+        this.outbound = request;
+        final SelectionKey pooled = this.loop.upstreamChannels().acquire(address.getHostString(), address.getPort(), this, SelectionKey.OP_WRITE);
+        if (pooled != null) {
+            this.server = (SocketChannel) pooled.channel();
+            this.serverKey = pooled;
+            this.state = State.WRITING_REQUEST;
+            try {
+                flushServer();
+            } catch (final IOException e) {
+                logger.error(e.getMessage(), e);
+                close();
+            }
+            return;
+        }
+        this.state = State.CONNECTING;
+        try {
+            this.server = SocketChannel.open();
+            this.server.configureBlocking(false);
+            this.server.setOption(StandardSocketOptions.SO_RCVBUF, this.config.servlet.connections.readerBufferSize);
+            this.server.setOption(StandardSocketOptions.SO_SNDBUF, this.config.servlet.connections.writeBufferSize);
+            if (this.server.connect(address)) {
+                this.serverKey = this.loop.register(this.server, SelectionKey.OP_WRITE, this);
+                this.state = State.WRITING_REQUEST;
+                flushServer();
+            } else {
+                this.serverKey = this.loop.register(this.server, SelectionKey.OP_CONNECT, this);
+            }
+        } catch (final IOException e) {
+            logger.error("Could not create socket for [Host: " + address.getHostString() + "] [Port: " + address.getPort() + "]", e);
+            respond(this.preEncodedResponses.connectFailure.toBuffers(), true);
+        }
+    }
+
+    private void finishConnect() throws IOException {
+        try {
+            if (!this.server.finishConnect()) {
+                return;
+            }
+        } catch (final IOException e) {
+            logger.error("Could not connect to [Host: " + this.config.target.host + "] [Port: " + this.config.target.port + "]", e);
+            respond(this.preEncodedResponses.connectFailure.toBuffers(), true);
+            return;
+        }
+        logger.debug("Established connection to server");
+        this.state = State.WRITING_REQUEST;
+        this.serverKey.interestOps(SelectionKey.OP_WRITE);
+        flushServer();
+    }
+
+    private void flushServer() throws IOException {
+        this.outbound.writeTo(this.server);
+        if (this.outbound.hasRemaining()) {
+            return;
+        }
+        logger.debug("Wrote " + this.outbound.length() + " bytes to server channel");
+        this.outbound = null;
+        this.state = State.READING_RESPONSE;
+        this.serverKey.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void readServer() throws IOException {
+        if (this.state != State.READING_RESPONSE) {
+            return;
+        }
+        processResponse(drain(this.server));
+    }
+
+    /**
+     * Act on the bytes of the response received so far. Once the head has been received, responses classified by the
+     * {@link PassthroughClassifier} are relayed. When streaming is enabled, other responses with a body are also
+     * relayed, provided no resource handler would rewrite them, which is determined by a {@link RelayHeadProcessor}.
+     * Any other response is processed once it has been received in full.
+     *
+     * @param open Whether the server channel is still open for reading
+     */
+    private void processResponse(final boolean open) {
+        final boolean bodyless = this.headRequest || MessageFraming.isBodylessResponse(this.inbound, this.inboundLength);
+        final int headEnd = MessageFraming.headEnd(this.inbound, this.inboundLength);
+        if (headEnd >= 0 && !this.relayDeclined) {
+            final boolean passthrough = this.passthroughClassifier.isPassthrough(
+                    this.requestTarget,
+                    Optional.ofNullable(MessageFraming.findHeader(this.inbound, headEnd, HTTPSymbols.CONTENT_TYPE_HEADER))
+            );
+            if (passthrough || (this.config.servlet.messages.streaming && !bodyless)) {
+                startRelayHead(headEnd, bodyless, open, !passthrough);
+                return;
+            }
+        }
+        final int end = bodyless ? headEnd : MessageFraming.messageEnd(this.inbound, this.inboundLength, false);
+        if (end == MessageFraming.MALFORMED) {
+            logger.error("Received response with invalid message framing");
+            close();
+            return;
+        } else if (end < 0 && this.inboundLength > inboundLimit()) {
+            logger.error("Received response larger than the maximum supported size of " + inboundLimit() + " bytes");
+            close();
+            return;
+        } else if (end < 0 && open) {
+            return;
+        }
+        if (open && end == this.inboundLength) {
+            this.serverKey.interestOps(0);
+        } else {
+            closeServer();
+        }
+        this.state = State.PROCESSING_RESPONSE;
+        final byte[] response = takeInbound(end < 0 ? this.inboundLength : end);
+        takeInbound(this.inboundLength);
+        this.poolManager.submitHandler(new ResponseProcessor(response, this.headRequest, this.acceptEncoding, this.lastRequest, this.served));
+    }
+
+    /**
+     * Begin relaying a response once its head has been received. The framing of the body is determined from the head,
+     * then reading from the server is paused whilst the head is parsed and its connection headers rewritten on the
+     * handler pool by a {@link RelayHeadProcessor}.
+     *
+     * @param headEnd Index of the first body byte in the inbound buffer
+     * @param bodyless Whether the response is known to have no body
+     * @param open Whether the server channel is still open for reading
+     * @param streamed Whether the response is relayed due to streaming, rather than being classified as passthrough.
+     *                 Streamed responses fall back to being processed in full if a resource handler exists for them
+     */
+    private void startRelayHead(final int headEnd, final boolean bodyless, final boolean open, final boolean streamed) {
+        final HTTPFraming framing = MessageFraming.framing(this.inbound, headEnd, false);
+        this.relayChunks = null;
+        this.relayRemaining = -1;
+        this.relayed = 0;
+        this.relayDone = false;
+        this.serverEnded = !open;
+        if (bodyless) {
+            this.relayRemaining = 0;
+        } else if (framing.malformation() != null) {
+            logger.error("Received response with invalid message framing: " + framing.malformation());
+            close();
+            return;
+        } else if (framing.isChunked()) {
+            this.relayChunks = new ChunkedBodyScanner();
+        } else {
+            this.relayRemaining = framing.contentLength();
+        }
+        final boolean closeDelimited = this.relayChunks == null && this.relayRemaining < 0;
+        this.state = State.PROCESSING_RESPONSE;
+        this.serverKey.interestOps(0);
+        this.relayHeadLength = headEnd;
+        this.poolManager.submitHandler(new RelayHeadProcessor(
+                Arrays.copyOf(this.inbound, headEnd),
+                this.lastRequest || closeDelimited,
+                this.served,
+                streamed
+        ));
+    }
+
+    /**
+     * Return to reading a streamed response in full after a {@link RelayHeadProcessor} found a resource handler that
+     * will rewrite it. Must be invoked on the loop thread.
+     */
+    private void resumeResponse() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.relayDeclined = true;
+        this.state = State.READING_RESPONSE;
+        if (!this.serverEnded) {
+            this.serverKey.interestOps(SelectionKey.OP_READ);
+        }
+        processResponse(!this.serverEnded);
+    }
+
+    /**
+     * Determine how many of the remaining bytes of {@code buffer} belong to the body being relayed, marking the relay
+     * as done once the end of the body has been reached.
+     *
+     * @param buffer Received bytes of the body
+     * @return Amount of bytes from the position of {@code buffer} belonging to the body
+     * @throws IOException If a chunk size line is malformed
+     */
+    private int frameRelay(final ByteBuffer buffer) throws IOException {
+        final int available = buffer.remaining();
+        final int framed;
+        if (this.relayChunks != null) {
+            framed = this.relayChunks.scan(buffer);
+            this.relayDone = this.relayChunks.isDone();
+        } else if (this.relayRemaining >= 0) {
+            framed = (int) Math.min(this.relayRemaining, buffer.remaining());
+            this.relayRemaining -= framed;
+            this.relayDone = this.relayRemaining == 0;
+        } else {
+            framed = buffer.remaining();
+        }
+        this.relayed += framed;
+        if (framed < available) {
+            this.serverReusable = false;
+        }
+        return framed;
+    }
+
+    /**
+     * Write the rewritten head of a passed through response to the client along with any body bytes already received,
+     * then continue to relay the body directly from the server channel to the client channel. Must be invoked on the
+     * loop thread.
+     *
+     * @param rawHead Start line and headers to write to the client
+     * @param closeAfterResponse Whether to close the exchange once the response has been fully relayed
+     * @param serverPersistent Whether the server keeps its connection open after the response
+     */
+    private void startRelay(final byte[] rawHead, final boolean closeAfterResponse, final boolean serverPersistent) {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.closeAfterResponse = closeAfterResponse;
+        this.serverReusable = serverPersistent && (this.relayChunks != null || this.relayRemaining >= 0);
+        this.state = State.RELAYING_RESPONSE;
+        try {
+            takeInbound(this.relayHeadLength);
+            final ByteBuffer received = ByteBuffer.wrap(this.inbound, 0, this.inboundLength);
+            final int framed = frameRelay(received);
+            this.outbound = new OutboundBuffers(ByteBuffer.wrap(rawHead), ByteBuffer.wrap(this.inbound, 0, framed));
+            this.inbound = new byte[0];
+            this.inboundLength = 0;
+            if (this.serverEnded && this.relayChunks == null && this.relayRemaining < 0) {
+                this.relayDone = true;
+            }
+            flushRelay();
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+            close();
+        }
+    }
+
+    /**
+     * Write pending relayed bytes to the client. Reading from the server is paused until they have been written in
+     * full, so that at most one buffer of the body is held at a time.
+     *
+     * @throws IOException If an I/O error occurs during the write
+     */
+    private void flushRelay() throws IOException {
+        this.outbound.writeTo(this.client);
+        if (this.outbound.hasRemaining()) {
+            this.clientKey.interestOps(SelectionKey.OP_WRITE);
+            this.serverKey.interestOps(0);
+            return;
+        }
+        if (this.relayDone) {
+            logger.debug("Relayed " + this.relayed + " body bytes to client channel");
+            this.outbound = null;
+            completeResponse();
+            return;
+        } else if (this.serverEnded) {
+            logger.error("Server closed connection after relaying " + this.relayed + " body bytes");
+            close();
+            return;
+        }
+        this.clientKey.interestOps(0);
+        this.serverKey.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Read the next part of a relayed body from the server into the direct relay buffer of this exchange, and write
+     * it on to the client. The relay buffer is leased from the {@link BufferPool} for the duration of the relay only.
+     *
+     * @throws IOException If an I/O error occurs during the read or write
+     */
+    private void relayServer() throws IOException {
+        if (this.relayBuffer == null) {
+            this.relayBuffer = this.bufferPool.acquireDirect(this.config.servlet.connections.readerBufferSize);
+        }
+        final ByteBuffer buffer = this.relayBuffer.byteBuffer();
+        buffer.clear();
+        final int read = this.server.read(buffer);
+        if (read < 0) {
+            this.serverEnded = true;
+            if (this.relayChunks == null && this.relayRemaining < 0) {
+                this.relayDone = true;
+            }
+            buffer.flip();
+            this.outbound = new OutboundBuffers(buffer);
+            flushRelay();
+            return;
+        } else if (read == 0) {
+            return;
+        }
+        buffer.flip();
+        buffer.limit(buffer.position() + frameRelay(buffer));
+        this.outbound = new OutboundBuffers(buffer);
+        flushRelay();
+    }
+
+    private void releaseRelayBuffer() {
+        if (this.relayBuffer == null) {
+            return;
+        }
+        this.relayBuffer.release();
+        this.relayBuffer = null;
+    }
+
+    /**
+     * Write a response to the client. Must be invoked on the loop thread.
+     *
+     * @param response Serialized response, see {@link HTTPMessage#toBuffers()}
+     * @param closeAfterResponse Whether to close the exchange once the response has been fully written, otherwise the
+     *                           next request is read from the client
+     */
+    private void respond(final OutboundBuffers response, final boolean closeAfterResponse) {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        closeServer();
+        this.closeAfterResponse = closeAfterResponse;
+        this.state = State.WRITING_RESPONSE;
+        this.outbound = response;
+        try {
+            flushClient();
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+            close();
+        }
+    }
+
+    private void flushClient() throws IOException {
+        if (this.state != State.WRITING_RESPONSE) {
+            return;
+        }
+        this.outbound.writeTo(this.client);
+        if (this.outbound.hasRemaining()) {
+            this.clientKey.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        logger.debug("Wrote " + this.outbound.length() + " bytes to client channel");
+        this.outbound = null;
+        completeResponse();
+    }
+
+    /**
+     * Close the exchange after a response has been written in full, or return to reading the next request from the
+     * client if the connection is persistent.
+     */
+    private void completeResponse() {
+        releaseServer(this.serverReusable && !this.serverEnded);
+        releaseRelayBuffer();
+        if (this.closeAfterResponse) {
+            close();
+            return;
+        }
+        this.state = State.READING_REQUEST;
+        this.clientKey.interestOps(SelectionKey.OP_READ);
+        appendInbound(ByteBuffer.wrap(this.pipelined));
+        this.pipelined = new byte[0];
+        processRequest();
+    }
+
+    @Override
+    public void timeout() {
+        if (this.state == State.CONNECTING || this.state == State.WRITING_REQUEST || this.state == State.READING_RESPONSE) {
+            respond(this.preEncodedResponses.timeout.toBuffers(), true);
+            return;
+        }
+        if (this.state == State.READING_REQUEST || this.state == State.WRITING_RESPONSE || this.state == State.RELAYING_RESPONSE) {
+            close();
+        }
+    }
+
+    /**
+     * Return the server connection to the {@link UpstreamChannelPool} of the loop once a response has been received
+     * from it in full, or close it if it cannot be reused. Must be invoked on the loop thread.
+     *
+     * @param reusable Whether the server keeps the connection alive after the response, and no bytes past the end of
+     *                 the response have been received from it
+     */
+    private void releaseServer(final boolean reusable) {
+        if (this.server == null) {
+            return;
+        } else if (!reusable) {
+            closeServer();
+            return;
+        }
+        this.loop.upstreamChannels().release(this.config.target.host, this.config.target.port, this.serverKey);
+        this.server = null;
+        this.serverKey = null;
+    }
+
+    private void closeServer() {
+        if (this.server == null) {
+            return;
+        }
+        try {
+            this.server.close();
+            logger.debug("Closed server connection");
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+        this.server = null;
+        this.serverKey = null;
+    }
+
+    @Override
+    public void close() {
+        if (this.state == State.CLOSED) {
+            return;
+        }
+        this.state = State.CLOSED;
+        closeServer();
+        releaseRelayBuffer();
+        try {
+            this.client.close();
+            logger.debug("Closed client connection");
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Parses and resolves a received request on the handler pool, then schedules the connection to the server on the
+     * loop thread. As the body has already been received in full, any {@code Expect} header is removed so that the
+     * server does not send a {@code 100 (Continue)}.
+     */
+    private class RequestProcessor extends BaseTrafficHandler {
+
+        private final byte[] raw;
+        private final int sequence;
+        private boolean submitted = false;
+        private ContentCollector<HTTPRequestStartLine> contentCollector;
+
+        RequestProcessor(final byte[] raw, final int sequence) {
+            this.raw = raw;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void task() throws Exception {
+            final ContentCollector<HTTPRequestStartLine> contentCollector = injector.getInstance(Key.get(REQUEST_COLLECTOR));
+            this.contentCollector = contentCollector;
+            contentCollector.withStream(new ByteArrayInputStream(this.raw));
+            contentCollector.withStartLine(HTTPRequestStartLine.class);
+            contentCollector.withSocket(client.socket());
+            final HTTPMessage<HTTPRequestStartLine> received = contentCollector.synchronousReadAll();
+            final int maxRequests = config.servlet.keepAlive.maxRequests;
+            final boolean last = !received.isPersistent() || (maxRequests > 0 && this.sequence >= maxRequests);
+            received.removeHeader(HTTPSymbols.EXPECT_HEADER);
+            final HTTPMessage<HTTPRequestStartLine> message = resolver.matchRequest(received);
+            logger.info("[Client => Server] " + message.startLine.toDisplayableString());
+            final OutboundBuffers request = message.toBuffers();
+            final InetSocketAddress address = new InetSocketAddress(config.target.host, config.target.port);
+            final String acceptEncoding = message.getHeader(HTTPSymbols.ACCEPT_ENCODING_HEADER).orElse(null);
+            loop.execute(() -> connectServer(address, request, message.startLine, acceptEncoding, last));
+            this.submitted = true;
+        }
+
+        @Override
+        public void after() {
+            if (this.contentCollector != null) {
+                this.contentCollector.release();
+            }
+            if (!this.submitted) {
+                loop.execute(ChannelExchange.this::close);
+            }
+        }
+    }
+
+    /**
+     * Parses and resolves a received response on the handler pool, negotiating the content coding of its body with the
+     * {@link ContentCodingNegotiator}, then schedules the write to the client on the loop thread.
+     */
+    private class ResponseProcessor extends BaseTrafficHandler {
+
+        private final byte[] raw;
+        private final boolean headRequest;
+        private final String acceptEncoding;
+        private final boolean lastRequest;
+        private final int sequence;
+        private boolean submitted = false;
+        private ContentCollector<HTTPResponseStartLine> contentCollector;
+
+        ResponseProcessor(final byte[] raw,
+                          final boolean headRequest,
+                          final String acceptEncoding,
+                          final boolean lastRequest,
+                          final int sequence) {
+            this.raw = raw;
+            this.headRequest = headRequest;
+            this.acceptEncoding = acceptEncoding;
+            this.lastRequest = lastRequest;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public void task() throws Exception {
+            final ContentCollector<HTTPResponseStartLine> contentCollector = injector.getInstance(Key.get(RESPONSE_COLLECTOR));
+            this.contentCollector = contentCollector;
+            contentCollector.withStream(new ByteArrayInputStream(this.raw));
+            contentCollector.withStartLine(HTTPResponseStartLine.class);
+            contentCollector.withSocket(client.socket());
+            contentCollector.withRequestMethod(this.headRequest ? HTTPMethod.HEAD : null);
+            final HTTPMessage<HTTPResponseStartLine> message;
+            final boolean serverPersistent;
+            try {
+                final HTTPMessage<HTTPResponseStartLine> received = contentCollector.synchronousReadAll();
+                serverPersistent = received.isPersistent();
+                message = resolver.matchResponse(received);
+            } catch (final SocketStreamReadError e) {
+                logger.debug(e.getMessage());
+                logger.info("[Client <= Proxy] " + preEncodedResponses.timeout.startLine.toDisplayableString());
+                loop.execute(() -> respond(preEncodedResponses.timeout.toBuffers(), true));
+                this.submitted = true;
+                return;
+            }
+            final boolean bodyless = ForwardTrafficHandler.isBodyless(this.headRequest ? HTTPMethod.HEAD : null, message.startLine);
+            if (!bodyless) {
+                ContentCodingNegotiator.negotiate(message, this.acceptEncoding, compressionLevels, message.getBodyCoding() == null);
+            }
+            ForwardTrafficHandler.withConnectionHeaders(message, config.servlet.keepAlive, this.lastRequest, this.sequence);
+            logger.info("[Client <= Server] " + message.startLine.toDisplayableString());
+            final OutboundBuffers response = bodyless ? message.toHeadBuffers() : message.toBuffers();
+            final boolean closeAfterResponse = this.lastRequest;
+            loop.execute(() -> {
+                releaseServer(serverPersistent);
+                respond(response, closeAfterResponse);
+            });
+            this.submitted = true;
+        }
+
+        @Override
+        public void after() {
+            if (this.contentCollector != null) {
+                this.contentCollector.release();
+            }
+            if (!this.submitted) {
+                loop.execute(ChannelExchange.this::close);
+            }
+        }
+    }
+
+    /**
+     * Parses the head of a relayed response on the handler pool and rewrites its connection headers, then schedules
+     * the relay of the response on the loop thread. A streamed response for which a resource handler exists is instead
+     * handed back to be read in full.
+     */
+    private class RelayHeadProcessor extends BaseTrafficHandler {
+
+        private final byte[] raw;
+        private final boolean lastRequest;
+        private final int sequence;
+        private final boolean streamed;
+        private boolean submitted = false;
+        private ContentCollector<HTTPResponseStartLine> contentCollector;
+
+        RelayHeadProcessor(final byte[] raw, final boolean lastRequest, final int sequence, final boolean streamed) {
+            this.raw = raw;
+            this.lastRequest = lastRequest;
+            this.sequence = sequence;
+            this.streamed = streamed;
+        }
+
+        @Override
+        public void task() throws Exception {
+            final ContentCollector<HTTPResponseStartLine> contentCollector = injector.getInstance(Key.get(RESPONSE_COLLECTOR));
+            this.contentCollector = contentCollector;
+            contentCollector.withStream(new ByteArrayInputStream(this.raw));
+            contentCollector.withStartLine(HTTPResponseStartLine.class);
+            contentCollector.withSocket(client.socket());
+            final HTTPMessage<HTTPResponseStartLine> head = contentCollector.synchronousReadHead();
+            if (this.streamed && resolver.hasResponseHandler(head)) {
+                loop.execute(ChannelExchange.this::resumeResponse);
+                this.submitted = true;
+                return;
+            }
+            final boolean serverPersistent = head.isPersistent();
+            ForwardTrafficHandler.withConnectionHeaders(head, config.servlet.keepAlive, this.lastRequest, this.sequence);
+            logger.info("[Client <= Server] " + head.startLine.toDisplayableString() + (this.streamed ? " (streamed)" : " (passthrough)"));
+            final byte[] rawHead = head.toRawHead();
+            final boolean closeAfterResponse = this.lastRequest;
+            loop.execute(() -> startRelay(rawHead, closeAfterResponse, serverPersistent));
+            this.submitted = true;
+        }
+
+        @Override
+        public void after() {
+            if (this.contentCollector != null) {
+                this.contentCollector.release();
+            }
+            if (!this.submitted) {
+                loop.execute(ChannelExchange.this::close);
+            }
+        }
+    }
+}
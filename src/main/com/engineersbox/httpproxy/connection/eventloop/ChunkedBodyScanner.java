@@ -0,0 +1,129 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import com.engineersbox.httpproxy.formatting.http.common.HTTPFraming;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental scanner for the end of a chunked body (<a href="https://tools.ietf.org/html/rfc7230#section-4.1" target="_top">RFC 7230 Section 4.1</a>)
+ * that is received in arbitrarily sized pieces. Only chunk size lines are inspected, chunk data is skipped over without
+ * being read, so that a body can be relayed as it arrives without being buffered in full. The size of each chunk is
+ * collected up to any chunk extension, which is skipped, and parsed with {@link HTTPFraming#parseChunkSize(byte[], int, int)}.
+ */
+public class ChunkedBodyScanner {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte EXTENSION_DELIMITER = ';';
+    private static final int MAX_SIZE_LENGTH = 64;
+
+    private enum State {
+        SIZE,
+        EXTENSION,
+        DATA,
+        DATA_END,
+        TRAILER_LINE_START,
+        TRAILER_LINE,
+        DONE
+    }
+
+    private State state = State.SIZE;
+    private final byte[] size = new byte[MAX_SIZE_LENGTH];
+    private int sizeLength = 0;
+    private long remaining = 0;
+
+    /**
+     * @return {@code true} if the end of the body has been scanned, {@code false} otherwise
+     */
+    public boolean isDone() {
+        return this.state == State.DONE;
+    }
+
+    /**
+     * Scan the remaining bytes of {@code buffer}, from its position up to its limit, without modifying it.
+     *
+     * @param buffer Buffer containing the next received bytes of the body
+     * @return Amount of bytes from the position of {@code buffer} that belong to the body. This is less than the
+     *         remaining bytes of {@code buffer} only if the end of the body was reached within it
+     * @throws IOException If a chunk size line is malformed, or the chunk size is larger than
+     *                     {@link HTTPFraming#MAX_CHUNK_SIZE}
+     */
+    public int scan(final ByteBuffer buffer) throws IOException {
+        final int start = buffer.position();
+        final int end = buffer.limit();
+        int i = start;
+        while (i < end && this.state != State.DONE) {
+            if (this.state == State.DATA) {
+                final int skip = (int) Math.min(this.remaining, end - i);
+                i += skip;
+                this.remaining -= skip;
+                if (this.remaining == 0) {
+                    this.state = State.DATA_END;
+                }
+                continue;
+            }
+            final byte b = buffer.get(i++);
+            switch (this.state) {
+                case SIZE:
+                    if (b == LF) {
+                        endSizeLine(parseSize());
+                    } else if (b == EXTENSION_DELIMITER) {
+                        this.remaining = parseSize();
+                        this.state = State.EXTENSION;
+                    } else if (this.sizeLength == MAX_SIZE_LENGTH) {
+                        throw new IOException("Chunk size line exceeds maximum length of " + MAX_SIZE_LENGTH + " bytes before any extension");
+                    } else {
+                        this.size[this.sizeLength++] = b;
+                    }
+                    break;
+                case EXTENSION:
+                    if (b == LF) {
+                        endSizeLine(this.remaining);
+                    }
+                    break;
+                case DATA_END:
+                    if (b == LF) {
+                        this.state = State.SIZE;
+                    }
+                    break;
+                case TRAILER_LINE_START:
+                    if (b == LF) {
+                        this.state = State.DONE;
+                    } else if (b != CR) {
+                        this.state = State.TRAILER_LINE;
+                    }
+                    break;
+                case TRAILER_LINE:
+                    if (b == LF) {
+                        this.state = State.TRAILER_LINE_START;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        return i - start;
+    }
+
+    /**
+     * Parse the size collected from the current chunk size line, excluding the {@code CR} of the line terminator
+     *
+     * @return Size of the chunk
+     * @throws IOException If the size is malformed or larger than {@link HTTPFraming#MAX_CHUNK_SIZE}
+     */
+    private long parseSize() throws IOException {
+        final int end = this.sizeLength > 0 && this.size[this.sizeLength - 1] == CR ? this.sizeLength - 1 : this.sizeLength;
+        final long chunkSize = HTTPFraming.parseChunkSize(this.size, 0, end);
+        this.sizeLength = 0;
+        if (chunkSize < 0) {
+            throw new IOException("Invalid chunk size line, or chunk size exceeds maximum of " + HTTPFraming.MAX_CHUNK_SIZE + " bytes");
+        }
+        return chunkSize;
+    }
+
+    private void endSizeLine(final long chunkSize) {
+        this.remaining = chunkSize;
+        this.state = chunkSize == 0 ? State.TRAILER_LINE_START : State.DATA;
+    }
+}
@@ -0,0 +1,194 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.configuration.domain.servlet.Upstream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Single threaded event loop multiplexing any number of non-blocking channels over one {@link Selector}.
+ *
+ * <br/><br/>
+ *
+ * Channels are registered with an attached {@link ChannelEventHandler} which receives all readiness events for the
+ * channel. Any interaction with the selector from another thread must be done by submitting a task via
+ * {@link EventLoop#execute(Runnable)}, which will be run on the loop thread before the next selection.
+ *
+ * <br/><br/>
+ *
+ * A single direct read buffer, leased from the {@link BufferPool}, is shared between all channels of the loop, so idle
+ * connections do not hold any buffer memory of their own. The buffer is released once the loop stops.
+ *
+ * <br/><br/>
+ *
+ * Server channels of the loop that are kept alive between exchanges are held in an {@link UpstreamChannelPool} of its
+ * own, as a channel can only be used by the loop it is registered with.
+ */
+public class EventLoop implements Runnable {
+
+    private final Logger logger = LogManager.getLogger(EventLoop.class);
+
+    private static final long SELECT_TIMEOUT = 1000L;
+
+    private final Selector selector;
+    private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+    private final BufferPool.Lease readBuffer;
+    private final UpstreamChannelPool upstreamChannels;
+    private long lastIdleSweep;
+    private volatile boolean running = true;
+
+    public EventLoop(final BufferPool bufferPool, final int readBufferSize, final Upstream upstreamConfig) throws IOException {
+        this.selector = Selector.open();
+        this.readBuffer = bufferPool.acquireDirect(readBufferSize);
+        this.upstreamChannels = new UpstreamChannelPool(upstreamConfig);
+        this.lastIdleSweep = System.currentTimeMillis();
+    }
+
+    /**
+     * Submit a task to be run on the loop thread, waking the selector if it is currently blocked
+     *
+     * @param task Task to run on the loop thread
+     */
+    public void execute(final Runnable task) {
+        this.pendingTasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /**
+     * Register a channel with the selector of this loop. This must be invoked on the loop thread, use
+     * {@link EventLoop#execute(Runnable)} when registering from elsewhere.
+     *
+     * @param channel Non-blocking channel to register
+     * @param ops Initial interest set
+     * @param handler Handler to receive events for the channel
+     * @return The {@link SelectionKey} of the registration
+     * @throws ClosedChannelException If the channel has been closed
+     */
+    public SelectionKey register(final SelectableChannel channel, final int ops, final ChannelEventHandler handler) throws ClosedChannelException {
+        return channel.register(this.selector, ops, handler);
+    }
+
+    /**
+     * Retrieve the shared read buffer for this loop. The buffer contents are only valid until control returns to the
+     * loop, so any data read must be consumed or copied before then.
+     *
+     * @return Shared {@link ByteBuffer} cleared and ready for reading
+     */
+    public ByteBuffer readBuffer() {
+        final ByteBuffer buffer = this.readBuffer.byteBuffer();
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Retrieve the pool of idle server channels registered with this loop. The pool must only be used on the loop thread.
+     *
+     * @return {@link UpstreamChannelPool} of this loop
+     */
+    public UpstreamChannelPool upstreamChannels() {
+        return this.upstreamChannels;
+    }
+
+    /**
+     * Stop the loop after the current iteration, closing all registered handlers
+     */
+    public void shutdown() {
+        this.running = false;
+        this.selector.wakeup();
+    }
+
+    private void runPendingTasks() {
+        Runnable task;
+        while ((task = this.pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (final Exception e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+
+    private void processSelectedKeys() {
+        final Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+        while (keys.hasNext()) {
+            final SelectionKey key = keys.next();
+            keys.remove();
+            final ChannelEventHandler handler = (ChannelEventHandler) key.attachment();
+            if (handler == null || !key.isValid()) {
+                continue;
+            }
+            try {
+                handler.handleEvent(key);
+            } catch (final Exception e) {
+                logger.error(e.getMessage(), e);
+                handler.close();
+            }
+        }
+    }
+
+    /**
+     * Time out any handlers that have not observed I/O activity within their current idle timeout, as given by
+     * {@link ChannelEventHandler#idleTimeout()}. Sweeps happen at most once per {@link EventLoop#SELECT_TIMEOUT}.
+     */
+    private void sweepIdleHandlers() {
+        final long now = System.currentTimeMillis();
+        if (now - this.lastIdleSweep < SELECT_TIMEOUT) {
+            return;
+        }
+        this.lastIdleSweep = now;
+        for (final SelectionKey key : this.selector.keys()) {
+            final ChannelEventHandler handler = (ChannelEventHandler) key.attachment();
+            if (handler == null || !key.isValid()) {
+                continue;
+            }
+            final long idleTimeout = handler.idleTimeout();
+            if (idleTimeout > 0 && now - handler.lastActivity() > idleTimeout) {
+                logger.debug("Timing out idle channel handler after " + (now - handler.lastActivity()) + "ms");
+                handler.timeout();
+            }
+        }
+    }
+
+    private void closeAll() {
+        for (final SelectionKey key : this.selector.keys()) {
+            final ChannelEventHandler handler = (ChannelEventHandler) key.attachment();
+            if (handler != null) {
+                handler.close();
+            }
+        }
+        try {
+            this.selector.close();
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void run() {
+        logger.debug("Started event loop");
+        while (this.running) {
+            try {
+                this.selector.select(SELECT_TIMEOUT);
+            } catch (final IOException e) {
+                logger.error(e.getMessage(), e);
+                break;
+            }
+            runPendingTasks();
+            processSelectedKeys();
+            sweepIdleHandlers();
+        }
+        closeAll();
+        this.readBuffer.release();
+        logger.debug("Stopped event loop");
+    }
+}
@@ -0,0 +1,53 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.configuration.domain.servlet.Connections;
+import com.engineersbox.httpproxy.configuration.domain.servlet.Upstream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Fixed group of {@link EventLoop}'s, each running on a dedicated thread. New channels are distributed between the
+ * loops in a round-robin fashion via {@link EventLoopGroup#next()}.
+ */
+public class EventLoopGroup {
+
+    private final Logger logger = LogManager.getLogger(EventLoopGroup.class);
+
+    private final EventLoop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+
+    public EventLoopGroup(final int size,
+                          final Connections connectionsConfig,
+                          final Upstream upstreamConfig,
+                          final BufferPool bufferPool) throws IOException {
+        this.loops = new EventLoop[Math.max(1, size)];
+        for (int i = 0; i < this.loops.length; i++) {
+            this.loops[i] = new EventLoop(bufferPool, connectionsConfig.readerBufferSize, upstreamConfig);
+            final Thread thread = new Thread(this.loops[i], "event-loop-" + i);
+            thread.start();
+        }
+        logger.info("Started " + this.loops.length + " event loop threads");
+    }
+
+    /**
+     * Retrieve the next {@link EventLoop} to assign a channel to
+     *
+     * @return An {@link EventLoop} from the group
+     */
+    public EventLoop next() {
+        return this.loops[Math.floorMod(this.nextLoop.getAndIncrement(), this.loops.length)];
+    }
+
+    /**
+     * Schedule a shutdown of all loops in the group
+     */
+    public void shutdown() {
+        for (final EventLoop loop : this.loops) {
+            loop.shutdown();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import com.engineersbox.httpproxy.formatting.http.common.HTTPFraming;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Utility for determining the boundaries of a partially received <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.4" target="_top">RFC 2616 Section 4.4</a>
+ * message directly from the received bytes, without decoding them.
+ */
+public class MessageFraming {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+
+    private static final byte[] CONTENT_LENGTH = HTTPSymbols.CONTENT_LENGTH_HEADER.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = HTTPSymbols.TRANSFER_ENCODING_HEADER.getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * Returned by {@link MessageFraming#messageEnd(byte[], int, boolean)} when the framing of a message is invalid,
+     * such that its end cannot be determined
+     */
+    public static final int MALFORMED = -2;
+
+    private MessageFraming() {}
+
+    /**
+     * Find the end of the start line and headers, indicated by an empty line ({@code \r\n\r\n})
+     *
+     * @param bytes Received bytes
+     * @param length Amount of valid bytes in {@code bytes}
+     * @return Index of the first body byte, or {@code -1} if the headers have not been fully received
+     */
+    public static int headEnd(final byte[] bytes, final int length) {
+        for (int i = 3; i < length; i++) {
+            if (bytes[i] == LF && bytes[i - 1] == CR && bytes[i - 2] == LF && bytes[i - 3] == CR) {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether a header line starting at {@code offset} has the name {@code name}, ignoring case
+     */
+    private static boolean isHeader(final byte[] bytes, final int offset, final int end, final byte[] name) {
+        if (end - offset <= name.length || bytes[offset + name.length] != ':') {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (Character.toLowerCase(bytes[offset + i]) != Character.toLowerCase(name[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String headerValue(final byte[] bytes, final int offset, final int end, final byte[] name) {
+        return new String(bytes, offset + name.length + 1, end - offset - name.length - 1, StandardCharsets.US_ASCII).trim();
+    }
+
+    /**
+     * Find the value of the first header named {@code name} within the head of a message, ignoring case
+     *
+     * @param bytes Received bytes
+     * @param headEnd Index of the first body byte, as given by {@link MessageFraming#headEnd(byte[], int)}
+     * @param name Name of the header
+     * @return Trimmed value of the header, or {@code null} if it is not present
+     */
+    public static String findHeader(final byte[] bytes, final int headEnd, final String name) {
+        final byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        int lineStart = 0;
+        for (int i = 1; i < headEnd; i++) {
+            if (bytes[i] != LF || bytes[i - 1] != CR) {
+                continue;
+            }
+            final int lineEnd = i - 1;
+            if (isHeader(bytes, lineStart, lineEnd, nameBytes)) {
+                return headerValue(bytes, lineStart, lineEnd, nameBytes);
+            }
+            lineStart = i + 1;
+        }
+        return null;
+    }
+
+    /**
+     * Find the end of the chunked body starting at {@code offset}, up to and including the terminating zero length
+     * chunk and trailer section
+     *
+     * @return Index of the first byte after the body, {@code -1} if the body has not been fully received, or
+     * {@link MessageFraming#MALFORMED} if a chunk size is not a hexadecimal number, a chunk is not terminated by a
+     * {@code CRLF}, or the body would extend past {@link Integer#MAX_VALUE} bytes
+     */
+    private static int chunkedBodyEnd(final byte[] bytes, int offset, final int length) {
+        while (offset < length) {
+            int lineEnd = offset;
+            while (lineEnd + 1 < length && !(bytes[lineEnd] == CR && bytes[lineEnd + 1] == LF)) {
+                lineEnd++;
+            }
+            if (lineEnd + 1 >= length) {
+                return -1;
+            }
+            final long size = HTTPFraming.parseChunkSize(bytes, offset, lineEnd);
+            if (size < 0) {
+                return MALFORMED;
+            }
+            offset = lineEnd + 2;
+            if (size == 0) {
+                // Trailer section terminated by an empty line
+                while (true) {
+                    lineEnd = offset;
+                    while (lineEnd + 1 < length && !(bytes[lineEnd] == CR && bytes[lineEnd + 1] == LF)) {
+                        lineEnd++;
+                    }
+                    if (lineEnd + 1 >= length) {
+                        return -1;
+                    }
+                    if (lineEnd == offset) {
+                        return lineEnd + 2;
+                    }
+                    offset = lineEnd + 2;
+                }
+            }
+            final long chunkEnd = offset + size + 2;
+            if (chunkEnd > Integer.MAX_VALUE) {
+                return MALFORMED;
+            } else if (chunkEnd > length) {
+                return -1;
+            } else if (bytes[(int) chunkEnd - 2] != CR || bytes[(int) chunkEnd - 1] != LF) {
+                return MALFORMED;
+            }
+            offset = (int) chunkEnd;
+        }
+        return -1;
+    }
+
+    /**
+     * Check whether the received bytes are the head of a response whose status code forbids a body
+     * ({@code 1xx}, {@code 204} and {@code 304})
+     *
+     * @param bytes Received bytes
+     * @param length Amount of valid bytes in {@code bytes}
+     * @return {@code true} if the response cannot contain a body, {@code false} otherwise
+     */
+    public static boolean isBodylessResponse(final byte[] bytes, final int length) {
+        int statusStart = 0;
+        while (statusStart < length && bytes[statusStart] != ' ') {
+            statusStart++;
+        }
+        statusStart++;
+        if (statusStart + 3 > length) {
+            return false;
+        }
+        final int status = (bytes[statusStart] - '0') * 100 + (bytes[statusStart + 1] - '0') * 10 + (bytes[statusStart + 2] - '0');
+        return (status >= 100 && status < 200) || status == 204 || status == 304;
+    }
+
+    /**
+     * Determine the framing of a message from all of its {@code Content-Length} and {@code Transfer-Encoding} headers
+     *
+     * @param bytes Received bytes
+     * @param headEnd Index of the first body byte, as given by {@link MessageFraming#headEnd(byte[], int)}
+     * @param request Whether the message is a request, otherwise a response
+     * @return {@link HTTPFraming} of the message
+     */
+    public static HTTPFraming framing(final byte[] bytes, final int headEnd, final boolean request) {
+        final HTTPFraming framing = new HTTPFraming(request);
+        int lineStart = 0;
+        for (int i = 1; i < headEnd; i++) {
+            if (bytes[i] != LF || bytes[i - 1] != CR) {
+                continue;
+            }
+            final int lineEnd = i - 1;
+            if (isHeader(bytes, lineStart, lineEnd, CONTENT_LENGTH)) {
+                framing.addContentLength(headerValue(bytes, lineStart, lineEnd, CONTENT_LENGTH));
+            } else if (isHeader(bytes, lineStart, lineEnd, TRANSFER_ENCODING)) {
+                framing.addTransferEncoding(headerValue(bytes, lineStart, lineEnd, TRANSFER_ENCODING));
+            }
+            lineStart = i + 1;
+        }
+        return framing;
+    }
+
+    /**
+     * Find the end of the first full message in the received bytes, framed according to its {@link HTTPFraming}.
+     * Messages with a {@code Transfer-Encoding: chunked} header end after the terminating chunk, those with a
+     * {@code Content-Length} after the given amount of body bytes. A request with neither has no body and ends with its
+     * headers, whereas a response with neither is delimited by the closure of the connection and as such never ends here.
+     *
+     * <br/><br/>
+     *
+     * Any bytes past the returned index belong to a subsequent message, such as a pipelined request.
+     *
+     * @param bytes Received bytes
+     * @param length Amount of valid bytes in {@code bytes}
+     * @param request Whether the message is a request, otherwise a response
+     * @return Index of the first byte after the message, {@code -1} if a full message has not been received, or
+     * {@link MessageFraming#MALFORMED} if the framing headers or chunked body of the message are invalid
+     */
+    public static int messageEnd(final byte[] bytes, final int length, final boolean request) {
+        final int headEnd = headEnd(bytes, length);
+        if (headEnd < 0) {
+            return -1;
+        }
+        final HTTPFraming framing = framing(bytes, headEnd, request);
+        if (framing.malformation() != null) {
+            return MALFORMED;
+        } else if (framing.isChunked()) {
+            return chunkedBodyEnd(bytes, headEnd, length);
+        }
+        final long contentLength = framing.contentLength();
+        if (contentLength >= 0) {
+            return length - headEnd >= contentLength ? (int) (headEnd + contentLength) : -1;
+        }
+        return request ? headEnd : -1;
+    }
+
+    /**
+     * Determine whether a full message has been received, see {@link MessageFraming#messageEnd(byte[], int, boolean)}
+     *
+     * @param bytes Received bytes
+     * @param length Amount of valid bytes in {@code bytes}
+     * @param request Whether the message is a request, otherwise a response
+     * @return {@code true} if a full message has been received, {@code false} otherwise
+     */
+    public static boolean isComplete(final byte[] bytes, final int length, final boolean request) {
+        return messageEnd(bytes, length, request) >= 0;
+    }
+}
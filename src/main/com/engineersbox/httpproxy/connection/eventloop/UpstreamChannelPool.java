@@ -0,0 +1,183 @@
+package com.engineersbox.httpproxy.connection.eventloop;
+
+import com.engineersbox.httpproxy.configuration.domain.servlet.Upstream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Non-blocking counterpart of the {@link com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool}, keeping
+ * the keep-alive server channels of a single {@link EventLoop} for reuse. Channels are kept in a per-target idle list
+ * and handed out most recently used first, so that rarely used channels age out via {@code servlet.upstream.maxIdleTime}.
+ *
+ * <br/><br/>
+ *
+ * An idle channel stays registered with the selector of the loop, attached to a handler that closes it if the server
+ * closes it or sends unsolicited data, and is timed out by the loop once it has been idle for longer than
+ * {@code servlet.upstream.maxIdleTime}. A lease re-attaches the existing {@link SelectionKey} to the leasing handler, so
+ * no blocking operation is ever required. Channels that have been idle for longer than
+ * {@code servlet.upstream.validateAfter} are checked to still be open before being reused.
+ *
+ * <br/><br/>
+ *
+ * At most {@code servlet.upstream.maxConnections} idle channels are kept per target. As the pool belongs to a single
+ * loop, it must only be used on the loop thread.
+ */
+public class UpstreamChannelPool {
+
+    private final Logger logger = LogManager.getLogger(UpstreamChannelPool.class);
+
+    private final Upstream config;
+    private final Map<String, Deque<IdleChannel>> targets;
+
+    public UpstreamChannelPool(final Upstream config) {
+        this.config = config;
+        this.targets = new HashMap<>();
+    }
+
+    /**
+     * @return {@code true} if released channels are kept for reuse, {@code false} if they are always closed
+     */
+    public boolean isReuseEnabled() {
+        return this.config.maxIdleTime > 0;
+    }
+
+    private Deque<IdleChannel> target(final String host, final int port) {
+        return this.targets.computeIfAbsent(host + ":" + port, (_key) -> new ArrayDeque<>());
+    }
+
+    /**
+     * Lease an idle channel to the given target if a valid one exists
+     *
+     * @param host Hostname of the target
+     * @param port Port of the target
+     * @param handler Handler to attach the channel to
+     * @param ops Interest set of the channel once leased
+     * @return The {@link SelectionKey} of the leased channel, which must be returned via
+     * {@link UpstreamChannelPool#release}, or {@code null} if there is no idle channel to the target
+     */
+    public SelectionKey acquire(final String host, final int port, final ChannelEventHandler handler, final int ops) {
+        final Deque<IdleChannel> idle = target(host, port);
+        IdleChannel channel;
+        while ((channel = idle.pollFirst()) != null) {
+            if (channel.idleTime() <= this.config.maxIdleTime
+                && (channel.idleTime() < this.config.validateAfter || channel.validate())) {
+                logger.debug("Reusing upstream channel to [Host: " + host + "] [Port: " + port + "]");
+                channel.key.attach(handler);
+                channel.key.interestOps(ops);
+                return channel.key;
+            }
+            channel.closeChannel();
+        }
+        return null;
+    }
+
+    /**
+     * Return a leased channel to the pool. The channel is kept for reuse if reuse is enabled, it is still open and
+     * fewer than {@code servlet.upstream.maxConnections} channels to the target are idle, otherwise it is closed.
+     *
+     * @param host Hostname of the target
+     * @param port Port of the target
+     * @param key The {@link SelectionKey} of a channel previously leased via {@link UpstreamChannelPool#acquire} or
+     *            registered by the caller, at the end of an exchange that allows another exchange
+     */
+    public void release(final String host, final int port, final SelectionKey key) {
+        final Deque<IdleChannel> idle = target(host, port);
+        final IdleChannel channel = new IdleChannel(idle, key);
+        if (!isReuseEnabled()
+            || !key.isValid()
+            || (this.config.maxConnections > 0 && idle.size() >= this.config.maxConnections)) {
+            channel.closeChannel();
+            return;
+        }
+        key.attach(channel);
+        key.interestOps(SelectionKey.OP_READ);
+        idle.offerFirst(channel);
+        logger.debug("Released upstream channel to [Host: " + host + "] [Port: " + port + "] for reuse");
+    }
+
+    /**
+     * Handler attached to an idle channel whilst it is in the pool. Any readiness for reading means the server closed
+     * the channel or sent data without a request, either of which leaves it unusable.
+     */
+    private class IdleChannel implements ChannelEventHandler {
+
+        private final Deque<IdleChannel> idle;
+        private final SelectionKey key;
+        private final long idleSince;
+
+        IdleChannel(final Deque<IdleChannel> idle, final SelectionKey key) {
+            this.idle = idle;
+            this.key = key;
+            this.idleSince = System.currentTimeMillis();
+        }
+
+        long idleTime() {
+            return System.currentTimeMillis() - this.idleSince;
+        }
+
+        /**
+         * Validate that the channel has not been closed by the server whilst idle, with a non-blocking read
+         *
+         * @return {@code true} if nothing could be read, so the channel can be reused, {@code false} otherwise
+         */
+        boolean validate() {
+            try {
+                final int read = ((SocketChannel) this.key.channel()).read(ByteBuffer.allocate(1));
+                if (read < 0) {
+                    logger.debug("Idle upstream channel was closed by remote");
+                } else if (read > 0) {
+                    logger.debug("Idle upstream channel received unsolicited data");
+                }
+                return read == 0;
+            } catch (final IOException e) {
+                logger.debug("Idle upstream channel failed validation: " + e.getMessage());
+                return false;
+            }
+        }
+
+        @Override
+        public void handleEvent(final SelectionKey key) {
+            logger.debug("Idle upstream channel became readable, discarding it");
+            close();
+        }
+
+        @Override
+        public long lastActivity() {
+            return this.idleSince;
+        }
+
+        @Override
+        public long idleTimeout() {
+            return config.maxIdleTime;
+        }
+
+        @Override
+        public void timeout() {
+            close();
+        }
+
+        @Override
+        public void close() {
+            this.idle.remove(this);
+            closeChannel();
+        }
+
+        void closeChannel() {
+            try {
+                this.key.channel().close();
+                logger.debug("Closed upstream channel");
+            } catch (final IOException e) {
+                logger.error(e.getMessage(), e);
+            }
+        }
+    }
+}
@@ -1,19 +1,35 @@
 package com.engineersbox.httpproxy.connection.handler;
 
+import com.engineersbox.httpproxy.buffer.OutboundBuffers;
 import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.domain.servlet.ThreadingMode;
+import com.engineersbox.httpproxy.connection.pool.PooledConnection;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
 import com.engineersbox.httpproxy.connection.stream.ContentCollector;
+import com.engineersbox.httpproxy.exceptions.http.HTTPHeadTooLargeException;
+import com.engineersbox.httpproxy.exceptions.http.HTTPMessageException;
+import com.engineersbox.httpproxy.exceptions.http.InvalidHTTPBodyException;
+import com.engineersbox.httpproxy.exceptions.socket.FailedToCreateServerSocketException;
 import com.engineersbox.httpproxy.exceptions.socket.SocketStreamReadError;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPVersion;
 import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponse;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponses;
 import com.engineersbox.httpproxy.resolver.ResourceResolver;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.PushbackInputStream;
 import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.Optional;
 
 /**
  * Traffic handler to forward traffic from the Client socket to Server socket. Sockets
@@ -25,28 +41,81 @@ public class BackwardTrafficHandler extends BaseTrafficHandler {
 
     private final Logger logger = LogManager.getLogger(BackwardTrafficHandler.class);
 
+    /**
+     * Maximum amount of requests served on a client connection with the {@link ThreadingMode#POOLED} threading mode
+     * when {@code keepAlive.maxRequests} is unlimited
+     */
+    public static final int POOLED_MAX_REQUESTS = 100;
+    /**
+     * Maximum time in milliseconds a client connection may be idle between requests with the
+     * {@link ThreadingMode#POOLED} threading mode when {@code keepAlive.idleTimeout} is unlimited
+     */
+    public static final int POOLED_IDLE_TIMEOUT = 5000;
+
     private final ContentCollector<HTTPRequestStartLine> contentCollector;
     private final Config config;
     final ResourceResolver resolver;
+    private final InFlightRequests inFlight;
+    private final UpstreamConnectionPool upstreamPool;
+    private final PreEncodedResponses preEncodedResponses;
 
-    private final OutputStream outServer;
+    private final PushbackInputStream inClient;
+    private final Socket client;
+
+    private PooledConnection server;
 
     @Inject
     public BackwardTrafficHandler(final Config config,
                                   final ContentCollector<HTTPRequestStartLine> contentCollector,
                                   final ResourceResolver resolver,
+                                  final InFlightRequests inFlight,
+                                  final UpstreamConnectionPool upstreamPool,
+                                  final PreEncodedResponses preEncodedResponses,
                                   @Named("Client In") final InputStream inClient,
-                                  @Named("Server Out") final OutputStream outServer,
                                   @Named("Client Socket") final Socket client) {
         this.config = config;
         this.contentCollector = contentCollector;
         this.resolver = resolver;
-        this.outServer = outServer;
-        this.contentCollector.withStream(inClient);
+        this.inFlight = inFlight;
+        this.upstreamPool = upstreamPool;
+        this.preEncodedResponses = preEncodedResponses;
+        this.inClient = new PushbackInputStream(inClient);
+        this.client = client;
+        this.contentCollector.withStream(this.inClient);
         this.contentCollector.withStartLine(HTTPRequestStartLine.class);
         this.contentCollector.withSocket(client);
     }
 
+    /**
+     * Wait for the client to begin sending a request, without consuming any of it. A request already read ahead by the
+     * {@link ContentCollector} is available immediately.
+     *
+     * @param timeout Time in milliseconds to wait for the first byte of a request
+     * @return {@code true} if a request is available to be read, {@code false} if the client closed the connection or
+     *         was idle for longer than {@code timeout}
+     */
+    private boolean awaitRequest(final int timeout) {
+        if (this.contentCollector.hasBufferedInput()) {
+            return true;
+        }
+        try {
+            this.client.setSoTimeout(timeout);
+            final int read = this.inClient.read();
+            if (read < 0) {
+                logger.debug("Client closed connection");
+                return false;
+            }
+            this.inClient.unread(read);
+            return true;
+        } catch (final SocketTimeoutException e) {
+            logger.debug("Client connection idle for longer than " + timeout + "ms");
+            return false;
+        } catch (final IOException e) {
+            logger.debug("Client connection closed whilst awaiting request: " + e.getMessage());
+            return false;
+        }
+    }
+
     /**
      * Handles incoming requests from the socket bound to the client and forwards them
      * to the server. Client and server sockets are defined by the sockets created according to the config
@@ -60,31 +129,272 @@ public class BackwardTrafficHandler extends BaseTrafficHandler {
      * in order to ensure a 400 (Bad Request) with content {@code The requested URL "[no URL]", is invalid.} is
      * not returned (in the case of Apache server).
      *
-     * In order to ensure that the socket InputStream is signalled with a termination correctly, the
-     * {@code Connection: Close} header is added. This results in a {@code -1} being identified by the stream read.
+     * <br/><br/>
+     *
+     * Requests are served for as long as the client connection is persistent as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-6.3" target="_top">RFC 7230 Section 6.3</a>. Between requests
+     * the client may be idle for at most {@code keepAlive.idleTimeout} milliseconds, and at most {@code keepAlive.maxRequests}
+     * requests are served on one connection, both of which are bounded with the {@link ThreadingMode#POOLED} threading
+     * mode, see {@link BackwardTrafficHandler#maxRequests()} and {@link BackwardTrafficHandler#idleTimeout()}. Each request is
+     * written to a server connection leased for it, see {@link BackwardTrafficHandler#leaseServer}, and handed to the
+     * {@link ForwardTrafficHandler} along with the connection via {@link InFlightRequests}.
+     *
+     * <br/><br/>
+     *
+     * When streaming is enabled, or the client is waiting on a {@code 100 (Continue)} before sending the body, request
+     * bodies are relayed to the server as they are received rather than being read in full, see {@link BackwardTrafficHandler#streamRequest}. Resource handlers are matched against the request head
+     * only in this case, and any body they set is ignored.
+     *
+     * <br/><br/>
+     *
+     * A request whose framing is malformed, see {@link com.engineersbox.httpproxy.formatting.http.common.HTTPFraming},
+     * is answered with a {@code 400 (Bad Request)}, one whose head exceeds
+     * {@link com.engineersbox.httpproxy.formatting.http.common.HTTPFraming#MAX_HEAD_LENGTH} bytes with a
+     * {@code 431 (Request Header Fields Too Large)}, and one whose body exceeds {@code messages.maxBodySize} with a
+     * {@code 413 (Payload Too Large)}, after which the client connection is closed.
      *
      * @throws Exception If any issues are encountered during the processing of a request
      */
     @Override
     public void task() throws Exception {
-        HTTPMessage<HTTPRequestStartLine> message;
+        final int maxRequests = maxRequests();
+        final int idleTimeout = idleTimeout();
+        int served = 0;
+        while (awaitRequest(served == 0 ? this.config.servlet.connections.dropAfter : idleTimeout)) {
+            served++;
+            final boolean last;
+            final boolean streamed;
+            final HTTPMessage<HTTPRequestStartLine> message;
+            try {
+                HTTPMessage<HTTPRequestStartLine> received = this.contentCollector.synchronousReadHead();
+                last = !received.isPersistent() || (maxRequests > 0 && served >= maxRequests);
+                streamed = hasBody(received) && (this.config.servlet.messages.streaming || isExpectContinue(received));
+                if (!streamed) {
+                    received = this.contentCollector.synchronousReadBody();
+                    received.removeHeader(HTTPSymbols.EXPECT_HEADER);
+                }
+                message = this.resolver.matchRequest(received);
+            } catch (final SocketStreamReadError e) {
+                logger.error(e.getMessage(), e);
+                return;
+            } catch (final HTTPHeadTooLargeException e) {
+                logger.error(e.getMessage());
+                this.inFlight.submit(InFlightRequests.InFlightRequest.failed(null, served, this.preEncodedResponses.headersTooLarge));
+                return;
+            } catch (final InvalidHTTPBodyException e) {
+                logger.error(e.getMessage());
+                this.inFlight.submit(InFlightRequests.InFlightRequest.failed(null, served, this.preEncodedResponses.payloadTooLarge));
+                return;
+            } catch (final HTTPMessageException e) {
+                logger.error(e.getMessage());
+                this.inFlight.submit(InFlightRequests.InFlightRequest.failed(null, served, this.preEncodedResponses.badRequest));
+                return;
+            }
+            if (!leaseServer(message, served)) {
+                return;
+            }
+            if (streamed) {
+                if (!streamRequest(message, served, last)) {
+                    return;
+                }
+            } else {
+                logger.info("[Client => Server] " + message.startLine.toDisplayableString());
+                final OutboundBuffers request = message.toBuffers();
+                request.writeTo(this.server.outputStream);
+                logger.debug("Wrote " + request.length() + " bytes to server output stream");
+                this.server.outputStream.flush();
+                logger.trace("Flushed server input stream");
+                if (handOff(message, served, last, false) == null) {
+                    return;
+                }
+            }
+            if (last) {
+                logger.debug("Served last request on client connection after " + served + " request(s)");
+                return;
+            }
+        }
+    }
+
+    /**
+     * Maximum amount of requests to serve on the client connection. This handler and its {@link ForwardTrafficHandler}
+     * each hold a handler thread for as long as the client connection is open, so with the {@link ThreadingMode#POOLED}
+     * threading mode a connection without a request budget could occupy its pooled threads indefinitely. In that case
+     * the connection serves at most {@link BackwardTrafficHandler#POOLED_MAX_REQUESTS} requests before it is closed,
+     * letting the threads serve other connections. The {@link ThreadingMode#VIRTUAL} threading mode, whose threads are
+     * not pooled, is not bounded.
+     *
+     * @return {@code keepAlive.maxRequests}, or {@link BackwardTrafficHandler#POOLED_MAX_REQUESTS} if it is unlimited
+     * with the {@link ThreadingMode#POOLED} threading mode
+     */
+    private int maxRequests() {
+        final int maxRequests = this.config.servlet.keepAlive.maxRequests;
+        return maxRequests <= 0 && this.config.servlet.threading.mode == ThreadingMode.POOLED
+                ? POOLED_MAX_REQUESTS
+                : maxRequests;
+    }
+
+    /**
+     * Maximum time to wait for the next request on the client connection. As with {@link BackwardTrafficHandler#maxRequests()},
+     * an idle connection is not held indefinitely with the {@link ThreadingMode#POOLED} threading mode, and is closed
+     * after {@link BackwardTrafficHandler#POOLED_IDLE_TIMEOUT} milliseconds if no idle timeout is configured.
+     *
+     * @return {@code keepAlive.idleTimeout}, or {@link BackwardTrafficHandler#POOLED_IDLE_TIMEOUT} if it is unlimited
+     * with the {@link ThreadingMode#POOLED} threading mode
+     */
+    private int idleTimeout() {
+        final int idleTimeout = this.config.servlet.keepAlive.idleTimeout;
+        return idleTimeout <= 0 && this.config.servlet.threading.mode == ThreadingMode.POOLED
+                ? POOLED_IDLE_TIMEOUT
+                : idleTimeout;
+    }
+
+    /**
+     * Lease a connection to the target from the {@link UpstreamConnectionPool} to write a request to. If none can be
+     * leased, the request is instead handed to the {@link ForwardTrafficHandler} to be answered with one of the
+     * {@link PreEncodedResponses}, after which the client connection is closed.
+     *
+     * @param message Request to lease a connection for
+     * @param sequence Number of requests served on the client connection so far, including this one
+     * @return {@code true} if a connection was leased, {@code false} otherwise
+     */
+    private boolean leaseServer(final HTTPMessage<HTTPRequestStartLine> message, final int sequence) {
         try {
-            message = this.resolver.matchRequest(
-                    this.contentCollector.synchronousReadAll()
-            );
-        } catch (final SocketStreamReadError e) {
+            this.server = this.upstreamPool.acquire(this.config.target.host, this.config.target.port);
+            logger.debug("Leased connection to server");
+            return true;
+        } catch (final FailedToCreateServerSocketException e) {
             logger.error(e.getMessage(), e);
-            this.outServer.close();
-            return;
+            final PreEncodedResponse response = e.getCause() instanceof IOException
+                    ? this.preEncodedResponses.connectFailure
+                    : this.preEncodedResponses.unavailable;
+            this.inFlight.submit(InFlightRequests.InFlightRequest.failed(message.startLine, sequence, response));
+            return false;
         }
-        logger.info("[Client => Server] " + message.startLine.toDisplayableString());
-        final byte[] request = message.toRaw();
-        this.outServer.write(request);
-        logger.debug("Wrote " + request.length + " bytes to server output stream");
-        this.outServer.flush();
+    }
+
+    /**
+     * Hand a request written to the leased server connection to the {@link ForwardTrafficHandler}, which releases the
+     * connection once the response has been read
+     *
+     * @param message Request written to the server
+     * @param sequence Number of requests served on the client connection so far, including this one
+     * @param last Whether this is the last request to be served on the client connection
+     * @param expectContinue Whether the body of the request is yet to be written, awaiting a {@code 100 (Continue)}
+     * @return The submitted {@link InFlightRequests.InFlightRequest}, or {@code null} if the
+     * {@link ForwardTrafficHandler} has stopped reading responses
+     */
+    private InFlightRequests.InFlightRequest handOff(final HTTPMessage<HTTPRequestStartLine> message,
+                                                     final int sequence,
+                                                     final boolean last,
+                                                     final boolean expectContinue) {
+        final InFlightRequests.InFlightRequest request = new InFlightRequests.InFlightRequest(
+                message.startLine,
+                sequence,
+                last,
+                expectContinue,
+                message.getHeader(HTTPSymbols.ACCEPT_ENCODING_HEADER).orElse(null),
+                this.server
+        );
+        this.server = null;
+        return this.inFlight.submit(request) ? request : null;
+    }
+
+    /**
+     * Determine whether a request has a body, which is signalled by a {@code Transfer-Encoding} header or a non-zero
+     * {@code Content-Length} header as per <a href="https://tools.ietf.org/html/rfc7230#section-3.3" target="_top">RFC 7230 Section 3.3</a>
+     *
+     * @param head Start line and headers of the request
+     * @return {@code true} if the request has a body, {@code false} otherwise
+     */
+    private static boolean hasBody(final HTTPMessage<HTTPRequestStartLine> head) {
+        if (head.getHeader(HTTPSymbols.TRANSFER_ENCODING_HEADER).isPresent()) {
+            return true;
+        }
+        final Optional<String> contentLength = head.getHeader(HTTPSymbols.CONTENT_LENGTH_HEADER);
+        return contentLength.isPresent() && !contentLength.get().trim().equals("0");
+    }
+
+    /**
+     * Determine whether a request expects a {@code 100 (Continue)} interim response before sending its body. The
+     * expectation is ignored for HTTP/1.0 requests as per <a href="https://tools.ietf.org/html/rfc7231#section-5.1.1" target="_top">RFC 7231 Section 5.1.1</a>.
+     *
+     * @param head Start line and headers of the request
+     * @return {@code true} if the request has an {@code Expect: 100-continue} header, {@code false} otherwise
+     */
+    private static boolean isExpectContinue(final HTTPMessage<HTTPRequestStartLine> head) {
+        return head.startLine.version == HTTPVersion.HTTP11
+                && head.getHeader(HTTPSymbols.EXPECT_HEADER)
+                    .map((final String expect) -> expect.trim().equalsIgnoreCase(HTTPSymbols.EXPECT_CONTINUE))
+                    .orElse(false);
+    }
+
+    /**
+     * Write the head of a request to the server, then relay its body from the client as it is received in chunks of
+     * {@link com.engineersbox.httpproxy.configuration.domain.servlet.Connections#readerBufferSize} bytes, framed by the
+     * {@code Content-Length} or chunked {@code Transfer-Encoding} sent by the client.
+     *
+     * <br/><br/>
+     *
+     * If the client sent an {@code Expect: 100-continue} header the request is handed to the {@link ForwardTrafficHandler}
+     * before the body is relayed, so that the interim {@code 100 (Continue)} from the server can reach the client, which
+     * withholds the body until then as per <a href="https://tools.ietf.org/html/rfc7231#section-5.1.1" target="_top">RFC 7231 Section 5.1.1</a>.
+     * Otherwise the request is handed over once the body has been written in full.
+     *
+     * <br/><br/>
+     *
+     * A failure whilst relaying the body leaves the request partially written, so that the server connection is not
+     * reused, see {@link BackwardTrafficHandler#after()} and {@link InFlightRequests.InFlightRequest#isWritten()}.
+     *
+     * @param message Request head, as resolved by the {@link ResourceResolver}
+     * @param sequence Number of requests served on the client connection so far, including this one
+     * @param last Whether this is the last request to be served on the client connection
+     * @return {@code true} if the body was relayed in full, {@code false} otherwise
+     * @throws IOException If the head could not be written to the server
+     */
+    private boolean streamRequest(final HTTPMessage<HTTPRequestStartLine> message,
+                                  final int sequence,
+                                  final boolean last) throws IOException {
+        final boolean expectContinue = isExpectContinue(message);
+        final OutputStream outServer = this.server.outputStream;
+        logger.info("[Client => Server] " + message.startLine.toDisplayableString() + " (streamed)");
+        final OutboundBuffers head = message.toHeadBuffers();
+        head.writeTo(outServer);
+        InFlightRequests.InFlightRequest continued = null;
+        if (expectContinue) {
+            outServer.flush();
+            if ((continued = handOff(message, sequence, last, true)) == null) {
+                return false;
+            }
+        }
+        try {
+            final long relayed = this.contentCollector.relayBody(outServer);
+            logger.debug("Wrote " + (head.length() + relayed) + " bytes to server output stream");
+        } catch (final SocketStreamReadError e) {
+            logger.error("Failed to relay request body: " + e.getMessage(), e);
+            return false;
+        }
+        outServer.flush();
         logger.trace("Flushed server input stream");
+        if (continued != null) {
+            continued.markWritten();
+            return true;
+        }
+        return handOff(message, sequence, last, false) != null;
     }
 
+    /**
+     * Signals the {@link ForwardTrafficHandler} that no further requests will be written to the server. If a request
+     * was only partially written before being handed over, its server connection is released to the
+     * {@link UpstreamConnectionPool} without being reused. The buffers of the {@link ContentCollector} are returned to
+     * the pool they were leased from.
+     */
     @Override
-    public void after() {}
+    public void after() {
+        this.contentCollector.release();
+        if (this.server != null) {
+            this.upstreamPool.release(this.server, false);
+            this.server = null;
+        }
+        this.inFlight.end();
+    }
 }
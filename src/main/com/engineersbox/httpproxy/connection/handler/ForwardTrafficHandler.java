@@ -1,10 +1,32 @@
 package com.engineersbox.httpproxy.connection.handler;
 
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.buffer.OutboundBuffers;
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.domain.servlet.HTMLRewriterMode;
+import com.engineersbox.httpproxy.configuration.domain.servlet.KeepAlive;
+import com.engineersbox.httpproxy.connection.pool.PooledConnection;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
+import com.engineersbox.httpproxy.connection.stream.ChunkedOutputStream;
 import com.engineersbox.httpproxy.connection.stream.ContentCollector;
+import com.engineersbox.httpproxy.connection.stream.PassthroughClassifier;
+import com.engineersbox.httpproxy.exceptions.http.CompressionHandlerException;
 import com.engineersbox.httpproxy.exceptions.socket.SocketStreamReadError;
+import com.engineersbox.httpproxy.formatting.compression.CompressionLevelController;
+import com.engineersbox.httpproxy.formatting.compression.ContentCodingNegotiator;
+import com.engineersbox.httpproxy.formatting.content.html.HTMLTokenRewriter;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledPolicies;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMethod;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPStatusCode;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPVersion;
 import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
-import com.engineersbox.httpproxy.formatting.http.response.StandardResponses;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponse;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponses;
+import com.engineersbox.httpproxy.formatting.pipeline.BodyPipeline;
+import com.engineersbox.httpproxy.formatting.pipeline.BodyStage;
+import com.engineersbox.httpproxy.formatting.pipeline.TextStage;
 import com.engineersbox.httpproxy.resolver.ResourceResolver;
 import com.google.inject.Inject;
 import com.google.inject.name.Named;
@@ -13,6 +35,11 @@ import org.apache.logging.log4j.Logger;
 
 import java.io.*;
 import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
 
 /**
  * Traffic handler to forward traffic from the Server socket to Client socket. Sockets
@@ -27,25 +54,47 @@ public class ForwardTrafficHandler extends BaseTrafficHandler {
     private final ContentCollector<HTTPResponseStartLine> contentCollector;
     private final ResourceResolver resolver;
 
+    private final UpstreamConnectionPool upstreamPool;
+    private final InFlightRequests inFlight;
+    private final PassthroughClassifier passthroughClassifier;
+    private final BufferPool bufferPool;
+    private final PreEncodedResponses preEncodedResponses;
+    private final CompressionLevelController compressionLevels;
+    private final CompiledPolicies compiledPolicies;
+    private final Config config;
+
     private final OutputStream outClient;
-    private final Socket server;
     private final Socket client;
 
+    private PooledConnection server;
+    private boolean serverReusable = false;
+
     @Inject
-    public ForwardTrafficHandler(final ContentCollector<HTTPResponseStartLine> contentCollector,
+    public ForwardTrafficHandler(final Config config,
+                                 final ContentCollector<HTTPResponseStartLine> contentCollector,
                                  final ResourceResolver resolver,
-                                 @Named("Server In") final InputStream inServer,
+                                 final UpstreamConnectionPool upstreamPool,
+                                 final InFlightRequests inFlight,
+                                 final PassthroughClassifier passthroughClassifier,
+                                 final BufferPool bufferPool,
+                                 final PreEncodedResponses preEncodedResponses,
+                                 final CompressionLevelController compressionLevels,
+                                 final CompiledPolicies compiledPolicies,
                                  @Named("Client Out") final OutputStream outClient,
-                                 @Named("Server Socket") final Socket server,
                                  @Named("Client Socket") final Socket client) {
         this.contentCollector = contentCollector;
         this.resolver = resolver;
+        this.upstreamPool = upstreamPool;
+        this.inFlight = inFlight;
+        this.passthroughClassifier = passthroughClassifier;
+        this.bufferPool = bufferPool;
+        this.preEncodedResponses = preEncodedResponses;
+        this.compressionLevels = compressionLevels;
+        this.compiledPolicies = compiledPolicies;
+        this.config = config;
         this.outClient = outClient;
-        this.server = server;
         this.client = client;
-        this.contentCollector.withStream(inServer);
         this.contentCollector.withStartLine(HTTPResponseStartLine.class);
-        this.contentCollector.withSocket(this.server);
     }
 
     /**
@@ -60,36 +109,414 @@ public class ForwardTrafficHandler extends BaseTrafficHandler {
      * <br/><br/>
      *
      * If a {@link com.engineersbox.httpproxy.exceptions.socket.SocketStreamReadError} occurs during the reading of a
-     * response, a default HTTP/1.1 500 is returned.
+     * response, the pre-encoded HTTP/1.1 408 of {@link PreEncodedResponses} is returned.
      *
      * <br/><br/>
      *
      * Upon having read an incoming message, it is forwarded a {@link com.engineersbox.httpproxy.resolver.ResourceResolver}
-     * to be handled by any methods annotated to handle the given content type.
+     * to be handled by any methods annotated to handle the given content type. Responses classified by the
+     * {@link PassthroughClassifier} skip this entirely, having their body relayed to the client as it is received.
+     * When streaming is enabled, responses that no resource handler would rewrite have their head written to the client
+     * as soon as it is read, and their body streamed through a {@link BodyPipeline}. With the
+     * {@link HTMLRewriterMode#STREAMING} rewriter, this includes HTML responses, which are rewritten by a
+     * {@link HTMLTokenRewriter} in place of their resource handler as they are streamed.
+     *
+     * <br/><br/>
+     *
+     * Interim {@code 1xx} responses, such as the {@code 100 (Continue)} awaited by a request with an
+     * {@code Expect: 100-continue} header, are forwarded to the client before the final response is read.
+     *
+     * <br/><br/>
+     *
+     * A response is read for each {@link InFlightRequests.InFlightRequest} written by the {@link BackwardTrafficHandler},
+     * from the server connection the request was written to. Once the response has been read, the connection is
+     * released to the {@link UpstreamConnectionPool}, see {@link ForwardTrafficHandler#releaseServer}. If no connection
+     * could be leased for the request, the {@link PreEncodedResponse} it carries is written instead.
+     *
+     * <br/><br/>
+     *
+     * The client connection is kept open after a response unless the request was the last to be served on it, or the
+     * end of a passed through response is only indicated by the server closing the connection. A final response to a
+     * request awaiting a {@code 100 (Continue)} that was never sent leaves it unknown whether the client will send the
+     * body, so the client connection is not kept open in that case either. The {@code Connection} and
+     * {@code Keep-Alive} headers sent to the client are set accordingly as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-6.3" target="_top">RFC 7230 Section 6.3</a>.
      *
      * @throws Exception If any issues are encountered during the processing of a response
      */
     @Override
     public void task() throws Exception {
-        HTTPMessage<HTTPResponseStartLine> message;
+        InFlightRequests.InFlightRequest request;
+        while ((request = this.inFlight.take()) != null) {
+            if (request.server == null) {
+                writePreEncoded(request.failure);
+                return;
+            }
+            this.server = request.server;
+            this.serverReusable = false;
+            this.contentCollector.withStream(this.server.inputStream);
+            this.contentCollector.withSocket(this.server.socket);
+            this.contentCollector.withRequestMethod(request.startLine.method);
+            HTTPMessage<HTTPResponseStartLine> head;
+            boolean continued = false;
+            try {
+                head = this.contentCollector.synchronousReadHead();
+                while (isInterim(head.startLine)) {
+                    continued |= head.startLine.statusCode == HTTPStatusCode._100.code;
+                    writeInterim(head, request);
+                    head = this.contentCollector.synchronousReadHead();
+                }
+            } catch (final SocketStreamReadError e) {
+                logger.debug(e.getMessage());
+                writePreEncoded(this.preEncodedResponses.timeout);
+                return;
+            }
+            this.serverReusable = head.isPersistent() && head.isSelfDelimited() && (continued || !request.expectContinue);
+            final boolean passthrough = this.passthroughClassifier.isPassthrough(request.startLine.target, head);
+            final boolean last = request.last
+                    || (request.expectContinue && !continued)
+                    || (passthrough && !head.isSelfDelimited());
+            final boolean kept;
+            if (passthrough) {
+                kept = relayResponse(head, last, request.sequence);
+            } else if (isStreamable(request, head)) {
+                kept = streamResponse(head, streamingStages(head), last, request.startLine.version == HTTPVersion.HTTP11, request.sequence, request.acceptEncoding);
+            } else {
+                final HTTPMessage<HTTPResponseStartLine> message;
+                try {
+                    message = this.resolver.matchResponse(this.contentCollector.synchronousReadBody());
+                } catch (final SocketStreamReadError e) {
+                    logger.debug(e.getMessage());
+                    this.serverReusable = false;
+                    writePreEncoded(this.preEncodedResponses.timeout);
+                    return;
+                }
+                writeResponse(message, last, isBodyless(request.startLine.method, message.startLine), request.sequence, request.acceptEncoding);
+                kept = true;
+            }
+            releaseServer(request);
+            if (last || !kept) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Release the server connection a response was read from to the {@link UpstreamConnectionPool}. The connection is
+     * kept for reuse if it was marked as reusable, the request was written in full, and no bytes beyond the response
+     * were read from it.
+     *
+     * @param request Request the response was read for
+     */
+    private void releaseServer(final InFlightRequests.InFlightRequest request) {
+        final boolean reusable = this.serverReusable && request.isWritten() && !this.contentCollector.hasBufferedInput();
+        this.upstreamPool.release(this.server, reusable);
+        this.server = null;
+        logger.debug("Released server connection");
+    }
+
+    /**
+     * Determine whether a response is an interim {@code 1xx} response, which is followed by another response to the
+     * same request as per <a href="https://tools.ietf.org/html/rfc7231#section-6.2" target="_top">RFC 7231 Section 6.2</a>.
+     * A {@code 101 (Switching Protocols)} response is treated as final, since no further HTTP responses follow it.
+     *
+     * @param startLine Start line of the response
+     * @return {@code true} if the response is interim, {@code false} otherwise
+     */
+    private static boolean isInterim(final HTTPResponseStartLine startLine) {
+        return startLine.statusCode >= 100 && startLine.statusCode < 200 && startLine.statusCode != 101;
+    }
+
+    /**
+     * Forward an interim response to the client as it was received. Interim responses are not sent to HTTP/1.0 clients,
+     * which do not support them.
+     *
+     * @param head Start line and headers of the interim response
+     * @param request Request the response is for
+     * @throws IOException If the response could not be written to the client
+     */
+    private void writeInterim(final HTTPMessage<HTTPResponseStartLine> head,
+                              final InFlightRequests.InFlightRequest request) throws IOException {
+        if (request.startLine.version != HTTPVersion.HTTP11) {
+            logger.debug("Dropped interim response for HTTP/1.0 client: " + head.startLine.toDisplayableString());
+            return;
+        }
+        logger.info("[Client <= Server] " + head.startLine.toDisplayableString() + " (interim)");
+        head.toHeadBuffers().writeTo(this.outClient);
+        this.outClient.flush();
+    }
+
+    /**
+     * Write one of the {@link PreEncodedResponses} to the client, after which the client connection is closed
+     *
+     * @param response Response to write
+     * @throws IOException If the response could not be written to the client
+     */
+    private void writePreEncoded(final PreEncodedResponse response) throws IOException {
+        logger.info("[Client <= Proxy] " + response.startLine.toDisplayableString());
+        response.writeTo(this.outClient);
+        logger.debug("Wrote " + response.length() + " bytes to client output stream");
+        this.outClient.flush();
+    }
+
+    /**
+     * Write a fully read response to the client, with the content coding of its body negotiated by the
+     * {@link ContentCodingNegotiator}
+     *
+     * @param message Response to write
+     * @param last Whether the client connection will be closed after this response
+     * @param bodyless Whether the response is written without a body, see {@link ForwardTrafficHandler#isBodyless}
+     * @param sequence Number of requests served on the client connection so far, including this one
+     * @param acceptEncoding Value of the {@code Accept-Encoding} header of the request, or {@code null} if it had none
+     * @throws IOException If the response could not be written to the client
+     */
+    private void writeResponse(final HTTPMessage<HTTPResponseStartLine> message,
+                               final boolean last,
+                               final boolean bodyless,
+                               final int sequence,
+                               final String acceptEncoding) throws IOException {
+        if (!bodyless) {
+            ContentCodingNegotiator.negotiate(message, acceptEncoding, this.compressionLevels, message.getBodyCoding() == null);
+        }
+        withConnectionHeaders(message, this.config.servlet.keepAlive, last, sequence);
+        logger.info("[Client <= Server] " + message.startLine.toDisplayableString());
+        final OutboundBuffers response = bodyless ? message.toHeadBuffers() : message.toBuffers();
+        response.writeTo(this.outClient);
+        logger.debug("Wrote " + response.length() + " bytes to client output stream");
+        this.outClient.flush();
+        logger.trace("Flushed client input stream");
+    }
+
+    /**
+     * Write the head of a response classified as passthrough by the {@link PassthroughClassifier} to the client, then
+     * relay its body from the server as it is received without parsing, decoding or resolving it.
+     *
+     * <br/><br/>
+     *
+     * As the head has already been sent, a failure whilst relaying the body cannot be reported to the client, so the
+     * client and server connections are both closed.
+     *
+     * @param head Start line and headers of the response
+     * @param last Whether the client connection will be closed after this response
+     * @param sequence Number of requests served on the client connection so far, including this one
+     * @return {@code true} if the body was relayed in full, {@code false} otherwise
+     * @throws IOException If the head could not be written to the client
+     */
+    private boolean relayResponse(final HTTPMessage<HTTPResponseStartLine> head, final boolean last, final int sequence) throws IOException {
+        withConnectionHeaders(head, this.config.servlet.keepAlive, last, sequence);
+        logger.info("[Client <= Server] " + head.startLine.toDisplayableString() + " (passthrough)");
+        final OutboundBuffers rawHead = head.toHeadBuffers();
+        rawHead.writeTo(this.outClient);
         try {
-            message = this.resolver.matchResponse(
-                    this.contentCollector.synchronousReadAll()
-            );
+            final long relayed = this.contentCollector.relayBody(this.outClient);
+            logger.debug("Wrote " + (rawHead.length() + relayed) + " bytes to client output stream");
         } catch (final SocketStreamReadError e) {
-            message = StandardResponses._408(e.getMessage());
+            logger.error("Failed to relay response body: " + e.getMessage(), e);
+            this.serverReusable = false;
+            return false;
         }
-        logger.info("[Client <= Server] " + message.startLine.toDisplayableString());
-        final byte[] response = message.toRaw();
-        this.outClient.write(response);
-        logger.debug("Wrote " + response.length + " bytes to client output stream");
         this.outClient.flush();
         logger.trace("Flushed client input stream");
+        return true;
+    }
+
+    /**
+     * Determine whether a response can be streamed to the client as it is received. This is the case when streaming is
+     * enabled, the response has a body, and either no resource handler would rewrite it, see
+     * {@link ResourceResolver#hasResponseHandler(HTTPMessage)}, or it is HTML rewritten as it is streamed, see
+     * {@link ForwardTrafficHandler#isRewrittenWhileStreamed}.
+     *
+     * @param request Request the response is for
+     * @param head Start line and headers of the response
+     * @return {@code true} if the response can be streamed, {@code false} if it must be read in full
+     */
+    private boolean isStreamable(final InFlightRequests.InFlightRequest request, final HTTPMessage<HTTPResponseStartLine> head) {
+        if (!this.config.servlet.messages.streaming || isBodyless(request.startLine.method, head.startLine)) {
+            return false;
+        }
+        return isRewrittenWhileStreamed(head) || !this.resolver.hasResponseHandler(head);
+    }
+
+    /**
+     * Determine whether a response is HTML to be rewritten by a {@link HTMLTokenRewriter} as it is streamed, rather
+     * than by its resource handler once read in full. This requires the {@link HTMLRewriterMode#STREAMING} rewriter and
+     * a {@code Content-Type} of {@code text/html} with a supported charset.
+     *
+     * @param head Start line and headers of the response
+     * @return {@code true} if the response is rewritten as it is streamed, {@code false} otherwise
+     */
+    private boolean isRewrittenWhileStreamed(final HTTPMessage<HTTPResponseStartLine> head) {
+        if (this.config.servlet.messages.htmlRewriter != HTMLRewriterMode.STREAMING) {
+            return false;
+        }
+        final Optional<String> contentType = head.getHeader(HTTPSymbols.CONTENT_TYPE_HEADER);
+        if (!contentType.isPresent() || !HTTPSymbols.CONTENT_TYPE_HTML_REGEX.matcher(contentType.get()).find()) {
+            return false;
+        }
+        try {
+            head.getCharset();
+            return true;
+        } catch (final IllegalArgumentException e) {
+            logger.debug("Unsupported charset, HTML response will be read in full: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Create the transform stages for a streamed response, being a {@link TextStage} applying a
+     * {@link HTMLTokenRewriter} with the {@link CompiledPolicies} to HTML that is rewritten as it is streamed, and none
+     * otherwise. Where {@link HTMLTokenRewriter#canRewriteBytes} allows it, the bytes of the body are passed through
+     * as {@link StandardCharsets#ISO_8859_1} characters rather than being decoded and encoded again with their charset.
+     *
+     * @param head Start line and headers of the response
+     * @return {@link List} of {@link BodyStage} to stream the body through
+     */
+    private List<BodyStage> streamingStages(final HTTPMessage<HTTPResponseStartLine> head) {
+        if (!isRewrittenWhileStreamed(head)
+                || (this.compiledPolicies.textReplacements.isEmpty() && this.compiledPolicies.linkReplacements.isEmpty())) {
+            return Collections.emptyList();
+        }
+        final Charset charset = head.getCharset();
+        if (HTMLTokenRewriter.canRewriteBytes(charset, this.compiledPolicies.prefilter)) {
+            return Collections.singletonList(new TextStage(
+                    StandardCharsets.ISO_8859_1,
+                    new HTMLTokenRewriter(this.compiledPolicies.textReplacements, this.compiledPolicies.linkReplacements, charset),
+                    this.config.servlet.connections.readerBufferSize
+            ));
+        }
+        return Collections.singletonList(new TextStage(
+                charset,
+                new HTMLTokenRewriter(this.compiledPolicies.textReplacements, this.compiledPolicies.linkReplacements),
+                this.config.servlet.connections.readerBufferSize
+        ));
+    }
+
+    /**
+     * Determine whether a response never contains a body irrespective of its headers, as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>. Such
+     * responses are written without a body, keeping the framing headers sent by the server.
+     *
+     * @param requestMethod Method of the request the response is for
+     * @param startLine Start line of the response
+     * @return {@code true} if the response is to a {@code HEAD} request or has a {@code 1xx}, {@code 204} or {@code 304}
+     * status, {@code false} otherwise
+     */
+    public static boolean isBodyless(final HTTPMethod requestMethod, final HTTPResponseStartLine startLine) {
+        return requestMethod == HTTPMethod.HEAD
+                || startLine.statusCode < 200
+                || startLine.statusCode == 204
+                || startLine.statusCode == 304;
+    }
+
+    /**
+     * Write the head of a response to the client as soon as it has been read, then stream its body through a
+     * {@link BodyPipeline} in chunks of {@link com.engineersbox.httpproxy.configuration.domain.servlet.Connections#readerBufferSize}
+     * bytes as it is received from the server.
+     *
+     * <br/><br/>
+     *
+     * The content coding of the body is negotiated by the {@link ContentCodingNegotiator}, and changed by the pipeline
+     * if need be. If the pipeline is guaranteed not to change the length of the body, any {@code Content-Length} header
+     * is kept.
+     * Otherwise the body is written with the chunked {@code Transfer-Encoding} to clients that support it, or delimited
+     * by closing the connection to HTTP/1.0 clients (<a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>).
+     *
+     * <br/><br/>
+     *
+     * As with {@link ForwardTrafficHandler#relayResponse}, a failure after the head has been sent closes both the
+     * client and server connections.
+     *
+     * @param head Start line and headers of the response
+     * @param stages Transform stages to stream the body through, see {@link ForwardTrafficHandler#streamingStages}
+     * @param last Whether the client connection will be closed after this response
+     * @param chunked Whether the client supports the chunked {@code Transfer-Encoding}
+     * @param sequence Number of requests served on the client connection so far, including this one
+     * @param acceptEncoding Value of the {@code Accept-Encoding} header of the request, or {@code null} if it had none
+     * @return {@code true} if the body was streamed in full and the client connection can be used for further responses,
+     * {@code false} otherwise
+     * @throws IOException If the head could not be written to the client
+     */
+    private boolean streamResponse(final HTTPMessage<HTTPResponseStartLine> head,
+                                   final List<BodyStage> stages,
+                                   final boolean last,
+                                   final boolean chunked,
+                                   final int sequence,
+                                   final String acceptEncoding) throws IOException {
+        final int chunkSize = this.config.servlet.connections.readerBufferSize;
+        final ContentCodingNegotiator.ContentCoding coding = ContentCodingNegotiator.negotiate(
+                head,
+                acceptEncoding,
+                this.compressionLevels,
+                !stages.isEmpty()
+        );
+        final BodyPipeline pipeline = BodyPipeline.recoding(coding.input, stages, coding.output, coding.level, this.bufferPool, chunkSize);
+        final boolean framed = pipeline.isLengthPreserving() && head.getHeader(HTTPSymbols.CONTENT_LENGTH_HEADER).isPresent()
+                && !head.getHeader(HTTPSymbols.TRANSFER_ENCODING_HEADER).isPresent();
+        if (!framed) {
+            head.removeHeader(HTTPSymbols.CONTENT_LENGTH_HEADER);
+            head.removeHeader(HTTPSymbols.TRANSFER_ENCODING_HEADER);
+            if (chunked) {
+                head.headers.add(HTTPSymbols.TRANSFER_ENCODING_HEADER, HTTPSymbols.TRANSFER_ENCODING_CHUNKED);
+            }
+        }
+        final boolean closeDelimited = !framed && !chunked;
+        withConnectionHeaders(head, this.config.servlet.keepAlive, last || closeDelimited, sequence);
+        logger.info("[Client <= Server] " + head.startLine.toDisplayableString() + " (streamed)");
+        head.toHeadBuffers().writeTo(this.outClient);
+        this.outClient.flush();
+        final ChunkedOutputStream chunkedOut = !framed && chunked ? new ChunkedOutputStream(this.outClient, this.bufferPool, chunkSize) : null;
+        try {
+            final long streamed = pipeline.run(
+                    this.contentCollector.streamBody(),
+                    chunkedOut != null ? chunkedOut : this.outClient
+            );
+            if (chunkedOut != null) {
+                chunkedOut.finish();
+            }
+            logger.debug("Streamed " + streamed + " decoded body bytes to client output stream");
+        } catch (final IOException | CompressionHandlerException e) {
+            logger.error("Failed to stream response body: " + e.getMessage(), e);
+            this.serverReusable = false;
+            return false;
+        } finally {
+            if (chunkedOut != null) {
+                chunkedOut.release();
+            }
+        }
+        return !closeDelimited;
     }
 
     /**
-     * To ensure the lifecycle of a socket is handled correctly, this method closes the server connection and then
-     * the client connection in that order.
+     * Replace the hop-by-hop {@code Connection} and {@code Keep-Alive} headers of a response with those describing the
+     * client connection rather than the server connection.
+     *
+     * @param message Response to be written to the client
+     * @param keepAlive Keep alive configuration of the client connection
+     * @param last Whether the client connection will be closed after this response
+     * @param sequence Number of requests served on the client connection so far, including this one
+     */
+    public static void withConnectionHeaders(final HTTPMessage<HTTPResponseStartLine> message,
+                                             final KeepAlive keepAlive,
+                                             final boolean last,
+                                             final int sequence) {
+        message.removeHeader(HTTPSymbols.KEEP_ALIVE_HEADER);
+        if (last) {
+            message.headers.set(HTTPSymbols.CONNECTION_HEADER, HTTPSymbols.CONNECTION_CLOSE);
+            return;
+        }
+        message.headers.set(HTTPSymbols.CONNECTION_HEADER, HTTPSymbols.CONNECTION_KEEP_ALIVE);
+        String parameters = HTTPSymbols.KEEP_ALIVE_TIMEOUT + keepAlive.idleTimeout / 1000;
+        if (keepAlive.maxRequests > 0) {
+            parameters += HTTPSymbols.KEEP_ALIVE_PARAMETER_DELIMITER + HTTPSymbols.KEEP_ALIVE_MAX + (keepAlive.maxRequests - sequence);
+        }
+        message.headers.add(HTTPSymbols.KEEP_ALIVE_HEADER, parameters);
+    }
+
+    /**
+     * To ensure the lifecycle of a socket is handled correctly, this method releases any server connections back to
+     * the {@link UpstreamConnectionPool} and then closes the client connection in that order. A server connection
+     * whose response was not read in full, and those of any requests still in flight, are closed by the pool. The
+     * buffers of the {@link ContentCollector} are returned to the {@link BufferPool} beforehand.
      *
      * <br/><br/>
      *
@@ -98,9 +525,14 @@ public class ForwardTrafficHandler extends BaseTrafficHandler {
      */
     @Override
     public void after() {
+        this.contentCollector.release();
+        if (this.server != null) {
+            this.upstreamPool.release(this.server, false);
+            this.server = null;
+            logger.debug("Released server connection");
+        }
+        this.inFlight.close();
         try {
-            server.close();
-            logger.debug("Closed server connection");
             client.close();
             logger.debug("Closed client connection");
         } catch (final IOException e) {
@@ -0,0 +1,173 @@
+package com.engineersbox.httpproxy.connection.handler;
+
+import com.engineersbox.httpproxy.connection.pool.PooledConnection;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
+import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponse;
+import com.google.inject.Inject;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Hand-off between the {@link BackwardTrafficHandler} and {@link ForwardTrafficHandler} of a single client connection.
+ * Each request written to the server is submitted here along with the server connection it was written to, so that
+ * the response for it can be read with knowledge of the request that produced it, in the order the requests were sent.
+ * The {@link ForwardTrafficHandler} returns each server connection to the {@link UpstreamConnectionPool} once the
+ * response has been read.
+ *
+ * <br/><br/>
+ *
+ * The session is ended via {@link InFlightRequests#end()} once the client stops sending requests. The
+ * {@link BackwardTrafficHandler} always ends the session when it finishes, so {@link InFlightRequests#take()} will
+ * never block beyond the lifetime of the client connection. Once the {@link ForwardTrafficHandler} stops reading
+ * responses it closes the session via {@link InFlightRequests#close()}, releasing the server connections of any
+ * requests still awaiting a response.
+ */
+public class InFlightRequests {
+
+    private static final InFlightRequest END = new InFlightRequest(null, -1, true, false, null, null, null);
+
+    private final UpstreamConnectionPool upstreamPool;
+    private final BlockingQueue<InFlightRequest> queue = new LinkedBlockingQueue<>();
+    private boolean closed = false;
+
+    @Inject
+    public InFlightRequests(final UpstreamConnectionPool upstreamPool) {
+        this.upstreamPool = upstreamPool;
+    }
+
+    /**
+     * A request that has been written to the server and is awaiting a response
+     */
+    public static class InFlightRequest {
+        public final HTTPRequestStartLine startLine;
+        public final int sequence;
+        public final boolean last;
+        public final boolean expectContinue;
+        public final String acceptEncoding;
+        public final PooledConnection server;
+        public final PreEncodedResponse failure;
+
+        private volatile boolean written;
+
+        private InFlightRequest(final HTTPRequestStartLine startLine,
+                                final int sequence,
+                                final boolean last,
+                                final boolean expectContinue,
+                                final String acceptEncoding,
+                                final PooledConnection server,
+                                final PreEncodedResponse failure) {
+            this.startLine = startLine;
+            this.sequence = sequence;
+            this.last = last;
+            this.expectContinue = expectContinue;
+            this.acceptEncoding = acceptEncoding;
+            this.server = server;
+            this.failure = failure;
+            this.written = !expectContinue;
+        }
+
+        /**
+         * @param startLine Start line of the request
+         * @param sequence Number of requests served on the client connection so far, including this one
+         * @param last Whether this is the last request to be served on the client connection
+         * @param expectContinue Whether the request was submitted with an {@code Expect: 100-continue} header before its
+         *                       body was written to the server, see {@link InFlightRequest#markWritten()}
+         * @param acceptEncoding Value of the {@code Accept-Encoding} header of the request, or {@code null} if it had none
+         * @param server Connection leased from the {@link UpstreamConnectionPool} the request was written to
+         */
+        public InFlightRequest(final HTTPRequestStartLine startLine,
+                               final int sequence,
+                               final boolean last,
+                               final boolean expectContinue,
+                               final String acceptEncoding,
+                               final PooledConnection server) {
+            this(startLine, sequence, last, expectContinue, acceptEncoding, server, null);
+        }
+
+        /**
+         * Create a request that could not be written to a server, either as it could not be read or as no server
+         * connection could be leased for it. It is answered with {@code failure} instead, after which the client
+         * connection is closed.
+         *
+         * @param startLine Start line of the request, or {@code null} if it could not be read
+         * @param sequence Number of requests served on the client connection so far, including this one
+         * @param failure Response to write to the client in place of a response from the server
+         * @return {@link InFlightRequest} without a server connection
+         */
+        public static InFlightRequest failed(final HTTPRequestStartLine startLine,
+                                             final int sequence,
+                                             final PreEncodedResponse failure) {
+            return new InFlightRequest(startLine, sequence, true, false, null, null, failure);
+        }
+
+        /**
+         * Mark the body of a request submitted with an {@code Expect: 100-continue} header as written to the server in
+         * full
+         */
+        public void markWritten() {
+            this.written = true;
+        }
+
+        /**
+         * @return {@code true} if the request has been written to the server in full, {@code false} if its body is
+         * still being written or failed to be written, in which case the server connection cannot be reused
+         */
+        public boolean isWritten() {
+            return this.written;
+        }
+    }
+
+    /**
+     * Submit a request that has been written to the server. If the session has been closed, the server connection of
+     * the request is released without being reused.
+     *
+     * @param request The request awaiting a response
+     * @return {@code true} if the request was submitted, {@code false} if the session has been closed
+     */
+    public synchronized boolean submit(final InFlightRequest request) {
+        if (this.closed) {
+            release(request);
+            return false;
+        }
+        this.queue.add(request);
+        return true;
+    }
+
+    /**
+     * Signal that no further requests will be sent by the client
+     */
+    public void end() {
+        this.queue.add(END);
+    }
+
+    /**
+     * Signal that no further responses will be read, releasing the server connections of any requests still awaiting
+     * a response without reusing them
+     */
+    public synchronized void close() {
+        this.closed = true;
+        InFlightRequest request;
+        while ((request = this.queue.poll()) != null) {
+            release(request);
+        }
+    }
+
+    private void release(final InFlightRequest request) {
+        if (request.server != null) {
+            this.upstreamPool.release(request.server, false);
+        }
+    }
+
+    /**
+     * Wait for the next request to be written to the server
+     *
+     * @return The next {@link InFlightRequest}, or {@code null} if the session has ended
+     * @throws InterruptedException If interrupted whilst waiting
+     */
+    public InFlightRequest take() throws InterruptedException {
+        final InFlightRequest request = this.queue.take();
+        return request == END ? null : request;
+    }
+}
@@ -0,0 +1,133 @@
+package com.engineersbox.httpproxy.connection.pool;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PushbackInputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+/**
+ * A {@link Socket} to a proxy target leased from an {@link UpstreamConnectionPool}. The streams of the socket are
+ * retained for the lifetime of the connection so that they can be reused between exchanges.
+ */
+public class PooledConnection {
+
+    private final Logger logger = LogManager.getLogger(PooledConnection.class);
+
+    private static final int VALIDATION_TIMEOUT = 1;
+
+    public final String host;
+    public final int port;
+    public final Socket socket;
+    public final InputStream inputStream;
+    public final OutputStream outputStream;
+
+    private final PushbackInputStream pushbackStream;
+    private long lastUsed;
+    private int exchanges;
+
+    public PooledConnection(final String host, final int port, final Socket socket) throws IOException {
+        this.host = host;
+        this.port = port;
+        this.socket = socket;
+        this.pushbackStream = new PushbackInputStream(socket.getInputStream());
+        this.inputStream = this.pushbackStream;
+        this.outputStream = socket.getOutputStream();
+        this.lastUsed = System.currentTimeMillis();
+        this.exchanges = 0;
+    }
+
+    /**
+     * Mark the connection as having completed an exchange, resetting the time it has been idle for
+     */
+    void markUsed() {
+        this.lastUsed = System.currentTimeMillis();
+        this.exchanges++;
+    }
+
+    /**
+     * @return Milliseconds elapsed since the connection was last used
+     */
+    long idleTime() {
+        return System.currentTimeMillis() - this.lastUsed;
+    }
+
+    /**
+     * @return Amount of exchanges completed on this connection
+     */
+    public int exchanges() {
+        return this.exchanges;
+    }
+
+    /**
+     * Check whether the socket is still open locally
+     *
+     * @return {@code true} if the socket is connected and neither it nor its streams have been closed, {@code false} otherwise
+     */
+    boolean isOpen() {
+        return this.socket.isConnected()
+            && !this.socket.isClosed()
+            && !this.socket.isInputShutdown()
+            && !this.socket.isOutputShutdown();
+    }
+
+    /**
+     * Validate that the connection has not been closed by the remote end while idle, by attempting a minimally blocking
+     * read of a single byte.
+     *
+     * <br/><br/>
+     *
+     * A read timing out indicates the connection is still usable. Reaching the end of the stream indicates the remote
+     * has closed the connection, and receiving data indicates that the connection is in an unknown state since no
+     * request is outstanding. Any read byte is pushed back onto the stream.
+     *
+     * @return {@code true} if the connection can be reused, {@code false} otherwise
+     */
+    boolean validate() {
+        if (!isOpen()) {
+            return false;
+        }
+        int previousTimeout = 0;
+        try {
+            previousTimeout = this.socket.getSoTimeout();
+            this.socket.setSoTimeout(VALIDATION_TIMEOUT);
+            final int read = this.pushbackStream.read();
+            if (read < 0) {
+                logger.debug("Idle upstream connection was closed by remote");
+                return false;
+            }
+            this.pushbackStream.unread(read);
+            logger.debug("Idle upstream connection received unsolicited data");
+            return false;
+        } catch (final SocketTimeoutException e) {
+            return true;
+        } catch (final IOException e) {
+            logger.debug("Idle upstream connection failed validation: " + e.getMessage());
+            return false;
+        } finally {
+            try {
+                if (!this.socket.isClosed()) {
+                    this.socket.setSoTimeout(previousTimeout);
+                }
+            } catch (final IOException e) {
+                logger.trace(e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Close the underlying socket, ignoring any exceptions
+     */
+    void close() {
+        try {
+            this.socket.close();
+            logger.debug("Closed upstream connection to [Host: " + this.host + "] [Port: " + this.port + "]");
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.engineersbox.httpproxy.connection.pool;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.connection.socket.SingletonSocketFactory;
+import com.engineersbox.httpproxy.exceptions.socket.FailedToCreateServerSocketException;
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pool of keep-alive connections to proxy targets, configured via {@link Config}. Connections are kept in a per-target
+ * idle list and handed out most recently used first, so that rarely used connections age out via the configured max
+ * idle time.
+ *
+ * <br/><br/>
+ *
+ * The amount of open connections to any single target, whether leased or idle, is bounded by
+ * {@code servlet.upstream.maxConnections}. A lease waits for up to {@code servlet.connections.dropAfter} milliseconds
+ * for a connection to be released once that bound is reached. Connections that have been idle for longer than
+ * {@code servlet.upstream.validateAfter} are checked to still be open before being reused.
+ */
+public class UpstreamConnectionPool {
+
+    private final Logger logger = LogManager.getLogger(UpstreamConnectionPool.class);
+
+    private final Config config;
+    private final Map<String, Target> targets;
+    private final ScheduledExecutorService evictor;
+
+    @Inject
+    public UpstreamConnectionPool(final Config config) {
+        this.config = config;
+        this.targets = new ConcurrentHashMap<>();
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            final Thread thread = new Thread(runnable, "upstream-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (isReuseEnabled()) {
+            this.evictor.scheduleWithFixedDelay(
+                    this::evictIdle,
+                    config.servlet.upstream.maxIdleTime,
+                    config.servlet.upstream.maxIdleTime,
+                    TimeUnit.MILLISECONDS
+            );
+        }
+        logger.info("Created upstream connection pool with max connections per target: " + config.servlet.upstream.maxConnections);
+    }
+
+    /**
+     * Connections to a single target, with the permits bounding the amount of open connections
+     */
+    private static class Target {
+        final Semaphore permits;
+        final Deque<PooledConnection> idle;
+
+        Target(final int maxConnections) {
+            this.permits = new Semaphore(maxConnections > 0 ? maxConnections : Integer.MAX_VALUE);
+            this.idle = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * @return {@code true} if released connections are kept for reuse, {@code false} if they are always closed
+     */
+    public boolean isReuseEnabled() {
+        return this.config.servlet.upstream.maxIdleTime > 0;
+    }
+
+    private Target target(final String host, final int port) {
+        return this.targets.computeIfAbsent(
+                host + ":" + port,
+                (_key) -> new Target(this.config.servlet.upstream.maxConnections)
+        );
+    }
+
+    /**
+     * Lease a connection to the given target, reusing an idle connection if a valid one exists or creating a new one
+     * otherwise.
+     *
+     * @param host Hostname of the target
+     * @param port Port of the target
+     * @return A {@link PooledConnection} to the target, which must be returned via {@link UpstreamConnectionPool#release}
+     * @throws FailedToCreateServerSocketException If no connection could be leased within the configured wait or a
+     * new connection could not be established
+     */
+    public PooledConnection acquire(final String host, final int port) throws FailedToCreateServerSocketException {
+        final Target target = target(host, port);
+        acquirePermit(target, host, port);
+        PooledConnection connection;
+        while ((connection = pollIdle(target)) != null) {
+            if (connection.idleTime() <= this.config.servlet.upstream.maxIdleTime
+                && (connection.idleTime() < this.config.servlet.upstream.validateAfter || connection.validate())) {
+                logger.debug("Reusing upstream connection to [Host: " + host + "] [Port: " + port + "] after " + connection.exchanges() + " exchanges");
+                return connection;
+            }
+            connection.close();
+        }
+        try {
+            connection = new PooledConnection(
+                    host,
+                    port,
+                    new SingletonSocketFactory()
+                            .withSocketConfigs(this.config.servlet.connections)
+                            .createSocket(host, port)
+            );
+            logger.debug("Established new upstream connection to [Host: " + host + "] [Port: " + port + "]");
+            return connection;
+        } catch (final IOException e) {
+            target.permits.release();
+            throw new FailedToCreateServerSocketException(
+                    "Could not create socket for [Host: " + host + "] [Port: " + port + "]",
+                    e
+            );
+        }
+    }
+
+    private void acquirePermit(final Target target, final String host, final int port) throws FailedToCreateServerSocketException {
+        final int wait = this.config.servlet.connections.dropAfter;
+        try {
+            if (wait <= 0) {
+                target.permits.acquire();
+            } else if (!target.permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                throw new FailedToCreateServerSocketException(
+                        "Timed out waiting for a connection to [Host: " + host + "] [Port: " + port + "]",
+                        null
+                );
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new FailedToCreateServerSocketException(
+                    "Interrupted waiting for a connection to [Host: " + host + "] [Port: " + port + "]",
+                    e
+            );
+        }
+    }
+
+    private PooledConnection pollIdle(final Target target) {
+        synchronized (target.idle) {
+            return target.idle.pollFirst();
+        }
+    }
+
+    /**
+     * Return a leased connection to the pool. The connection is kept for reuse if {@code reusable} is set, reuse is
+     * enabled and the socket is still open, otherwise it is closed.
+     *
+     * @param connection A connection previously leased via {@link UpstreamConnectionPool#acquire}
+     * @param reusable Whether the last exchange on the connection left it in a state that allows another exchange
+     */
+    public void release(final PooledConnection connection, final boolean reusable) {
+        final Target target = target(connection.host, connection.port);
+        connection.markUsed();
+        if (reusable && isReuseEnabled() && connection.isOpen()) {
+            synchronized (target.idle) {
+                target.idle.offerFirst(connection);
+            }
+            logger.debug("Released upstream connection to [Host: " + connection.host + "] [Port: " + connection.port + "] for reuse");
+        } else {
+            connection.close();
+        }
+        target.permits.release();
+    }
+
+    /**
+     * Close any idle connections that have exceeded the configured max idle time
+     */
+    private void evictIdle() {
+        for (final Target target : this.targets.values()) {
+            synchronized (target.idle) {
+                final Iterator<PooledConnection> iterator = target.idle.iterator();
+                while (iterator.hasNext()) {
+                    final PooledConnection connection = iterator.next();
+                    if (connection.idleTime() > this.config.servlet.upstream.maxIdleTime) {
+                        iterator.remove();
+                        connection.close();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Close all idle connections and stop evicting idle connections
+     */
+    public void shutdown() {
+        this.evictor.shutdownNow();
+        for (final Target target : this.targets.values()) {
+            synchronized (target.idle) {
+                target.idle.forEach(PooledConnection::close);
+                target.idle.clear();
+            }
+        }
+    }
+}
@@ -0,0 +1,401 @@
+package com.engineersbox.httpproxy.connection.stream;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.exceptions.http.HTTPHeadTooLargeException;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPFraming;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Buffered reader of lines and raw bytes from an {@link InputStream}, terminating lines on any termination configuration
+ * of {@code CR (\r)} and/or {@code LF (\n)} and retaining the termination in the line.
+ *
+ * <br/><br/>
+ *
+ * The stream is read in blocks into a single reusable buffer rather than byte-by-byte, and the line last scanned by
+ * {@link BufferedLineScanner#nextLine()} is exposed as a view over that buffer, given by {@link BufferedLineScanner#array()},
+ * {@link BufferedLineScanner#lineOffset()} and {@link BufferedLineScanner#lineLength()}. No allocation is made per line,
+ * except to grow the buffer to fit a line longer than it. The view is only valid until the scanner is next read from.
+ * Lines are at most {@link HTTPFraming#MAX_HEAD_LENGTH} bytes long, so that a peer sending a line without a terminator
+ * cannot grow the buffer without limit.
+ *
+ * <br/><br/>
+ *
+ * The buffer is leased from a {@link BufferPool}, and must be returned to it via {@link BufferedLineScanner#release()}
+ * once the stream is no longer read from.
+ *
+ * <br/><br/>
+ *
+ * As bytes past the end of a message may already have been read into the buffer, a single scanner must be used for
+ * all messages read from a stream, see {@link BufferedLineScanner#buffered()}.
+ */
+public class BufferedLineScanner {
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte COLON = ':';
+    private static final int MAX_LINE_LENGTH = HTTPFraming.MAX_HEAD_LENGTH;
+
+    private final InputStream stream;
+    private final BufferPool bufferPool;
+    private BufferPool.Lease lease;
+    private byte[] buffer;
+    private int position;
+    private int limit;
+    private int lineOffset;
+    private int lineLength;
+    private boolean ended;
+
+    /**
+     * @param stream Stream to read from
+     * @param bufferPool Pool to lease the buffer from
+     * @param bufferSize Initial size of the buffer, which is grown as needed to fit the longest line read
+     */
+    public BufferedLineScanner(final InputStream stream, final BufferPool bufferPool, final int bufferSize) {
+        this.stream = stream;
+        this.bufferPool = bufferPool;
+        this.lease = bufferPool.acquireHeap(Math.max(bufferSize, 2));
+        this.buffer = this.lease.array();
+        this.position = 0;
+        this.limit = 0;
+        this.ended = false;
+    }
+
+    /**
+     * Read more bytes from the stream into the buffer, keeping all unconsumed bytes. Unconsumed bytes are moved to the
+     * start of the buffer if there is no space after them, and the buffer is only grown if it is full of unconsumed bytes.
+     *
+     * @return Amount of bytes read, or {@code -1} if the end of the stream has been reached
+     * @throws IOException If an I/O error occurs
+     */
+    private int fill() throws IOException {
+        if (this.ended) {
+            return -1;
+        }
+        if (this.position == this.limit) {
+            this.position = 0;
+            this.limit = 0;
+        } else if (this.limit == this.buffer.length) {
+            if (this.position > 0) {
+                System.arraycopy(this.buffer, this.position, this.buffer, 0, this.limit - this.position);
+                this.limit -= this.position;
+                this.position = 0;
+            } else {
+                grow();
+            }
+        }
+        final int read = this.stream.read(this.buffer, this.limit, this.buffer.length - this.limit);
+        if (read < 0) {
+            this.ended = true;
+            return -1;
+        }
+        this.limit += read;
+        return read;
+    }
+
+    /**
+     * Replace the buffer with one leased at double its size, as it is full of unconsumed bytes
+     */
+    private void grow() {
+        final BufferPool.Lease grown = this.bufferPool.acquireHeap(this.buffer.length * 2);
+        System.arraycopy(this.buffer, 0, grown.array(), 0, this.limit);
+        this.lease.release();
+        this.lease = grown;
+        this.buffer = grown.array();
+    }
+
+    private boolean completeLine(final int end) {
+        this.lineOffset = this.position;
+        this.lineLength = end - this.position;
+        this.position = end;
+        return true;
+    }
+
+    /**
+     * Scan the next line, terminated by one of 3 line termination configurations:
+     *
+     * <ol>
+     *     <li>{@code CR (\r)}</li>
+     *     <li>{@code LF (\n)}</li>
+     *     <li>{@code CRLF (\r\n)}</li>
+     * </ol>
+     *
+     * The line <strong>INCLUDES</strong> the line terminator, so that the bytes it was read from can be reconstructed
+     * exactly. This is required to read compressed body data, which would be malformed if line endings were normalised.
+     * A line ended by the end of the stream has no terminator.
+     *
+     * @return {@code true} if a line was scanned, {@code false} if the end of the stream was reached before any byte
+     * @throws IOException If an I/O error occurs
+     * @throws HTTPHeadTooLargeException If no line terminator is found within {@link HTTPFraming#MAX_HEAD_LENGTH} bytes
+     */
+    public boolean nextLine() throws IOException {
+        int scanned = 0;
+        while (true) {
+            int scan = this.position + scanned;
+            while (scan < this.limit) {
+                final byte current = this.buffer[scan];
+                if (current == LF) {
+                    return completeLine(scan + 1);
+                } else if (current == CR && scan + 1 < this.limit) {
+                    return completeLine(this.buffer[scan + 1] == LF ? scan + 2 : scan + 1);
+                } else if (current == CR) {
+                    break;
+                }
+                scan++;
+            }
+            scanned = scan - this.position;
+            if (scanned >= MAX_LINE_LENGTH) {
+                throw new HTTPHeadTooLargeException("Line exceeds maximum length of " + MAX_LINE_LENGTH + " bytes");
+            }
+            if (fill() < 0) {
+                if (this.position == this.limit) {
+                    this.lineLength = 0;
+                    return false;
+                }
+                return completeLine(this.limit);
+            }
+        }
+    }
+
+    /**
+     * @return Buffer holding the line last scanned by {@link BufferedLineScanner#nextLine()}
+     */
+    public byte[] array() {
+        return this.buffer;
+    }
+
+    /**
+     * @return Index of the first byte of the line last scanned in {@link BufferedLineScanner#array()}
+     */
+    public int lineOffset() {
+        return this.lineOffset;
+    }
+
+    /**
+     * @return Length of the line last scanned, including its terminator
+     */
+    public int lineLength() {
+        return this.lineLength;
+    }
+
+    /**
+     * @return {@code true} if the line last scanned consists only of {@link HTTPSymbols#HTTP_HEADER_NEWLINE_DELIMITER},
+     * as ends a header or trailer section, {@code false} otherwise
+     */
+    public boolean isEmptyLine() {
+        return this.lineLength == 2 && this.buffer[this.lineOffset] == CR && this.buffer[this.lineOffset + 1] == LF;
+    }
+
+    /**
+     * @return The line last scanned as a {@link String}, including its terminator
+     */
+    public String lineString() {
+        return new String(this.buffer, this.lineOffset, this.lineLength, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Write the line last scanned back out as the bytes it was read from
+     *
+     * @param out Stream to write the line to
+     * @throws IOException If the write failed
+     */
+    public void writeLine(final OutputStream out) throws IOException {
+        out.write(this.buffer, this.lineOffset, this.lineLength);
+    }
+
+    /**
+     * Verifies whether the line last scanned is a header field with the given name, compared case-insensitively as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-3.2" target="_top">RFC 7230 Section 3.2</a>
+     *
+     * @param name Header key to check for
+     * @return {@code true} if the line starts with {@code name} followed by a colon, {@code false} otherwise
+     */
+    public boolean lineHasHeader(final String name) {
+        final int length = name.length();
+        if (this.lineLength <= length || this.buffer[this.lineOffset + length] != COLON) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            final char expected = name.charAt(i);
+            final char actual = (char) (this.buffer[this.lineOffset + i] & 0xFF);
+            if (expected != actual && Character.toLowerCase(expected) != Character.toLowerCase(actual)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get the value of the header field on the line last scanned, with surrounding whitespace and the line terminator
+     * removed. Only valid after {@link BufferedLineScanner#lineHasHeader(String)} has matched the same {@code name}.
+     *
+     * @param name Header key of the line
+     * @return Value of the header
+     */
+    public String lineHeaderValue(final String name) {
+        int start = this.lineOffset + name.length() + 1;
+        int end = this.lineOffset + this.lineLength;
+        while (start < end && this.buffer[start] <= ' ' && this.buffer[start] >= 0) {
+            start++;
+        }
+        while (end > start && this.buffer[end - 1] <= ' ' && this.buffer[end - 1] >= 0) {
+            end--;
+        }
+        return new String(this.buffer, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Parse the size from the chunk size line last scanned, ignoring any chunk extensions, see
+     * {@link HTTPFraming#parseChunkSize(byte[], int, int)}
+     *
+     * @return Size of the chunk in bytes
+     * @throws IOException If the chunk size was malformed or larger than {@link HTTPFraming#MAX_CHUNK_SIZE}
+     */
+    public int lineChunkSize() throws IOException {
+        int end = this.lineOffset + this.lineLength;
+        while (end > this.lineOffset && (this.buffer[end - 1] == CR || this.buffer[end - 1] == LF)) {
+            end--;
+        }
+        final long size = HTTPFraming.parseChunkSize(this.buffer, this.lineOffset, end);
+        if (size < 0) {
+            throw new IOException("Invalid chunk size line, or chunk size exceeds maximum of " + HTTPFraming.MAX_CHUNK_SIZE + " bytes: " + lineString().trim());
+        }
+        return (int) size;
+    }
+
+    /**
+     * @return Amount of bytes read from the stream into the buffer that have not yet been consumed
+     */
+    public int buffered() {
+        return this.limit - this.position;
+    }
+
+    /**
+     * Reads up to {@code length} bytes into {@code destination}, irrespective of any line terminators contained within
+     * them. Buffered bytes are consumed first, otherwise blocks only until at least one byte is available, as with
+     * {@link InputStream#read(byte[], int, int)}. Reads at least as large as the buffer bypass it.
+     *
+     * @param destination Buffer to read the bytes into
+     * @param offset Index in {@code destination} to start writing at
+     * @param length Maximum amount of bytes to read
+     * @return Amount of bytes read, or {@code -1} if the end of the stream has been reached
+     * @throws IOException If an I/O error occurs
+     */
+    public int read(final byte[] destination, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (buffered() == 0) {
+            if (this.ended) {
+                return -1;
+            } else if (length >= this.buffer.length) {
+                final int read = this.stream.read(destination, offset, length);
+                this.ended = read < 0;
+                return read;
+            } else if (fill() < 0) {
+                return -1;
+            }
+        }
+        final int read = Math.min(length, buffered());
+        System.arraycopy(this.buffer, this.position, destination, offset, read);
+        this.position += read;
+        return read;
+    }
+
+    /**
+     * Reads exactly {@code length} bytes, irrespective of any line terminators contained within them. This is used to
+     * read bodies delimited by a {@code Content-Length} or chunk size, so that no bytes past the end of the body are
+     * consumed.
+     *
+     * @param length Amount of bytes to read
+     * @return {@code byte[]} of size {@code length}
+     * @throws EOFException If the stream ends before {@code length} bytes have been read
+     * @throws IOException If an I/O error occurs
+     */
+    public byte[] readBytes(final int length) throws IOException {
+        final byte[] bytes = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            final int read = read(bytes, offset, length - offset);
+            if (read < 0) {
+                throw new EOFException("Stream ended after " + offset + " of " + length + " bytes");
+            }
+            offset += read;
+        }
+        return bytes;
+    }
+
+    /**
+     * Copies exactly {@code length} bytes to {@code out} through the buffer, irrespective of any line terminators
+     * contained within them.
+     *
+     * @param length Amount of bytes to copy
+     * @param out Stream to copy the bytes to
+     * @throws EOFException If the stream ends before {@code length} bytes have been copied
+     * @throws IOException If an I/O error occurs
+     */
+    public void transferBytes(final long length, final OutputStream out) throws IOException {
+        long remaining = length;
+        while (remaining > 0) {
+            if (buffered() == 0 && fill() < 0) {
+                throw new EOFException("Stream ended after " + (length - remaining) + " of " + length + " bytes");
+            }
+            final int transfer = (int) Math.min(buffered(), remaining);
+            out.write(this.buffer, this.position, transfer);
+            this.position += transfer;
+            remaining -= transfer;
+        }
+    }
+
+    /**
+     * Copies all remaining bytes to {@code out} through the buffer, until the end of the stream is reached
+     *
+     * @param out Stream to copy the bytes to
+     * @return Amount of bytes copied
+     * @throws IOException If an I/O error occurs
+     */
+    public long transferRemaining(final OutputStream out) throws IOException {
+        return transferRemaining(out, Long.MAX_VALUE);
+    }
+
+    /**
+     * Copies all remaining bytes to {@code out} through the buffer, until the end of the stream is reached or more than
+     * {@code limit} bytes have been copied
+     *
+     * @param out Stream to copy the bytes to
+     * @param limit Amount of bytes after which to stop copying
+     * @return Amount of bytes copied, which is more than {@code limit} only if the stream did not end within
+     * {@code limit} bytes
+     * @throws IOException If an I/O error occurs
+     */
+    public long transferRemaining(final OutputStream out, final long limit) throws IOException {
+        long transferred = 0;
+        while (transferred <= limit && (buffered() > 0 || fill() >= 0)) {
+            final long allowed = limit - transferred;
+            final int transfer = allowed < buffered() ? (int) allowed + 1 : buffered();
+            out.write(this.buffer, this.position, transfer);
+            this.position += transfer;
+            transferred += transfer;
+        }
+        return transferred;
+    }
+
+    /**
+     * Return the buffer to the {@link BufferPool} it was leased from, discarding any buffered bytes. The scanner must
+     * not be used afterwards.
+     */
+    public void release() {
+        if (this.lease == null) {
+            return;
+        }
+        this.lease.release();
+        this.lease = null;
+        this.buffer = null;
+    }
+
+}
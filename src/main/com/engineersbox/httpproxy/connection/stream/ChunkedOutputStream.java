@@ -0,0 +1,123 @@
+package com.engineersbox.httpproxy.connection.stream;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Stream applying the chunked transfer coding (<a href="https://tools.ietf.org/html/rfc7230#section-4.1" target="_top">RFC 7230 Section 4.1</a>)
+ * to a body of unknown length as it is written. Bytes are collected into a fixed size buffer and written as a chunk
+ * whenever it fills or the stream is flushed.
+ *
+ * <br/><br/>
+ *
+ * The terminating chunk is written by {@link ChunkedOutputStream#finish()}, which leaves the underlying stream open so
+ * that further messages can be written to it.
+ *
+ * <br/><br/>
+ *
+ * The buffer is leased from a {@link BufferPool} and returned once the stream is finished. A stream that is abandoned
+ * without being finished must instead be released via {@link ChunkedOutputStream#release()}.
+ */
+public class ChunkedOutputStream extends FilterOutputStream {
+
+    private static final byte[] CRLF = HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER.getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LAST_CHUNK = ("0" + HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER + HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER)
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final BufferPool.Lease lease;
+    private final byte[] buffer;
+    private int count = 0;
+    private boolean finished = false;
+
+    /**
+     * @param out Stream to write the chunked body to
+     * @param bufferPool Pool to lease the buffer from
+     * @param chunkSize Maximum size of the data in each chunk written
+     */
+    public ChunkedOutputStream(final OutputStream out, final BufferPool bufferPool, final int chunkSize) {
+        super(out);
+        this.lease = bufferPool.acquireHeap(chunkSize);
+        this.buffer = this.lease.array();
+    }
+
+    private void writeChunk(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return;
+        }
+        this.out.write(Integer.toHexString(length).getBytes(StandardCharsets.US_ASCII));
+        this.out.write(CRLF);
+        this.out.write(bytes, offset, length);
+        this.out.write(CRLF);
+    }
+
+    private void flushBuffer() throws IOException {
+        writeChunk(this.buffer, 0, this.count);
+        this.count = 0;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        if (this.count == this.buffer.length) {
+            flushBuffer();
+        }
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+        if (length >= this.buffer.length) {
+            flushBuffer();
+            writeChunk(bytes, offset, length);
+            return;
+        }
+        if (length > this.buffer.length - this.count) {
+            flushBuffer();
+        }
+        System.arraycopy(bytes, offset, this.buffer, this.count, length);
+        this.count += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        this.out.flush();
+    }
+
+    /**
+     * Write any buffered bytes followed by the terminating chunk, without closing the underlying stream
+     *
+     * @throws IOException If an I/O error occurs
+     */
+    public void finish() throws IOException {
+        if (this.finished) {
+            return;
+        }
+        flushBuffer();
+        this.out.write(LAST_CHUNK);
+        this.out.flush();
+        release();
+    }
+
+    /**
+     * Return the buffer to the {@link BufferPool} without writing any buffered bytes or the terminating chunk. No further
+     * bytes can be written afterwards.
+     */
+    public void release() {
+        if (this.finished) {
+            return;
+        }
+        this.finished = true;
+        this.lease.release();
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        this.out.close();
+    }
+}
@@ -4,9 +4,11 @@ import com.engineersbox.httpproxy.exceptions.http.CompressionHandlerException;
 import com.engineersbox.httpproxy.exceptions.http.HTTPMessageException;
 import com.engineersbox.httpproxy.exceptions.socket.SocketStreamReadError;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMethod;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPStartLine;
 
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
 import java.util.concurrent.CompletableFuture;
 
@@ -43,6 +45,30 @@ public interface ContentCollector<T extends HTTPStartLine> {
      */
     void withSocket(final Socket socket);
 
+    /**
+     * Supply the method of the request that a response is being read for. Responses to {@link HTTPMethod#HEAD} requests
+     * never contain a body irrespective of their headers, as per <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>.
+     *
+     * @param method Method of the corresponding request
+     */
+    void withRequestMethod(final HTTPMethod method);
+
+    /**
+     * Whether bytes have already been read from the configured {@link java.io.InputStream} beyond the end of the last
+     * message read. Such bytes belong to a subsequent message, so the stream must not be waited on or handed elsewhere
+     * whilst any are held.
+     *
+     * @return {@code true} if read ahead bytes are held, {@code false} otherwise
+     */
+    boolean hasBufferedInput();
+
+    /**
+     * Return any buffers held for reading from the configured {@link java.io.InputStream} to the pool they were leased
+     * from. Any read ahead bytes are discarded, and the collector must not be read from until a stream is supplied again
+     * via {@link ContentCollector#withStream(InputStream)}.
+     */
+    void release();
+
     /**
      * Implementation of a reader to take input from the configured {@link java.io.InputStream}. An implementation will
      * construct an instance of {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage}.
@@ -56,6 +82,51 @@ public interface ContentCollector<T extends HTTPStartLine> {
      */
     HTTPMessage<T> synchronousReadAll() throws SocketStreamReadError, HTTPMessageException, CompressionHandlerException;
 
+    /**
+     * Read only the start line and headers of the next message from the configured {@link java.io.InputStream}, leaving
+     * the stream positioned at the start of the body. The body must subsequently be consumed with either
+     * {@link ContentCollector#synchronousReadBody()}, {@link ContentCollector#relayBody(OutputStream)} or {@link ContentCollector#streamBody()}.
+     *
+     * @return Instance of {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage} with an empty body
+     * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream}
+     * @throws HTTPMessageException Any formatting or initialisation exceptions encountered whilst constructing an instance
+     * of {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage}
+     */
+    HTTPMessage<T> synchronousReadHead() throws SocketStreamReadError, HTTPMessageException;
+
+    /**
+     * Read the body of the message whose head was read by {@link ContentCollector#synchronousReadHead()}, completing
+     * the message returned by it.
+     *
+     * @return The message returned by {@link ContentCollector#synchronousReadHead()} with its body populated
+     * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream}
+     * @throws HTTPMessageException The body exceeds the configured maximum size
+     * @throws CompressionHandlerException Issues encountered whilst attempting to decompress a compressed body
+     */
+    HTTPMessage<T> synchronousReadBody() throws SocketStreamReadError, HTTPMessageException, CompressionHandlerException;
+
+    /**
+     * Copy the body of the message whose head was read by {@link ContentCollector#synchronousReadHead()} to the given
+     * {@link OutputStream} exactly as it was received, including any transfer coding and content coding. The body is
+     * moved through a fixed size buffer and never parsed or decoded.
+     *
+     * @param out Stream to relay the body to
+     * @return Amount of bytes relayed
+     * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream} or
+     * writing to {@code out}
+     */
+    long relayBody(final OutputStream out) throws SocketStreamReadError;
+
+    /**
+     * Open a stream over the body of the message whose head was read by {@link ContentCollector#synchronousReadHead()}.
+     * The body is read from the configured {@link java.io.InputStream} in place as the returned stream is read, with any
+     * transfer coding removed and content coding left as received. Closing the returned stream discards the remainder
+     * of the body, leaving the configured {@link java.io.InputStream} positioned after the end of the message.
+     *
+     * @return Stream over the body
+     */
+    InputStream streamBody();
+
 
     /**
      * An implementation of an asynchronous read from the configured {@link java.io.InputStream}. An implementation will
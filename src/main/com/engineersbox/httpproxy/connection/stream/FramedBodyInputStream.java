@@ -0,0 +1,127 @@
+package com.engineersbox.httpproxy.connection.stream;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Stream over the body of a single message, read in place from a {@link BufferedLineScanner} positioned at the
+ * start of the body. The body is delimited according to its framing as per <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>,
+ * so no bytes past the end of the message are consumed, and any chunked transfer coding is removed as it is read.
+ * Content coding is left as received.
+ *
+ * <br/><br/>
+ *
+ * Chunk extensions and trailer fields are discarded, as they are when reading a chunked body in full.
+ */
+public class FramedBodyInputStream extends InputStream {
+
+    private enum Framing {
+        EMPTY,
+        LENGTH,
+        CHUNKED,
+        REMAINING
+    }
+
+    private final BufferedLineScanner reader;
+    private final Framing framing;
+    private long remaining;
+    private boolean ended;
+
+    private FramedBodyInputStream(final BufferedLineScanner reader, final Framing framing, final long remaining) {
+        this.reader = reader;
+        this.framing = framing;
+        this.remaining = remaining;
+        this.ended = framing == Framing.EMPTY || (framing == Framing.LENGTH && remaining == 0);
+    }
+
+    /**
+     * Create a stream over a body delimited according to the given properties, see {@link StreamCollector#synchronousReadHead()}
+     *
+     * @param reader Instance of {@link BufferedLineScanner} positioned at the start of the body
+     * @param scp Properties of the message collected from its headers
+     * @return Instance of {@link FramedBodyInputStream} over the body
+     */
+    public static FramedBodyInputStream of(final BufferedLineScanner reader, final StreamContentProperties scp) {
+        if (scp.bodyless) {
+            return new FramedBodyInputStream(reader, Framing.EMPTY, 0);
+        } else if (scp.isChunked) {
+            return new FramedBodyInputStream(reader, Framing.CHUNKED, 0);
+        } else if (scp.hasContentLengthHeader()) {
+            return new FramedBodyInputStream(reader, Framing.LENGTH, scp.contentLength);
+        } else if (scp.isRequest()) {
+            return new FramedBodyInputStream(reader, Framing.EMPTY, 0);
+        }
+        return new FramedBodyInputStream(reader, Framing.REMAINING, 0);
+    }
+
+    /**
+     * Read the next chunk size line, and the trailer section if it is the terminating chunk
+     *
+     * @throws IOException If the stream ended early or a chunk size was malformed
+     */
+    private void nextChunk() throws IOException {
+        if (!this.reader.nextLine()) {
+            throw new EOFException("Stream ended before terminating chunk");
+        }
+        this.remaining = this.reader.lineChunkSize();
+        if (this.remaining > 0) {
+            return;
+        }
+        while (this.reader.nextLine() && !this.reader.isEmptyLine()) {
+            continue;
+        }
+        this.ended = true;
+    }
+
+    @Override
+    public int read() throws IOException {
+        final byte[] single = new byte[1];
+        final int read = read(single, 0, 1);
+        return read < 0 ? -1 : single[0] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+        if (length == 0) {
+            return 0;
+        }
+        if (this.framing == Framing.CHUNKED && !this.ended && this.remaining == 0) {
+            nextChunk();
+        }
+        if (this.ended) {
+            return -1;
+        }
+        if (this.framing == Framing.REMAINING) {
+            final int read = this.reader.read(buffer, offset, length);
+            this.ended = read < 0;
+            return read;
+        }
+        final int read = this.reader.read(buffer, offset, (int) Math.min(length, this.remaining));
+        if (read < 0) {
+            throw new EOFException("Stream ended with " + this.remaining + " bytes of the body remaining");
+        }
+        this.remaining -= read;
+        if (this.remaining == 0) {
+            if (this.framing == Framing.CHUNKED) {
+                this.reader.nextLine();
+            } else {
+                this.ended = true;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Read and discard the remainder of the body, leaving the underlying stream positioned after the end of the message
+     *
+     * @throws IOException If the stream ended early or other read interruptions occurred
+     */
+    @Override
+    public void close() throws IOException {
+        final byte[] discard = new byte[512];
+        while (read(discard, 0, discard.length) != -1) {
+            continue;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.engineersbox.httpproxy.connection.stream;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.domain.policies.Passthrough;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
+import com.google.inject.Inject;
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * Classifies responses that never need to be rewritten by the proxy, based on the {@code policies.passthrough} section
+ * of the {@link Config}. A response is passed through if either its media type or the target of the request it answers
+ * matches one of the configured patterns.
+ *
+ * <br/><br/>
+ *
+ * Passed through responses have their body relayed to the client as-is, without being decompressed, decoded or
+ * handed to a {@link com.engineersbox.httpproxy.resolver.ResourceResolver}.
+ */
+public class PassthroughClassifier {
+
+    private final Passthrough passthrough;
+
+    @Inject
+    public PassthroughClassifier(final Config config) {
+        this.passthrough = config.policies.passthrough;
+    }
+
+    private static boolean matchesAny(final List<Pattern> patterns, final String value) {
+        if (patterns == null) {
+            return false;
+        }
+        for (final Pattern pattern : patterns) {
+            if (pattern.matcher(value).matches()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Strip any parameters (E.g. {@code charset}) from a {@code Content-Type} header value
+     *
+     * @param contentType Value of a {@code Content-Type} header
+     * @return The media type in lower case
+     */
+    private static String mediaType(final String contentType) {
+        return StringUtils.substringBefore(contentType, HTTPSymbols.HEADER_VALUE_LIST_DELIMITER).trim().toLowerCase();
+    }
+
+    /**
+     * Determine whether a response should be relayed without rewriting
+     *
+     * @param target Target of the request the response is for
+     * @param contentType Value of the {@code Content-Type} header of the response, if present
+     * @return {@code true} if the response should be passed through, {@code false} otherwise
+     */
+    public boolean isPassthrough(final String target, final Optional<String> contentType) {
+        if (this.passthrough == null) {
+            return false;
+        }
+        if (target != null && matchesAny(this.passthrough.paths, target)) {
+            return true;
+        }
+        return contentType.isPresent() && matchesAny(this.passthrough.contentTypes, mediaType(contentType.get()));
+    }
+
+    /**
+     * See {@link PassthroughClassifier#isPassthrough(String, Optional)}
+     *
+     * @param target Target of the request the response is for
+     * @param head Start line and headers of the response
+     * @return {@code true} if the response should be passed through, {@code false} otherwise
+     */
+    public boolean isPassthrough(final String target, final HTTPMessage<HTTPResponseStartLine> head) {
+        return isPassthrough(target, head.getHeader(HTTPSymbols.CONTENT_TYPE_HEADER));
+    }
+}
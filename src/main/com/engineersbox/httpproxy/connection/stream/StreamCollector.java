@@ -1,19 +1,20 @@
 package com.engineersbox.httpproxy.connection.stream;
 
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.buffer.ByteAccumulator;
 import com.engineersbox.httpproxy.configuration.Config;
 import com.engineersbox.httpproxy.exceptions.http.*;
 import com.engineersbox.httpproxy.exceptions.socket.SocketStreamReadError;
+import com.engineersbox.httpproxy.formatting.compression.CompressionFormat;
 import com.engineersbox.httpproxy.formatting.compression.CompressionHandler;
 import com.engineersbox.httpproxy.formatting.http.BaseHTTPFormatter;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPFraming;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMethod;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPStartLine;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
 import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
-import com.google.common.primitives.Bytes;
 import com.google.inject.Inject;
-import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.lang3.StringUtils;
-import org.apache.commons.lang3.tuple.Pair;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
@@ -21,10 +22,8 @@ import java.io.*;
 import java.net.Socket;
 import java.net.SocketException;
 import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.concurrent.CompletableFuture;
-import java.util.regex.Pattern;
 
 /**
  * Socket stream reader used to construct HTTP messages received via a bound {@link java.net.Socket}'s {@link java.io.InputStream},
@@ -32,7 +31,8 @@ import java.util.regex.Pattern;
  *
  * <br/><br/>
  *
- * Note that this reader supports automatic decompression of the following formats, done after having identified the {@code Content-Type} header
+ * Note that this reader recognises the following compression formats given by the {@code Content-Encoding} header. Compressed
+ * bodies are kept as they were received, being decompressed by the {@link HTTPMessage} only if their content is read.
  *
  * <ul>
  *     <li>{@code gzip}: Lempel-Ziv coding (LZ77) with a 32 bit CRC (<a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>).</li>
@@ -51,27 +51,65 @@ public class StreamCollector<T extends HTTPStartLine> implements ContentCollecto
 
     private final Logger logger = LogManager.getLogger(ContentCollector.class);
 
+    private static final int INITIAL_HEAD_CAPACITY = 1024;
+
     private final Config config;
     private final BaseHTTPFormatter<T> httpFormatter;
+    private final BufferPool bufferPool;
 
-    private InputStream stream;
+    private BufferedLineScanner scanner;
     private Class<T> classOfT;
     private Socket socket;
+    private HTTPMethod requestMethod;
+
+    private byte[] head = new byte[INITIAL_HEAD_CAPACITY];
+    private StreamContentProperties pendingProperties;
+    private HTTPMessage<T> pendingHead;
 
     @Inject
-    public StreamCollector(final Config config, final BaseHTTPFormatter<T> httpFormatter) {
+    public StreamCollector(final Config config, final BaseHTTPFormatter<T> httpFormatter, final BufferPool bufferPool) {
         this.config = config;
         this.httpFormatter = httpFormatter;
+        this.bufferPool = bufferPool;
     }
 
     /**
      * See {@link ContentCollector#withStream(InputStream)}
      *
+     * <br/><br/>
+     *
+     * The stream is read through a {@link BufferedLineScanner} with an initial buffer of
+     * {@link com.engineersbox.httpproxy.configuration.domain.servlet.Connections#readerBufferSize} bytes leased from the
+     * {@link BufferPool}, which is kept for all messages read from the stream until {@link StreamCollector#release()}.
+     *
      * @param stream Stream bound to an open {@link java.net.Socket}
      */
     @Override
     public void withStream(final InputStream stream) {
-        this.stream = stream;
+        release();
+        this.scanner = new BufferedLineScanner(stream, this.bufferPool, this.config.servlet.connections.readerBufferSize);
+    }
+
+    /**
+     * See {@link ContentCollector#release()}
+     */
+    @Override
+    public void release() {
+        if (this.scanner != null) {
+            this.scanner.release();
+            this.scanner = null;
+        }
+    }
+
+    /**
+     * See {@link ContentCollector#hasBufferedInput()}
+     *
+     * @return {@code true} if bytes have been read from the stream that are not part of any message read so far,
+     * {@code false} otherwise
+     */
+    @Override
+    public boolean hasBufferedInput() {
+        return this.scanner != null && this.scanner.buffered() > 0;
     }
 
     /**
@@ -95,152 +133,292 @@ public class StreamCollector<T extends HTTPStartLine> implements ContentCollecto
     }
 
     /**
-     * Split a the given {@code header} at an instance of {@link HTTPSymbols#HEADER_KEY_VALUE_DELIMITER}, returning the
-     * second element of the split array.
+     * See {@link ContentCollector#withRequestMethod(HTTPMethod)}
      *
-     * <br/><br/>
+     * @param method Method of the corresponding request
+     */
+    @Override
+    public void withRequestMethod(final HTTPMethod method) {
+        this.requestMethod = method;
+    }
+
+    /**
+     * Logs a message to the internal log4j instance to indicate a given header has been found. The message in the format: <br/>
+     * {@code "Found " + header + " header with value " + value}
      *
-     * Note that the result is also trimmed, to remove excessive non-data characters. See {@link String#trim()}
+     * @param header Header key
+     * @param value Header value
+     */
+    private void logFoundHeader(final String header, final String value) {
+        logger.debug("Found " + header + " header with value " + value.trim());
+    }
+
+    /**
+     * Read a chunked body (<a href="https://tools.ietf.org/html/rfc7230#section-4.1" target="_top">RFC 7230 Section 4.1</a>),
+     * removing the chunk framing. Chunk extensions and trailer fields are discarded. The stream is left positioned
+     * directly after the end of the message.
      *
-     * @param header {@link String} value in the <a href="https://www.w3.org/Protocols/rfc2616/rfc2616.html" target="_top">RFC 2616</a> compliant format: <br/>
-     * {@code <HEADER KEY>[: <HEADER VALUE>[;<HEADER VALUE>]]}
-     * @return Key value of the {@code header} containing one or more values separated by {@link HTTPSymbols#HEADER_VALUE_LIST_DELIMITER}
+     * @return {@link ByteAccumulator} of the concatenated chunk data
+     * @throws IOException If the stream ended early, a chunk size was malformed or other read interruptions occurred
+     * @throws InvalidHTTPBodyException If the chunk data exceeds the configured maximum body size
      */
-    private String splitHeader(final String header) {
-        return header.split(HTTPSymbols.HEADER_KEY_VALUE_DELIMITER)[1].trim();
+    private ByteAccumulator readChunkedBody() throws IOException, InvalidHTTPBodyException {
+        final ByteAccumulator body = new ByteAccumulator();
+        while (true) {
+            if (!this.scanner.nextLine()) {
+                throw new EOFException("Stream ended before terminating chunk");
+            }
+            final int chunkSize = this.scanner.lineChunkSize();
+            if (chunkSize == 0) {
+                break;
+            }
+            requireMaxBodySize((long) body.size() + chunkSize);
+            this.scanner.transferBytes(chunkSize, body);
+            this.scanner.nextLine();
+        }
+        while (this.scanner.nextLine() && !this.scanner.isEmptyLine()) {
+            logger.trace("Discarding chunked trailer field");
+        }
+        return body;
     }
 
     /**
-     * Verifies whether a given line contains a given header key followed by the {@link HTTPSymbols#HEADER_KEY_VALUE_DELIMITER}
+     * Relay a chunked body (<a href="https://tools.ietf.org/html/rfc7230#section-4.1" target="_top">RFC 7230 Section 4.1</a>)
+     * as it was received, including chunk size lines, chunk extensions and trailer fields. Only the chunk size lines
+     * are inspected in order to find the end of the body.
      *
-     * @param line Potential header
-     * @param header Key value to check for
-     * @return {@code true} if {@code line} contains "{@code header + }{@link HTTPSymbols#HEADER_KEY_VALUE_DELIMITER}",
-     * {@code false} otherwise
+     * @param out Stream to relay the body to
+     * @return Amount of bytes relayed
+     * @throws IOException If the stream ended early, a chunk size was malformed or other read interruptions occurred
      */
-    private boolean hasHeader(final String line, final String header) {
-        return Pattern.compile(header).matcher(line).find();
+    private long relayChunkedBody(final OutputStream out) throws IOException {
+        long relayed = 0;
+        while (true) {
+            if (!this.scanner.nextLine()) {
+                throw new EOFException("Stream ended before terminating chunk");
+            }
+            relayed += relayLine(out);
+            final int chunkSize = this.scanner.lineChunkSize();
+            if (chunkSize == 0) {
+                break;
+            }
+            this.scanner.transferBytes(chunkSize, out);
+            relayed += chunkSize;
+            if (!this.scanner.nextLine()) {
+                throw new EOFException("Stream ended before end of chunk");
+            }
+            relayed += relayLine(out);
+        }
+        do {
+            if (!this.scanner.nextLine()) {
+                throw new EOFException("Stream ended before end of chunked trailer section");
+            }
+            relayed += relayLine(out);
+        } while (!this.scanner.isEmptyLine());
+        return relayed;
     }
 
     /**
-     * Logs a message to the internal log4j instance to indicate a given header has been found. The message in the format: <br/>
-     * {@code "Found " + header + " header with value " + value}
+     * Write the line last scanned by the {@link BufferedLineScanner} back out as the bytes it was read from
      *
-     * @param header Header key
-     * @param value Header value
+     * @param out Stream to write the line to
+     * @return Amount of bytes written
+     * @throws IOException If the write failed
      */
-    private void logFoundHeader(final String header, final String value) {
-        logger.debug("Found " + header + " header with value " + value.trim());
+    private int relayLine(final OutputStream out) throws IOException {
+        this.scanner.writeLine(out);
+        return this.scanner.lineLength();
     }
 
     /**
-     * Read from a configured {@link java.io.InputStream} line-by-line (terminated by a combination of {@code CR (\r)} and {@code LF (\n)}),
-     * constructing a string literal version of an {@link HTTPMessage}.
+     * Read the body of a message according to its framing, as per <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>:
      *
-     * <br/><br/>
+     * <ol>
+     *     <li>A response to a {@code HEAD} request or with a {@code 1xx}, {@code 204} or {@code 304} status has no body</li>
+     *     <li>A chunked {@code Transfer-Encoding} is read until the terminating chunk</li>
+     *     <li>A {@code Content-Length} is read for exactly that amount of bytes</li>
+     *     <li>A request with neither has no body</li>
+     *     <li>A response with neither is read until the end of the stream</li>
+     * </ol>
      *
-     * This will additionally provide the raw bytes for data that is not in text format or is compressed. In the instance
-     * that the body contains compressed data in a valid <a href="https://www.w3.org/Protocols/rfc2616/rfc2616.html" target="_top">RFC 2616</a>
-     * format it will be decompressed and appending to the string literal and supplied as raw bytes. A valid compression
-     * type is one of the following:
+     * Reading exactly up to the end of a self-delimited message allows the connection to be reused for further messages.
+     * Bodies of any content type may be at most {@link com.engineersbox.httpproxy.configuration.domain.servlet.Messages#maxBodySize}
+     * bytes, which is checked against the {@code Content-Length} before the body is read, and otherwise as it is read.
      *
-     * <ul>
-     *     <li>{@code gzip}: Lempel-Ziv coding (LZ77) with a 32 bit CRC (<a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>).</li>
-     *     <li>{@code compress}: Adaptive Lempel-Ziv-Welch coding (LZW) (<a href="https://tools.ietf.org/html/rfc7230" target="_top">RFC 7230</a>)</li>
-     *     <li>
-     *         {@code deflate}: zlib format (<a href="https://www.w3.org/Protocols/rfc1950/rfc1950.html" target="_top">RFC 1950</a>)
-     *           with deflate compression mechanism (<a href="https://www.w3.org/Protocols/rfc1951/rfc1951.html" target="_top">RFC 1951</a>).
-     *     </li>
-     *     <li>{@code zstd}: ZStandard compression standard (<a href="https://datatracker.ietf.org/doc/draft-kucherawy-rfc8478bis/05/" target="_top">RFC 8478</a>)</li>
-     *     <li>{@code br}: Brotli compression standard (<a href="https://tools.ietf.org/html/rfc7932" target="_top">RFC 7932</a>)</li>
-     * </ul>
+     * @param scp Properties of the message collected from its headers
+     * @return {@link ByteAccumulator} of the body, without any transfer coding
+     * @throws IOException If the stream ended early or other read interruptions occurred
+     * @throws InvalidHTTPBodyException If the body exceeds the configured maximum body size
+     */
+    private ByteAccumulator readBody(final StreamContentProperties scp) throws IOException, InvalidHTTPBodyException {
+        if (scp.bodyless) {
+            return ByteAccumulator.wrap(new byte[0]);
+        } else if (scp.isChunked) {
+            return readChunkedBody();
+        } else if (scp.hasContentLengthHeader()) {
+            requireMaxBodySize(scp.contentLength);
+            return ByteAccumulator.wrap(this.scanner.readBytes((int) scp.contentLength));
+        } else if (scp.isRequest()) {
+            return ByteAccumulator.wrap(new byte[0]);
+        }
+        final ByteAccumulator body = new ByteAccumulator();
+        requireMaxBodySize(this.scanner.transferRemaining(body, this.config.servlet.messages.maxBodySize));
+        return body;
+    }
+
+    /**
+     * @param size Size of a body in bytes
+     * @throws InvalidHTTPBodyException If {@code size} exceeds the configured maximum body size
+     */
+    private void requireMaxBodySize(final long size) throws InvalidHTTPBodyException {
+        if (size > this.config.servlet.messages.maxBodySize) {
+            throw new InvalidHTTPBodyException("Body is larger than configured maximum supported size: " + size + " > " + this.config.servlet.messages.maxBodySize);
+        }
+    }
+
+    /**
+     * Read from a configured {@link java.io.InputStream} line-by-line (terminated by a combination of {@code CR (\r)} and {@code LF (\n)})
+     * until the end of the headers, copying the raw bytes of the head of an {@link HTTPMessage} into the head buffer of
+     * this collector. The properties needed to subsequently read the body are collected from the headers as they are read.
+     *
+     * <br/><br/>
      *
-     * @param sb Instance of {@link StringBuilder} to construct the {@link HTTPMessage} string literal
-     * @param retentiveLineReader Instance of {@link CRLFRetentiveLineReader} to read {@link InputStream} line-by-line
-     *                            and keep lin terminators
-     * @return A {@code byte[]} containing body data if body not in text format or is compressed in a valid <a href="https://www.w3.org/Protocols/rfc2616/rfc2616.html" target="_top">RFC 2616</a> format
+     * Lines are matched against header names in place in the buffer of the {@link BufferedLineScanner}, so only the
+     * values of the headers describing the body are ever extracted as strings. The framing of the body is determined
+     * from all {@code Content-Length} and {@code Transfer-Encoding} headers by a {@link HTTPFraming}.
+     *
+     * @return Instance of {@link StreamContentProperties} describing the framing and encoding of the body, with
+     * {@link StreamContentProperties#headerLength} giving the amount of bytes copied into the head buffer
      * @throws IOException if the {@link InputStream} or bound {@link Socket} was closed early or other read interruptions occurred
-     * @throws CompressorException If the data could not be compressed or encounters an exception
+     * @throws InvalidHTTPHeaderException If the end of the message cannot be determined from its framing headers, see
+     * {@link HTTPFraming#malformation()}
+     * @throws HTTPHeadTooLargeException If the start line and headers exceed {@link HTTPFraming#MAX_HEAD_LENGTH} bytes
      */
-    private byte[] sensitizedStreamRead(final StringBuilder sb, final CRLFRetentiveLineReader retentiveLineReader) throws IOException, CompressorException {
+    private StreamContentProperties readHeaders() throws IOException, InvalidHTTPHeaderException, HTTPHeadTooLargeException {
         int read = 0;
-        String line = null;
-        Pair<String, List<Byte>> lineBytes;
-        List<Byte> bytes = new ArrayList<>();
         final StreamContentProperties scp = new StreamContentProperties(this.classOfT);
-        while (scp.validateNextRead(line) && scp.validateLineRead((lineBytes = retentiveLineReader.readLineBytes()).getLeft())) {
-            line = lineBytes.getLeft();
-            if (!scp.pastHeaders) {
-                if (!scp.isCompressed && hasHeader(line, HTTPSymbols.CONTENT_ENCODING_HEADER_REGEX)) {
-                    final String contentEncodingHeader = splitHeader(line);
-                    scp.isCompressed = !contentEncodingHeader.contains(HTTPSymbols.CONTENT_ENCODING_IDENTITY);
-                    if (scp.isCompressed) {
-                        scp.compressionFormat = CompressionHandler.determineCompressionFormat(contentEncodingHeader);
-                    }
-                    logFoundHeader(
-                        HTTPSymbols.CONTENT_ENCODING_HEADER_REGEX,
-                        splitHeader(line)
-                    );
-                }
-                if (!scp.hasTransferEncodingHeader && hasHeader(line, HTTPSymbols.TRANSFER_ENCODING_HEADER_REGEX)) {
-                    final String transferEncodingHeader = splitHeader(line);
-                    scp.hasTransferEncodingHeader = !transferEncodingHeader.equals(HTTPSymbols.TRANSFER_ENCODING_IDENTITY);
-                    logFoundHeader(
-                        HTTPSymbols.TRANSFER_ENCODING_HEADER_REGEX,
-                        transferEncodingHeader
-                    );
-                }
+        final HTTPFraming framing = new HTTPFraming(scp.isRequest());
+        scp.bodyless = !scp.isRequest() && this.requestMethod == HTTPMethod.HEAD;
+        while (!scp.pastHeaders && this.scanner.nextLine()) {
+            if (read == 0 && !scp.isRequest()) {
+                scp.bodyless |= StreamContentProperties.isBodylessStatus(this.scanner.lineString());
             }
-           if (!scp.pastHeaders || (!scp.isCompressed && !scp.isRaw)) {
-               sb.append(line);
-               read += line.getBytes().length;
-           }
-           if (!scp.pastHeaders && hasHeader(line, HTTPSymbols.CONTENT_TYPE_HEADER_REGEX)) {
-                final String contentTypeHeader = splitHeader(line);
-                if (line.contains(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)) {
-                    final String contentTypeCharset = contentTypeHeader.split(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)[1];
-                    scp.charset = Charset.forName(StringUtils.removeEnd(contentTypeCharset, HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER));
+            if (!scp.isCompressed && this.scanner.lineHasHeader(HTTPSymbols.CONTENT_ENCODING_HEADER)) {
+                final String contentEncodingHeader = this.scanner.lineHeaderValue(HTTPSymbols.CONTENT_ENCODING_HEADER);
+                scp.isCompressed = !contentEncodingHeader.contains(HTTPSymbols.CONTENT_ENCODING_IDENTITY);
+                if (scp.isCompressed) {
+                    scp.compressionFormat = CompressionHandler.determineCompressionFormat(contentEncodingHeader);
                 }
-                scp.isRaw = HTTPSymbols.CONTENT_TYPE_IMAGE_REGEX.matcher(contentTypeHeader).find();
                 logFoundHeader(
-                        HTTPSymbols.CONTENT_TYPE_HEADER_REGEX,
-                        splitHeader(line)
+                    HTTPSymbols.CONTENT_ENCODING_HEADER,
+                    contentEncodingHeader
+                );
+            }
+            if (this.scanner.lineHasHeader(HTTPSymbols.TRANSFER_ENCODING_HEADER)) {
+                final String transferEncodingHeader = this.scanner.lineHeaderValue(HTTPSymbols.TRANSFER_ENCODING_HEADER);
+                framing.addTransferEncoding(transferEncodingHeader);
+                logFoundHeader(
+                    HTTPSymbols.TRANSFER_ENCODING_HEADER,
+                    transferEncodingHeader
                 );
             }
-            if (!scp.pastHeaders) {
-                if (line.equals(HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER)) {
-                    scp.pastHeaders = true;
+            if (this.scanner.lineHasHeader(HTTPSymbols.CONTENT_LENGTH_HEADER)) {
+                final String contentLengthHeader = this.scanner.lineHeaderValue(HTTPSymbols.CONTENT_LENGTH_HEADER);
+                framing.addContentLength(contentLengthHeader);
+                logFoundHeader(
+                    HTTPSymbols.CONTENT_LENGTH_HEADER,
+                    contentLengthHeader
+                );
+            }
+            if (read + this.scanner.lineLength() > HTTPFraming.MAX_HEAD_LENGTH) {
+                throw new HTTPHeadTooLargeException("Head exceeds maximum length of " + HTTPFraming.MAX_HEAD_LENGTH + " bytes");
+            }
+            appendHeadLine(read);
+            read += this.scanner.lineLength();
+            if (this.scanner.lineHasHeader(HTTPSymbols.CONTENT_TYPE_HEADER)) {
+                final String contentTypeHeader = this.scanner.lineHeaderValue(HTTPSymbols.CONTENT_TYPE_HEADER);
+                if (contentTypeHeader.contains(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)) {
+                    final String contentTypeCharset = contentTypeHeader.split(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)[1];
+                    scp.charset = Charset.forName(contentTypeCharset.trim());
                 }
-                continue;
+                scp.isRaw = !HTTPSymbols.CONTENT_TYPE_TEXT_TYPE_REGEX.matcher(contentTypeHeader).find();
+                logFoundHeader(
+                        HTTPSymbols.CONTENT_TYPE_HEADER,
+                        contentTypeHeader
+                );
             }
-            if (scp.isCompressed || scp.isRaw) {
-                bytes.addAll(lineBytes.getRight());
+            if (this.scanner.isEmptyLine()) {
+                scp.pastHeaders = true;
             }
         }
-        if (scp.isCompressed) {
-            sb.append(CompressionHandler.decompress(Bytes.toArray(bytes), scp.charset, scp.compressionFormat));
-            logger.debug(String.format(
-                    "Unzipped compressed body with format: %s",
-                    scp.compressionFormat != null ? scp.compressionFormat.name() : "UNKNOWN"
-            ));
+        if (!scp.pastHeaders) {
+            throw new EOFException("Stream ended before end of headers after reading " + read + " bytes");
         }
+        final String malformation = framing.malformation();
+        if (malformation != null) {
+            throw new InvalidHTTPHeaderException("Invalid message framing: " + malformation);
+        }
+        scp.isChunked = framing.isChunked();
+        scp.contentLength = framing.contentLength();
+        scp.headerLength = read;
+        return scp;
+    }
+
+    /**
+     * Determine the content coding that a body read according to its framing, see {@link StreamCollector#readBody},
+     * still has applied when it is handed to the {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage}.
+     * Bodies are never decompressed here: a body in a valid
+     * <a href="https://www.w3.org/Protocols/rfc2616/rfc2616.html" target="_top">RFC 2616</a> compressed format is kept
+     * as it was received and only decompressed if a handler reads it, or its coding is changed when it is written out,
+     * otherwise it is forwarded with its original bytes. A non-textual body in an unknown format is treated as opaque.
+     * A valid compression type is one of the following:
+     *
+     * <ul>
+     *     <li>{@code gzip}: Lempel-Ziv coding (LZ77) with a 32 bit CRC (<a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>).</li>
+     *     <li>{@code compress}: Adaptive Lempel-Ziv-Welch coding (LZW) (<a href="https://tools.ietf.org/html/rfc7230" target="_top">RFC 7230</a>)</li>
+     *     <li>
+     *         {@code deflate}: zlib format (<a href="https://www.w3.org/Protocols/rfc1950/rfc1950.html" target="_top">RFC 1950</a>)
+     *           with deflate compression mechanism (<a href="https://www.w3.org/Protocols/rfc1951/rfc1951.html" target="_top">RFC 1951</a>).
+     *     </li>
+     *     <li>{@code zstd}: ZStandard compression standard (<a href="https://datatracker.ietf.org/doc/draft-kucherawy-rfc8478bis/05/" target="_top">RFC 8478</a>)</li>
+     *     <li>{@code br}: Brotli compression standard (<a href="https://tools.ietf.org/html/rfc7932" target="_top">RFC 7932</a>)</li>
+     * </ul>
+     *
+     * @param scp Properties of the message collected from its headers
+     * @param body {@link ByteAccumulator} of the body, without any transfer coding
+     * @return {@link CompressionFormat} of a compressed body, or {@code null} if the body is not compressed, empty or
+     * opaque
+     * @throws CompressionHandlerException If a textual body is compressed with a format that is not supported
+     */
+    private CompressionFormat bodyCoding(final StreamContentProperties scp, final ByteAccumulator body) {
         logger.debug(String.format(
                 "Read %d bytes from %s input stream",
-                read + bytes.size(),
-                this.classOfT.isAssignableFrom(HTTPRequestStartLine.class) ? "client" : "server"
+                scp.headerLength + body.size(),
+                scp.isRequest() ? "client" : "server"
         ));
-        return Bytes.toArray(bytes);
+        if (!scp.isCompressed || body.size() == 0) {
+            return null;
+        }
+        if (scp.compressionFormat == null) {
+            if (scp.isRaw) {
+                return null;
+            }
+            throw new CompressionHandlerException("Unknown compression format");
+        }
+        return scp.compressionFormat;
     }
 
     /**
-     * Removes a null byte ({@code \0}) from the start of a given {@link StringBuilder} instance.
+     * Copy the line last scanned to the end of the head buffer, growing it if the line does not fit
      *
-     * @param sb {@link StringBuilder} with a potential leading null byte
-     * @return The unaltered {@code sb} instance as a {@link String} if no null byte leads the content or a substring
-     * of the {@code sb} instance starting from index {@code 1}.
+     * @param length Amount of bytes of the head already copied
      */
-    private String handlePaddedPrefix(final StringBuilder sb) {
-        return sb.charAt(0) == HTTPSymbols.NULL_BYTE ? sb.substring(1) : sb.toString();
+    private void appendHeadLine(final int length) {
+        final int lineLength = this.scanner.lineLength();
+        if (length + lineLength > this.head.length) {
+            this.head = Arrays.copyOf(this.head, Math.max(length + lineLength, this.head.length * 2));
+        }
+        System.arraycopy(this.scanner.array(), this.scanner.lineOffset(), this.head, length, lineLength);
     }
 
     /**
@@ -251,27 +429,134 @@ public class StreamCollector<T extends HTTPStartLine> implements ContentCollecto
      * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream} including request timeouts
      * @throws HTTPMessageException Any formatting or initialisation exceptions encountered whilst constructing an instance
      *         of {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage}
-     * @throws CompressionHandlerException Issues encountered whilst attempting to decompress a compressed body
+     * @throws CompressionHandlerException A textual body is compressed with an unsupported format
      */
     @Override
     public HTTPMessage<T> synchronousReadAll() throws SocketStreamReadError, HTTPMessageException, CompressionHandlerException {
+        synchronousReadHead();
+        return synchronousReadBody();
+    }
+
+    /**
+     * See {@link ContentCollector#synchronousReadHead()}
+     *
+     * @return Instance of {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage} with an empty body
+     * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream} including request timeouts
+     * @throws HTTPMessageException Any formatting or initialisation exceptions encountered whilst constructing an instance
+     *         of {@link com.engineersbox.httpproxy.formatting.http.common.HTTPMessage}
+     */
+    @Override
+    public HTTPMessage<T> synchronousReadHead() throws SocketStreamReadError, HTTPMessageException {
         try {
             this.socket.setSoTimeout(this.config.servlet.connections.dropAfter);
             logger.debug("Set SO_TIMEOUT timeout based on config: " + this.config.servlet.connections.dropAfter);
         } catch (final SocketException e) {
             throw new SocketStreamReadError(e);
         }
-        final CRLFRetentiveLineReader retentiveLineReader = new CRLFRetentiveLineReader(stream);
-        final StringBuilder sb = new StringBuilder();
-        final byte[] bodyBytes;
+        final StreamContentProperties scp;
         try {
-            bodyBytes = sensitizedStreamRead(sb, retentiveLineReader);
+            scp = readHeaders();
         } catch (final IOException e) {
             throw new SocketStreamReadError(e);
-        } catch (final CompressorException e) {
-            throw new CompressionHandlerException("An error occurred while decompressing body", e);
         }
-        return this.httpFormatter.fromRawString(handlePaddedPrefix(sb), bodyBytes, this.classOfT);
+        final int offset = this.head[0] == HTTPSymbols.NULL_BYTE ? 1 : 0;
+        final HTTPMessage<T> head = this.httpFormatter.fromRawHead(this.head, offset, scp.headerLength - offset, this.classOfT);
+        this.pendingProperties = scp;
+        this.pendingHead = head;
+        return head;
+    }
+
+    private void requirePendingHead() {
+        if (this.pendingHead == null) {
+            throw new IllegalStateException("No message head has been read to continue from");
+        }
+    }
+
+    private void clearPendingHead() {
+        this.pendingProperties = null;
+        this.pendingHead = null;
+    }
+
+    /**
+     * See {@link ContentCollector#synchronousReadBody()}
+     *
+     * @return The message returned by {@link StreamCollector#synchronousReadHead()} with its body populated
+     * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream} including request timeouts
+     * @throws HTTPMessageException The body exceeds the configured maximum size
+     * @throws CompressionHandlerException A textual body is compressed with an unsupported format
+     */
+    @Override
+    public HTTPMessage<T> synchronousReadBody() throws SocketStreamReadError, HTTPMessageException, CompressionHandlerException {
+        requirePendingHead();
+        final StreamContentProperties scp = this.pendingProperties;
+        final HTTPMessage<T> head = this.pendingHead;
+        final ByteAccumulator body;
+        try {
+            body = readBody(scp);
+        } catch (final IOException e) {
+            throw new SocketStreamReadError(e);
+        } finally {
+            clearPendingHead();
+        }
+        return this.httpFormatter.withBody(head, body, scp.isRaw ? null : scp.charset, bodyCoding(scp, body));
+    }
+
+    /**
+     * See {@link ContentCollector#relayBody(OutputStream)}
+     *
+     * <br/><br/>
+     *
+     * The body is framed in the same way as {@link StreamCollector#readBody}, however chunk size lines and trailers are
+     * relayed as they were received rather than removed.
+     *
+     * @param out Stream to relay the body to
+     * @return Amount of bytes relayed
+     * @throws SocketStreamReadError Any exceptions encountered whilst reading from the {@link java.io.InputStream} or
+     * writing to {@code out}
+     */
+    @Override
+    public long relayBody(final OutputStream out) throws SocketStreamReadError {
+        requirePendingHead();
+        final StreamContentProperties scp = this.pendingProperties;
+        clearPendingHead();
+        final long relayed;
+        try {
+            if (scp.bodyless || (scp.isRequest() && !scp.isChunked && !scp.hasContentLengthHeader())) {
+                relayed = 0;
+            } else if (scp.isChunked) {
+                relayed = relayChunkedBody(out);
+            } else if (scp.hasContentLengthHeader()) {
+                this.scanner.transferBytes(scp.contentLength, out);
+                relayed = scp.contentLength;
+            } else {
+                relayed = this.scanner.transferRemaining(out);
+            }
+        } catch (final IOException e) {
+            throw new SocketStreamReadError(e);
+        }
+        logger.debug(String.format(
+                "Relayed %d body bytes from %s input stream",
+                relayed,
+                scp.isRequest() ? "client" : "server"
+        ));
+        return relayed;
+    }
+
+    /**
+     * See {@link ContentCollector#streamBody()}
+     *
+     * <br/><br/>
+     *
+     * The body is framed in the same way as {@link StreamCollector#readBody}, see {@link FramedBodyInputStream}.
+     *
+     * @return Stream over the body, without any transfer coding
+     */
+    @Override
+    public InputStream streamBody() {
+        requirePendingHead();
+        final FramedBodyInputStream body = FramedBodyInputStream.of(this.scanner, this.pendingProperties);
+        clearPendingHead();
+        return body;
     }
 
     /**
@@ -15,8 +15,10 @@ import java.nio.charset.StandardCharsets;
 public class StreamContentProperties {
 
     public boolean pastHeaders;
-    public final boolean hasContentLengthHeader;
-    public boolean hasTransferEncodingHeader;
+    public boolean bodyless;
+    public int headerLength;
+    public long contentLength;
+    public boolean isChunked;
     public boolean isCompressed;
     public boolean isRaw;
     public Charset charset;
@@ -25,8 +27,10 @@ public class StreamContentProperties {
 
     public StreamContentProperties(final Class<? extends HTTPStartLine> classOfT) {
         this.pastHeaders = false;
-        this.hasContentLengthHeader = false;
-        this.hasTransferEncodingHeader = false;
+        this.bodyless = false;
+        this.headerLength = 0;
+        this.contentLength = -1;
+        this.isChunked = false;
         this.compressionFormat = null;
         this.isRaw = false;
         this.isCompressed = false;
@@ -35,52 +39,36 @@ public class StreamContentProperties {
     }
 
     /**
-     * Check if a read should terminate based on whether is is a request and all headers have been read (indicated by
-     * a double <a href="https://www.w3.org/Protocols/rfc2616/rfc2616.html" target="_top">RFC 2616</a> compliant line
-     * terminator ({@code \r\n\r\n}).
-     *
-     * @return {@code true} is a request and past headers, {@code false} otherwise
+     * @return {@code true} if a {@code Content-Length} header has been read, {@code false} otherwise
      */
-    private boolean validateRequestTermination() {
-        return !this.classOfT.isAssignableFrom(HTTPRequestStartLine.class) || !this.pastHeaders;
+    public boolean hasContentLengthHeader() {
+        return this.contentLength >= 0;
     }
 
     /**
-     * Check if the previously read line contained a {@link HTTPSymbols#HEADER_KEY_VALUE_DELIMITER} and is a request.
+     * Check whether a response start line has a status code that forbids a body ({@code 1xx}, {@code 204} and {@code 304})
+     * as per <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>
      *
-     * @param line Previously read line
-     * @return {@code true} if is a request and has a {@link HTTPSymbols#HEADER_KEY_VALUE_DELIMITER}, {@code false} otherwise
+     * @param startLine Raw response start line
+     * @return {@code true} if the status code forbids a body, {@code false} otherwise
      */
-    public boolean validateLineRead(final String line) {
-        if (this.classOfT.isAssignableFrom(HTTPRequestStartLine.class)) {
-            return !line.equals(HTTPSymbols.HEADER_KEY_VALUE_DELIMITER);
+    public static boolean isBodylessStatus(final String startLine) {
+        final String[] segments = startLine.trim().split(HTTPSymbols.START_LINE_DELIMITER);
+        if (segments.length < 2) {
+            return false;
+        }
+        try {
+            final int statusCode = Integer.parseInt(segments[1]);
+            return statusCode < 200 || statusCode == 204 || statusCode == 304;
+        } catch (final NumberFormatException e) {
+            return false;
         }
-        return line != null;
-    }
-
-    /**
-     * Check if the body is chunked ({@code Content-Encoding: chunked}), and if the current line contains the chunked
-     * body terminator ({@link HTTPSymbols#TRANSFER_ENCODING_TERMINATION})
-     *
-     * @param line Currently read line
-     * @return {@code false} if not chunked, null or not past chunked terminator, {@code true} otherwise
-     */
-    private boolean validateChunkedEnd(final String line) {
-        return !(this.pastHeaders
-                && line != null
-                && this.hasTransferEncodingHeader
-                && HTTPSymbols.TRANSFER_ENCODING_SIZE_REGEX.matcher(line).matches()
-                && line.equals(HTTPSymbols.TRANSFER_ENCODING_TERMINATION));
     }
 
     /**
-     * Check whether the currently read line is valid
-     *
-     * @param line Currently read line
-     * @return {@code true} if valid, {@code false} otherwise
+     * @return {@code true} if the message being read is a request, {@code false} otherwise
      */
-    public boolean validateNextRead(final String line) {
-        return validateChunkedEnd(line)
-            && validateRequestTermination();
+    public boolean isRequest() {
+        return this.classOfT.isAssignableFrom(HTTPRequestStartLine.class);
     }
 }
@@ -93,6 +93,17 @@ public class PoolManager implements ThreadManager {
         }
     }
 
+    /**
+     * Amount of handler tasks queued in the handler executor service ({@link PoolManager#handlerExecutorService}),
+     * relative to its fixed amount of threads
+     *
+     * @return Queue depth of the handler pool over its size
+     */
+    @Override
+    public double getHandlerBacklog() {
+        return (double) this.handlerExecutorService.getQueue().size() / this.handlerExecutorService.getMaximumPoolSize();
+    }
+
     /**
      * Schedule a shutdown operation for both the acceptor and handler thread pools
      */
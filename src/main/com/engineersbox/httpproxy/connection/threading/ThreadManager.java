@@ -21,6 +21,14 @@ public interface ThreadManager {
      */
     void submitHandler(final BaseTrafficHandler task);
 
+    /**
+     * Measure how far behind the handler pool is, as the amount of handler tasks waiting for a thread relative to the
+     * amount of threads available to run them
+     *
+     * @return {@code 0} if every submitted handler task is running, greater than {@code 0} otherwise
+     */
+    double getHandlerBacklog();
+
     /**
      * Schedule a shutdown operation for both the acceptor and handler thread pools
      */
@@ -0,0 +1,7 @@
+package com.engineersbox.httpproxy.exceptions.http;
+
+public class HTTPHeadTooLargeException extends InvalidHTTPHeaderException {
+    public HTTPHeadTooLargeException(final String message) {
+        super(message);
+    }
+}
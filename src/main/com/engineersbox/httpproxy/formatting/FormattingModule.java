@@ -1,26 +1,40 @@
 package com.engineersbox.httpproxy.formatting;
 
+import com.engineersbox.httpproxy.Proxy;
+import com.engineersbox.httpproxy.configuration.domain.servlet.HTMLRewriterMode;
+import com.engineersbox.httpproxy.formatting.compression.CompressionLevelController;
 import com.engineersbox.httpproxy.formatting.content.BaseContentFormatter;
-import com.engineersbox.httpproxy.formatting.content.ContentFormatter;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledPolicies;
 import com.engineersbox.httpproxy.formatting.http.BaseHTTPFormatter;
-import com.engineersbox.httpproxy.formatting.http.HTTPFormatter;
+import com.engineersbox.httpproxy.formatting.http.ByteHTTPFormatter;
 import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
 import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
+import com.engineersbox.httpproxy.formatting.http.response.PreEncodedResponses;
 import com.google.inject.AbstractModule;
 import com.google.inject.TypeLiteral;
 
 /**
- * Module containing bindings for {@link BaseHTTPFormatter} and {@link BaseContentFormatter}
+ * Module containing bindings for {@link BaseHTTPFormatter}, {@link BaseContentFormatter} as chosen by the configured
+ * {@link HTMLRewriterMode}, and the shared {@link PreEncodedResponses}, {@link CompressionLevelController} and
+ * {@link CompiledPolicies}
  */
 public class FormattingModule extends AbstractModule {
 
     @Override
     protected void configure() {
         bind(new TypeLiteral<BaseHTTPFormatter<HTTPRequestStartLine>>(){})
-            .to(new TypeLiteral<HTTPFormatter<HTTPRequestStartLine>>(){});
+            .to(new TypeLiteral<ByteHTTPFormatter<HTTPRequestStartLine>>(){});
         bind(new TypeLiteral<BaseHTTPFormatter<HTTPResponseStartLine>>(){})
-            .to(new TypeLiteral<HTTPFormatter<HTTPResponseStartLine>>(){});
+            .to(new TypeLiteral<ByteHTTPFormatter<HTTPResponseStartLine>>(){});
         bind(BaseContentFormatter.class)
-            .to(ContentFormatter.class);
+            .to(Proxy.config.servlet.messages.htmlRewriter != null
+                    ? Proxy.config.servlet.messages.htmlRewriter.formatterClass
+                    : HTMLRewriterMode.DOM.formatterClass);
+        bind(PreEncodedResponses.class)
+            .toInstance(Proxy.preEncodedResponses);
+        bind(CompressionLevelController.class)
+            .toInstance(Proxy.compressionLevels);
+        bind(CompiledPolicies.class)
+            .toInstance(Proxy.compiledPolicies);
     }
 }
@@ -0,0 +1,84 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import com.aayushatharva.brotli4j.Brotli4jLoader;
+import com.aayushatharva.brotli4j.encoder.BrotliOutputStream;
+import com.aayushatharva.brotli4j.encoder.Encoder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * {@link ContentEncoder} for the <a href="https://tools.ietf.org/html/rfc7932" target="_top">RFC 7932</a> Brotli
+ * format, backed by the native encoder of Brotli4j. Decoding remains with the pure Java decoder used by
+ * {@link CompressionHandler#decoding}, so only encoding depends on the native library being available for the
+ * platform.
+ *
+ * <br/><br/>
+ *
+ * Bodies are compressed as they are proxied, so unless a {@link CompressionLevel} is given a mid-range quality is used
+ * rather than the maximum of 11, which is intended for content compressed once ahead of time. Flushing the stream
+ * completes the data written so far, so that the client can decode it without waiting for the rest of the body.
+ */
+public class BrotliContentEncoder implements ContentEncoder {
+
+    private static final Logger logger = LogManager.getLogger(BrotliContentEncoder.class);
+
+    private static final int QUALITY = 5;
+
+    private final Encoder.Parameters parameters;
+
+    public BrotliContentEncoder() {
+        this.parameters = new Encoder.Parameters().setQuality(QUALITY);
+    }
+
+    /**
+     * Load the native library of the encoder if it has not been already
+     *
+     * @return {@code true} if the native library is available for the platform, {@code false} otherwise
+     */
+    public static boolean isAvailable() {
+        try {
+            if (Brotli4jLoader.isAvailable()) {
+                return true;
+            }
+            logger.warn("Brotli encoder is unavailable, br content coding will not be applied: " + Brotli4jLoader.getUnavailabilityCause());
+        } catch (final LinkageError e) {
+            logger.warn("Brotli encoder is unavailable, br content coding will not be applied: " + e.getMessage());
+        }
+        return false;
+    }
+
+    @Override
+    public OutputStream encoding(final OutputStream out, final CompressionLevel level) throws IOException {
+        if (level == null) {
+            return new FlushingBrotliOutputStream(out, this.parameters);
+        }
+        final Encoder.Parameters parameters = new Encoder.Parameters().setQuality(level.level);
+        if (level.window > 0) {
+            parameters.setWindow(level.window);
+        }
+        return new FlushingBrotliOutputStream(out, parameters);
+    }
+
+    /**
+     * {@link BrotliOutputStream} that flushes the stream it writes to once the encoder has been flushed, as the encoder
+     * only writes the flushed data to it
+     */
+    private static class FlushingBrotliOutputStream extends BrotliOutputStream {
+
+        private final OutputStream out;
+
+        FlushingBrotliOutputStream(final OutputStream out, final Encoder.Parameters parameters) throws IOException {
+            super(out, parameters);
+            this.out = out;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            super.flush();
+            this.out.flush();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Pools of the codec contexts used by {@link CompressionHandler}, shared by all connections. Each {@link Inflater} and
+ * {@link Deflater} holds a native zlib stream with its own window, and each zstd context its own native state, none of
+ * which are freed until the context is ended or finalized. Taking them from a {@link ContextPool} keeps the amount
+ * allocated proportional to the amount of bodies coded at once, rather than to the amount coded overall.
+ *
+ * <br/><br/>
+ *
+ * The {@code gzip} contexts code raw deflate data, with the <a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>
+ * framing handled by {@link GzipInflaterInputStream} and {@link GzipDeflaterOutputStream}, while the {@code deflate}
+ * contexts code the <a href="https://www.w3.org/Protocols/rfc1950/rfc1950.html" target="_top">RFC 1950</a> zlib
+ * framing themselves. Compressors are returned to their default level when released, so that the level one body was
+ * compressed with does not carry over to the next.
+ */
+public final class CodecContexts {
+
+    private static final int MAX_IDLE = Runtime.getRuntime().availableProcessors() * 2;
+    private static final int ZSTD_DEFAULT_LEVEL = 3;
+
+    public static final ContextPool<Inflater> GZIP_INFLATERS = new ContextPool<>(
+            "gzip inflater",
+            MAX_IDLE,
+            () -> new Inflater(true),
+            Inflater::reset,
+            Inflater::end
+    );
+    public static final ContextPool<Deflater> GZIP_DEFLATERS = new ContextPool<>(
+            "gzip deflater",
+            MAX_IDLE,
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, true),
+            CodecContexts::resetDeflater,
+            Deflater::end
+    );
+    public static final ContextPool<Inflater> ZLIB_INFLATERS = new ContextPool<>(
+            "zlib inflater",
+            MAX_IDLE,
+            () -> new Inflater(false),
+            Inflater::reset,
+            Inflater::end
+    );
+    public static final ContextPool<Deflater> ZLIB_DEFLATERS = new ContextPool<>(
+            "zlib deflater",
+            MAX_IDLE,
+            () -> new Deflater(Deflater.DEFAULT_COMPRESSION, false),
+            CodecContexts::resetDeflater,
+            Deflater::end
+    );
+    public static final ContextPool<ZstdCompressCtx> ZSTD_COMPRESSORS = new ContextPool<>(
+            "zstd compressor",
+            MAX_IDLE,
+            () -> new ZstdCompressCtx().setLevel(ZSTD_DEFAULT_LEVEL),
+            (final ZstdCompressCtx context) -> context.setLevel(ZSTD_DEFAULT_LEVEL),
+            ZstdCompressCtx::close
+    );
+    public static final ContextPool<ZstdDecompressCtx> ZSTD_DECOMPRESSORS = new ContextPool<>(
+            "zstd decompressor",
+            MAX_IDLE,
+            ZstdDecompressCtx::new,
+            (final ZstdDecompressCtx context) -> {},
+            ZstdDecompressCtx::close
+    );
+
+    private CodecContexts() {}
+
+    /**
+     * Reset a {@link Deflater} along with any level set on it by a {@link CompressionLevel}, which
+     * {@link Deflater#reset()} leaves in place
+     *
+     * @param deflater Deflater to reset
+     */
+    private static void resetDeflater(final Deflater deflater) {
+        deflater.reset();
+        deflater.setLevel(Deflater.DEFAULT_COMPRESSION);
+    }
+
+    /**
+     * @return Hit and miss counts of every pool, one per line
+     */
+    public static String describe() {
+        return String.join(
+                System.lineSeparator(),
+                GZIP_INFLATERS.toString(),
+                GZIP_DEFLATERS.toString(),
+                ZLIB_INFLATERS.toString(),
+                ZLIB_DEFLATERS.toString(),
+                ZSTD_COMPRESSORS.toString(),
+                ZSTD_DECOMPRESSORS.toString()
+        );
+    }
+}
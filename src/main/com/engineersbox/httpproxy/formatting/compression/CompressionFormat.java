@@ -7,15 +7,21 @@ import org.apache.commons.compress.compressors.CompressorStreamFactory;
  * <a href="https://www.iana.org/assignments/http-parameters/http-parameters.xhtml#content-coding">IANA HTTP Content Coding Registry</a>
  */
 public enum CompressionFormat {
-    GZIP(CompressorStreamFactory.GZIP),
-    DEFLATE(CompressorStreamFactory.DEFLATE),
-    LZW(CompressorStreamFactory.Z), // AKA UNIX compress
-    ZSTD(CompressorStreamFactory.ZSTANDARD),
-    BR(CompressorStreamFactory.BROTLI);
+    GZIP(CompressorStreamFactory.GZIP, "gzip"),
+    DEFLATE(CompressorStreamFactory.DEFLATE, "deflate"),
+    LZW(CompressorStreamFactory.Z, "compress"), // AKA UNIX compress
+    ZSTD(CompressorStreamFactory.ZSTANDARD, "zstd"),
+    BR(CompressorStreamFactory.BROTLI, "br");
 
     final String compressionFactoryName;
+    /**
+     * Name of the content coding as registered with IANA, used in {@code Content-Encoding} and {@code Accept-Encoding}
+     * headers
+     */
+    public final String token;
 
-    CompressionFormat(final String compressionFactoryName) {
+    CompressionFormat(final String compressionFactoryName, final String token) {
         this.compressionFactoryName = compressionFactoryName;
+        this.token = token;
     }
 }
@@ -1,21 +1,27 @@
 package com.engineersbox.httpproxy.formatting.compression;
 
+import com.engineersbox.httpproxy.buffer.ByteAccumulator;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import com.github.luben.zstd.RecyclingBufferPool;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+import com.github.luben.zstd.ZstdInputStreamNoFinalizer;
+import com.github.luben.zstd.ZstdOutputStreamNoFinalizer;
 import com.google.common.collect.ImmutableSet;
 import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.compress.compressors.CompressorInputStream;
-import org.apache.commons.compress.compressors.CompressorOutputStream;
 import org.apache.commons.compress.compressors.CompressorStreamFactory;
 import org.apache.commons.lang3.tuple.ImmutablePair;
 import org.apache.commons.lang3.tuple.Pair;
 
-import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
-import java.util.Optional;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 
 /**
@@ -32,6 +38,11 @@ import java.util.regex.Pattern;
  *     <li>{@code zstd}: ZStandard compression standard (<a href="https://datatracker.ietf.org/doc/draft-kucherawy-rfc8478bis/05/" target="_top">RFC 8478</a>)</li>
  *     <li>{@code br}: Brotli compression standard (<a href="https://tools.ietf.org/html/rfc7932" target="_top">RFC 7932</a>)</li>
  * </ul>
+ *
+ * The {@code decompress} and {@code compress} methods hold the whole body in memory. A body rewritten as text while it
+ * is streamed should instead be run through a {@link com.engineersbox.httpproxy.formatting.pipeline.BodyPipeline}
+ * using {@link CompressionHandler#decoding} and {@link CompressionHandler#encoding}, with its text transformed by a
+ * {@link com.engineersbox.httpproxy.formatting.pipeline.TextStage}.
  */
 public class CompressionHandler {
 
@@ -42,6 +53,17 @@ public class CompressionHandler {
             ImmutablePair.of(HTTPSymbols.CONTENT_ENCODING_BROTLI_REGEX, CompressionFormat.BR),
             ImmutablePair.of(HTTPSymbols.CONTENT_ENCODING_ZSTD_REGEX, CompressionFormat.ZSTD)
     );
+    private final static ContentEncoder ZSTD_STREAM_ENCODER = CompressionHandler::zstdEncoding;
+    private final static Map<CompressionFormat, ContentEncoder> ENCODERS = new ConcurrentHashMap<>();
+
+    static {
+        registerEncoder(CompressionFormat.GZIP, GzipDeflaterOutputStream::new);
+        registerEncoder(CompressionFormat.DEFLATE, (final OutputStream out, final CompressionLevel level) -> new PooledDeflaterOutputStream(out, CodecContexts.ZLIB_DEFLATERS, level));
+        registerEncoder(CompressionFormat.ZSTD, ZSTD_STREAM_ENCODER);
+        if (BrotliContentEncoder.isAvailable()) {
+            registerEncoder(CompressionFormat.BR, new BrotliContentEncoder());
+        }
+    }
 
     /**
      * Match {@code Content-Encoding} header value against <a href="https://www.iana.org/assignments/http-parameters/http-parameters.xhtml#content-coding"IANA >HTTP Content Coding Registry</a>
@@ -60,54 +82,240 @@ public class CompressionHandler {
     }
 
     /**
-     * Decompress {@code byte[]} to {@link String} content using a given {@link Charset}. The {@code format} parameter
-     * will be used to determine the compression algorithm to use.
+     * Wrap a stream of compressed data with a decompressor for the given format. Data is decompressed incrementally as
+     * the returned stream is read, so only as much of {@code in} is consumed as is needed to fill each read.
+     *
+     * <br/><br/>
+     *
+     * {@code gzip} and {@code deflate} are inflated with an {@link java.util.zip.Inflater} from {@link CodecContexts},
+     * and {@code zstd} with buffers from a shared pool, which are given back when the returned stream is closed.
+     * The returned stream must therefore always be closed, including when it is abandoned part way through.
+     *
+     * @param in Stream of compressed data
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @return Stream of decompressed data
+     * @throws CompressorException If the decompressor could not be created, or the stream header was invalid
+     */
+    public static InputStream decoding(final InputStream in, final CompressionFormat format) throws CompressorException {
+        try {
+            switch (format) {
+                case GZIP:
+                    return new GzipInflaterInputStream(in);
+                case DEFLATE:
+                    return new PooledInflaterInputStream(in, CodecContexts.ZLIB_INFLATERS);
+                case ZSTD:
+                    return new ZstdInputStreamNoFinalizer(in, RecyclingBufferPool.INSTANCE);
+                default:
+                    return CompressorStreamFactory.getSingleton().createCompressorInputStream(format.compressionFactoryName, in);
+            }
+        } catch (final IOException e) {
+            throw new CompressorException("Could not create " + format.name() + " decompressor", e);
+        }
+    }
+
+    private static OutputStream zstdEncoding(final OutputStream out, final CompressionLevel level) throws IOException {
+        final ZstdOutputStreamNoFinalizer compressor = new ZstdOutputStreamNoFinalizer(out, RecyclingBufferPool.INSTANCE);
+        if (level != null) {
+            try {
+                compressor.setLevel(level.level);
+            } catch (final IOException e) {
+                compressor.close();
+                throw e;
+            }
+        }
+        return compressor;
+    }
+
+    /**
+     * Register the compressor used to apply a format, replacing any compressor registered for it before. The
+     * {@code gzip}, {@code deflate} and {@code zstd} formats are registered by default, as is {@code br} if the native
+     * {@link BrotliContentEncoder} is available for the platform.
+     *
+     * @param format Format the compressor applies
+     * @param encoder Compressor to use for {@code format}
+     */
+    public static void registerEncoder(final CompressionFormat format, final ContentEncoder encoder) {
+        ENCODERS.put(format, encoder);
+    }
+
+    /**
+     * @param format Format to check
+     * @return {@code true} if a compressor is registered for {@code format}, {@code false} otherwise
+     */
+    public static boolean canEncode(final CompressionFormat format) {
+        return format != null && ENCODERS.containsKey(format);
+    }
+
+    /**
+     * Wrap a stream with the compressor registered for the given format. Data is compressed incrementally as it is
+     * written to the returned stream. Closing the returned stream writes any format trailer and closes {@code out}.
+     *
+     * <br/><br/>
+     *
+     * As with {@link CompressionHandler#decoding}, the codec context of {@code gzip}, {@code deflate} and {@code zstd}
+     * is only given back when the returned stream is closed.
+     *
+     * @param out Stream to write compressed data to
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @return Stream to write uncompressed data to
+     * @throws CompressorException If no compressor is registered for the format, or it could not be created
+     * @see CompressionHandler#registerEncoder(CompressionFormat, ContentEncoder)
+     */
+    public static OutputStream encoding(final OutputStream out, final CompressionFormat format) throws CompressorException {
+        return encoding(out, format, null);
+    }
+
+    /**
+     * Wrap a stream with the compressor registered for the given format, compressing at a given level
      *
-     * @param bytes Compressed <a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>
-     *              compliant data
+     * @param out Stream to write compressed data to
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @param level Level to compress with, such as one chosen by a {@link CompressionLevelController}, or {@code null}
+     *              to use the default level of the compressor
+     * @return Stream to write uncompressed data to
+     * @throws CompressorException If no compressor is registered for the format, or it could not be created
+     * @see CompressionHandler#encoding(OutputStream, CompressionFormat)
+     */
+    public static OutputStream encoding(final OutputStream out,
+                                        final CompressionFormat format,
+                                        final CompressionLevel level) throws CompressorException {
+        final ContentEncoder encoder = ENCODERS.get(format);
+        if (encoder == null) {
+            throw new CompressorException("No compressor registered for " + format.name());
+        }
+        try {
+            return encoder.encoding(out, level);
+        } catch (final IOException e) {
+            throw new CompressorException("Could not create " + format.name() + " compressor", e);
+        }
+    }
+
+    /**
+     * Decompress a stream of compressed data to {@link String} content using a given {@link Charset}. The {@code format}
+     * parameter will be used to determine the compression algorithm to use. The decompressed bytes are gathered in a
+     * {@link ByteAccumulator} and decoded once, so that multi-byte characters are never split.
+     *
+     * @param compressed Stream of compressed <a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>
+     *                   compliant data, see {@link ByteAccumulator#inputStream()}
      * @param charset Encoding used uncompressed content
      * @param format Which compression algorithm to use from {@link CompressionFormat}
      * @return Uncompressed content using specified {@link Charset}
-     * @throws IOException If any exception occurs during reading of compressed data from {@link ByteArrayInputStream}
+     * @throws IOException If any exception occurs during reading of compressed data from {@code compressed}
+     * @throws CompressorException If the data could not be compressed or encounters an exception
+     */
+    public static String decompress(final InputStream compressed, final Charset charset, final CompressionFormat format) throws IOException, CompressorException {
+        return decompress(compressed, format).toString(charset);
+    }
+
+    /**
+     * Decompress a stream of compressed data to the bytes of its content. The {@code format} parameter will be used to
+     * determine the compression algorithm to use.
+     *
+     * @param compressed Stream of compressed <a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>
+     *                   compliant data, see {@link ByteAccumulator#inputStream()}
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @return {@link ByteAccumulator} holding the uncompressed content
+     * @throws IOException If any exception occurs during reading of compressed data from {@code compressed}
      * @throws CompressorException If the data could not be compressed or encounters an exception
      */
-    public static String decompress(final byte[] bytes, final Charset charset, final CompressionFormat format) throws IOException, CompressorException {
-        final CompressorInputStream compressorInputStream = new CompressorStreamFactory()
-                .createCompressorInputStream(
-                    format.compressionFactoryName,
-                    new BufferedInputStream(new ByteArrayInputStream(bytes))
-                );
-        final StringBuilder sb = new StringBuilder();
-        final byte[] buffer = new byte[512];
-        int n;
-        while((n = compressorInputStream.read(buffer)) != -1) {
-            sb.append(new String(buffer, 0, n, charset));
+    public static ByteAccumulator decompress(final InputStream compressed, final CompressionFormat format) throws IOException, CompressorException {
+        final ByteAccumulator decompressed = new ByteAccumulator();
+        try (final InputStream decompressor = decoding(compressed, format)) {
+            decompressed.transferFrom(decompressor);
         }
-        compressorInputStream.close();
-        return sb.toString();
+        return decompressed;
     }
 
     /**
-     * Compress {@link String} content into {@code byte[]} using a given {@link Charset}. The {@code format} parameter
-     * will be used to determine the compression algorithm to use.
+     * Decompress the bytes of a whole body. A {@code zstd} frame declaring its content size is decompressed in a single
+     * call with a pooled {@link ZstdDecompressCtx}, while any other data is decompressed as with
+     * {@link CompressionHandler#decompress(InputStream, CompressionFormat)}.
+     *
+     * @param compressed Compressed content
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @return {@code byte[]} of the uncompressed content
+     * @throws IOException If any exception occurs during reading of the compressed data
+     * @throws CompressorException If the data could not be decompressed or encounters an exception
+     */
+    public static byte[] decompress(final byte[] compressed, final CompressionFormat format) throws IOException, CompressorException {
+        if (format == CompressionFormat.ZSTD) {
+            final long size = Zstd.decompressedSize(compressed);
+            if (size > 0 && size <= Integer.MAX_VALUE) {
+                final ZstdDecompressCtx context = CodecContexts.ZSTD_DECOMPRESSORS.acquire();
+                try {
+                    return context.decompress(compressed, (int) size);
+                } catch (final ZstdException e) {
+                    throw new CompressorException("Could not decompress zstd frame", e);
+                } finally {
+                    CodecContexts.ZSTD_DECOMPRESSORS.release(context);
+                }
+            }
+        }
+        return decompress(ByteAccumulator.wrap(compressed).inputStream(), format).toByteArray();
+    }
+
+    /**
+     * Compress {@link String} content using a given {@link Charset}. The {@code format} parameter will be used to
+     * determine the compression algorithm to use.
      *
      * @param str Content encoded with supplied {@link Charset}
      * @param charset Encoding used for content
      * @param format Which compression algorithm to use from {@link CompressionFormat}
-     * @return Compressed content using specified {@link Charset}
-     * @throws IOException If any exception occurs during reading of compressed data from {@link ByteArrayOutputStream}
+     * @return {@link ByteAccumulator} holding the compressed content using specified {@link Charset}
+     * @throws IOException If any exception occurs during writing of compressed data to the {@link ByteAccumulator}
      * @throws CompressorException If the data could not be compressed or encounters an exception
      */
-    public static byte[] compress(final String str, final Charset charset, final CompressionFormat format) throws IOException, CompressorException {
-        final ByteArrayOutputStream obj = new ByteArrayOutputStream();
-        final CompressorOutputStream compressorOutputStream = new CompressorStreamFactory()
-                .createCompressorOutputStream(
-                    format.compressionFactoryName,
-                    obj
-                );
-        compressorOutputStream.write(str.getBytes(charset));
-        compressorOutputStream.close();
-        return obj.toByteArray();
+    public static ByteAccumulator compress(final String str, final Charset charset, final CompressionFormat format) throws IOException, CompressorException {
+        return compress(str.getBytes(charset), format);
+    }
+
+    /**
+     * Compress already encoded content. The {@code format} parameter will be used to determine the compression
+     * algorithm to use. Unless another compressor has been registered for it, {@code zstd} content is compressed in
+     * a single call with a pooled {@link ZstdCompressCtx}.
+     *
+     * @param content Encoded content
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @return {@link ByteAccumulator} holding the compressed content
+     * @throws IOException If any exception occurs during writing of compressed data to the {@link ByteAccumulator}
+     * @throws CompressorException If the data could not be compressed or encounters an exception
+     */
+    public static ByteAccumulator compress(final byte[] content, final CompressionFormat format) throws IOException, CompressorException {
+        return compress(content, format, null);
+    }
+
+    /**
+     * Compress already encoded content at a given level, as with {@link CompressionHandler#compress(byte[], CompressionFormat)}
+     *
+     * @param content Encoded content
+     * @param format Which compression algorithm to use from {@link CompressionFormat}
+     * @param level Level to compress with, such as one chosen by a {@link CompressionLevelController}, or {@code null}
+     *              to use the default level of the compressor
+     * @return {@link ByteAccumulator} holding the compressed content
+     * @throws IOException If any exception occurs during writing of compressed data to the {@link ByteAccumulator}
+     * @throws CompressorException If the data could not be compressed or encounters an exception
+     */
+    public static ByteAccumulator compress(final byte[] content,
+                                           final CompressionFormat format,
+                                           final CompressionLevel level) throws IOException, CompressorException {
+        if (format == CompressionFormat.ZSTD && ENCODERS.get(format) == ZSTD_STREAM_ENCODER) {
+            final ZstdCompressCtx context = CodecContexts.ZSTD_COMPRESSORS.acquire();
+            try {
+                if (level != null) {
+                    context.setLevel(level.level);
+                }
+                return ByteAccumulator.wrap(context.compress(content));
+            } catch (final ZstdException e) {
+                throw new CompressorException("Could not compress zstd frame", e);
+            } finally {
+                CodecContexts.ZSTD_COMPRESSORS.release(context);
+            }
+        }
+        final ByteAccumulator compressed = new ByteAccumulator();
+        try (final OutputStream compressor = encoding(compressed, format, level)) {
+            compressor.write(content);
+        }
+        return compressed;
     }
 
 }
@@ -0,0 +1,26 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+/**
+ * Parameters a {@link ContentEncoder} compresses a single body with, as chosen by a {@link CompressionLevelController}
+ */
+public class CompressionLevel {
+
+    /**
+     * Compression level in the scale of the format, such as {@code 1} to {@code 9} for {@code gzip}
+     */
+    public final int level;
+    /**
+     * Base 2 logarithm of the window size, or {@code 0} to use the default window of the format and level
+     */
+    public final int window;
+
+    public CompressionLevel(final int level, final int window) {
+        this.level = level;
+        this.window = window;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("[LEVEL: %d] [WINDOW: %d]", this.level, this.window);
+    }
+}
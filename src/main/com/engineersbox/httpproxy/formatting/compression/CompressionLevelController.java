@@ -0,0 +1,168 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.domain.servlet.AdaptiveCompression;
+import com.engineersbox.httpproxy.configuration.domain.servlet.Compression;
+import com.engineersbox.httpproxy.configuration.domain.servlet.ContentTypeLevels;
+import com.engineersbox.httpproxy.connection.threading.ThreadManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Controller of the level bodies are compressed with, trading compression ratio for CPU time according to how loaded
+ * the proxy is. A single instance is shared by all connections.
+ *
+ * <br/><br/>
+ *
+ * The load is the greater of the CPU utilisation of the process and the backlog of the handler pool of the
+ * {@link ThreadManager}, sampled at most once every {@link AdaptiveCompression#sampleInterval} milliseconds. It is
+ * mapped to an effort between {@code 0} and {@code 1}, which is {@code 1} at or below
+ * {@link AdaptiveCompression#idleLoad} and falls linearly to {@code 0} at {@link AdaptiveCompression#saturatedLoad}.
+ * The effort is then scaled to lie between the floor and ceiling of the first {@link ContentTypeLevels} matching the
+ * {@code Content-Type} of the body, or the default floor and ceiling if there is none, and finally mapped onto the
+ * level scale of the format:
+ *
+ * <ul>
+ *     <li>{@code gzip} and {@code deflate}: levels {@code 1} to {@code 9}, with the fixed 32 KiB window of zlib</li>
+ *     <li>{@code zstd}: levels {@code 1} to {@code 19}, with the window chosen by the level</li>
+ *     <li>{@code br}: qualities {@code 1} to {@code 11}, with a window of 256 KiB up to 4 MiB</li>
+ * </ul>
+ *
+ * Once saturated, no compression is introduced by the {@link ContentCodingNegotiator}, and a body whose coding the
+ * client does not accept is sent uncompressed rather than recoded. When adaptive compression is disabled, the default
+ * level of each {@link ContentEncoder} is used regardless of load.
+ */
+public class CompressionLevelController {
+
+    private static final Logger logger = LogManager.getLogger(CompressionLevelController.class);
+
+    private static final Map<CompressionFormat, LevelRange> RANGES = new EnumMap<>(CompressionFormat.class);
+
+    static {
+        RANGES.put(CompressionFormat.GZIP, new LevelRange(1, 9, 0, 0));
+        RANGES.put(CompressionFormat.DEFLATE, new LevelRange(1, 9, 0, 0));
+        RANGES.put(CompressionFormat.ZSTD, new LevelRange(1, 19, 0, 0));
+        RANGES.put(CompressionFormat.BR, new LevelRange(1, 11, 18, 22));
+    }
+
+    private final Compression compression;
+    private final AdaptiveCompression adaptive;
+    private final ThreadManager threadManager;
+    private final com.sun.management.OperatingSystemMXBean os;
+
+    private volatile long sampledAt = 0;
+    private volatile double load = 0;
+
+    public CompressionLevelController(final Config config, final ThreadManager threadManager) {
+        this.compression = config.servlet.compression;
+        this.adaptive = config.servlet.compression.adaptive;
+        this.threadManager = threadManager;
+        final OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        if (os instanceof com.sun.management.OperatingSystemMXBean) {
+            this.os = (com.sun.management.OperatingSystemMXBean) os;
+        } else {
+            this.os = null;
+            logger.warn("Process CPU load is unavailable, compression levels will follow the handler backlog only");
+        }
+    }
+
+    /**
+     * @return Compression configuration the controller was created with
+     */
+    public Compression getCompression() {
+        return this.compression;
+    }
+
+    /**
+     * Sample the load of the proxy if the last sample is older than {@link AdaptiveCompression#sampleInterval}
+     *
+     * @return Greater of the CPU utilisation of the process and the handler backlog, between {@code 0} and {@code 1}
+     */
+    public double getLoad() {
+        final long now = System.currentTimeMillis();
+        if (now - this.sampledAt >= this.adaptive.sampleInterval) {
+            this.sampledAt = now;
+            final double cpu = this.os == null ? 0 : Math.max(this.os.getProcessCpuLoad(), 0);
+            this.load = Math.max(cpu, Math.min(this.threadManager.getHandlerBacklog(), 1));
+            if (logger.isTraceEnabled()) {
+                logger.trace(String.format("Sampled load [CPU: %.2f] [LOAD: %.2f]", cpu, this.load));
+            }
+        }
+        return this.load;
+    }
+
+    /**
+     * @return {@code true} if adaptive compression is enabled and the load is at or above
+     * {@link AdaptiveCompression#saturatedLoad}, in which case bodies should not be compressed unless they must be,
+     * {@code false} otherwise
+     */
+    public boolean isSaturated() {
+        return this.adaptive.enabled && getLoad() >= this.adaptive.saturatedLoad;
+    }
+
+    /**
+     * Choose the level to compress a body with at the current load
+     *
+     * @param format Format the body is compressed with
+     * @param contentType Value of the {@code Content-Type} header of the body, or {@code null} if it has none
+     * @return {@link CompressionLevel} for the body, or {@code null} to use the default level of the {@link ContentEncoder}
+     */
+    public CompressionLevel levelFor(final CompressionFormat format, final String contentType) {
+        final LevelRange range = RANGES.get(format);
+        if (!this.adaptive.enabled || range == null) {
+            return null;
+        }
+        double floor = this.adaptive.floor;
+        double ceiling = this.adaptive.ceiling;
+        if (contentType != null) {
+            for (final ContentTypeLevels levels : this.adaptive.contentTypes) {
+                if (levels.pattern.matcher(contentType).find()) {
+                    floor = levels.floor;
+                    ceiling = levels.ceiling;
+                    break;
+                }
+            }
+        }
+        return range.at(floor + effort() * (ceiling - floor));
+    }
+
+    private double effort() {
+        final double load = getLoad();
+        if (load <= this.adaptive.idleLoad) {
+            return 1;
+        } else if (load >= this.adaptive.saturatedLoad) {
+            return 0;
+        }
+        return (this.adaptive.saturatedLoad - load) / (this.adaptive.saturatedLoad - this.adaptive.idleLoad);
+    }
+
+    /**
+     * Levels and windows of a format, from the fastest to the smallest output
+     */
+    private static class LevelRange {
+        private final int fastestLevel;
+        private final int strongestLevel;
+        private final int smallestWindow;
+        private final int largestWindow;
+
+        LevelRange(final int fastestLevel, final int strongestLevel, final int smallestWindow, final int largestWindow) {
+            this.fastestLevel = fastestLevel;
+            this.strongestLevel = strongestLevel;
+            this.smallestWindow = smallestWindow;
+            this.largestWindow = largestWindow;
+        }
+
+        CompressionLevel at(final double effort) {
+            final double clamped = Math.min(Math.max(effort, 0), 1);
+            return new CompressionLevel(
+                    this.fastestLevel + (int) Math.round(clamped * (this.strongestLevel - this.fastestLevel)),
+                    this.smallestWindow + (int) Math.round(clamped * (this.largestWindow - this.smallestWindow))
+            );
+        }
+    }
+}
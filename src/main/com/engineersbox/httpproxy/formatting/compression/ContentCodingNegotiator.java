@@ -0,0 +1,261 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import com.engineersbox.httpproxy.configuration.domain.servlet.Compression;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Negotiation of the content coding of a response with the {@code Accept-Encoding} header of the request it answers,
+ * as per <a href="https://tools.ietf.org/html/rfc7231#section-5.3.4" target="_top">RFC 7231 Section 5.3.4</a>.
+ *
+ * <br/><br/>
+ *
+ * The coding the server applied is kept whenever the client accepts it and it can still be applied, so that a body
+ * that is not rewritten is never decompressed. Otherwise the coding with the highest quality value among those that
+ * have a {@link ContentEncoder} registered is chosen, with ties broken in the order {@code br}, {@code zstd},
+ * {@code gzip} then {@code deflate}. When compression is enabled, uncompressed responses with a compressible
+ * {@code Content-Type} are also compressed this way if they are at least
+ * {@link Compression#minLength} bytes long.
+ *
+ * <br/><br/>
+ *
+ * The level a coding is applied with is chosen by a {@link CompressionLevelController} from the load of the proxy.
+ * Once the proxy is saturated, no compression is introduced and a coding the client does not accept is removed rather
+ * than replaced with another.
+ *
+ * <br/><br/>
+ *
+ * A response with a coding that is unknown, or with more than one coding applied, is left as it is.
+ */
+public class ContentCodingNegotiator {
+
+    private static final Logger logger = LogManager.getLogger(ContentCodingNegotiator.class);
+
+    private static final CompressionFormat[] PREFERENCE = new CompressionFormat[]{
+            CompressionFormat.BR,
+            CompressionFormat.ZSTD,
+            CompressionFormat.GZIP,
+            CompressionFormat.DEFLATE
+    };
+
+    /**
+     * Content coding of a body as received and as it is to be written out, along with the level the output coding is
+     * applied with if the body is compressed again. A {@code null} coding is the {@code identity} coding, or a coding
+     * left as it is.
+     */
+    public static class ContentCoding {
+        public final CompressionFormat input;
+        public final CompressionFormat output;
+        public final CompressionLevel level;
+
+        public ContentCoding(final CompressionFormat input, final CompressionFormat output, final CompressionLevel level) {
+            this.input = input;
+            this.output = output;
+            this.level = level;
+        }
+
+        /**
+         * @return {@code true} if the body is written out with a different coding than it was received with,
+         * {@code false} otherwise
+         */
+        public boolean isRecoded() {
+            return this.input != this.output;
+        }
+    }
+
+    private static final ContentCoding UNCHANGED = new ContentCoding(null, null, null);
+
+    private ContentCodingNegotiator() {}
+
+    /**
+     * Choose the content coding a response is written out with, updating its {@code Content-Encoding} header to match.
+     * If the coding changes, a strong {@code ETag} is made weak as the representation is no longer byte-for-byte
+     * identical, and {@code Accept-Encoding} is added to the {@code Vary} header of compressible responses so that
+     * caches keep the representation of each coding apart.
+     *
+     * <br/><br/>
+     *
+     * Must not be applied to responses without a body, whose headers describe a body that is never written. The level
+     * chosen for the output coding is also set on the response, see {@link HTTPMessage#withCompressionLevel}.
+     *
+     * @param message Response to negotiate the coding of
+     * @param acceptEncoding Value of the {@code Accept-Encoding} header of the request, or {@code null} if it had none
+     * @param levels Controller of the compression configuration and levels
+     * @param rewritten Whether the body is rewritten before being written out, in which case the server coding can
+     *                  only be kept if a {@link ContentEncoder} is registered for it
+     * @return {@link ContentCoding} of the body as received and as it is to be written out
+     */
+    public static ContentCoding negotiate(final HTTPMessage<?> message,
+                                          final String acceptEncoding,
+                                          final CompressionLevelController levels,
+                                          final boolean rewritten) {
+        final Compression compression = levels.getCompression();
+        final Optional<String> contentEncoding = message.getHeader(HTTPSymbols.CONTENT_ENCODING_HEADER);
+        CompressionFormat current = null;
+        if (contentEncoding.isPresent() && !contentEncoding.get().trim().equalsIgnoreCase(HTTPSymbols.CONTENT_ENCODING_IDENTITY)) {
+            current = singleCoding(contentEncoding.get());
+            if (current == null) {
+                return UNCHANGED;
+            }
+        }
+        final boolean compressible = compression.enabled && message.getHeader(HTTPSymbols.CONTENT_TYPE_HEADER)
+                .map((final String contentType) -> HTTPSymbols.CONTENT_TYPE_COMPRESSIBLE_REGEX.matcher(contentType).find())
+                .orElse(false);
+        if (compressible) {
+            withVary(message);
+        }
+        final boolean saturated = levels.isSaturated();
+        if (current == null && (saturated || !(compressible && acceptEncoding != null && isLongEnough(message, compression)))) {
+            return UNCHANGED;
+        }
+        final Map<String, Float> qualities = parseAcceptEncoding(acceptEncoding);
+        if (current != null
+                && (!rewritten || CompressionHandler.canEncode(current))
+                && (acceptEncoding == null || quality(qualities, current) > 0)) {
+            return withLevel(message, current, current, levels);
+        }
+        CompressionFormat chosen = null;
+        float chosenQuality = 0;
+        if (!saturated) {
+            for (final CompressionFormat format : PREFERENCE) {
+                final float quality = quality(qualities, format);
+                if (quality > chosenQuality && CompressionHandler.canEncode(format)) {
+                    chosen = format;
+                    chosenQuality = quality;
+                }
+            }
+        }
+        if (chosen == current) {
+            return withLevel(message, current, current, levels);
+        }
+        if (chosen == null) {
+            message.removeHeader(HTTPSymbols.CONTENT_ENCODING_HEADER);
+        } else {
+            message.headers.set(HTTPSymbols.CONTENT_ENCODING_HEADER, chosen.token);
+        }
+        message.getHeader(HTTPSymbols.ETAG_HEADER)
+                .filter((final String etag) -> !etag.startsWith(HTTPSymbols.ETAG_WEAK_PREFIX))
+                .ifPresent((final String etag) -> message.headers.set(HTTPSymbols.ETAG_HEADER, HTTPSymbols.ETAG_WEAK_PREFIX + etag));
+        final ContentCoding coding = withLevel(message, current, chosen, levels);
+        logger.debug("Negotiated content coding [FROM: " + (current == null ? HTTPSymbols.CONTENT_ENCODING_IDENTITY : current.token)
+                + "] [TO: " + (chosen == null ? HTTPSymbols.CONTENT_ENCODING_IDENTITY : chosen.token) + "]"
+                + (coding.level == null ? "" : " " + coding.level));
+        return coding;
+    }
+
+    private static ContentCoding withLevel(final HTTPMessage<?> message,
+                                           final CompressionFormat input,
+                                           final CompressionFormat output,
+                                           final CompressionLevelController levels) {
+        final CompressionLevel level = output == null ? null : levels.levelFor(
+                output,
+                message.getHeader(HTTPSymbols.CONTENT_TYPE_HEADER).orElse(null)
+        );
+        message.withCompressionLevel(level);
+        return new ContentCoding(input, output, level);
+    }
+
+    /**
+     * Parse the codings of an {@code Accept-Encoding} header along with their quality values. Absent quality values
+     * default to {@code 1}, while malformed ones are treated as {@code 0}, so that the coding is not chosen. An absent
+     * header accepts no coding in particular, so that no compression is introduced unless it was asked for.
+     *
+     * @param acceptEncoding Value of the {@code Accept-Encoding} header, or {@code null} if there is none
+     * @return Quality values keyed by lower case coding
+     */
+    public static Map<String, Float> parseAcceptEncoding(final String acceptEncoding) {
+        final Map<String, Float> qualities = new HashMap<>();
+        if (acceptEncoding == null) {
+            return qualities;
+        }
+        for (final String element : acceptEncoding.split(HTTPSymbols.ACCEPT_ENCODING_DELIMITER)) {
+            final String[] parameters = element.split(HTTPSymbols.HEADER_VALUE_LIST_DELIMITER);
+            final String coding = parameters[0].trim().toLowerCase(Locale.ROOT);
+            if (coding.isEmpty()) {
+                continue;
+            }
+            float quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                final String[] parameter = parameters[i].split("=", 2);
+                if (parameter.length == 2 && parameter[0].trim().equalsIgnoreCase(HTTPSymbols.QUALITY_PARAMETER)) {
+                    quality = parseQuality(parameter[1].trim());
+                }
+            }
+            qualities.put(coding.startsWith("x-") ? coding.substring(2) : coding, quality);
+        }
+        return qualities;
+    }
+
+    private static float parseQuality(final String value) {
+        try {
+            final float quality = Float.parseFloat(value);
+            return quality >= 0 && quality <= 1 ? quality : 0;
+        } catch (final NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static float quality(final Map<String, Float> qualities, final CompressionFormat format) {
+        final Float quality = qualities.get(format.token);
+        if (quality != null) {
+            return quality;
+        }
+        return qualities.getOrDefault(HTTPSymbols.ACCEPT_ENCODING_WILDCARD, 0f);
+    }
+
+    /**
+     * @param contentEncoding Value of a {@code Content-Encoding} header
+     * @return {@link CompressionFormat} of the header if it names exactly one known coding, {@code null} otherwise
+     */
+    private static CompressionFormat singleCoding(final String contentEncoding) {
+        if (contentEncoding.contains(HTTPSymbols.ACCEPT_ENCODING_DELIMITER)) {
+            return null;
+        }
+        final String coding = contentEncoding.trim().toLowerCase(Locale.ROOT);
+        for (final CompressionFormat format : CompressionFormat.values()) {
+            if (coding.equals(format.token) || coding.equals("x-" + format.token)) {
+                return format;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isLongEnough(final HTTPMessage<?> message, final Compression compression) {
+        final Optional<String> contentLength = message.getHeader(HTTPSymbols.CONTENT_LENGTH_HEADER);
+        if (!contentLength.isPresent()) {
+            return true;
+        }
+        try {
+            return Long.parseLong(contentLength.get().trim()) >= compression.minLength;
+        } catch (final NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Add {@code Accept-Encoding} to the {@code Vary} header, unless it is already listed or the header is {@code *}
+     *
+     * @param message Response to add the header value to
+     */
+    private static void withVary(final HTTPMessage<?> message) {
+        final Optional<String> vary = message.getHeader(HTTPSymbols.VARY_HEADER);
+        if (!vary.isPresent()) {
+            message.headers.add(HTTPSymbols.VARY_HEADER, HTTPSymbols.ACCEPT_ENCODING_HEADER);
+            return;
+        }
+        for (final String field : vary.get().split(HTTPSymbols.ACCEPT_ENCODING_DELIMITER)) {
+            final String name = field.trim();
+            if (name.equals(HTTPSymbols.VARY_WILDCARD) || name.equalsIgnoreCase(HTTPSymbols.ACCEPT_ENCODING_HEADER)) {
+                return;
+            }
+        }
+        message.headers.set(HTTPSymbols.VARY_HEADER, vary.get() + HTTPSymbols.CONNECTION_TOKEN_DELIMITER + " " + HTTPSymbols.ACCEPT_ENCODING_HEADER);
+    }
+}
@@ -0,0 +1,24 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Compressor for a single {@link CompressionFormat}, registered with {@link CompressionHandler#registerEncoder}. A
+ * format can only be applied to a body, and therefore negotiated with a client, if an encoder is registered for it.
+ */
+@FunctionalInterface
+public interface ContentEncoder {
+
+    /**
+     * Wrap a stream with a compressor. Closing the returned stream must write any format trailer, close {@code out}
+     * and free any codec context used.
+     *
+     * @param out Stream to write compressed data to
+     * @param level Level to compress with, or {@code null} to use the default level of the encoder
+     * @return Stream to write uncompressed data to
+     * @throws IOException If the compressor could not be created
+     */
+    OutputStream encoding(final OutputStream out, final CompressionLevel level) throws IOException;
+
+}
@@ -0,0 +1,140 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable codec contexts of a single kind, such as a {@link java.util.zip.Deflater} for a given
+ * format. Creating a context allocates its window and native state, so contexts are reset and kept once released
+ * rather than being left for the garbage collector to finalize.
+ *
+ * <br/><br/>
+ *
+ * At most {@code maxIdle} released contexts are kept. A context released while the pool is full is destroyed
+ * immediately, so that the native memory held by idle contexts stays bounded irrespective of how many were in use at
+ * once. Acquisitions served from the pool are counted as hits, and those requiring a new context as misses.
+ *
+ * @param <T> Type of the codec context
+ */
+public class ContextPool<T> {
+
+    private static final Logger logger = LogManager.getLogger(ContextPool.class);
+
+    private final String name;
+    private final Supplier<T> factory;
+    private final Consumer<T> reset;
+    private final Consumer<T> destroy;
+    private final ArrayBlockingQueue<T> idle;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final AtomicLong discarded;
+
+    /**
+     * @param name Name of the kind of context, used when logging
+     * @param maxIdle Maximum amount of released contexts to keep
+     * @param factory Creates a new context
+     * @param reset Returns a released context to its initial state
+     * @param destroy Frees the resources of a context that is not kept
+     */
+    public ContextPool(final String name,
+                       final int maxIdle,
+                       final Supplier<T> factory,
+                       final Consumer<T> reset,
+                       final Consumer<T> destroy) {
+        this.name = name;
+        this.factory = factory;
+        this.reset = reset;
+        this.destroy = destroy;
+        this.idle = new ArrayBlockingQueue<>(Math.max(maxIdle, 1));
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+        this.discarded = new AtomicLong();
+    }
+
+    /**
+     * Take an idle context, or create one if there are none. The context must be given back with
+     * {@link ContextPool#release(Object)} exactly once when it is no longer used.
+     *
+     * @return Context in its initial state
+     */
+    public T acquire() {
+        final T context = this.idle.poll();
+        if (context != null) {
+            this.hits.incrementAndGet();
+            return context;
+        }
+        final long missed = this.misses.incrementAndGet();
+        if (logger.isDebugEnabled()) {
+            logger.debug("Created " + this.name + " context [HITS: " + this.hits.get() + "] [MISSES: " + missed + "]");
+        }
+        return this.factory.get();
+    }
+
+    /**
+     * Reset a context and keep it for reuse, or destroy it if the pool is full or it could not be reset
+     *
+     * @param context Context obtained from {@link ContextPool#acquire()}
+     */
+    public void release(final T context) {
+        try {
+            this.reset.accept(context);
+        } catch (final RuntimeException e) {
+            logger.error("Could not reset " + this.name + " context, discarding it", e);
+            discard(context);
+            return;
+        }
+        if (!this.idle.offer(context)) {
+            discard(context);
+        }
+    }
+
+    private void discard(final T context) {
+        this.discarded.incrementAndGet();
+        this.destroy.accept(context);
+    }
+
+    /**
+     * @return Amount of acquisitions served by an idle context
+     */
+    public long getHitCount() {
+        return this.hits.get();
+    }
+
+    /**
+     * @return Amount of acquisitions that created a new context
+     */
+    public long getMissCount() {
+        return this.misses.get();
+    }
+
+    /**
+     * @return Amount of released contexts destroyed rather than kept
+     */
+    public long getDiscardedCount() {
+        return this.discarded.get();
+    }
+
+    /**
+     * @return Amount of contexts currently kept for reuse
+     */
+    public int getIdleCount() {
+        return this.idle.size();
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "[%s] [HITS: %d] [MISSES: %d] [DISCARDED: %d] [IDLE: %d]",
+                this.name,
+                getHitCount(),
+                getMissCount(),
+                getDiscardedCount(),
+                getIdleCount()
+        );
+    }
+}
@@ -0,0 +1,61 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Compressor writing the <a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>
+ * {@code gzip} format with a pooled raw {@link Deflater}. The header carries no file name, comment or modification
+ * time, and the trailer is written when the stream is finished.
+ */
+class GzipDeflaterOutputStream extends PooledDeflaterOutputStream {
+
+    private static final byte[] HEADER = new byte[]{
+            0x1f, (byte) 0x8b, // ID1, ID2
+            Deflater.DEFLATED, // CM
+            0, // FLG
+            0, 0, 0, 0, // MTIME
+            0, // XFL
+            (byte) 0xff // OS (unknown)
+    };
+
+    private final CRC32 crc;
+
+    GzipDeflaterOutputStream(final OutputStream out, final CompressionLevel level) throws IOException {
+        super(out, CodecContexts.GZIP_DEFLATERS, level);
+        this.crc = new CRC32();
+        try {
+            out.write(HEADER);
+        } catch (final IOException e) {
+            abandon();
+            throw e;
+        }
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        super.write(b, off, len);
+        this.crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (this.def.finished()) {
+            return;
+        }
+        super.finish();
+        final byte[] trailer = new byte[8];
+        writeInt(trailer, 0, this.crc.getValue());
+        writeInt(trailer, 4, this.def.getBytesRead());
+        this.out.write(trailer);
+    }
+
+    private static void writeInt(final byte[] b, final int offset, final long value) {
+        b[offset] = (byte) value;
+        b[offset + 1] = (byte) (value >> 8);
+        b[offset + 2] = (byte) (value >> 16);
+        b[offset + 3] = (byte) (value >> 24);
+    }
+}
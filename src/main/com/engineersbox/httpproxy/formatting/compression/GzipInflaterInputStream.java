@@ -0,0 +1,167 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Decompressor reading the <a href="https://www.w3.org/Protocols/rfc1952/rfc1952.html" target="_top">RFC 1952</a>
+ * {@code gzip} format with a pooled raw {@link Inflater}. The CRC and size in the trailer of each member are verified,
+ * and concatenated members are read as a single stream.
+ */
+class GzipInflaterInputStream extends PooledInflaterInputStream {
+
+    private static final int GZIP_MAGIC = 0x8b1f;
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+    private static final int TRAILER_SIZE = 8;
+    private static final int MIN_HEADER_SIZE = 10;
+
+    private final CRC32 crc;
+    private boolean eos = false;
+
+    GzipInflaterInputStream(final InputStream in) throws IOException {
+        super(in, CodecContexts.GZIP_INFLATERS);
+        this.crc = new CRC32();
+        try {
+            readHeader(in);
+        } catch (final IOException e) {
+            abandon();
+            throw e;
+        }
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        int read;
+        while (!this.eos) {
+            read = super.read(b, off, len);
+            if (read != -1) {
+                this.crc.update(b, off, read);
+                return read;
+            }
+            this.eos = readTrailer();
+        }
+        return -1;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return this.eos ? 0 : super.available();
+    }
+
+    /**
+     * Read and verify a member header, leaving {@code source} positioned at the start of the compressed data
+     *
+     * @param source Stream positioned at the start of a member
+     * @return Amount of bytes in the header
+     * @throws IOException If the header is malformed or could not be read
+     */
+    private int readHeader(final InputStream source) throws IOException {
+        final CheckedInputStream in = new CheckedInputStream(source, this.crc);
+        this.crc.reset();
+        if (readUShort(in) != GZIP_MAGIC) {
+            throw new ZipException("Not in GZIP format");
+        }
+        if (readUByte(in) != 8) {
+            throw new ZipException("Unsupported compression method");
+        }
+        final int flags = readUByte(in);
+        skipBytes(in, 6);
+        int length = MIN_HEADER_SIZE;
+        if ((flags & FEXTRA) == FEXTRA) {
+            final int extraLength = readUShort(in);
+            skipBytes(in, extraLength);
+            length += extraLength + 2;
+        }
+        if ((flags & FNAME) == FNAME) {
+            do {
+                length++;
+            } while (readUByte(in) != 0);
+        }
+        if ((flags & FCOMMENT) == FCOMMENT) {
+            do {
+                length++;
+            } while (readUByte(in) != 0);
+        }
+        if ((flags & FHCRC) == FHCRC) {
+            final int headerCrc = (int) this.crc.getValue() & 0xffff;
+            if (readUShort(in) != headerCrc) {
+                throw new ZipException("Corrupt GZIP header");
+            }
+            length += 2;
+        }
+        this.crc.reset();
+        return length;
+    }
+
+    /**
+     * Verify the trailer of the member just inflated, and start on the next member if one follows
+     *
+     * @return {@code true} if the stream has ended, {@code false} if another member follows
+     * @throws IOException If the trailer does not match the inflated data or could not be read
+     */
+    private boolean readTrailer() throws IOException {
+        InputStream in = this.in;
+        final int remaining = this.inf.getRemaining();
+        if (remaining > 0) {
+            in = new SequenceInputStream(
+                    new ByteArrayInputStream(this.buf, this.len - remaining, remaining),
+                    new FilterInputStream(this.in) {
+                        @Override
+                        public void close() {}
+                    }
+            );
+        }
+        if (readUInt(in) != this.crc.getValue()
+                || readUInt(in) != (this.inf.getBytesWritten() & 0xffffffffL)) {
+            throw new ZipException("Corrupt GZIP trailer");
+        }
+        if (this.in.available() > 0 || remaining > TRAILER_SIZE + MIN_HEADER_SIZE + 8) {
+            int consumed = TRAILER_SIZE;
+            try {
+                consumed += readHeader(in);
+            } catch (final IOException e) {
+                return true;
+            }
+            this.inf.reset();
+            if (remaining > consumed) {
+                this.inf.setInput(this.buf, this.len - remaining + consumed, remaining - consumed);
+            }
+            return false;
+        }
+        return true;
+    }
+
+    private static long readUInt(final InputStream in) throws IOException {
+        return readUShort(in) | ((long) readUShort(in) << 16);
+    }
+
+    private static int readUShort(final InputStream in) throws IOException {
+        return readUByte(in) | (readUByte(in) << 8);
+    }
+
+    private static int readUByte(final InputStream in) throws IOException {
+        final int b = in.read();
+        if (b == -1) {
+            throw new EOFException();
+        }
+        return b;
+    }
+
+    private static void skipBytes(final InputStream in, int n) throws IOException {
+        while (n > 0) {
+            readUByte(in);
+            n--;
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * {@link DeflaterOutputStream} over a {@link Deflater} taken from a {@link ContextPool}, which is given back once when
+ * the stream is closed instead of being ended. Flushing the stream performs a {@link Deflater#SYNC_FLUSH}, so that the
+ * data written so far can be decoded without waiting for the rest of the body.
+ */
+class PooledDeflaterOutputStream extends DeflaterOutputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ContextPool<Deflater> pool;
+    private boolean closed = false;
+
+    /**
+     * @param out Stream to write compressed data to
+     * @param pool Pool to take the {@link Deflater} from
+     * @param level Level to compress with, or {@code null} for the default level of zlib
+     */
+    PooledDeflaterOutputStream(final OutputStream out, final ContextPool<Deflater> pool, final CompressionLevel level) {
+        super(out, pool.acquire(), BUFFER_SIZE, true);
+        this.pool = pool;
+        if (level != null) {
+            this.def.setLevel(level.level);
+        }
+    }
+
+    /**
+     * Give back the context without closing the underlying stream, for when the stream could not be fully created
+     */
+    void abandon() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.pool.release(this.def);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            super.close();
+        } finally {
+            this.pool.release(this.def);
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.engineersbox.httpproxy.formatting.compression;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * {@link InflaterInputStream} over an {@link Inflater} taken from a {@link ContextPool}, which is given back once when
+ * the stream is closed instead of being ended.
+ */
+class PooledInflaterInputStream extends InflaterInputStream {
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private final ContextPool<Inflater> pool;
+    private boolean closed = false;
+
+    PooledInflaterInputStream(final InputStream in, final ContextPool<Inflater> pool) {
+        super(in, pool.acquire(), BUFFER_SIZE);
+        this.pool = pool;
+    }
+
+    /**
+     * Give back the context without closing the underlying stream, for when the stream could not be fully created
+     */
+    void abandon() {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        this.pool.release(this.inf);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (this.closed) {
+            return;
+        }
+        this.closed = true;
+        try {
+            super.close();
+        } finally {
+            this.pool.release(this.inf);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.engineersbox.httpproxy.formatting.content;
 
 import com.engineersbox.httpproxy.configuration.domain.policies.Replacement;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledReplacements;
 
 import java.util.List;
 
@@ -31,6 +32,14 @@ public interface BaseContentFormatter {
      */
     void replaceAllMatchingText(final List<Replacement> toReplace);
 
+    /**
+     * Replaces all matches of any of a set of {@link CompiledReplacements} within text nodes, in a single scan of
+     * each text node
+     *
+     * @param toReplace {@link CompiledReplacements} to use for replacement matching
+     */
+    void replaceAllMatchingText(final CompiledReplacements toReplace);
+
     /**
      * Replaces all instances a {@link java.util.regex.Pattern} with a {@link String}
      *
@@ -46,6 +55,23 @@ public interface BaseContentFormatter {
      */
     void replaceAllMatchingLinks(final List<Replacement> toReplace);
 
+    /**
+     * Replaces all matches of any of a set of {@link CompiledReplacements} within link attributes, in a single scan
+     * of each attribute
+     *
+     * @param toReplace {@link CompiledReplacements} to use for replacement matching
+     */
+    void replaceAllMatchingLinks(final CompiledReplacements toReplace);
+
+    /**
+     * Replaces all matches of a set of text {@link CompiledReplacements} within text nodes, and of a set of link
+     * {@link CompiledReplacements} within link attributes, together in a single pass over the content
+     *
+     * @param textReplacements {@link CompiledReplacements} to use for text replacement matching
+     * @param linkReplacements {@link CompiledReplacements} to use for link replacement matching
+     */
+    void replaceAllMatching(final CompiledReplacements textReplacements, final CompiledReplacements linkReplacements);
+
     /**
      * Retrieve the content string currently stored. If any replacements have been performed, this string will
      * contain them
@@ -3,21 +3,27 @@ package com.engineersbox.httpproxy.formatting.content;
 import com.engineersbox.httpproxy.configuration.Config;
 import com.engineersbox.httpproxy.configuration.domain.policies.Replacement;
 import com.engineersbox.httpproxy.formatting.content.html.HTMLSymbols;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledReplacements;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.jsoup.Jsoup;
+import org.jsoup.nodes.Attribute;
 import org.jsoup.nodes.Document;
 import org.jsoup.nodes.Element;
 import org.jsoup.nodes.Node;
 import org.jsoup.nodes.TextNode;
-import org.jsoup.select.Elements;
+import org.jsoup.select.NodeTraversor;
+import org.jsoup.select.NodeVisitor;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
  * Implementation of {@link BaseContentFormatter} using {@link Jsoup} to replace matching patterns in text and title
- * attributes of HTML nodes/elements.
+ * attributes of HTML nodes/elements, and in link attributes. Text and link replacements are applied in a single walk
+ * of the document, with each text or attribute value rewritten with all replacements in a single scan by
+ * {@link CompiledReplacements}, and only set again on the document if it changed.
  */
 public class ContentFormatter implements BaseContentFormatter {
 
@@ -46,31 +52,40 @@ public class ContentFormatter implements BaseContentFormatter {
     }
 
     /**
-     * Replace any occurrence of the matcher in {@code pair} for the {@link TextNode#text()} value with the replacement
-     * defined in the {@code pair}
-     *
-     * <br/><br/>
-     *
-     * Additionally, replace any text matching the matcher for the content of the {@link HTMLSymbols#TITLE_ATTRIBUTE}
-     * if it exists on the parent of the text node ({@link TextNode#parent()});
+     * Replace any match of {@code toReplace} in the {@link TextNode#text()} value
      *
      * @param textNode Current {@link TextNode} to perform replacement on
-     * @param pair Instance of {@link Replacement} to base replacement on
+     * @param toReplace {@link CompiledReplacements} to base replacement on
      * @return {@code true} if a text change was made, {@code false} otherwise
      */
-    private boolean replaceTextForElement(final TextNode textNode, final Replacement pair) {
+    private boolean replaceTextForNode(final TextNode textNode, final CompiledReplacements toReplace) {
         final String current = textNode.text();
-        textNode.text(pair.from.matcher(current).replaceAll(pair.to));
-        final Node parent = textNode.parent();
-        String currentAttrValue = null;
-        if (parent.hasAttr(HTMLSymbols.TITLE_ATTRIBUTE)) {
-            currentAttrValue = parent.attr(HTMLSymbols.TITLE_ATTRIBUTE);
-            parent.attr(
-                    HTMLSymbols.TITLE_ATTRIBUTE,
-                    pair.from.matcher(currentAttrValue).replaceAll(pair.to)
-            );
+        final String replaced = toReplace.replaceAll(current);
+        if (replaced == current) {
+            return false;
+        }
+        textNode.text(replaced);
+        return true;
+    }
+
+    /**
+     * Replace any match of {@code toReplace} in the value of an {@link Attribute}
+     *
+     * @param attribute Current {@link Attribute} to perform replacement on
+     * @param toReplace {@link CompiledReplacements} to base replacement on
+     * @return {@code true} if an attribute change was made, {@code false} otherwise
+     */
+    private static boolean replaceAttribute(final Attribute attribute, final CompiledReplacements toReplace) {
+        if (toReplace.isEmpty()) {
+            return false;
+        }
+        final String current = attribute.getValue();
+        final String replaced = toReplace.replaceAll(current);
+        if (replaced == current) {
+            return false;
         }
-        return !current.equals(textNode.text()) || (currentAttrValue !=  null && !currentAttrValue.equals(parent.attr(HTMLSymbols.TITLE_ATTRIBUTE)));
+        attribute.setValue(replaced);
+        return true;
     }
 
     /**
@@ -80,20 +95,7 @@ public class ContentFormatter implements BaseContentFormatter {
      */
     @Override
     public void replaceMatchingText(final Replacement toReplace) {
-        final Elements els = this.document.body().getAllElements();
-        int changes = 0;
-        for (final Element e : els) {
-            final List<TextNode> textNodes = e.textNodes();
-            for (final TextNode textNode : textNodes) {
-                if (replaceTextForElement(textNode, toReplace)) {
-                    changes++;
-                }
-            }
-        }
-        logger.info(String.format(
-                "Replaced %d matching text instances",
-                changes
-        ));
+        replaceAllMatchingText(CompiledReplacements.compile(Collections.singletonList(toReplace)));
     }
 
     /**
@@ -103,33 +105,17 @@ public class ContentFormatter implements BaseContentFormatter {
      */
     @Override
     public void replaceAllMatchingText(final List<Replacement> toReplace) {
-        final Elements els = this.document.body().getAllElements();
-        int changes = 0;
-        for (final Element e : els) {
-            final List<TextNode> textNodes = e.textNodes();
-            for (final TextNode textNode : textNodes) {
-                changes += toReplace.stream().filter(pair -> replaceTextForElement(textNode, pair)).count();
-            }
-        }
-        logger.info(String.format(
-                "Replaced %d matching text instances",
-                changes
-        ));
+        replaceAllMatchingText(CompiledReplacements.compile(toReplace));
     }
 
     /**
-     * Replace any occurrence of the matcher in {@code pair} for the {@link Element#attr(String)} (specifically against
-     * the supplied {@code attribute}) value with the replacement defined in the {@code pair}
+     * See {@link BaseContentFormatter#replaceAllMatchingText(CompiledReplacements)}
      *
-     * @param linkElement Current {@link Element} to perform replacement on
-     * @param pair Instance of {@link Replacement} to base replacement on
-     * @param attribute Attribute select to perform the replacement on
-     * @return {@code true} if a link change was made, {@code false} otherwise
+     * @param toReplace {@link CompiledReplacements} to use for replacement matching
      */
-    private boolean replaceLinkForElement(final Element linkElement, final Replacement pair, final String attribute) {
-        final String currentAttrValue = linkElement.attr(attribute);
-        linkElement.attr(attribute, pair.from.matcher(currentAttrValue).replaceAll(pair.to));
-        return !currentAttrValue.equals(linkElement.attr(attribute));
+    @Override
+    public void replaceAllMatchingText(final CompiledReplacements toReplace) {
+        replaceAllMatching(toReplace, CompiledReplacements.NONE);
     }
 
     /**
@@ -139,59 +125,121 @@ public class ContentFormatter implements BaseContentFormatter {
      */
     @Override
     public void replaceMatchingLink(final Replacement toReplace) {
-        int changes = 0;
-        final Elements links = this.document.select(HTMLSymbols.ANCHOR_LINK_CSS_SELECTOR);
-        for (final Element link : links) {
-            if (replaceLinkForElement(link, toReplace, HTMLSymbols.SOURCE_ATTRIBUTE)) {
-                changes ++;
-            }
-        }
+        replaceAllMatchingLinks(CompiledReplacements.compile(Collections.singletonList(toReplace)));
+    }
 
-        final Elements media = this.document.select(HTMLSymbols.MEDIA_LINK_CSS_SELECTOR);
-        for (final Element link : media) {
-            if (replaceLinkForElement(link, toReplace, HTMLSymbols.HREF_ATTRIBUTE)) {
-                changes++;
-            }
-        }
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatchingLinks(List)}
+     *
+     * @param toReplace {@link List} of {@link Replacement} to use for replacement matching
+     */
+    @Override
+    public void replaceAllMatchingLinks(final List<Replacement> toReplace) {
+        replaceAllMatchingLinks(CompiledReplacements.compile(toReplace));
+    }
 
-        final Elements imports = this.document.select(HTMLSymbols.IMPORT_LINK_CSS_SELECTOR);
-        for (final Element link : imports) {
-            if (replaceLinkForElement(link, toReplace, HTMLSymbols.HREF_ATTRIBUTE)) {
-                changes++;
-            }
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatchingLinks(CompiledReplacements)}
+     *
+     * @param toReplace {@link CompiledReplacements} to use for replacement matching
+     */
+    @Override
+    public void replaceAllMatchingLinks(final CompiledReplacements toReplace) {
+        replaceAllMatching(CompiledReplacements.NONE, toReplace);
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatching(CompiledReplacements, CompiledReplacements)}
+     *
+     * <br/><br/>
+     *
+     * The document is walked once by a {@link ReplacementVisitor}. The attributes of each element are visited once,
+     * dispatching on the tag of the element to decide whether its {@link HTMLSymbols#HREF_ATTRIBUTE} is a link, as is
+     * the {@link HTMLSymbols#SOURCE_ATTRIBUTE} of any element. Text nodes within the body are rewritten along with the
+     * {@link HTMLSymbols#TITLE_ATTRIBUTE} of any element in the body with text nodes.
+     *
+     * @param textReplacements {@link CompiledReplacements} to use for text replacement matching
+     * @param linkReplacements {@link CompiledReplacements} to use for link replacement matching
+     */
+    @Override
+    public void replaceAllMatching(final CompiledReplacements textReplacements, final CompiledReplacements linkReplacements) {
+        if (textReplacements.isEmpty() && linkReplacements.isEmpty()) {
+            return;
         }
+        final ReplacementVisitor visitor = new ReplacementVisitor(textReplacements, linkReplacements, this.document.body());
+        NodeTraversor.traverse(visitor, this.document);
         logger.info(String.format(
-                "Replaced %d matching link instances",
-                changes
+                "Replaced %d matching text instances and %d matching link instances",
+                visitor.textChanges,
+                visitor.linkChanges
         ));
     }
 
     /**
-     * See {@link BaseContentFormatter#replaceAllMatchingLinks(List)}
-     *
-     * @param toReplace {@link List} of {@link Replacement} to use for replacement matching
+     * {@link NodeVisitor} applying text and link replacements to each node of a document as it is walked
      */
-    @Override
-    public void replaceAllMatchingLinks(List<Replacement> toReplace) {
-        int changes = 0;
-        final Elements anchors = this.document.select(HTMLSymbols.ANCHOR_LINK_CSS_SELECTOR);
-        for (final Element link : anchors) {
-            changes += toReplace.stream().filter(pair -> replaceLinkForElement(link, pair, HTMLSymbols.SOURCE_ATTRIBUTE)).count();
+    private class ReplacementVisitor implements NodeVisitor {
+
+        private final CompiledReplacements textReplacements;
+        private final CompiledReplacements linkReplacements;
+        private final Element body;
+        private boolean inBody = false;
+        private int textChanges = 0;
+        private int linkChanges = 0;
+
+        ReplacementVisitor(final CompiledReplacements textReplacements,
+                           final CompiledReplacements linkReplacements,
+                           final Element body) {
+            this.textReplacements = textReplacements;
+            this.linkReplacements = linkReplacements;
+            this.body = body;
+        }
+
+        @Override
+        public void head(final Node node, final int depth) {
+            if (node instanceof TextNode) {
+                if (this.inBody && !this.textReplacements.isEmpty() && replaceTextForNode((TextNode) node, this.textReplacements)) {
+                    this.textChanges++;
+                }
+                return;
+            } else if (!(node instanceof Element)) {
+                return;
+            }
+            final Element element = (Element) node;
+            if (element == this.body) {
+                this.inBody = true;
+            }
+            final boolean hrefIsLink = HTMLSymbols.HREF_LINK_ELEMENTS.contains(element.normalName());
+            for (final Attribute attribute : element.attributes()) {
+                final String key = attribute.getKey();
+                if (key.equals(HTMLSymbols.SOURCE_ATTRIBUTE) || (hrefIsLink && key.equals(HTMLSymbols.HREF_ATTRIBUTE))) {
+                    if (replaceAttribute(attribute, this.linkReplacements)) {
+                        this.linkChanges++;
+                    }
+                } else if (key.equals(HTMLSymbols.TITLE_ATTRIBUTE)
+                        && this.inBody
+                        && hasTextNode(element)
+                        && replaceAttribute(attribute, this.textReplacements)) {
+                    this.textChanges++;
+                }
+            }
         }
 
-        final Elements media = this.document.select(HTMLSymbols.MEDIA_LINK_CSS_SELECTOR);
-        for (final Element link : media) {
-            changes += toReplace.stream().filter(pair -> replaceLinkForElement(link, pair, HTMLSymbols.HREF_ATTRIBUTE)).count();
+        @Override
+        public void tail(final Node node, final int depth) {
+            if (node == this.body) {
+                this.inBody = false;
+            }
         }
 
-        final Elements imports = this.document.select(HTMLSymbols.IMPORT_LINK_CSS_SELECTOR);
-        for (final Element link : imports) {
-            changes += toReplace.stream().filter(pair -> replaceLinkForElement(link, pair, HTMLSymbols.HREF_ATTRIBUTE)).count();
+        private boolean hasTextNode(final Element element) {
+            for (final Node child : element.childNodes()) {
+                if (child instanceof TextNode) {
+                    return true;
+                }
+            }
+            return false;
         }
-        logger.info(String.format(
-                "Replaced %d matching link instances",
-                changes
-        ));
     }
 
     /**
@@ -0,0 +1,146 @@
+package com.engineersbox.httpproxy.formatting.content;
+
+import com.engineersbox.httpproxy.configuration.domain.policies.Replacement;
+import com.engineersbox.httpproxy.formatting.content.html.HTMLTokenRewriter;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledReplacements;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Implementation of {@link BaseContentFormatter} using a {@link HTMLTokenRewriter} to replace matching patterns in
+ * text, title attributes and link attributes as the content is tokenized, without parsing it into a DOM. The content is
+ * written back exactly as it was given, other than the values that were changed.
+ *
+ * <br/><br/>
+ *
+ * Replacements are applied lazily, with a text and a link replacement supplied in turn being applied together in a
+ * single pass over the content once the content string is retrieved. Bodies that are streamed are rewritten by a
+ * {@link HTMLTokenRewriter} directly instead, see
+ * {@link com.engineersbox.httpproxy.configuration.domain.servlet.HTMLRewriterMode#STREAMING}.
+ */
+public class StreamingContentFormatter implements BaseContentFormatter {
+
+    private String contentString;
+    private CompiledReplacements pendingText;
+    private CompiledReplacements pendingLinks;
+
+    /**
+     * See {@link BaseContentFormatter#withContentString(String)}
+     *
+     * @param contentString {@link String} format of content
+     */
+    @Override
+    public void withContentString(final String contentString) {
+        this.contentString = contentString;
+        this.pendingText = null;
+        this.pendingLinks = null;
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceMatchingText(Replacement)}
+     *
+     * @param toReplace Instance of {@link Replacement} with matcher and replacement
+     */
+    @Override
+    public void replaceMatchingText(final Replacement toReplace) {
+        replaceAllMatchingText(CompiledReplacements.compile(Collections.singletonList(toReplace)));
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatchingText(List)}
+     *
+     * @param toReplace {@link List} of {@link Replacement} to use for replacement matching
+     */
+    @Override
+    public void replaceAllMatchingText(final List<Replacement> toReplace) {
+        replaceAllMatchingText(CompiledReplacements.compile(toReplace));
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatchingText(CompiledReplacements)}
+     *
+     * @param toReplace {@link CompiledReplacements} to use for replacement matching
+     */
+    @Override
+    public void replaceAllMatchingText(final CompiledReplacements toReplace) {
+        if (this.pendingText != null) {
+            applyPending();
+        }
+        this.pendingText = toReplace;
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceMatchingLink(Replacement)}
+     *
+     * @param toReplace Instance of {@link Replacement} with matcher and replacement within link attributes
+     */
+    @Override
+    public void replaceMatchingLink(final Replacement toReplace) {
+        replaceAllMatchingLinks(CompiledReplacements.compile(Collections.singletonList(toReplace)));
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatchingLinks(List)}
+     *
+     * @param toReplace {@link List} of {@link Replacement} to use for replacement matching
+     */
+    @Override
+    public void replaceAllMatchingLinks(final List<Replacement> toReplace) {
+        replaceAllMatchingLinks(CompiledReplacements.compile(toReplace));
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatchingLinks(CompiledReplacements)}
+     *
+     * @param toReplace {@link CompiledReplacements} to use for replacement matching
+     */
+    @Override
+    public void replaceAllMatchingLinks(final CompiledReplacements toReplace) {
+        if (this.pendingLinks != null) {
+            applyPending();
+        }
+        this.pendingLinks = toReplace;
+    }
+
+    /**
+     * See {@link BaseContentFormatter#replaceAllMatching(CompiledReplacements, CompiledReplacements)}
+     *
+     * @param textReplacements {@link CompiledReplacements} to use for text replacement matching
+     * @param linkReplacements {@link CompiledReplacements} to use for link replacement matching
+     */
+    @Override
+    public void replaceAllMatching(final CompiledReplacements textReplacements, final CompiledReplacements linkReplacements) {
+        if (this.pendingText != null || this.pendingLinks != null) {
+            applyPending();
+        }
+        this.pendingText = textReplacements;
+        this.pendingLinks = linkReplacements;
+    }
+
+    /**
+     * Rewrite the content with the pending text and link replacements in a single pass
+     */
+    private void applyPending() {
+        final CompiledReplacements text = this.pendingText == null ? CompiledReplacements.NONE : this.pendingText;
+        final CompiledReplacements links = this.pendingLinks == null ? CompiledReplacements.NONE : this.pendingLinks;
+        this.pendingText = null;
+        this.pendingLinks = null;
+        if (this.contentString == null || (text.isEmpty() && links.isEmpty())) {
+            return;
+        }
+        this.contentString = new HTMLTokenRewriter(text, links).rewrite(this.contentString);
+    }
+
+    /**
+     * See {@link BaseContentFormatter#getContentString()}
+     *
+     * @return Formatted content {@link String}
+     */
+    @Override
+    public String getContentString() {
+        applyPending();
+        return this.contentString;
+    }
+
+}
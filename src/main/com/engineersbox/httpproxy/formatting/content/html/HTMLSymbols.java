@@ -1,15 +1,22 @@
 package com.engineersbox.httpproxy.formatting.content.html;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
 /**
  * Various symbols used in HTML standard documents
  */
 public class HTMLSymbols {
     public static final String TITLE_ATTRIBUTE = "title";
 
-    public static final String ANCHOR_LINK_CSS_SELECTOR = "a[href]";
-    public static final String MEDIA_LINK_CSS_SELECTOR = "[src]";
-    public static final String IMPORT_LINK_CSS_SELECTOR = "link[href]";
+    public static final String HREF_ATTRIBUTE = "href";
+    public static final String SOURCE_ATTRIBUTE = "src";
 
-    public static final String HREF_ATTRIBUTE = "abs:href";
-    public static final String SOURCE_ATTRIBUTE = "abs:src";
+    /**
+     * Elements whose {@link HTMLSymbols#HREF_ATTRIBUTE} is a link to be rewritten. The
+     * {@link HTMLSymbols#SOURCE_ATTRIBUTE} is a link on any element.
+     */
+    public static final Set<String> HREF_LINK_ELEMENTS = Collections.unmodifiableSet(new HashSet<>(Arrays.asList("a", "link")));
 }
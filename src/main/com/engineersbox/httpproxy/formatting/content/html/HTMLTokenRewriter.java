@@ -0,0 +1,689 @@
+package com.engineersbox.httpproxy.formatting.content.html;
+
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledReplacements;
+import com.engineersbox.httpproxy.formatting.content.replacement.LiteralPrefilter;
+import com.engineersbox.httpproxy.formatting.pipeline.TextTransform;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.jsoup.parser.Parser;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * {@link TextTransform} rewriting an HTML document token by token as it is received, without building a DOM. Text runs
+ * and {@link HTMLSymbols#TITLE_ATTRIBUTE} attributes within the body are rewritten with the text replacements, and the
+ * {@code href} attribute of {@code <a>} and {@code <link>} elements and the {@code src} attribute of any element with
+ * the link replacements. Everything else, including whitespace, attribute order and the quoting of untouched
+ * attributes, is written exactly as it was received.
+ *
+ * <br/><br/>
+ *
+ * As with {@link com.engineersbox.httpproxy.formatting.content.ContentFormatter}, text is only rewritten in the body.
+ * The body begins where an HTML parser would open it: at the {@code <body>} tag, at the first start tag of an element
+ * that does not belong in the head, or at the first text run that is not whitespace. The title attribute of a void
+ * element such as {@code <img>} is not rewritten, as such an element has no text for the DOM rewriter to find it by.
+ *
+ * <br/><br/>
+ *
+ * Values are matched with their character references decoded, as they would be by an HTML parser. A value that is
+ * changed is written with the characters significant to HTML escaped again, while one that is unchanged is written as
+ * it was. The content of comments and of raw text elements such as {@code <script>} and {@code <style>} is passed
+ * through as-is. The content of the RCDATA elements {@code <title>} and {@code <textarea>} in the body is rewritten as a
+ * text run, however any tags within it are not recognised, as an HTML parser would treat them as text. A
+ * {@code <title>} in the head is passed through as-is.
+ *
+ * <br/><br/>
+ *
+ * Each token is written as soon as it is complete, except for a text run, which is held until the tag following it
+ * begins so that a match is not split. A text run or tag longer than {@link HTMLTokenRewriter#MAX_PENDING_LENGTH}
+ * characters is written without waiting further, splitting a text run at its last whitespace, so the text held per
+ * document is bounded regardless of its size.
+ *
+ * <br/><br/>
+ *
+ * For an ASCII-compatible charset, see {@link HTMLTokenRewriter#canRewriteBytes(Charset, LiteralPrefilter)}, the
+ * document can be given as its encoded bytes viewed as {@link StandardCharsets#ISO_8859_1} characters instead of being
+ * decoded. The markup is all ASCII, so it is found at the same places in the bytes as in the decoded text. Values are
+ * first checked for the required fragments of the replacements, see {@link LiteralPrefilter}, and only those that may
+ * match are decoded with the actual charset, rewritten and encoded again.
+ *
+ * <br/><br/>
+ *
+ * An instance keeps the state of the document it is rewriting between calls, so must only be used for one document.
+ */
+public class HTMLTokenRewriter implements TextTransform {
+
+    private static final Logger logger = LogManager.getLogger(HTMLTokenRewriter.class);
+
+    /**
+     * Maximum amount of characters of a text run or tag held back waiting for the rest of it
+     */
+    public static final int MAX_PENDING_LENGTH = 65536;
+
+    private static final String COMMENT_START = "<!--";
+    private static final String COMMENT_END = "-->";
+    private static final Set<Charset> ASCII_COMPATIBLE_CHARSETS = new HashSet<>(Arrays.asList(
+            StandardCharsets.UTF_8, StandardCharsets.ISO_8859_1, StandardCharsets.US_ASCII
+    ));
+    private static final Set<String> RAW_TEXT_ELEMENTS = new HashSet<>(Arrays.asList(
+            "script", "style", "xmp", "iframe", "noembed", "noframes"
+    ));
+    private static final Set<String> RCDATA_ELEMENTS = new HashSet<>(Arrays.asList(
+            "title", "textarea"
+    ));
+    private static final Set<String> HEAD_ELEMENTS = new HashSet<>(Arrays.asList(
+            "html", "head", "title", "meta", "link", "base", "basefont", "bgsound", "noscript", "noframes", "style",
+            "script", "template"
+    ));
+    private static final Set<String> VOID_ELEMENTS = new HashSet<>(Arrays.asList(
+            "area", "base", "br", "col", "embed", "hr", "img", "input", "link", "meta", "param", "source", "track", "wbr"
+    ));
+
+    private enum State {
+        DATA,
+        COMMENT,
+        RAW_TEXT,
+        RCDATA,
+        TAG_OVERFLOW
+    }
+
+    private final CompiledReplacements textReplacements;
+    private final CompiledReplacements linkReplacements;
+    private final Charset encodedCharset;
+    private final boolean multiByte;
+
+    private State state = State.DATA;
+    private boolean inBody = false;
+    private String textElement;
+    private char tagQuote;
+    private boolean tagAfterEquals;
+    private int textChanges = 0;
+    private int linkChanges = 0;
+
+    /**
+     * @param textReplacements Replacements to apply to text runs and title attributes
+     * @param linkReplacements Replacements to apply to link attributes
+     */
+    public HTMLTokenRewriter(final CompiledReplacements textReplacements, final CompiledReplacements linkReplacements) {
+        this(textReplacements, linkReplacements, null);
+    }
+
+    /**
+     * @param textReplacements Replacements to apply to text runs and title attributes
+     * @param linkReplacements Replacements to apply to link attributes
+     * @param encodedCharset Charset of the bytes the document is given as, viewed as
+     *                       {@link StandardCharsets#ISO_8859_1} characters, or {@code null} if it is given decoded
+     * @throws IllegalArgumentException If the document cannot be rewritten as bytes of {@code encodedCharset}
+     */
+    public HTMLTokenRewriter(final CompiledReplacements textReplacements,
+                             final CompiledReplacements linkReplacements,
+                             final Charset encodedCharset) {
+        if (encodedCharset != null
+                && !(canRewriteBytes(encodedCharset, textReplacements.getPrefilter())
+                && canRewriteBytes(encodedCharset, linkReplacements.getPrefilter()))) {
+            throw new IllegalArgumentException("Replacements cannot be applied to bytes encoded with " + encodedCharset.name());
+        }
+        this.textReplacements = textReplacements;
+        this.linkReplacements = linkReplacements;
+        this.encodedCharset = encodedCharset;
+        this.multiByte = encodedCharset != null && encodedCharset.newEncoder().maxBytesPerChar() > 1;
+    }
+
+    /**
+     * Determine whether a document encoded with a charset can be rewritten as its bytes, rather than being decoded.
+     * This requires the charset to be ASCII-compatible, encoding any non-ASCII character without ASCII bytes, and
+     * every replacement to require a US-ASCII fragment, see {@link LiteralPrefilter#isAscii()}.
+     *
+     * @param charset Charset of the document
+     * @param prefilter {@link LiteralPrefilter} of the replacements to apply
+     * @return {@code true} if the document can be rewritten as bytes, {@code false} otherwise
+     */
+    public static boolean canRewriteBytes(final Charset charset, final LiteralPrefilter prefilter) {
+        return ASCII_COMPATIBLE_CHARSETS.contains(charset) && prefilter.isAscii();
+    }
+
+    /**
+     * @return {@code true} if any text or link value has been replaced so far, {@code false} otherwise
+     */
+    public boolean hasReplaced() {
+        return this.textChanges > 0 || this.linkChanges > 0;
+    }
+
+    /**
+     * Rewrite a whole document
+     *
+     * @param content Document to rewrite
+     * @return Rewritten document
+     */
+    public String rewrite(final String content) {
+        final StringBuilder out = new StringBuilder(content.length() + 64);
+        try {
+            transform(CharBuffer.wrap(content), true, out);
+        } catch (final IOException e) {
+            throw new IllegalStateException("Could not append to StringBuilder", e);
+        }
+        return out.toString();
+    }
+
+    @Override
+    public void transform(final CharBuffer input, final boolean endOfInput, final Appendable output) throws IOException {
+        final int length = input.length();
+        int position = 0;
+        while (position < length) {
+            final State current = this.state;
+            final int next;
+            switch (this.state) {
+                case COMMENT:
+                    next = comment(input, position, length, endOfInput, output);
+                    break;
+                case RAW_TEXT:
+                    next = rawText(input, position, length, endOfInput, output);
+                    break;
+                case RCDATA:
+                    next = rcdata(input, position, length, endOfInput, output);
+                    break;
+                case TAG_OVERFLOW:
+                    next = tagOverflow(input, position, length, output);
+                    break;
+                default:
+                    next = data(input, position, length, endOfInput, output);
+                    break;
+            }
+            if (next == position && this.state == current) {
+                break;
+            }
+            position = next;
+        }
+        input.position(input.position() + position);
+        if (endOfInput) {
+            logger.info(String.format(
+                    "Replaced %d matching text instances and %d matching link instances",
+                    this.textChanges,
+                    this.linkChanges
+            ));
+        }
+    }
+
+    private int data(final CharBuffer input,
+                     final int position,
+                     final int length,
+                     final boolean endOfInput,
+                     final Appendable output) throws IOException {
+        final int tagStart = findTagStart(input, position, length, endOfInput);
+        if (tagStart == length - 1) {
+            return position;
+        } else if (tagStart >= 0) {
+            writeText(input, position, tagStart, output);
+            return tag(input, tagStart, length, endOfInput, output);
+        }
+        return pendingText(input, position, length, endOfInput, output);
+    }
+
+    /**
+     * Write a text run that is not followed by a tag within the input, holding it back until more input arrives while
+     * it is at most {@link HTMLTokenRewriter#MAX_PENDING_LENGTH} characters long
+     *
+     * @return Index up to which the text run was written
+     */
+    private int pendingText(final CharBuffer input,
+                            final int position,
+                            final int length,
+                            final boolean endOfInput,
+                            final Appendable output) throws IOException {
+        if (endOfInput || this.textReplacements.isEmpty()) {
+            writeText(input, position, length, output);
+            return length;
+        } else if (length - position <= MAX_PENDING_LENGTH) {
+            return position;
+        }
+        int split = length;
+        for (int i = length - 1; i > position; i--) {
+            if (Character.isWhitespace(input.charAt(i))) {
+                split = i + 1;
+                break;
+            }
+        }
+        if (split == length && this.multiByte) {
+            split = length - 1;
+            while (split > position + 1 && isContinuationByte(input.charAt(split))) {
+                split--;
+            }
+        }
+        writeText(input, position, split, output);
+        return split;
+    }
+
+    /**
+     * @return Index of the {@code <} beginning the next tag, comment or declaration, or of a {@code <} at the end of the
+     * input that may begin one, {@code -1} if there is none
+     */
+    private static int findTagStart(final CharBuffer input, final int from, final int length, final boolean endOfInput) {
+        for (int i = from; i < length; i++) {
+            if (input.charAt(i) != '<') {
+                continue;
+            } else if (i + 1 == length) {
+                return endOfInput ? -1 : i;
+            }
+            final char c = input.charAt(i + 1);
+            if (isAsciiLetter(c) || c == '/' || c == '!' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int tag(final CharBuffer input,
+                    final int start,
+                    final int length,
+                    final boolean endOfInput,
+                    final Appendable output) throws IOException {
+        final char c = input.charAt(start + 1);
+        if (c == '!') {
+            if (length - start < COMMENT_START.length() && !endOfInput) {
+                return start;
+            } else if (startsWith(input, start, length, COMMENT_START)) {
+                output.append(COMMENT_START);
+                this.state = State.COMMENT;
+                return start + COMMENT_START.length();
+            }
+        }
+        this.tagQuote = 0;
+        this.tagAfterEquals = false;
+        this.textElement = null;
+        final boolean startTag = isAsciiLetter(c);
+        final int end = startTag ? scanTag(input, start + 1, length) : indexOf(input, '>', start + 1, length);
+        if (end >= 0) {
+            if (startTag) {
+                writeStartTag(input, start, end + 1, output);
+            } else {
+                output.append(input, start, end + 1);
+            }
+            return end + 1;
+        } else if (!endOfInput && length - start <= MAX_PENDING_LENGTH) {
+            return start;
+        }
+        if (startTag) {
+            final String name = input.subSequence(start + 1, tagNameEnd(input, start, length)).toString().toLowerCase(Locale.ROOT);
+            startElement(name);
+            this.textElement = textState(name) != State.DATA ? name : null;
+        }
+        output.append(input, start, length);
+        this.state = State.TAG_OVERFLOW;
+        return length;
+    }
+
+    private int tagOverflow(final CharBuffer input, final int position, final int length, final Appendable output) throws IOException {
+        final int end = scanTag(input, position, length);
+        if (end < 0) {
+            output.append(input, position, length);
+            return length;
+        }
+        output.append(input, position, end + 1);
+        if (this.textElement != null && input.charAt(Math.max(end - 1, position)) != '/') {
+            this.state = textState(this.textElement);
+        } else {
+            this.state = State.DATA;
+        }
+        return end + 1;
+    }
+
+    private int comment(final CharBuffer input,
+                        final int position,
+                        final int length,
+                        final boolean endOfInput,
+                        final Appendable output) throws IOException {
+        final int end = indexOf(input, COMMENT_END, position, length);
+        if (end >= 0) {
+            output.append(input, position, end + COMMENT_END.length());
+            this.state = State.DATA;
+            return end + COMMENT_END.length();
+        }
+        final int writable = endOfInput ? length : Math.max(length - (COMMENT_END.length() - 1), position);
+        output.append(input, position, writable);
+        return writable;
+    }
+
+    private int rawText(final CharBuffer input,
+                        final int position,
+                        final int length,
+                        final boolean endOfInput,
+                        final Appendable output) throws IOException {
+        final int end = findEndTag(input, position, length, endOfInput);
+        final int writable = end >= 0 ? end : length;
+        output.append(input, position, writable);
+        if (end >= 0 && isCompleteEndTag(end, length)) {
+            this.state = State.DATA;
+        }
+        return writable;
+    }
+
+    private int rcdata(final CharBuffer input,
+                       final int position,
+                       final int length,
+                       final boolean endOfInput,
+                       final Appendable output) throws IOException {
+        final int end = findEndTag(input, position, length, endOfInput);
+        if (end < 0) {
+            return pendingText(input, position, length, endOfInput, output);
+        } else if (isCompleteEndTag(end, length)) {
+            writeText(input, position, end, output);
+            this.state = State.DATA;
+            return end;
+        } else if (this.textReplacements.isEmpty() || length - position > MAX_PENDING_LENGTH) {
+            writeText(input, position, end, output);
+            return end;
+        }
+        return position;
+    }
+
+    /**
+     * @return Index of the end tag of the current raw text or RCDATA element, or of a {@code <} at the end of the input
+     * that may begin it, {@code -1} if there is neither
+     */
+    private int findEndTag(final CharBuffer input, final int from, final int length, final boolean endOfInput) {
+        final int closeLength = this.textElement.length() + 2;
+        for (int i = indexOf(input, "</", from, length); i >= 0; i = indexOf(input, "</", i + 1, length)) {
+            if (i + closeLength >= length) {
+                return endOfInput ? -1 : i;
+            } else if (input.subSequence(i + 2, i + closeLength).toString().equalsIgnoreCase(this.textElement)
+                    && isTagNameEnd(input.charAt(i + closeLength))) {
+                return i;
+            }
+        }
+        return !endOfInput && input.charAt(length - 1) == '<' ? length - 1 : -1;
+    }
+
+    /**
+     * @return {@code true} if the index returned by {@link HTMLTokenRewriter#findEndTag} is that of a complete end tag,
+     * {@code false} if the input ends before it can be determined
+     */
+    private boolean isCompleteEndTag(final int end, final int length) {
+        return end + this.textElement.length() + 2 < length;
+    }
+
+    /**
+     * Find the {@code >} ending a start tag, skipping any within quoted attribute values. The quoting state is kept
+     * between calls, so that a tag can be scanned across several inputs.
+     *
+     * @return Index of the {@code >}, or {@code -1} if the tag does not end within the input
+     */
+    private int scanTag(final CharBuffer input, final int from, final int length) {
+        for (int i = from; i < length; i++) {
+            final char c = input.charAt(i);
+            if (this.tagQuote != 0) {
+                if (c == this.tagQuote) {
+                    this.tagQuote = 0;
+                }
+            } else if (c == '>') {
+                return i;
+            } else if (c == '=') {
+                this.tagAfterEquals = true;
+            } else if (this.tagAfterEquals && (c == '"' || c == '\'')) {
+                this.tagQuote = c;
+                this.tagAfterEquals = false;
+            } else if (!Character.isWhitespace(c)) {
+                this.tagAfterEquals = false;
+            }
+        }
+        return -1;
+    }
+
+    private void writeText(final CharBuffer input, final int start, final int end, final Appendable output) throws IOException {
+        if (start == end) {
+            return;
+        } else if (!this.inBody && this.state == State.DATA && !isWhitespace(input, start, end)) {
+            this.inBody = true;
+        }
+        if (!this.inBody || this.textReplacements.isEmpty()) {
+            output.append(input, start, end);
+            return;
+        }
+        final String rewritten = rewriteValue(input.subSequence(start, end).toString(), this.textReplacements, (char) 0, false);
+        if (rewritten == null) {
+            output.append(input, start, end);
+            return;
+        }
+        output.append(rewritten);
+        this.textChanges++;
+    }
+
+    /**
+     * Rewrite a text run or attribute value, decoding its character references before it is matched. When the document
+     * is given as bytes, a value that contains none of the required fragments of the replacements is left as it is
+     * without being decoded, and any other is decoded with the charset of the bytes and encoded again once rewritten.
+     *
+     * @param raw Value as it appears in the document
+     * @param replacements Replacements to apply to the value
+     * @param quote Quote delimiting the attribute value, or {@code 0} for a text run
+     * @param inAttribute Whether the value is an attribute value, which affects how character references are decoded
+     * @return Rewritten value with the characters significant to HTML escaped, or {@code null} if it is unchanged
+     * @throws IOException If the rewritten value could not be escaped
+     */
+    private String rewriteValue(final String raw,
+                                final CompiledReplacements replacements,
+                                final char quote,
+                                final boolean inAttribute) throws IOException {
+        if (this.encodedCharset != null && !replacements.getPrefilter().mayMatch(raw)) {
+            return null;
+        }
+        final String text = this.encodedCharset == null ? raw : new String(raw.getBytes(StandardCharsets.ISO_8859_1), this.encodedCharset);
+        final String decoded = text.indexOf('&') < 0 ? text : Parser.unescapeEntities(text, inAttribute);
+        final String replaced = replacements.replaceAll(decoded);
+        if (replaced == decoded) {
+            return null;
+        }
+        final StringBuilder escaped = new StringBuilder(replaced.length() + 16);
+        escape(replaced, quote, escaped);
+        if (this.encodedCharset == null) {
+            return escaped.toString();
+        }
+        return new String(escaped.toString().getBytes(this.encodedCharset), StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Write a complete start tag, rewriting the values of any attributes matched by the replacements in place
+     */
+    private void writeStartTag(final CharBuffer input, final int start, final int end, final Appendable output) throws IOException {
+        final int close = end - 1;
+        final int nameEnd = tagNameEnd(input, start, close);
+        final String name = input.subSequence(start + 1, nameEnd).toString().toLowerCase(Locale.ROOT);
+        startElement(name);
+        int copied = start;
+        int i = nameEnd;
+        while (i < close) {
+            final char c = input.charAt(i);
+            if (Character.isWhitespace(c) || c == '/') {
+                i++;
+                continue;
+            }
+            final int nameStart = i;
+            while (i < close && !isAttributeNameEnd(input.charAt(i))) {
+                i++;
+            }
+            if (nameStart == i) {
+                i++;
+                continue;
+            }
+            final String attribute = input.subSequence(nameStart, i).toString();
+            i = skipWhitespace(input, i, close);
+            if (i == close || input.charAt(i) != '=') {
+                continue;
+            }
+            i = skipWhitespace(input, i + 1, close);
+            final char quote = i < close && (input.charAt(i) == '"' || input.charAt(i) == '\'') ? input.charAt(i) : 0;
+            final int valueStart = quote == 0 ? i : i + 1;
+            int valueEnd = valueStart;
+            while (valueEnd < close && (quote == 0 ? !Character.isWhitespace(input.charAt(valueEnd)) : input.charAt(valueEnd) != quote)) {
+                valueEnd++;
+            }
+            i = quote == 0 ? valueEnd : Math.min(valueEnd + 1, close);
+            final CompiledReplacements replacements = replacementsFor(name, attribute);
+            if (replacements == null || replacements.isEmpty()) {
+                continue;
+            }
+            final char writtenQuote = quote == 0 ? '"' : quote;
+            final String rewritten = rewriteValue(input.subSequence(valueStart, valueEnd).toString(), replacements, writtenQuote, true);
+            if (rewritten == null) {
+                continue;
+            }
+            output.append(input, copied, quote == 0 ? valueStart : valueStart - 1);
+            output.append(writtenQuote);
+            output.append(rewritten);
+            output.append(writtenQuote);
+            copied = i;
+            if (replacements == this.textReplacements) {
+                this.textChanges++;
+            } else {
+                this.linkChanges++;
+            }
+        }
+        output.append(input, copied, end);
+        final State textState = textState(name);
+        if (textState != State.DATA && input.charAt(close - 1) != '/') {
+            this.textElement = name;
+            this.state = textState;
+        }
+    }
+
+    /**
+     * @param element Lower case name of an element
+     * @return State in which the content of {@code element} is read
+     */
+    private static State textState(final String element) {
+        if (RAW_TEXT_ELEMENTS.contains(element)) {
+            return State.RAW_TEXT;
+        } else if (RCDATA_ELEMENTS.contains(element)) {
+            return State.RCDATA;
+        }
+        return State.DATA;
+    }
+
+    /**
+     * Open the body at the start tag of an element that does not belong in the head
+     *
+     * @param element Lower case name of the element
+     */
+    private void startElement(final String element) {
+        if (!this.inBody && !HEAD_ELEMENTS.contains(element)) {
+            this.inBody = true;
+        }
+    }
+
+    private CompiledReplacements replacementsFor(final String element, final String attribute) {
+        if (attribute.equalsIgnoreCase(HTMLSymbols.TITLE_ATTRIBUTE)) {
+            return this.inBody && !VOID_ELEMENTS.contains(element) ? this.textReplacements : null;
+        } else if (attribute.equalsIgnoreCase(HTMLSymbols.SOURCE_ATTRIBUTE)
+                || (attribute.equalsIgnoreCase(HTMLSymbols.HREF_ATTRIBUTE) && HTMLSymbols.HREF_LINK_ELEMENTS.contains(element))) {
+            return this.linkReplacements;
+        }
+        return null;
+    }
+
+    /**
+     * Append text with {@code &}, {@code <}, {@code >}, non-breaking spaces and the given quote escaped as character
+     * references
+     *
+     * @param text Text to escape
+     * @param quote Quote delimiting the attribute value the text is written to, or {@code 0} for a text run
+     * @param output Destination of the escaped text
+     * @throws IOException If the text could not be appended
+     */
+    private static void escape(final String text, final char quote, final Appendable output) throws IOException {
+        int copied = 0;
+        for (int i = 0; i < text.length(); i++) {
+            final String reference;
+            switch (text.charAt(i)) {
+                case '&': reference = "&amp;"; break;
+                case '<': reference = quote == 0 ? "&lt;" : null; break;
+                case '>': reference = quote == 0 ? "&gt;" : null; break;
+                case '\u00A0': reference = "&nbsp;"; break;
+                case '"': reference = quote == '"' ? "&quot;" : null; break;
+                case '\'': reference = quote == '\'' ? "&#39;" : null; break;
+                default: reference = null; break;
+            }
+            if (reference != null) {
+                output.append(text, copied, i).append(reference);
+                copied = i + 1;
+            }
+        }
+        output.append(text, copied, text.length());
+    }
+
+    private static int tagNameEnd(final CharBuffer input, final int start, final int end) {
+        int i = start + 1;
+        while (i < end && !isTagNameEnd(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean isTagNameEnd(final char c) {
+        return Character.isWhitespace(c) || c == '/' || c == '>';
+    }
+
+    private static boolean isAttributeNameEnd(final char c) {
+        return isTagNameEnd(c) || c == '=';
+    }
+
+    private static boolean isAsciiLetter(final char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isContinuationByte(final char c) {
+        return c >= 0x80 && c < 0xC0;
+    }
+
+    private static boolean isWhitespace(final CharBuffer input, final int from, final int end) {
+        for (int i = from; i < end; i++) {
+            if (!Character.isWhitespace(input.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int skipWhitespace(final CharBuffer input, final int from, final int end) {
+        int i = from;
+        while (i < end && Character.isWhitespace(input.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static boolean startsWith(final CharBuffer input, final int from, final int length, final String prefix) {
+        if (length - from < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (input.charAt(from + i) != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(final CharBuffer input, final char c, final int from, final int length) {
+        for (int i = from; i < length; i++) {
+            if (input.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(final CharBuffer input, final String target, final int from, final int length) {
+        for (int i = from; i <= length - target.length(); i++) {
+            if (startsWith(input, i, length, target)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,202 @@
+package com.engineersbox.httpproxy.formatting.content.replacement;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+/**
+ * <a href="https://doi.org/10.1145/360825.360855" target="_top">Aho-Corasick</a> automaton finding any of a set of
+ * literal keys in a single scan of the text. The automaton is built as a deterministic table over the classes of
+ * characters that appear in the keys, so each character of the text costs a single table lookup regardless of how
+ * many keys there are.
+ *
+ * <br/><br/>
+ *
+ * Keys are matched with US-ASCII letters folded to lower case, as with {@link java.util.regex.Pattern#CASE_INSENSITIVE}.
+ * A key marked as case-sensitive is confirmed against the exact text once found.
+ */
+class AhoCorasick {
+
+    private static final int ROOT = 0;
+
+    private final String[] keys;
+    private final boolean[] caseSensitive;
+    private final int[] asciiClasses;
+    private final Map<Character, Integer> otherClasses;
+    private final int[][] transitions;
+    private final int[][] outputs;
+    private final int maxLength;
+
+    /**
+     * Leftmost match found by {@link AhoCorasick#find}
+     */
+    static class Hit {
+        int start;
+        int end;
+        int key;
+    }
+
+    /**
+     * @param keys Literal keys to find, identified by their index
+     * @param caseSensitive Whether each key must match the text exactly, rather than ignoring US-ASCII case
+     */
+    AhoCorasick(final String[] keys, final boolean[] caseSensitive) {
+        this.keys = keys;
+        this.caseSensitive = caseSensitive;
+        this.asciiClasses = new int[128];
+        this.otherClasses = new HashMap<>();
+        int classes = 1;
+        int maxLength = 0;
+        for (final String key : keys) {
+            maxLength = Math.max(maxLength, key.length());
+            for (int i = 0; i < key.length(); i++) {
+                final char c = fold(key.charAt(i));
+                if (c < 128) {
+                    if (this.asciiClasses[c] == 0) {
+                        this.asciiClasses[c] = classes++;
+                    }
+                } else if (!this.otherClasses.containsKey(c)) {
+                    this.otherClasses.put(c, classes++);
+                }
+            }
+        }
+        this.maxLength = maxLength;
+
+        final List<int[]> trie = new ArrayList<>();
+        final List<int[]> ends = new ArrayList<>();
+        trie.add(new int[classes]);
+        ends.add(new int[0]);
+        for (int k = 0; k < keys.length; k++) {
+            int state = ROOT;
+            for (int i = 0; i < keys[k].length(); i++) {
+                final int c = classOf(keys[k].charAt(i));
+                if (trie.get(state)[c] == 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(new int[classes]);
+                    ends.add(new int[0]);
+                }
+                state = trie.get(state)[c];
+            }
+            ends.set(state, append(ends.get(state), k));
+        }
+
+        this.transitions = trie.toArray(new int[0][]);
+        this.outputs = ends.toArray(new int[0][]);
+        final int[] failure = new int[this.transitions.length];
+        final Queue<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < classes; c++) {
+            if (this.transitions[ROOT][c] != 0) {
+                queue.add(this.transitions[ROOT][c]);
+            }
+        }
+        while (!queue.isEmpty()) {
+            final int state = queue.remove();
+            this.outputs[state] = merge(this.outputs[state], this.outputs[failure[state]]);
+            for (int c = 0; c < classes; c++) {
+                final int next = this.transitions[state][c];
+                if (next != 0) {
+                    failure[next] = this.transitions[failure[state]][c];
+                    queue.add(next);
+                } else {
+                    this.transitions[state][c] = this.transitions[failure[state]][c];
+                }
+            }
+        }
+    }
+
+    /**
+     * Find the leftmost occurrence of any key at or after {@code from}. Of the keys occurring at the same position,
+     * the one with the lowest index is chosen.
+     *
+     * @param text Text to search
+     * @param from Index to start searching from
+     * @param hit Holder to store the match in
+     * @return {@code true} if a key was found, {@code false} otherwise
+     */
+    boolean find(final CharSequence text, final int from, final Hit hit) {
+        int state = ROOT;
+        int bestStart = -1;
+        final int length = text.length();
+        for (int i = from; i < length; i++) {
+            if (bestStart >= 0 && i - this.maxLength >= bestStart) {
+                break;
+            }
+            state = this.transitions[state][classOf(text.charAt(i))];
+            for (final int key : this.outputs[state]) {
+                final int start = i + 1 - this.keys[key].length();
+                if (start < from || (bestStart >= 0 && (start > bestStart || (start == bestStart && key > hit.key)))) {
+                    continue;
+                }
+                if (this.caseSensitive[key] && !matchesExactly(text, start, this.keys[key])) {
+                    continue;
+                }
+                bestStart = start;
+                hit.start = start;
+                hit.end = i + 1;
+                hit.key = key;
+            }
+        }
+        return bestStart >= 0;
+    }
+
+    /**
+     * Determine whether any key occurs in the text, stopping at the first one found rather than resolving the leftmost
+     *
+     * @param text Text to search
+     * @return {@code true} if a key was found, {@code false} otherwise
+     */
+    boolean contains(final CharSequence text) {
+        int state = ROOT;
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            state = this.transitions[state][classOf(text.charAt(i))];
+            for (final int key : this.outputs[state]) {
+                if (!this.caseSensitive[key] || matchesExactly(text, i + 1 - this.keys[key].length(), this.keys[key])) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean matchesExactly(final CharSequence text, final int start, final String key) {
+        for (int i = 0; i < key.length(); i++) {
+            if (text.charAt(start + i) != key.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int classOf(final char c) {
+        final char folded = fold(c);
+        if (folded < 128) {
+            return this.asciiClasses[folded];
+        }
+        final Integer charClass = this.otherClasses.get(folded);
+        return charClass == null ? 0 : charClass;
+    }
+
+    private static char fold(final char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + ('a' - 'A')) : c;
+    }
+
+    private static int[] append(final int[] values, final int value) {
+        final int[] appended = Arrays.copyOf(values, values.length + 1);
+        appended[values.length] = value;
+        return appended;
+    }
+
+    private static int[] merge(final int[] first, final int[] second) {
+        if (second.length == 0) {
+            return first;
+        }
+        final int[] merged = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, merged, first.length, second.length);
+        return merged;
+    }
+}
@@ -0,0 +1,46 @@
+package com.engineersbox.httpproxy.formatting.content.replacement;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * The text and link replacements of the {@link Config} policies, compiled once at startup into
+ * {@link CompiledReplacements}. A single instance is shared by all connections.
+ */
+public class CompiledPolicies {
+
+    private static final Logger logger = LogManager.getLogger(CompiledPolicies.class);
+
+    /**
+     * Compiled {@code policies.textReplacements}, applied to HTML text nodes
+     */
+    public final CompiledReplacements textReplacements;
+    /**
+     * Compiled {@code policies.linkReplacements}, applied to HTML link attributes
+     */
+    public final CompiledReplacements linkReplacements;
+    /**
+     * {@link LiteralPrefilter} of both {@code textReplacements} and {@code linkReplacements}, ruling out bodies that
+     * neither can match before they are parsed
+     */
+    public final LiteralPrefilter prefilter;
+
+    @Inject
+    public CompiledPolicies(final Config config) {
+        this.textReplacements = CompiledReplacements.compile(config.policies.textReplacements);
+        this.linkReplacements = CompiledReplacements.compile(config.policies.linkReplacements);
+        this.prefilter = new LiteralPrefilter(this.textReplacements, this.linkReplacements);
+        logger.info(String.format(
+                "Compiled text replacements [LITERAL: %d] [PATTERN: %d] and link replacements [LITERAL: %d] [PATTERN: %d]",
+                this.textReplacements.getLiteralCount(),
+                this.textReplacements.getPatternCount(),
+                this.linkReplacements.getLiteralCount(),
+                this.linkReplacements.getPatternCount()
+        ));
+        if (this.prefilter.isUnconstrained()) {
+            logger.info("Some replacements require no literal text, all HTML bodies will be parsed");
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.engineersbox.httpproxy.formatting.content.replacement;
+
+import com.engineersbox.httpproxy.configuration.domain.policies.Replacement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A list of {@link Replacement}'s compiled into a single matcher, rewriting a text with all of them in one scan rather
+ * than one scan per {@link Replacement}.
+ *
+ * <br/><br/>
+ *
+ * Replacements whose pattern is a plain literal, optionally with escaped metacharacters and a leading {@code (?i)} or
+ * {@link Pattern#CASE_INSENSITIVE} flag, and whose replacement has no group references are found together by an
+ * {@link AhoCorasick} automaton. Any other replacement falls back to its {@link Pattern}, with every pattern advanced
+ * through the text alongside the automaton.
+ *
+ * <br/><br/>
+ *
+ * Matches are replaced from left to right. Where several replacements match at the same position, the one listed
+ * first wins. The text is scanned once, so replaced text is never matched again by a later replacement, unlike when
+ * each {@link Replacement} is applied to the output of the one before.
+ */
+public class CompiledReplacements {
+
+    /**
+     * {@link CompiledReplacements} without any replacements, leaving every text as it is
+     */
+    public static final CompiledReplacements NONE = compile(Collections.emptyList());
+
+    private static final String CASE_INSENSITIVE_PREFIX = "(?i)";
+    private static final String METACHARACTERS = ".[]{}()*+?^$|";
+
+    private final int size;
+    private final AhoCorasick literals;
+    private final int[] literalRules;
+    private final String[] literalReplacements;
+    private final Pattern[] patterns;
+    private final int[] patternRules;
+    private final ReplacementTemplate[] templates;
+    private final RequiredFragment[] fragments;
+    private final LiteralPrefilter prefilter;
+
+    private CompiledReplacements(final int size,
+                                 final AhoCorasick literals,
+                                 final int[] literalRules,
+                                 final String[] literalReplacements,
+                                 final Pattern[] patterns,
+                                 final int[] patternRules,
+                                 final ReplacementTemplate[] templates,
+                                 final RequiredFragment[] fragments) {
+        this.size = size;
+        this.literals = literals;
+        this.literalRules = literalRules;
+        this.literalReplacements = literalReplacements;
+        this.patterns = patterns;
+        this.patternRules = patternRules;
+        this.templates = templates;
+        this.fragments = fragments;
+        this.prefilter = new LiteralPrefilter(this);
+    }
+
+    /**
+     * Compile a list of {@link Replacement}'s, in the order they take precedence
+     *
+     * @param replacements Replacements to compile
+     * @return {@link CompiledReplacements} applying all of {@code replacements}
+     * @throws IllegalArgumentException If a replacement string is malformed
+     * @throws IndexOutOfBoundsException If a replacement string refers to a group its pattern does not have
+     */
+    public static CompiledReplacements compile(final List<Replacement> replacements) {
+        final List<String> keys = new ArrayList<>();
+        final List<Boolean> caseSensitive = new ArrayList<>();
+        final List<Integer> literalRules = new ArrayList<>();
+        final List<String> literalReplacements = new ArrayList<>();
+        final List<Pattern> patterns = new ArrayList<>();
+        final List<Integer> patternRules = new ArrayList<>();
+        final List<ReplacementTemplate> templates = new ArrayList<>();
+        final RequiredFragment[] fragments = new RequiredFragment[replacements.size()];
+        for (int i = 0; i < replacements.size(); i++) {
+            final Replacement replacement = replacements.get(i);
+            final Matcher matcher = replacement.from.matcher("");
+            final ReplacementTemplate template = ReplacementTemplate.compile(replacement.to, matcher.groupCount());
+            fragments[i] = RequiredFragment.of(replacement.from);
+            String regex = replacement.from.pattern();
+            int flags = replacement.from.flags();
+            if (regex.startsWith(CASE_INSENSITIVE_PREFIX)) {
+                regex = regex.substring(CASE_INSENSITIVE_PREFIX.length());
+                flags |= Pattern.CASE_INSENSITIVE;
+            }
+            final String key = (flags & ~Pattern.CASE_INSENSITIVE) == 0 ? literalOf(regex) : null;
+            if (key != null && template.isLiteral()) {
+                keys.add(key);
+                caseSensitive.add((flags & Pattern.CASE_INSENSITIVE) == 0);
+                literalRules.add(i);
+                literalReplacements.add(template.literal());
+            } else {
+                patterns.add(replacement.from);
+                patternRules.add(i);
+                templates.add(template);
+            }
+        }
+        final boolean[] sensitivity = new boolean[caseSensitive.size()];
+        for (int i = 0; i < sensitivity.length; i++) {
+            sensitivity[i] = caseSensitive.get(i);
+        }
+        return new CompiledReplacements(
+                replacements.size(),
+                keys.isEmpty() ? null : new AhoCorasick(keys.toArray(new String[0]), sensitivity),
+                literalRules.stream().mapToInt(Integer::intValue).toArray(),
+                literalReplacements.toArray(new String[0]),
+                patterns.toArray(new Pattern[0]),
+                patternRules.stream().mapToInt(Integer::intValue).toArray(),
+                templates.toArray(new ReplacementTemplate[0]),
+                fragments
+        );
+    }
+
+    /**
+     * @param regex Pattern without flags
+     * @return Text the pattern matches if it is a literal, {@code null} otherwise
+     */
+    private static String literalOf(final String regex) {
+        if (regex.isEmpty()) {
+            return null;
+        }
+        final StringBuilder literal = new StringBuilder(regex.length());
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                if (++i == regex.length() || Character.isLetterOrDigit(regex.charAt(i))) {
+                    return null;
+                }
+                literal.append(regex.charAt(i));
+            } else if (METACHARACTERS.indexOf(c) >= 0) {
+                return null;
+            } else {
+                literal.append(c);
+            }
+        }
+        return literal.toString();
+    }
+
+    /**
+     * @return {@code true} if there are no replacements, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return Amount of replacements matched by the literal automaton
+     */
+    public int getLiteralCount() {
+        return this.literalRules.length;
+    }
+
+    /**
+     * @return Amount of replacements matched by their own {@link Pattern}
+     */
+    public int getPatternCount() {
+        return this.patternRules.length;
+    }
+
+    /**
+     * @return {@link RequiredFragment} of each replacement in the order they were compiled, with {@code null} for a
+     * replacement that does not require any literal text
+     */
+    RequiredFragment[] getRequiredFragments() {
+        return this.fragments;
+    }
+
+    /**
+     * @return {@link LiteralPrefilter} of these replacements alone
+     */
+    public LiteralPrefilter getPrefilter() {
+        return this.prefilter;
+    }
+
+    /**
+     * Replace every match of every replacement in a text
+     *
+     * @param input Text to rewrite
+     * @return Rewritten text, or {@code input} itself if nothing matched
+     */
+    public String replaceAll(final String input) {
+        if (this.size == 0) {
+            return input;
+        }
+        final AhoCorasick.Hit hit = new AhoCorasick.Hit();
+        boolean literalFound = this.literals != null && this.literals.find(input, 0, hit);
+        final Matcher[] matchers = new Matcher[this.patterns.length];
+        final boolean[] found = new boolean[this.patterns.length];
+        for (int i = 0; i < matchers.length; i++) {
+            matchers[i] = this.patterns[i].matcher(input);
+            found[i] = matchers[i].find();
+        }
+        StringBuilder out = null;
+        int position = 0;
+        while (true) {
+            int start = Integer.MAX_VALUE;
+            int rule = Integer.MAX_VALUE;
+            int chosen = -1;
+            if (literalFound) {
+                start = hit.start;
+                rule = this.literalRules[hit.key];
+            }
+            for (int i = 0; i < matchers.length; i++) {
+                if (found[i] && (matchers[i].start() < start || (matchers[i].start() == start && this.patternRules[i] < rule))) {
+                    start = matchers[i].start();
+                    rule = this.patternRules[i];
+                    chosen = i;
+                }
+            }
+            if (rule == Integer.MAX_VALUE) {
+                break;
+            }
+            if (out == null) {
+                out = new StringBuilder(input.length() + 16);
+            }
+            out.append(input, position, start);
+            final int end;
+            if (chosen < 0) {
+                out.append(this.literalReplacements[hit.key]);
+                end = hit.end;
+            } else {
+                this.templates[chosen].appendTo(out, matchers[chosen]);
+                end = matchers[chosen].end();
+            }
+            position = end;
+            if (end == start) {
+                if (end == input.length()) {
+                    break;
+                }
+                out.append(input.charAt(end));
+                position++;
+            }
+            if (literalFound && hit.start < position) {
+                literalFound = this.literals.find(input, position, hit);
+            }
+            for (int i = 0; i < matchers.length; i++) {
+                if (found[i] && matchers[i].start() < position) {
+                    found[i] = matchers[i].find(position);
+                }
+            }
+        }
+        if (out == null) {
+            return input;
+        }
+        out.append(input, position, input.length());
+        return out.toString();
+    }
+}
@@ -0,0 +1,175 @@
+package com.engineersbox.httpproxy.formatting.content.replacement;
+
+import org.jsoup.nodes.Entities;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Check of whether any of a set of {@link CompiledReplacements} can match within a HTML document, without parsing it.
+ * The {@link RequiredFragment} of every replacement is searched for in a single scan of the document by an
+ * {@link AhoCorasick} automaton, and a document that contains none of them cannot have any text or attribute value the
+ * replacements would change.
+ *
+ * <br/><br/>
+ *
+ * Since text and attribute values may hold character references, a document with a {@code &} that contains no
+ * fragment is scanned again with its character references decoded. Only references terminated by a {@code ;} and
+ * numeric references are decoded, so a document holding a reference without one that an HTML parser might still
+ * decode, such as {@code &amp} or {@code &copy}, may always match. If any replacement does not require a literal
+ * fragment, every document may match.
+ */
+public class LiteralPrefilter {
+
+    private static final char CHARACTER_REFERENCE_START = '&';
+    private static final char CHARACTER_REFERENCE_END = ';';
+    private static final char NUMERIC_REFERENCE_START = '#';
+    private static final int MAX_BASE_ENTITY_LENGTH = 6;
+
+    private final AhoCorasick fragments;
+    private final boolean unconstrained;
+    private final boolean ascii;
+
+    /**
+     * @param replacements {@link CompiledReplacements} to derive the literal fragments from
+     */
+    public LiteralPrefilter(final CompiledReplacements... replacements) {
+        final List<String> keys = new ArrayList<>();
+        final List<Boolean> caseSensitive = new ArrayList<>();
+        boolean unconstrained = false;
+        boolean ascii = true;
+        for (final CompiledReplacements compiled : replacements) {
+            for (final RequiredFragment fragment : compiled.getRequiredFragments()) {
+                if (fragment == null) {
+                    unconstrained = true;
+                    continue;
+                }
+                keys.add(fragment.text);
+                ascii &= isAscii(fragment.text);
+                caseSensitive.add(fragment.caseSensitive);
+            }
+        }
+        final boolean[] sensitivity = new boolean[caseSensitive.size()];
+        for (int i = 0; i < sensitivity.length; i++) {
+            sensitivity[i] = caseSensitive.get(i);
+        }
+        this.unconstrained = unconstrained;
+        this.ascii = ascii && !unconstrained;
+        this.fragments = unconstrained || keys.isEmpty() ? null : new AhoCorasick(keys.toArray(new String[0]), sensitivity);
+    }
+
+    /**
+     * @return {@code true} if some replacement does not require a literal fragment, so that every document may match,
+     * {@code false} otherwise
+     */
+    public boolean isUnconstrained() {
+        return this.unconstrained;
+    }
+
+    /**
+     * @return {@code true} if every replacement requires a literal fragment and all of them are US-ASCII, so that they
+     * are found at the same places in the bytes of any ASCII-compatible encoding viewed as
+     * {@link java.nio.charset.StandardCharsets#ISO_8859_1} characters, {@code false} otherwise
+     */
+    public boolean isAscii() {
+        return this.ascii;
+    }
+
+    private static boolean isAscii(final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Determine whether any of the replacements could match within a document
+     *
+     * @param content HTML document to check
+     * @return {@code false} if no replacement can match anywhere in {@code content}, {@code true} otherwise
+     */
+    public boolean mayMatch(final String content) {
+        if (this.unconstrained) {
+            return true;
+        } else if (this.fragments == null || content == null) {
+            return false;
+        }
+        if (this.fragments.contains(content)) {
+            return true;
+        } else if (content.indexOf(CHARACTER_REFERENCE_START) < 0) {
+            return false;
+        }
+        final String decoded = decodeReferences(content);
+        return decoded == null || this.fragments.contains(decoded);
+    }
+
+    /**
+     * Decode the character references in a text
+     *
+     * @param content Text to decode
+     * @return Decoded text, or {@code null} if it holds a reference that may be decoded differently by an HTML parser
+     */
+    private static String decodeReferences(final String content) {
+        final StringBuilder decoded = new StringBuilder(content.length());
+        final int length = content.length();
+        int copied = 0;
+        for (int i = content.indexOf(CHARACTER_REFERENCE_START); i >= 0; i = content.indexOf(CHARACTER_REFERENCE_START, i + 1)) {
+            int end = i + 1;
+            final String value;
+            if (end < length && content.charAt(end) == NUMERIC_REFERENCE_START) {
+                final boolean hex = end + 1 < length && (content.charAt(end + 1) == 'x' || content.charAt(end + 1) == 'X');
+                end += hex ? 2 : 1;
+                final int digitsStart = end;
+                while (end < length && end - digitsStart < 8 && Character.digit(content.charAt(end), hex ? 16 : 10) >= 0) {
+                    end++;
+                }
+                if (end == digitsStart) {
+                    continue;
+                }
+                final long number = Long.parseLong(content.substring(digitsStart, end), hex ? 16 : 10);
+                if (number > Character.MAX_CODE_POINT) {
+                    return null;
+                }
+                final int codePoint = (int) number;
+                if (codePoint == 0
+                        || (codePoint >= 0x80 && codePoint < 0xA0)
+                        || (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE)
+                        || !Character.isValidCodePoint(codePoint)
+                        || (end < length && Character.digit(content.charAt(end), hex ? 16 : 10) >= 0)) {
+                    return null;
+                }
+                value = new String(Character.toChars(codePoint));
+            } else {
+                while (end < length && Character.isLetterOrDigit(content.charAt(end)) && content.charAt(end) < 0x80) {
+                    end++;
+                }
+                final String name = content.substring(i + 1, end);
+                if (end < length && content.charAt(end) == CHARACTER_REFERENCE_END && Entities.isNamedEntity(name)) {
+                    value = Entities.getByName(name);
+                } else if (hasBaseEntityPrefix(name)) {
+                    return null;
+                } else {
+                    continue;
+                }
+            }
+            if (end < length && content.charAt(end) == CHARACTER_REFERENCE_END) {
+                end++;
+            }
+            decoded.append(content, copied, i).append(value);
+            copied = end;
+            i = end - 1;
+        }
+        return decoded.append(content, copied, length).toString();
+    }
+
+    private static boolean hasBaseEntityPrefix(final String name) {
+        for (int i = Math.min(name.length(), MAX_BASE_ENTITY_LENGTH); i > 1; i--) {
+            if (Entities.isBaseNamedEntity(name.substring(0, i))) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
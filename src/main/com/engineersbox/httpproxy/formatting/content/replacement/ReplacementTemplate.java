@@ -0,0 +1,127 @@
+package com.engineersbox.httpproxy.formatting.content.replacement;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+
+/**
+ * Replacement string of a {@link com.engineersbox.httpproxy.configuration.domain.policies.Replacement}, parsed once
+ * into its literal text and group references with the same syntax as {@link Matcher#appendReplacement}:
+ *
+ * <ul>
+ *     <li>{@code $n}: Text captured by group {@code n}, taking as many digits as form a valid group number</li>
+ *     <li>{@code ${name}}: Text captured by the named group {@code name}</li>
+ *     <li>{@code \x}: The character {@code x} taken literally, such as {@code \$}</li>
+ * </ul>
+ */
+class ReplacementTemplate {
+
+    private final String[] literals;
+    private final int[] groups;
+    private final String[] names;
+
+    private ReplacementTemplate(final String[] literals, final int[] groups, final String[] names) {
+        this.literals = literals;
+        this.groups = groups;
+        this.names = names;
+    }
+
+    /**
+     * Parse a replacement string
+     *
+     * @param replacement Replacement string
+     * @param groupCount Amount of capturing groups in the pattern the replacement is used with
+     * @return {@link ReplacementTemplate} of the replacement
+     * @throws IllegalArgumentException If the replacement ends with a lone {@code \}, or has a malformed group reference
+     * @throws IndexOutOfBoundsException If the replacement refers to a group the pattern does not have
+     */
+    static ReplacementTemplate compile(final String replacement, final int groupCount) {
+        final List<String> literals = new ArrayList<>();
+        final List<Integer> groups = new ArrayList<>();
+        final List<String> names = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < replacement.length()) {
+            final char c = replacement.charAt(i++);
+            if (c == '\\') {
+                if (i == replacement.length()) {
+                    throw new IllegalArgumentException("Character to be escaped is missing in replacement: " + replacement);
+                }
+                literal.append(replacement.charAt(i++));
+                continue;
+            } else if (c != '$') {
+                literal.append(c);
+                continue;
+            }
+            if (i == replacement.length()) {
+                throw new IllegalArgumentException("Illegal group reference: group index is missing in replacement: " + replacement);
+            }
+            literals.add(literal.toString());
+            literal = new StringBuilder();
+            if (replacement.charAt(i) == '{') {
+                final int close = replacement.indexOf('}', i);
+                if (close < 0 || close == i + 1) {
+                    throw new IllegalArgumentException("Named capturing group is missing or unterminated in replacement: " + replacement);
+                }
+                groups.add(-1);
+                names.add(replacement.substring(i + 1, close));
+                i = close + 1;
+                continue;
+            }
+            int group = replacement.charAt(i++) - '0';
+            if (group < 0 || group > 9) {
+                throw new IllegalArgumentException("Illegal group reference in replacement: " + replacement);
+            }
+            while (i < replacement.length()) {
+                final int digit = replacement.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || group * 10 + digit > groupCount) {
+                    break;
+                }
+                group = group * 10 + digit;
+                i++;
+            }
+            if (group > groupCount) {
+                throw new IndexOutOfBoundsException("No group " + group + " for replacement: " + replacement);
+            }
+            groups.add(group);
+            names.add(null);
+        }
+        literals.add(literal.toString());
+        return new ReplacementTemplate(
+                literals.toArray(new String[0]),
+                groups.stream().mapToInt(Integer::intValue).toArray(),
+                names.toArray(new String[0])
+        );
+    }
+
+    /**
+     * @return {@code true} if the replacement has no group references, {@code false} otherwise
+     */
+    boolean isLiteral() {
+        return this.groups.length == 0;
+    }
+
+    /**
+     * @return Text of the replacement, with any escapes removed. Only meaningful if {@link ReplacementTemplate#isLiteral()}
+     */
+    String literal() {
+        return this.literals[0];
+    }
+
+    /**
+     * Append the replacement for the current match of a {@link Matcher}
+     *
+     * @param out Destination of the replacement
+     * @param matcher Matcher positioned at the match being replaced
+     */
+    void appendTo(final StringBuilder out, final Matcher matcher) {
+        for (int i = 0; i < this.groups.length; i++) {
+            out.append(this.literals[i]);
+            final String captured = this.groups[i] < 0 ? matcher.group(this.names[i]) : matcher.group(this.groups[i]);
+            if (captured != null) {
+                out.append(captured);
+            }
+        }
+        out.append(this.literals[this.groups.length]);
+    }
+}
@@ -0,0 +1,290 @@
+package com.engineersbox.httpproxy.formatting.content.replacement;
+
+import java.util.regex.Pattern;
+
+/**
+ * A literal fragment of a {@link Pattern} that must appear in any text the pattern matches, derived conservatively from
+ * the pattern. Fragments never span whitespace, so that they still appear in text whose whitespace is normalised
+ * before it is matched, as with {@link org.jsoup.nodes.TextNode#text()}.
+ *
+ * <br/><br/>
+ *
+ * Only the top level of the pattern is considered. Groups, character classes, escaped character classes and optional
+ * or repeated characters end the current fragment, and the longest fragment is kept. A pattern with alternation at its
+ * top level, or with flags that change how literals are matched other than {@link Pattern#CASE_INSENSITIVE}, has no
+ * required fragment.
+ */
+class RequiredFragment {
+
+    private static final int UNSUPPORTED_FLAGS = Pattern.COMMENTS
+            | Pattern.CANON_EQ
+            | Pattern.UNICODE_CASE
+            | Pattern.UNICODE_CHARACTER_CLASS;
+    private static final String INLINE_FLAGS = "idmsuxU-";
+    private static final String UNSUPPORTED_INLINE_FLAGS = "uxU";
+
+    final String text;
+    final boolean caseSensitive;
+
+    private RequiredFragment(final String text, final boolean caseSensitive) {
+        this.text = text;
+        this.caseSensitive = caseSensitive;
+    }
+
+    /**
+     * Derive the required fragment of a pattern
+     *
+     * @param pattern {@link Pattern} to derive the fragment of
+     * @return {@link RequiredFragment} of {@code pattern}, or {@code null} if no literal text is required by it
+     */
+    static RequiredFragment of(final Pattern pattern) {
+        final int flags = pattern.flags();
+        if ((flags & UNSUPPORTED_FLAGS) != 0) {
+            return null;
+        }
+        final String regex = pattern.pattern();
+        final Fragments fragments = new Fragments();
+        if ((flags & Pattern.LITERAL) != 0) {
+            for (int i = 0; i < regex.length(); i++) {
+                fragments.append(regex.charAt(i));
+            }
+            return fragments.longest((flags & Pattern.CASE_INSENSITIVE) == 0);
+        }
+        boolean caseSensitive = (flags & Pattern.CASE_INSENSITIVE) == 0;
+        for (int i = 0; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    i = escape(regex, i, fragments);
+                    break;
+                case '[':
+                    i = skipClass(regex, i);
+                    fragments.end();
+                    break;
+                case '(':
+                    final int flagsEnd = inlineFlagsEnd(regex, i);
+                    if (flagsEnd >= 0) {
+                        final String inline = regex.substring(i + 2, flagsEnd);
+                        if (containsAny(inline, UNSUPPORTED_INLINE_FLAGS)) {
+                            return null;
+                        }
+                        if (inline.indexOf('i') >= 0) {
+                            caseSensitive = false;
+                        }
+                        i = flagsEnd;
+                    } else {
+                        i = skipGroup(regex, i);
+                    }
+                    fragments.end();
+                    break;
+                case '|':
+                    return null;
+                case '*':
+                case '?':
+                    fragments.dropLast();
+                    break;
+                case '{':
+                    final int close = regex.indexOf('}', i);
+                    if (close < 0) {
+                        return null;
+                    }
+                    if (regex.charAt(i + 1) == '0' || regex.charAt(i + 1) == ',') {
+                        fragments.dropLast();
+                    } else {
+                        fragments.end();
+                    }
+                    i = close;
+                    break;
+                case '+':
+                case '.':
+                case '^':
+                case '$':
+                    fragments.end();
+                    break;
+                default:
+                    fragments.append(c);
+            }
+        }
+        return fragments.longest(caseSensitive);
+    }
+
+    /**
+     * Handle an escape sequence, appending the character it stands for if it is a literal
+     *
+     * @param regex Pattern being scanned
+     * @param start Index of the backslash
+     * @return Index of the last character of the escape sequence
+     */
+    private static int escape(final String regex, final int start, final Fragments fragments) {
+        if (start + 1 >= regex.length()) {
+            fragments.end();
+            return start;
+        }
+        final char c = regex.charAt(start + 1);
+        if (c == 'Q') {
+            final int end = regex.indexOf("\\E", start + 2);
+            final int quotedEnd = end < 0 ? regex.length() : end;
+            for (int i = start + 2; i < quotedEnd; i++) {
+                fragments.append(regex.charAt(i));
+            }
+            return end < 0 ? regex.length() : end + 1;
+        }
+        if (!Character.isLetterOrDigit(c)) {
+            fragments.append(c);
+            return start + 1;
+        }
+        fragments.end();
+        int i = start + 1;
+        switch (c) {
+            case 'x':
+            case 'p':
+            case 'P':
+            case 'N':
+                if (i + 1 < regex.length() && regex.charAt(i + 1) == '{') {
+                    final int close = regex.indexOf('}', i);
+                    return close < 0 ? regex.length() : close;
+                }
+                return i + (c == 'x' ? 2 : 1);
+            case 'u':
+                return i + 4;
+            case 'c':
+                return i + 1;
+            case 'k':
+                final int close = regex.indexOf('>', i);
+                return close < 0 ? regex.length() : close;
+            case '0':
+                while (i + 1 < regex.length() && i - start < 4 && regex.charAt(i + 1) >= '0' && regex.charAt(i + 1) <= '7') {
+                    i++;
+                }
+                return i;
+            default:
+                while (Character.isDigit(c) && i + 1 < regex.length() && Character.isDigit(regex.charAt(i + 1))) {
+                    i++;
+                }
+                return i;
+        }
+    }
+
+    /**
+     * @param regex Pattern being scanned
+     * @param start Index of the opening bracket of a character class
+     * @return Index of the closing bracket of the character class
+     */
+    private static int skipClass(final String regex, final int start) {
+        int i = start + 1;
+        if (i < regex.length() && regex.charAt(i) == '^') {
+            i++;
+        }
+        if (i < regex.length() && regex.charAt(i) == ']') {
+            i++;
+        }
+        int depth = 1;
+        for (; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regex, i);
+            } else if (c == '[') {
+                depth++;
+            } else if (c == ']' && --depth == 0) {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    /**
+     * @param regex Pattern being scanned
+     * @param start Index of the opening parenthesis of a group
+     * @return Index of the closing parenthesis of the group
+     */
+    private static int skipGroup(final String regex, final int start) {
+        int depth = 0;
+        for (int i = start; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == '\\') {
+                i = skipEscape(regex, i);
+            } else if (c == '[') {
+                i = skipClass(regex, i);
+            } else if (c == '(') {
+                depth++;
+            } else if (c == ')' && --depth == 0) {
+                return i;
+            }
+        }
+        return regex.length();
+    }
+
+    private static int skipEscape(final String regex, final int start) {
+        if (start + 1 < regex.length() && regex.charAt(start + 1) == 'Q') {
+            final int end = regex.indexOf("\\E", start + 2);
+            return end < 0 ? regex.length() : end + 1;
+        }
+        return start + 1;
+    }
+
+    /**
+     * @param regex Pattern being scanned
+     * @param start Index of an opening parenthesis
+     * @return Index of the closing parenthesis if the group only sets inline flags, such as {@code (?i)}, otherwise
+     * {@code -1}
+     */
+    private static int inlineFlagsEnd(final String regex, final int start) {
+        if (start + 1 >= regex.length() || regex.charAt(start + 1) != '?') {
+            return -1;
+        }
+        for (int i = start + 2; i < regex.length(); i++) {
+            final char c = regex.charAt(i);
+            if (c == ')') {
+                return i;
+            } else if (INLINE_FLAGS.indexOf(c) < 0) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean containsAny(final String value, final String characters) {
+        for (int i = 0; i < characters.length(); i++) {
+            if (value.indexOf(characters.charAt(i)) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Runs of literal characters collected while scanning a pattern, keeping the longest
+     */
+    private static class Fragments {
+
+        private final StringBuilder current = new StringBuilder();
+        private String longest = "";
+
+        void append(final char c) {
+            if (Character.isWhitespace(c) || Character.isSpaceChar(c)) {
+                end();
+            } else {
+                this.current.append(c);
+            }
+        }
+
+        void dropLast() {
+            if (this.current.length() > 0) {
+                this.current.setLength(this.current.length() - 1);
+            }
+            end();
+        }
+
+        void end() {
+            if (this.current.length() > this.longest.length()) {
+                this.longest = this.current.toString();
+            }
+            this.current.setLength(0);
+        }
+
+        RequiredFragment longest(final boolean caseSensitive) {
+            end();
+            return this.longest.isEmpty() ? null : new RequiredFragment(this.longest, caseSensitive);
+        }
+    }
+}
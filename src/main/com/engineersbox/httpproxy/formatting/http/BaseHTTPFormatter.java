@@ -1,7 +1,9 @@
 package com.engineersbox.httpproxy.formatting.http;
 
+import com.engineersbox.httpproxy.buffer.ByteAccumulator;
 import com.engineersbox.httpproxy.configuration.Config;
 import com.engineersbox.httpproxy.exceptions.http.*;
+import com.engineersbox.httpproxy.formatting.compression.CompressionFormat;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPStartLine;
 
@@ -48,6 +50,23 @@ public interface BaseHTTPFormatter<T extends HTTPStartLine> {
      */
     HTTPMessage<T> fromRaw(final byte[] raw, final byte[] bodyBytes, final Charset charset, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException;
 
+    /**
+     * Convert the start line and headers of a message, held in a region of a {@code byte[]}, into a {@link HTTPMessage}
+     * with an empty body. The bytes of the head are interpreted as {@code ISO-8859-1}, as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-3.2.4" target="_top">RFC 7230 Section 3.2.4</a>.
+     *
+     * @param raw {@code byte[]} containing the head of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param offset Index in {@code raw} of the first byte of the start line
+     * @param length Amount of bytes in the head, including the empty line terminating the headers
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     */
+    HTTPMessage<T> fromRawHead(final byte[] raw, final int offset, final int length, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException;
+
     /**
      * Convert a {@link String} into a {@link HTTPMessage}. This will encode the body into a string and store the raw
      * bytes separately. Note that the raw bytes will retrieved from the supplied string using {@link String#getBytes()}
@@ -79,4 +98,19 @@ public interface BaseHTTPFormatter<T extends HTTPStartLine> {
      */
     HTTPMessage<T> fromRawString(final String raw, final byte[] bodyBytes, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException;
 
+
+    /**
+     * Populate the body of a {@link HTTPMessage} that was constructed from only a start line and headers. The bytes
+     * are held as they are, and only decompressed and decoded with {@code charset} once the body is requested as a
+     * {@link String}. Only textual bodies are limited to the configured maximum body size, which applies to the bytes
+     * as they were received.
+     *
+     * @param message {@link HTTPMessage} to populate the body of
+     * @param bodyBytes {@link ByteAccumulator} holding a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a> compliant message body
+     * @param charset {@link Charset} the body is encoded with, or {@code null} if the body is not textual
+     * @param coding {@link CompressionFormat} still applied to {@code bodyBytes}, or {@code null} if there is none
+     * @return The given {@code message}
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    HTTPMessage<T> withBody(final HTTPMessage<T> message, final ByteAccumulator bodyBytes, final Charset charset, final CompressionFormat coding) throws InvalidHTTPBodyException;
 }
@@ -0,0 +1,444 @@
+package com.engineersbox.httpproxy.formatting.http;
+
+import com.engineersbox.httpproxy.buffer.ByteAccumulator;
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.exceptions.http.*;
+import com.engineersbox.httpproxy.formatting.compression.CompressionFormat;
+import com.engineersbox.httpproxy.formatting.http.common.*;
+import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
+import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
+import com.google.inject.Inject;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Formatter implementation parsing a raw <a href="https://tools.ietf.org/html/rfc7230#section-3" target="_top">RFC 7230 Section 3</a>
+ * compliant HTTP message directly from its bytes in a single pass, with the message type determined via the class type
+ * parameter {@code T}.
+ *
+ * <br/><br/>
+ *
+ * The head is scanned byte-by-byte by a state machine tracking the offsets of the start line segments and of each
+ * header name and value, without decoding the head into a {@link String}, splitting it or matching it against a regex.
+ * The only objects created are the start line, the {@link HTTPHeaders} and the header values. Header names are taken
+ * from the common names interned by {@link HTTPHeaders#intern(byte[], int, int)} when they match one exactly, and the
+ * method and version are matched in place against their known values. Repeated headers are all kept.
+ *
+ * <br/><br/>
+ *
+ * Lines may be terminated by either {@code CRLF (\r\n)} or a bare {@code LF (\n)}, as per
+ * <a href="https://tools.ietf.org/html/rfc7230#section-3.5" target="_top">RFC 7230 Section 3.5</a>. Whitespace
+ * surrounding header values is removed.
+ *
+ * @param <T> An instance of {@link HTTPStartLine} as either {@link HTTPRequestStartLine} or {@link HTTPResponseStartLine}
+ */
+public class ByteHTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter<T> {
+
+    private final Logger logger = LogManager.getLogger(ByteHTTPFormatter.class);
+
+    private static final byte CR = '\r';
+    private static final byte LF = '\n';
+    private static final byte SP = ' ';
+    private static final byte HTAB = '\t';
+    private static final byte COLON = ':';
+
+    private static final int STATE_START_LINE = 0;
+    private static final int STATE_NAME = 1;
+    private static final int STATE_VALUE_LEADING = 2;
+    private static final int STATE_VALUE = 3;
+    private static final int STATE_LINE_FEED = 4;
+    private static final int STATE_BODY = 5;
+
+    private static final HTTPMethod[] METHODS = HTTPMethod.values();
+    private static final HTTPVersion[] VERSIONS = HTTPVersion.values();
+    private static final boolean[] TOKEN_CHARS = new boolean[128];
+    private static final int AVERAGE_HEADER_LINE_LENGTH = 24;
+
+    static {
+        for (char c = '0'; c <= '9'; c++) {
+            TOKEN_CHARS[c] = true;
+        }
+        for (char c = 'a'; c <= 'z'; c++) {
+            TOKEN_CHARS[c] = true;
+            TOKEN_CHARS[Character.toUpperCase(c)] = true;
+        }
+        for (final char c : "!#$%&'*+-.^_`|~".toCharArray()) {
+            TOKEN_CHARS[c] = true;
+        }
+    }
+
+    private final Config config;
+
+    @Inject
+    public ByteHTTPFormatter(final Config config) {
+        this.config = config;
+    }
+
+    private static String decode(final byte[] raw, final int start, final int end) {
+        return new String(raw, start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Match a <a href="https://tools.ietf.org/html/rfc7230#section-2.6" target="_top">RFC 7230 Section 2.6</a> version
+     * in place against the known {@link HTTPVersion} entries
+     *
+     * @param raw {@code byte[]} holding the version
+     * @param start Index of the first byte of the version
+     * @param end Index after the last byte of the version
+     * @return Matching {@link HTTPVersion} entry
+     * @throws InvalidHTTPVersionException If the version does not match any {@link HTTPVersion} entry
+     */
+    private static HTTPVersion parseVersion(final byte[] raw, final int start, final int end) throws InvalidHTTPVersionException {
+        for (final HTTPVersion version : VERSIONS) {
+            if (HTTPBytes.regionEquals(raw, start, end - start, version.version)) {
+                return version;
+            }
+        }
+        throw new InvalidHTTPVersionException("Provided value: [" + decode(raw, start, end) + "] does not conform to any known HTTP version");
+    }
+
+    /**
+     * Parse a start line as either a <a href="https://tools.ietf.org/html/rfc7230#section-3.1.1" target="_top">RFC 7230 Section 3.1.1</a>
+     * request line or a <a href="https://tools.ietf.org/html/rfc7230#section-3.1.2" target="_top">RFC 7230 Section 3.1.2</a>
+     * status line, depending on the class type parameter {@code T}. The line is divided at its first two spaces, so the
+     * last segment may itself contain spaces.
+     *
+     * @param raw {@code byte[]} holding the start line
+     * @param start Index of the first byte of the start line
+     * @param end Index after the last byte of the start line, excluding the line terminator
+     * @param classOfT Instance of {@link HTTPStartLine} designating this message as a request or response
+     * @return {@link HTTPRequestStartLine} or {@link HTTPResponseStartLine} depending on the class of the class type parameter {@code T}
+     * @throws InvalidHTTPStartLineFormatException Start line is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPMessageFormatException Message is neither a valid request or response
+     */
+    @SuppressWarnings("unchecked")
+    private T parseStartLine(final byte[] raw, final int start, final int end, final Class<T> classOfT) throws InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPMessageFormatException {
+        int first = -1;
+        int second = -1;
+        for (int i = start; i < end; i++) {
+            if (raw[i] == SP) {
+                if (first < 0) {
+                    first = i;
+                } else {
+                    second = i;
+                    break;
+                }
+            }
+        }
+        if (classOfT.isAssignableFrom(HTTPRequestStartLine.class)) {
+            if (second < 0) {
+                throw new InvalidHTTPStartLineFormatException("Expected 3 segments in start line for value: " + decode(raw, start, end));
+            }
+            HTTPMethod method = null;
+            for (final HTTPMethod candidate : METHODS) {
+                if (HTTPBytes.regionEquals(raw, start, first - start, candidate.name())) {
+                    method = candidate;
+                    break;
+                }
+            }
+            if (method == null) {
+                throw new InvalidHTTPStartLineFormatException("Unknown method in start line: " + decode(raw, start, end));
+            }
+            return (T) new HTTPRequestStartLine(
+                    method,
+                    decode(raw, first + 1, second),
+                    parseVersion(raw, second + 1, end)
+            );
+        } else if (classOfT.isAssignableFrom(HTTPResponseStartLine.class)) {
+            if (first < 0) {
+                throw new InvalidHTTPStartLineFormatException("Expected at least 2 segments in start line for value: " + decode(raw, start, end));
+            }
+            final int codeEnd = second < 0 ? end : second;
+            if (codeEnd - first - 1 != 3) {
+                throw new InvalidHTTPStartLineFormatException("Expected 3 digit status code in start line: " + decode(raw, start, end));
+            }
+            int statusCode = 0;
+            for (int i = first + 1; i < codeEnd; i++) {
+                final int digit = raw[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new InvalidHTTPStartLineFormatException("Invalid status code in start line: " + decode(raw, start, end));
+                }
+                statusCode = statusCode * 10 + digit;
+            }
+            if (statusCode < 100 || statusCode > 599) {
+                throw new InvalidHTTPStartLineFormatException("Invalid status code " + statusCode + ", required to be in range 100-599");
+            }
+            return (T) new HTTPResponseStartLine(
+                    statusCode,
+                    second < 0 ? "" : decode(raw, second + 1, end),
+                    parseVersion(raw, start, first)
+            );
+        }
+        throw new InvalidHTTPMessageFormatException("Message was not a request or response: " + decode(raw, start, end));
+    }
+
+    /**
+     * Validates the body does not exceed the configured max size supplied via the {@link Config}.
+     *
+     * @param rawBody {@code byte[]} body
+     * @return {@code byte[]} body
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    private byte[] parseBody(final byte[] rawBody) throws InvalidHTTPBodyException {
+        if (rawBody.length > this.config.servlet.messages.maxBodySize) {
+            throw new InvalidHTTPBodyException("Body is larger than configured maximum supported size: " + rawBody.length + " > " + this.config.servlet.messages.maxBodySize);
+        }
+        return rawBody;
+    }
+
+    /**
+     * Validates the body does not exceed the configured max size supplied via the {@link Config}.
+     *
+     * @param rawBody {@link ByteAccumulator} body
+     * @return {@link ByteAccumulator} body
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    private ByteAccumulator parseBody(final ByteAccumulator rawBody) throws InvalidHTTPBodyException {
+        if (rawBody.size() > this.config.servlet.messages.maxBodySize) {
+            throw new InvalidHTTPBodyException("Body is larger than configured maximum supported size: " + rawBody.size() + " > " + this.config.servlet.messages.maxBodySize);
+        }
+        return rawBody;
+    }
+
+    /**
+     * Parse a message in a single pass over its bytes. Each byte of the head is visited exactly once, transitioning
+     * between the following states:
+     *
+     * <ol>
+     *     <li>Start line: until the first line terminator, after which the start line is parsed</li>
+     *     <li>Name: header name characters up to the colon, or an empty line ending the headers</li>
+     *     <li>Value leading: whitespace between the colon and the value</li>
+     *     <li>Value: up to the line terminator, tracking the last non-whitespace byte</li>
+     *     <li>Line feed: the {@code LF (\n)} expected after a {@code CR (\r)}</li>
+     *     <li>Body: all bytes after the empty line, which are not scanned</li>
+     * </ol>
+     *
+     * The end of the input terminates the line in progress, so that a head without a trailing empty line is accepted.
+     *
+     * @param raw {@code byte[]} holding the message
+     * @param offset Index in {@code raw} of the first byte of the start line
+     * @param end Index after the last byte of the message
+     * @param bodyCharset {@link Charset} any body is encoded with, or {@code null} if only the head is being parsed
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    private HTTPMessage<T> parse(final byte[] raw, final int offset, final int end, final Charset bodyCharset, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
+        T startLine = null;
+        HTTPHeaders headers = null;
+        int state = STATE_START_LINE;
+        int afterLineFeed = STATE_NAME;
+        int lineStart = offset;
+        int nameEnd = 0;
+        int valueStart = 0;
+        int valueEnd = 0;
+        int bodyStart = -1;
+        int i = offset;
+        for (; i <= end && state != STATE_BODY; i++) {
+            final byte b = i < end ? raw[i] : LF;
+            if (state == STATE_LINE_FEED) {
+                if (b != LF) {
+                    throw new InvalidHTTPMessageFormatException("Expected LF after CR at index " + (i - offset) + " of message head");
+                }
+                state = afterLineFeed;
+                lineStart = i + 1;
+                continue;
+            }
+            if (b == CR || b == LF) {
+                switch (state) {
+                    case STATE_START_LINE:
+                        startLine = parseStartLine(raw, lineStart, i, classOfT);
+                        if (startLine.version == HTTPVersion.HTTP09) {
+                            return new HTTPMessage<>(startLine);
+                        }
+                        afterLineFeed = STATE_NAME;
+                        break;
+                    case STATE_NAME:
+                        if (i != lineStart) {
+                            throw new InvalidHTTPHeaderException("Header does not match expected format or valid characters: " + decode(raw, lineStart, i));
+                        }
+                        afterLineFeed = STATE_BODY;
+                        bodyStart = Math.min(b == CR ? i + 2 : i + 1, end);
+                        break;
+                    case STATE_VALUE_LEADING:
+                    case STATE_VALUE:
+                        if (headers == null) {
+                            headers = new HTTPHeaders((end - offset) / AVERAGE_HEADER_LINE_LENGTH);
+                        }
+                        headers.add(HTTPHeaders.intern(raw, lineStart, nameEnd), decode(raw, valueStart, valueEnd));
+                        afterLineFeed = STATE_NAME;
+                        break;
+                }
+                if (b == CR) {
+                    state = STATE_LINE_FEED;
+                } else {
+                    state = afterLineFeed;
+                    lineStart = i + 1;
+                }
+                continue;
+            }
+            switch (state) {
+                case STATE_NAME:
+                    if (b == COLON && i != lineStart) {
+                        nameEnd = i;
+                        valueStart = i + 1;
+                        valueEnd = i + 1;
+                        state = STATE_VALUE_LEADING;
+                    } else if (b < 0 || !TOKEN_CHARS[b]) {
+                        throw new InvalidHTTPHeaderException("Header does not match expected format or valid characters: " + decode(raw, lineStart, Math.min(end, i + 1)));
+                    }
+                    break;
+                case STATE_VALUE_LEADING:
+                    if (b == SP || b == HTAB) {
+                        break;
+                    }
+                    valueStart = i;
+                    valueEnd = i + 1;
+                    state = STATE_VALUE;
+                    break;
+                case STATE_VALUE:
+                    if (b != SP && b != HTAB) {
+                        valueEnd = i + 1;
+                    }
+                    break;
+            }
+        }
+        if (startLine == null) {
+            throw new InvalidHTTPStartLineFormatException("Message did not contain a start line");
+        }
+        if (headers == null && bodyStart < 0) {
+            return new HTTPMessage<>(startLine);
+        } else if (headers == null) {
+            headers = new HTTPHeaders();
+        }
+        final HTTPMessage<T> message = new HTTPMessage<>(startLine, headers);
+        if (bodyStart < 0 || bodyCharset == null) {
+            return message;
+        }
+        message.withBodyBytes(parseBody(Arrays.copyOfRange(raw, bodyStart, end)), bodyCharset);
+        logger.debug("Successfully parsed message");
+        return message;
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#fromRawHead(byte[], int, int, Class)}
+     *
+     * @param raw {@code byte[]} containing the head of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param offset Index in {@code raw} of the first byte of the start line
+     * @param length Amount of bytes in the head, including the empty line terminating the headers
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     */
+    @Override
+    public HTTPMessage<T> fromRawHead(final byte[] raw, final int offset, final int length, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException {
+        return parse(raw, offset, offset + length, null, classOfT);
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#fromRaw(byte[], Charset, Class)}
+     *
+     * @param raw {@code byte[]} representation of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param charset {@link Charset} to use as the encoding for the string representation of the body
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    @Override
+    public HTTPMessage<T> fromRaw(final byte[] raw, final Charset charset, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
+        return parse(raw, 0, raw.length, charset, classOfT);
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#fromRaw(byte[], byte[], Charset, Class)}
+     *
+     * @param raw {@code byte[]} representation of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param bodyBytes {@code byte[]} representation of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a> compliant message body
+     * @param charset {@link Charset} to use as the encoding for the string representation of the body
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    @Override
+    public HTTPMessage<T> fromRaw(final byte[] raw, final byte[] bodyBytes, final Charset charset, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
+        final HTTPMessage<T> message = parse(raw, 0, raw.length, null, classOfT);
+        message.withBodyBytes(parseBody(bodyBytes), charset);
+        return message;
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#fromRawString(String, Class)}. The message is encoded as {@code UTF-8} to be parsed,
+     * so the body is decoded back to exactly the characters it was given as.
+     *
+     * @param raw {@link String} representation of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    @Override
+    public HTTPMessage<T> fromRawString(final String raw, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
+        return fromRaw(raw.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, classOfT);
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#fromRawString(String, byte[], Class)}
+     *
+     * @param raw {@link String} representation of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param bodyBytes {@code byte[]} representation of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a> compliant message body
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    @Override
+    public HTTPMessage<T> fromRawString(final String raw, final byte[] bodyBytes, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
+        final byte[] encoded = raw.getBytes(StandardCharsets.UTF_8);
+        final HTTPMessage<T> message = parse(encoded, 0, encoded.length, null, classOfT);
+        message.withBodyBytes(parseBody(bodyBytes), StandardCharsets.UTF_8);
+        return message;
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#withBody(HTTPMessage, ByteAccumulator, Charset, CompressionFormat)}
+     *
+     * @param message {@link HTTPMessage} to populate the body of
+     * @param bodyBytes {@link ByteAccumulator} holding a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a> compliant message body
+     * @param charset {@link Charset} the body is encoded with, or {@code null} if the body is not textual
+     * @return The given {@code message}
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    @Override
+    public HTTPMessage<T> withBody(final HTTPMessage<T> message, final ByteAccumulator bodyBytes, final Charset charset, final CompressionFormat coding) throws InvalidHTTPBodyException {
+        message.withBodyBytes(charset == null ? bodyBytes : parseBody(bodyBytes), charset, coding);
+        logger.trace("Added body to message");
+        return message;
+    }
+
+}
@@ -1,7 +1,9 @@
 package com.engineersbox.httpproxy.formatting.http;
 
+import com.engineersbox.httpproxy.buffer.ByteAccumulator;
 import com.engineersbox.httpproxy.configuration.Config;
 import com.engineersbox.httpproxy.exceptions.http.*;
+import com.engineersbox.httpproxy.formatting.compression.CompressionFormat;
 import com.engineersbox.httpproxy.formatting.http.common.*;
 import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
 import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
@@ -11,8 +13,7 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.nio.charset.Charset;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.charset.StandardCharsets;
 
 /**
  * Formatter implementation to convert a raw <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a>
@@ -100,7 +101,7 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
 
     /**
      * Convert a {@code String[]} of <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a>
-     * headers into a {@link Map} of {@link String} to {@link String} key, value pairs.
+     * headers into {@link HTTPHeaders}, keeping repeated headers.
      *
      * <br/><br/>
      *
@@ -108,18 +109,18 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
      * of <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a>
      *
      * @param raw {@code String[]} of headers
-     * @return {@link Map} of {@link String} to {@link String} mappings of <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a>
+     * @return {@link HTTPHeaders} of <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a>
      * compliant headers
      * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
      */
-    private Map<String, String> parseHeaders(final String[] raw) throws InvalidHTTPHeaderException {
-        final Map<String, String> headers = new HashMap<>();
+    private HTTPHeaders parseHeaders(final String[] raw) throws InvalidHTTPHeaderException {
+        final HTTPHeaders headers = new HTTPHeaders(raw.length);
         for (final String rawHeader : raw) {
             if (!HTTPSymbols.HEADER_REGEX.matcher(rawHeader).matches()) {
                 throw new InvalidHTTPHeaderException("Header does not match expected format or valid characters: " + rawHeader);
             }
-            final String[] splitHeader = rawHeader.split(HTTPSymbols.HEADER_KEY_VALUE_DELIMITER);
-            headers.put(splitHeader[0], splitHeader[1]);
+            final String[] splitHeader = rawHeader.split(HTTPSymbols.HEADER_KEY_VALUE_DELIMITER, 2);
+            headers.add(splitHeader[0], splitHeader[1]);
         }
         return headers;
     }
@@ -161,9 +162,28 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
      */
     @Override
     public HTTPMessage<T> fromRaw(final byte[] raw, final byte[] bodyBytes, final Charset charset, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
+        final HTTPMessage<T> message = fromRawString(new String(raw, charset), classOfT);
+        message.withBodyBytes(parseBody(bodyBytes), charset);
+        return message;
+    }
+
+    /**
+     * See {@link BaseHTTPFormatter#fromRawHead(byte[], int, int, Class)}
+     *
+     * @param raw {@code byte[]} containing the head of a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html" target="_top">RFC 2616 Section 4</a> compliant message
+     * @param offset Index in {@code raw} of the first byte of the start line
+     * @param length Amount of bytes in the head, including the empty line terminating the headers
+     * @param classOfT Instance of {@link HTTPStartLine} to indicate whether this is a request or response
+     * @return A {@link HTTPMessage}
+     * @throws InvalidHTTPMessageFormatException Division of headers and body is invalid
+     * @throws InvalidHTTPStartLineFormatException Start line for the request or response is invalid
+     * @throws InvalidHTTPVersionException Version is unsupported or invalid
+     * @throws InvalidHTTPHeaderException Headers are invalid or of the wrong format
+     */
+    @Override
+    public HTTPMessage<T> fromRawHead(final byte[] raw, final int offset, final int length, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException {
         return fromRawString(
-                new String(raw, charset),
-                bodyBytes,
+                new String(raw, offset, length, StandardCharsets.ISO_8859_1),
                 classOfT
         );
     }
@@ -184,7 +204,7 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
     @Override
     public HTTPMessage<T> fromRawString(final String raw, final byte[] bodyBytes, final Class<T> classOfT) throws InvalidHTTPMessageFormatException, InvalidHTTPStartLineFormatException, InvalidHTTPVersionException, InvalidHTTPHeaderException, InvalidHTTPBodyException {
         final HTTPMessage<T> message = fromRawString(raw, classOfT);
-        message.withBodyBytes(bodyBytes);
+        message.withBodyBytes(parseBody(bodyBytes), StandardCharsets.UTF_8);
         logger.trace("Added raw bytes to message");
         return message;
     }
@@ -274,6 +294,36 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
         return rawBody;
     }
 
+    /**
+     * Validates the body does not exceed the configured max size supplied via the {@link Config}.
+     *
+     * @param rawBody {@code byte[]} body
+     * @return {@code byte[]} body
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    private byte[] parseBody(final byte[] rawBody) throws InvalidHTTPBodyException {
+        if (rawBody.length > this.config.servlet.messages.maxBodySize) {
+            throw new InvalidHTTPBodyException("Body is larger than configured maximum supported size: " + rawBody.length + " > " + this.config.servlet.messages.maxBodySize);
+        }
+        logger.trace("Validated message body");
+        return rawBody;
+    }
+
+    /**
+     * Validates the body does not exceed the configured max size supplied via the {@link Config}.
+     *
+     * @param rawBody {@link ByteAccumulator} body
+     * @return {@link ByteAccumulator} body
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    private ByteAccumulator parseBody(final ByteAccumulator rawBody) throws InvalidHTTPBodyException {
+        if (rawBody.size() > this.config.servlet.messages.maxBodySize) {
+            throw new InvalidHTTPBodyException("Body is larger than configured maximum supported size: " + rawBody.size() + " > " + this.config.servlet.messages.maxBodySize);
+        }
+        logger.trace("Validated message body");
+        return rawBody;
+    }
+
     /**
      * See {@link BaseHTTPFormatter#fromRawString(String, Class)}
      *
@@ -295,7 +345,7 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
             return new HTTPMessage<>(startLine);
         }
 
-        final Map<String, String> headers = parseHeaders(ArrayUtils.subarray(segmentedRaw, 1, segmentedRaw.length - 1));
+        final HTTPHeaders headers = parseHeaders(ArrayUtils.subarray(segmentedRaw, 1, segmentedRaw.length));
         if (splitMetadataBody.length < 2) {
             return new HTTPMessage<>(startLine, headers);
         }
@@ -306,4 +356,20 @@ public class HTTPFormatter<T extends HTTPStartLine> implements BaseHTTPFormatter
         return new HTTPMessage<>(startLine, headers, body);
     }
 
+    /**
+     * See {@link BaseHTTPFormatter#withBody(HTTPMessage, ByteAccumulator, Charset, CompressionFormat)}
+     *
+     * @param message {@link HTTPMessage} to populate the body of
+     * @param bodyBytes {@link ByteAccumulator} holding a <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.3" target="_top">RFC 2616 Section 4.3</a> compliant message body
+     * @param charset {@link Charset} the body is encoded with, or {@code null} if the body is not textual
+     * @return The given {@code message}
+     * @throws InvalidHTTPBodyException Body exceeds the max size relative to configuration supplies in a {@link Config}
+     */
+    @Override
+    public HTTPMessage<T> withBody(final HTTPMessage<T> message, final ByteAccumulator bodyBytes, final Charset charset, final CompressionFormat coding) throws InvalidHTTPBodyException {
+        message.withBodyBytes(charset == null ? bodyBytes : parseBody(bodyBytes), charset, coding);
+        logger.trace("Added body to message");
+        return message;
+    }
+
 }
@@ -0,0 +1,31 @@
+package com.engineersbox.httpproxy.formatting.http.common;
+
+/**
+ * Helpers for reading the head of a message directly from its bytes, which are single byte characters as per
+ * <a href="https://tools.ietf.org/html/rfc7230#section-3.2.4" target="_top">RFC 7230 Section 3.2.4</a>
+ */
+public final class HTTPBytes {
+
+    private HTTPBytes() {}
+
+    /**
+     * Compare a region of bytes to a {@link String} of single byte characters exactly
+     *
+     * @param raw {@code byte[]} holding the region
+     * @param offset Index of the first byte of the region
+     * @param length Amount of bytes in the region
+     * @param value {@link String} to compare against
+     * @return {@code true} if the region holds exactly the characters of {@code value}, {@code false} otherwise
+     */
+    public static boolean regionEquals(final byte[] raw, final int offset, final int length, final String value) {
+        if (length != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if ((raw[offset + i] & 0xFF) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,204 @@
+package com.engineersbox.httpproxy.formatting.http.common;
+
+/**
+ * Framing of the body of a message as given by its {@code Content-Length} and {@code Transfer-Encoding} headers, as per
+ * <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>. The values of
+ * these headers are added as they are read from the head of the message, and every transport determines the framing
+ * of a message through this class, so that a message is delimited identically regardless of how it is received.
+ *
+ * <br/><br/>
+ *
+ * A message whose end cannot be determined unambiguously has a malformed framing, see {@link HTTPFraming#malformation()}.
+ * This is the case for an invalid {@code Content-Length}, several {@code Content-Length} values that differ, a
+ * {@code Content-Length} alongside a {@code Transfer-Encoding}, and a request whose {@code Transfer-Encoding} does not
+ * end with {@code chunked}. A response whose {@code Transfer-Encoding} does not end with {@code chunked} is delimited by
+ * the closure of the connection.
+ */
+public class HTTPFraming {
+
+    private static final char LIST_DELIMITER = ',';
+    private static final byte CHUNK_EXTENSION_DELIMITER = (byte) HTTPSymbols.TRANSFER_ENCODING_CHUNK_EXTENSION_DELIMITER.charAt(0);
+
+    /**
+     * Largest chunk size accepted, see {@link HTTPFraming#parseChunkSize(byte[], int, int)}
+     */
+    public static final int MAX_CHUNK_SIZE = Integer.MAX_VALUE;
+    /**
+     * Maximum length in bytes of the start line and headers of a message, and so of any single line within them, that
+     * is read before the message is rejected
+     */
+    public static final int MAX_HEAD_LENGTH = 65536;
+
+    private final boolean request;
+    private long contentLength = -1;
+    private String transferEncoding = null;
+    private String malformation = null;
+
+    /**
+     * @param request Whether the framing is that of a request, otherwise of a response
+     */
+    public HTTPFraming(final boolean request) {
+        this.request = request;
+    }
+
+    /**
+     * Add the value of a {@code Content-Length} header
+     *
+     * @param value Value of the header
+     */
+    public void addContentLength(final String value) {
+        final long parsed = parseContentLength(value);
+        if (parsed < 0) {
+            malformed("Invalid " + HTTPSymbols.CONTENT_LENGTH_HEADER + " header value: " + value);
+        } else if (this.contentLength >= 0 && parsed != this.contentLength) {
+            malformed("Conflicting " + HTTPSymbols.CONTENT_LENGTH_HEADER + " header values: " + this.contentLength + " and " + parsed);
+        } else {
+            this.contentLength = parsed;
+        }
+    }
+
+    /**
+     * Add the value of a {@code Transfer-Encoding} header. Several headers form a single list of codings in the order
+     * they were added, as per <a href="https://tools.ietf.org/html/rfc7230#section-3.2.2" target="_top">RFC 7230 Section 3.2.2</a>.
+     *
+     * @param value Value of the header
+     */
+    public void addTransferEncoding(final String value) {
+        this.transferEncoding = this.transferEncoding == null ? value : this.transferEncoding + LIST_DELIMITER + value;
+    }
+
+    private void malformed(final String reason) {
+        if (this.malformation == null) {
+            this.malformation = reason;
+        }
+    }
+
+    /**
+     * @return Description of why the end of the message cannot be determined, or {@code null} if the framing is valid
+     */
+    public String malformation() {
+        if (this.malformation != null) {
+            return this.malformation;
+        } else if (this.transferEncoding != null && this.contentLength >= 0) {
+            return "Both " + HTTPSymbols.CONTENT_LENGTH_HEADER + " and " + HTTPSymbols.TRANSFER_ENCODING_HEADER + " headers are present";
+        } else if (this.request && this.transferEncoding != null && !isChunked(this.transferEncoding)) {
+            return "Final " + HTTPSymbols.TRANSFER_ENCODING_HEADER + " of request is not " + HTTPSymbols.TRANSFER_ENCODING_CHUNKED + ": " + this.transferEncoding;
+        }
+        return null;
+    }
+
+    /**
+     * @return {@code true} if the body has the chunked {@code Transfer-Encoding}, {@code false} otherwise
+     */
+    public boolean isChunked() {
+        return this.transferEncoding != null && isChunked(this.transferEncoding);
+    }
+
+    /**
+     * @return Amount of body bytes given by the {@code Content-Length} header, or {@code -1} if the body is not
+     * delimited by one
+     */
+    public long contentLength() {
+        return this.transferEncoding == null ? this.contentLength : -1;
+    }
+
+    /**
+     * Determine whether a {@code Transfer-Encoding} header value ends with the {@code chunked} coding, as it must for the
+     * body to be delimited by it as per <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>
+     *
+     * @param transferEncoding Value of the header
+     * @return {@code true} if the final coding is {@code chunked}, {@code false} otherwise
+     */
+    public static boolean isChunked(final String transferEncoding) {
+        final int last = transferEncoding.lastIndexOf(LIST_DELIMITER);
+        return transferEncoding.substring(last + 1).trim().equalsIgnoreCase(HTTPSymbols.TRANSFER_ENCODING_CHUNKED);
+    }
+
+    /**
+     * Parse the value of a {@code Content-Length} header, which must be a non-negative decimal number as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-3.3.2" target="_top">RFC 7230 Section 3.3.2</a>. A list of
+     * identical numbers, as results from a repeated header being combined, is accepted as that number.
+     *
+     * @param value Value of the header
+     * @return Amount of body bytes, or {@code -1} if {@code value} is not a decimal number within the range of a
+     * {@code long}, or a list of differing numbers
+     */
+    public static long parseContentLength(final String value) {
+        long contentLength = -1;
+        int start = 0;
+        while (start <= value.length()) {
+            int end = value.indexOf(LIST_DELIMITER, start);
+            if (end < 0) {
+                end = value.length();
+            }
+            final long parsed = parseDecimal(value, start, end);
+            if (parsed < 0 || (contentLength >= 0 && parsed != contentLength)) {
+                return -1;
+            }
+            contentLength = parsed;
+            start = end + 1;
+        }
+        return contentLength;
+    }
+
+    private static long parseDecimal(final String value, int start, int end) {
+        while (start < end && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        if (start == end) {
+            return -1;
+        }
+        long parsed = 0;
+        for (int i = start; i < end; i++) {
+            final char c = value.charAt(i);
+            if (c < '0' || c > '9' || parsed > (Long.MAX_VALUE - (c - '0')) / 10) {
+                return -1;
+            }
+            parsed = parsed * 10 + (c - '0');
+        }
+        return parsed;
+    }
+
+    /**
+     * Parse the size of a chunk from its size line, ignoring any chunk extensions and whitespace around the size, as
+     * per <a href="https://tools.ietf.org/html/rfc7230#section-4.1" target="_top">RFC 7230 Section 4.1</a>
+     *
+     * @param bytes Bytes holding the size line
+     * @param offset Index of the start of the size line
+     * @param end Index after the last byte of the size line, excluding the line terminator
+     * @return Size of the chunk, or {@code -1} if it is not a hexadecimal number no larger than
+     * {@link HTTPFraming#MAX_CHUNK_SIZE}
+     */
+    public static long parseChunkSize(final byte[] bytes, final int offset, final int end) {
+        int i = offset;
+        while (i < end && isWhitespace(bytes[i])) {
+            i++;
+        }
+        final int digitsStart = i;
+        long size = 0;
+        for (; i < end; i++) {
+            final int digit = Character.digit(bytes[i], 16);
+            if (digit < 0) {
+                break;
+            }
+            size = (size << 4) | digit;
+            if (size > MAX_CHUNK_SIZE) {
+                return -1;
+            }
+        }
+        if (i == digitsStart) {
+            return -1;
+        }
+        while (i < end && isWhitespace(bytes[i])) {
+            i++;
+        }
+        return i == end || bytes[i] == CHUNK_EXTENSION_DELIMITER ? size : -1;
+    }
+
+    private static boolean isWhitespace(final int c) {
+        return c == ' ' || c == '\t';
+    }
+}
@@ -0,0 +1,380 @@
+package com.engineersbox.httpproxy.formatting.http.common;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Ordered collection of <a href="https://tools.ietf.org/html/rfc7230#section-3.2" target="_top">RFC 7230 Section 3.2</a>
+ * header fields. Names are matched case-insensitively, and a name may occur any number of times, so that fields such
+ * as {@code Set-Cookie} which cannot be combined into a single value are all kept
+ * (<a href="https://tools.ietf.org/html/rfc7230#section-3.2.2" target="_top">RFC 7230 Section 3.2.2</a>). Fields are
+ * written out in the order they were added.
+ *
+ * <br/><br/>
+ *
+ * Fields are held in parallel arrays, sized up front from the expected amount of fields, alongside an open addressing
+ * index from the case-insensitive hash of each name to its first field. Fields of the same name are chained together,
+ * so lookups neither scan every field nor allocate. Common names are interned as the constants of
+ * {@link HTTPSymbols}, see {@link HTTPHeaders#intern(byte[], int, int)}.
+ */
+public class HTTPHeaders {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int NONE = -1;
+
+    private static final String[] WELL_KNOWN_NAMES = {
+            HTTPSymbols.CONTENT_LENGTH_HEADER,
+            HTTPSymbols.CONTENT_TYPE_HEADER,
+            HTTPSymbols.CONTENT_ENCODING_HEADER,
+            HTTPSymbols.TRANSFER_ENCODING_HEADER,
+            HTTPSymbols.CONNECTION_HEADER,
+            HTTPSymbols.KEEP_ALIVE_HEADER,
+            HTTPSymbols.EXPECT_HEADER,
+            HTTPSymbols.HOST_HEADER,
+            HTTPSymbols.SERVER_HEADER,
+            HTTPSymbols.SET_COOKIE_HEADER,
+            HTTPSymbols.ACCEPT_ENCODING_HEADER,
+            HTTPSymbols.VARY_HEADER,
+            "User-Agent",
+            "Accept",
+            "Accept-Language",
+            "Accept-Ranges",
+            "Age",
+            "Cache-Control",
+            "Cookie",
+            "Date",
+            "ETag",
+            "Expires",
+            "If-Modified-Since",
+            "If-None-Match",
+            "Last-Modified",
+            "Location",
+            "Origin",
+            "Pragma",
+            "Referer",
+            "Upgrade-Insecure-Requests",
+            "Via"
+    };
+    private static final String[][] WELL_KNOWN_BY_LENGTH;
+
+    static {
+        int longest = 0;
+        for (final String name : WELL_KNOWN_NAMES) {
+            longest = Math.max(longest, name.length());
+        }
+        WELL_KNOWN_BY_LENGTH = new String[longest + 1][];
+        for (final String name : WELL_KNOWN_NAMES) {
+            final String[] existing = WELL_KNOWN_BY_LENGTH[name.length()];
+            final String[] bucket = existing == null ? new String[1] : Arrays.copyOf(existing, existing.length + 1);
+            bucket[bucket.length - 1] = name;
+            WELL_KNOWN_BY_LENGTH[name.length()] = bucket;
+        }
+    }
+
+    private String[] names;
+    private String[] values;
+    private int[] hashes;
+    private int[] next;
+    private int[] index;
+    private int size;
+
+    public HTTPHeaders() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * @param expected Amount of fields expected to be added, so that the arrays holding them are not grown
+     */
+    public HTTPHeaders(final int expected) {
+        final int capacity = Math.max(expected, 4);
+        this.names = new String[capacity];
+        this.values = new String[capacity];
+        this.hashes = new int[capacity];
+        this.next = new int[capacity];
+        this.index = new int[indexSize(capacity)];
+        Arrays.fill(this.index, NONE);
+        this.size = 0;
+    }
+
+    private static int indexSize(final int capacity) {
+        return Integer.highestOneBit(capacity * 2 - 1) << 1;
+    }
+
+    /**
+     * Resolve a header name from its bytes, returning the constant {@link String} of a common header name if it matches
+     * exactly, so that only uncommon names are allocated
+     *
+     * @param raw {@code byte[]} holding the name
+     * @param start Index of the first byte of the name
+     * @param end Index after the last byte of the name
+     * @return {@link String} of the header name
+     */
+    public static String intern(final byte[] raw, final int start, final int end) {
+        final int length = end - start;
+        if (length < WELL_KNOWN_BY_LENGTH.length && WELL_KNOWN_BY_LENGTH[length] != null) {
+            for (final String name : WELL_KNOWN_BY_LENGTH[length]) {
+                if (HTTPBytes.regionEquals(raw, start, length, name)) {
+                    return name;
+                }
+            }
+        }
+        return new String(raw, start, length, StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * Hash a header name ignoring the case of ASCII letters, as header names are tokens restricted to ASCII
+     *
+     * @param name Header name to hash
+     * @return Case-insensitive hash of {@code name}
+     */
+    private static int hash(final String name) {
+        int hash = 0;
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c >= 'A' && c <= 'Z') {
+                c += 'a' - 'A';
+            }
+            hash = 31 * hash + c;
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Find the first field with the given name
+     *
+     * @param name Header name to find
+     * @param hash Hash of {@code name} given by {@link HTTPHeaders#hash(String)}
+     * @return Position of the first field with the name, or {@link HTTPHeaders#NONE} if there is none
+     */
+    private int find(final String name, final int hash) {
+        final int mask = this.index.length - 1;
+        for (int slot = hash & mask; this.index[slot] != NONE; slot = (slot + 1) & mask) {
+            final int field = this.index[slot];
+            if (this.hashes[field] == hash && (this.names[field] == name || this.names[field].equalsIgnoreCase(name))) {
+                return field;
+            }
+        }
+        return NONE;
+    }
+
+    private void indexField(final int field) {
+        final int mask = this.index.length - 1;
+        int slot = this.hashes[field] & mask;
+        while (this.index[slot] != NONE) {
+            slot = (slot + 1) & mask;
+        }
+        this.index[slot] = field;
+    }
+
+    /**
+     * Rebuild the index and the chains of fields of the same name, after fields have been removed or the arrays grown
+     */
+    private void reindex() {
+        if (this.index.length < indexSize(this.names.length)) {
+            this.index = new int[indexSize(this.names.length)];
+        }
+        Arrays.fill(this.index, NONE);
+        for (int field = 0; field < this.size; field++) {
+            this.next[field] = NONE;
+            final int first = find(this.names[field], this.hashes[field]);
+            if (first == NONE) {
+                indexField(field);
+                continue;
+            }
+            int last = first;
+            while (this.next[last] != NONE) {
+                last = this.next[last];
+            }
+            this.next[last] = field;
+        }
+    }
+
+    private void ensureCapacity() {
+        if (this.size < this.names.length) {
+            return;
+        }
+        final int capacity = this.names.length * 2;
+        this.names = Arrays.copyOf(this.names, capacity);
+        this.values = Arrays.copyOf(this.values, capacity);
+        this.hashes = Arrays.copyOf(this.hashes, capacity);
+        this.next = Arrays.copyOf(this.next, capacity);
+        reindex();
+    }
+
+    /**
+     * Add a field after all existing fields, keeping any existing fields of the same name
+     *
+     * @param name Header name
+     * @param value Header value
+     */
+    public void add(final String name, final String value) {
+        ensureCapacity();
+        final int hash = hash(name);
+        final int field = this.size++;
+        this.names[field] = name;
+        this.values[field] = value;
+        this.hashes[field] = hash;
+        this.next[field] = NONE;
+        final int first = find(name, hash);
+        if (first == NONE) {
+            indexField(field);
+            return;
+        }
+        int last = first;
+        while (this.next[last] != NONE) {
+            last = this.next[last];
+        }
+        this.next[last] = field;
+    }
+
+    /**
+     * Set the value of a header, replacing all existing fields of the same name. The field keeps the position of the
+     * first existing field if there is one, otherwise it is added after all existing fields.
+     *
+     * @param name Header name
+     * @param value Header value
+     */
+    public void set(final String name, final String value) {
+        if (!replace(name, value)) {
+            add(name, value);
+        }
+    }
+
+    /**
+     * Replace the value of a header only if it is present, removing any further fields of the same name
+     *
+     * @param name Header name
+     * @param value Header value
+     * @return {@code true} if the header was present and replaced, {@code false} otherwise
+     */
+    public boolean replace(final String name, final String value) {
+        final int first = find(name, hash(name));
+        if (first == NONE) {
+            return false;
+        }
+        this.values[first] = value;
+        if (this.next[first] != NONE) {
+            for (int field = this.next[first]; field != NONE; field = this.next[field]) {
+                this.names[field] = null;
+            }
+            compact();
+        }
+        return true;
+    }
+
+    /**
+     * Remove all fields of a header
+     *
+     * @param name Header name
+     * @return {@code true} if any field was removed, {@code false} otherwise
+     */
+    public boolean remove(final String name) {
+        final int first = find(name, hash(name));
+        if (first == NONE) {
+            return false;
+        }
+        for (int field = first; field != NONE; field = this.next[field]) {
+            this.names[field] = null;
+        }
+        compact();
+        return true;
+    }
+
+    /**
+     * Close the gaps left by removed fields, whose names have been cleared, preserving the order of the rest
+     */
+    private void compact() {
+        int kept = 0;
+        for (int field = 0; field < this.size; field++) {
+            if (this.names[field] == null) {
+                continue;
+            }
+            this.names[kept] = this.names[field];
+            this.values[kept] = this.values[field];
+            this.hashes[kept] = this.hashes[field];
+            kept++;
+        }
+        Arrays.fill(this.names, kept, this.size, null);
+        Arrays.fill(this.values, kept, this.size, null);
+        this.size = kept;
+        reindex();
+    }
+
+    /**
+     * @param name Header name
+     * @return Value of the first field of the header, or {@code null} if it is not present
+     */
+    public String get(final String name) {
+        final int field = find(name, hash(name));
+        return field == NONE ? null : this.values[field];
+    }
+
+    /**
+     * @param name Header name
+     * @return Values of all fields of the header in order, which is empty if it is not present
+     */
+    public List<String> getAll(final String name) {
+        int field = find(name, hash(name));
+        if (field == NONE) {
+            return Collections.emptyList();
+        }
+        final List<String> all = new ArrayList<>(2);
+        for (; field != NONE; field = this.next[field]) {
+            all.add(this.values[field]);
+        }
+        return all;
+    }
+
+    /**
+     * @param name Header name
+     * @return {@code true} if any field of the header is present, {@code false} otherwise
+     */
+    public boolean contains(final String name) {
+        return find(name, hash(name)) != NONE;
+    }
+
+    /**
+     * @return Amount of fields, counting each field of a repeated header separately
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return {@code true} if there are no fields, {@code false} otherwise
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @param field Position of the field, less than {@link HTTPHeaders#size()}
+     * @return Name of the field at the position
+     */
+    public String name(final int field) {
+        return this.names[field];
+    }
+
+    /**
+     * @param field Position of the field, less than {@link HTTPHeaders#size()}
+     * @return Value of the field at the position
+     */
+    public String value(final int field) {
+        return this.values[field];
+    }
+
+    /**
+     * Invoke an action for every field in order
+     *
+     * @param action Action accepting the name and value of each field
+     */
+    public void forEach(final BiConsumer<String, String> action) {
+        for (int field = 0; field < this.size; field++) {
+            action.accept(this.names[field], this.values[field]);
+        }
+    }
+}
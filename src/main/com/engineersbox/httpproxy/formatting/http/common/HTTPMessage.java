@@ -1,21 +1,22 @@
 package com.engineersbox.httpproxy.formatting.http.common;
 
+import com.engineersbox.httpproxy.buffer.ByteAccumulator;
+import com.engineersbox.httpproxy.buffer.OutboundBuffers;
 import com.engineersbox.httpproxy.exceptions.http.CompressionHandlerException;
 import com.engineersbox.httpproxy.formatting.compression.CompressionFormat;
 import com.engineersbox.httpproxy.formatting.compression.CompressionHandler;
+import com.engineersbox.httpproxy.formatting.compression.CompressionLevel;
+import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
 import org.apache.commons.compress.compressors.CompressorException;
-import org.apache.commons.lang3.ArrayUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
-import java.util.HashMap;
-import java.util.Map;
 import java.util.Optional;
-import java.util.regex.Pattern;
 
 /**
  * An implementation of <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4" target="_top">RFC 2616 Section 4</a> compliant HTTP message.
@@ -28,24 +29,117 @@ public class HTTPMessage<T extends HTTPStartLine> {
 
     private final Logger logger = LogManager.getLogger(HTTPMessage.class);
 
+    private static final byte[] HEADER_KEY_VALUE_DELIMITER = HTTPSymbols.HEADER_KEY_VALUE_DELIMITER.getBytes(StandardCharsets.ISO_8859_1);
+    private static final byte[] HEADER_LINE_TERMINATOR = HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER.getBytes(StandardCharsets.ISO_8859_1);
+
     public final T startLine;
-    public final Map<String, String> headers;
-    public String body;
-    public byte[] bodyBytes;
+    public final HTTPHeaders headers;
+    private String body;
+    private ByteAccumulator bodyBytes;
+    private byte[] contentBytes;
+    private Charset bodyCharset;
+    private CompressionFormat bodyCoding;
+    private CompressionLevel compressionLevel;
+    private boolean bodyModified;
 
     public HTTPMessage(final T startLine) {
-        this(startLine, new HashMap<>());
+        this(startLine, new HTTPHeaders());
     }
 
-    public HTTPMessage(final T startLine, final Map<String, String> headers) {
+    public HTTPMessage(final T startLine, final HTTPHeaders headers) {
         this(startLine, headers, null);
     }
 
-    public HTTPMessage(final T startLine, final Map<String, String> headers, final String body) {
+    public HTTPMessage(final T startLine, final HTTPHeaders headers, final String body) {
         this.startLine = startLine;
         this.headers = headers;
         this.body = body;
-        this.bodyBytes = body == null ? null : body.getBytes();
+        this.bodyBytes = null;
+        this.contentBytes = null;
+        this.bodyCharset = StandardCharsets.UTF_8;
+        this.bodyCoding = null;
+        this.compressionLevel = null;
+        this.bodyModified = body != null;
+    }
+
+    /**
+     * Retrieve the value of a header, matching the header key case-insensitively as per
+     * <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a>
+     *
+     * @param name Key of the header
+     * @return An {@link Optional} containing the trimmed value of the first matching header if present, otherwise
+     * {@link Optional#empty()}
+     */
+    public Optional<String> getHeader(final String name) {
+        final String value = this.headers.get(name);
+        return value == null ? Optional.empty() : Optional.of(value.trim());
+    }
+
+    /**
+     * Remove all headers matching the given key case-insensitively
+     *
+     * @param name Key of the header
+     */
+    public void removeHeader(final String name) {
+        this.headers.remove(name);
+    }
+
+    /**
+     * Check whether the {@code Connection} header contains a given token, ignoring case
+     *
+     * @param token Connection option to look for
+     * @return {@code true} if the token is present, {@code false} otherwise
+     */
+    private boolean hasConnectionToken(final String token) {
+        final Optional<String> connection = getHeader(HTTPSymbols.CONNECTION_HEADER);
+        if (!connection.isPresent()) {
+            return false;
+        }
+        for (final String option : connection.get().split(HTTPSymbols.CONNECTION_TOKEN_DELIMITER)) {
+            if (option.trim().equalsIgnoreCase(token)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Determine whether the connection this message was sent over remains open after the message, according to
+     * <a href="https://tools.ietf.org/html/rfc7230#section-6.3" target="_top">RFC 7230 Section 6.3</a>. HTTP/1.1
+     * connections persist unless the {@code close} option is given, while HTTP/1.0 connections only persist when the
+     * {@code keep-alive} option is given.
+     *
+     * @return {@code true} if the connection persists, {@code false} otherwise
+     */
+    public boolean isPersistent() {
+        if (hasConnectionToken(HTTPSymbols.CONNECTION_CLOSE)) {
+            return false;
+        }
+        if (this.startLine.version == HTTPVersion.HTTP11) {
+            return true;
+        }
+        return this.startLine.version == HTTPVersion.HTTP10 && hasConnectionToken(HTTPSymbols.CONNECTION_KEEP_ALIVE);
+    }
+
+    /**
+     * Determine whether the end of this message can be found without the connection being closed, as per
+     * <a href="https://tools.ietf.org/html/rfc7230#section-3.3.3" target="_top">RFC 7230 Section 3.3.3</a>. This holds
+     * for any request, and for responses that either cannot have a body ({@code 1xx}, {@code 204} and {@code 304}), or
+     * that have a {@code Content-Length} or chunked {@code Transfer-Encoding} header.
+     *
+     * @return {@code true} if the message is self-delimited, {@code false} if it is delimited by closing the connection
+     */
+    public boolean isSelfDelimited() {
+        if (!(this.startLine instanceof HTTPResponseStartLine)) {
+            return true;
+        }
+        final int statusCode = ((HTTPResponseStartLine) this.startLine).statusCode;
+        if (statusCode < 200 || statusCode == 204 || statusCode == 304) {
+            return true;
+        }
+        final Optional<String> transferEncoding = getHeader(HTTPSymbols.TRANSFER_ENCODING_HEADER);
+        return getHeader(HTTPSymbols.CONTENT_LENGTH_HEADER).isPresent()
+            || (transferEncoding.isPresent() && HTTPFraming.isChunked(transferEncoding.get()));
     }
 
     /**
@@ -64,30 +158,45 @@ public class HTTPMessage<T extends HTTPStartLine> {
      */
     private String headersToString(final String delimiter) {
         final StringBuilder sb = new StringBuilder();
-        for (final Map.Entry<String, String> header: this.headers.entrySet()) {
-            sb.append(header.getKey()).append(": ").append(header.getValue()).append(delimiter);
+        for (int i = 0; i < this.headers.size(); i++) {
+            sb.append(this.headers.name(i)).append(": ").append(this.headers.value(i)).append(delimiter);
         }
         return sb.append(delimiter).toString();
     }
 
     /**
-     * Flatten a series of {@code byte[]} into a single {@code byte[]}
+     * Encode all headers into a single block terminated by the empty line that precedes the body. The block is
+     * allocated once at its final size and filled directly from the header names and values, which are encoded as
+     * {@code ISO-8859-1} as per <a href="https://tools.ietf.org/html/rfc7230#section-3.2.4" target="_top">RFC 7230 Section 3.2.4</a>.
      *
-     * @param bytes A series of {@code byte[]}
-     * @return A single, flattened {@code byte[]}
+     * @return {@link ByteBuffer} holding the encoded header block
      */
-    private byte[] concatAll(final byte[] ...bytes) {
-        if (bytes.length < 1) {
-            return new byte[]{};
+    private ByteBuffer encodeHeaders() {
+        int length = HEADER_LINE_TERMINATOR.length;
+        for (int i = 0; i < this.headers.size(); i++) {
+            length += this.headers.name(i).length() + HEADER_KEY_VALUE_DELIMITER.length
+                    + this.headers.value(i).length() + HEADER_LINE_TERMINATOR.length;
+        }
+        final byte[] block = new byte[length];
+        int position = 0;
+        for (int i = 0; i < this.headers.size(); i++) {
+            position = encodeLatin1(this.headers.name(i), block, position);
+            System.arraycopy(HEADER_KEY_VALUE_DELIMITER, 0, block, position, HEADER_KEY_VALUE_DELIMITER.length);
+            position = encodeLatin1(this.headers.value(i), block, position + HEADER_KEY_VALUE_DELIMITER.length);
+            System.arraycopy(HEADER_LINE_TERMINATOR, 0, block, position, HEADER_LINE_TERMINATOR.length);
+            position += HEADER_LINE_TERMINATOR.length;
         }
-        byte[] returnableBytes = new byte[]{};
-        for (final byte[] bytesElem : bytes) {
-            returnableBytes = ArrayUtils.addAll(
-                    returnableBytes,
-                    bytesElem
-            );
+        System.arraycopy(HEADER_LINE_TERMINATOR, 0, block, position, HEADER_LINE_TERMINATOR.length);
+        return ByteBuffer.wrap(block);
+    }
+
+    private static int encodeLatin1(final String value, final byte[] destination, final int offset) {
+        int position = offset;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            destination[position++] = c > 0xFF ? (byte) '?' : (byte) c;
         }
-        return returnableBytes;
+        return position;
     }
 
     /**
@@ -97,12 +206,13 @@ public class HTTPMessage<T extends HTTPStartLine> {
      *
      * @return {@link Charset} if it exists, otherwise {@link StandardCharsets#UTF_8}
      */
-    private Charset getCharset() {
-        if (!this.headers.containsKey(HTTPSymbols.CONTENT_TYPE_HEADER_REGEX)) {
+    public Charset getCharset() {
+        final Optional<String> potentialHeader = getHeader(HTTPSymbols.CONTENT_TYPE_HEADER);
+        if (!potentialHeader.isPresent()) {
             logger.trace("No " + HTTPSymbols.CONTENT_TYPE_HEADER + " present, defaulting to UTF-8");
             return StandardCharsets.UTF_8;
         }
-        final String contentTypeHeader = this.headers.get(HTTPSymbols.CONTENT_TYPE_HEADER_REGEX);
+        final String contentTypeHeader = potentialHeader.get();
         if (!contentTypeHeader.contains(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)) {
             logger.trace("No charset identifier present, defaulting to UTF-8");
             return StandardCharsets.UTF_8;
@@ -119,7 +229,12 @@ public class HTTPMessage<T extends HTTPStartLine> {
      * <br/><br/>
      *
      * The body content will be encoded with the {@link Charset} provided by the {@code Content-Type} header if it exists,
-     * otherwise will use the default, {@link StandardCharsets#UTF_8}.
+     * otherwise will use the default, {@link StandardCharsets#UTF_8}. Raw bytes the body was populated with are used
+     * as they are if the body has not been replaced, so an untouched body is never decoded and re-encoded. Likewise raw
+     * bytes still carrying the content coding named by the {@code Content-Encoding} header are never compressed again
+     * unless the body was replaced, even if it was read.
+     * If the coding cannot be applied, such as when no compressor is registered for it, the body is written without it
+     * and the {@code Content-Encoding} header is removed.
      *
      * <br/><br/>
      *
@@ -136,83 +251,287 @@ public class HTTPMessage<T extends HTTPStartLine> {
      *     <li>{@code br}: Brotli compression standard (<a href="https://tools.ietf.org/html/rfc7932" target="_top">RFC 7932</a>)</li>
      * </ul>
      *
-     * @return {@code byte[]} containing an encoded body of compressed or uncompressed format
+     * @return {@link ByteAccumulator} containing an encoded body of compressed or uncompressed format
      */
-    private byte[] getBody() {
-        Optional<Map.Entry<String, String>> potentialHeader = this.headers.entrySet()
-                .stream()
-                .filter(e -> Pattern.compile(HTTPSymbols.CONTENT_TYPE_HEADER_REGEX).matcher(e.getKey()).find())
-                .findFirst();
-        if (potentialHeader.isPresent() && !HTTPSymbols.CONTENT_TYPE_TEXT_TYPE_REGEX.matcher(potentialHeader.get().getValue()).find()) {
-            logger.trace("Message body did not match pattern: " + HTTPSymbols.CONTENT_TYPE_TEXT_TYPE_REGEX.pattern() + ". Defaulting to raw bytes");
+    private ByteAccumulator encodeBody() {
+        if (this.body == null && this.bodyBytes == null) {
+            logger.trace("Message body was null, defaulting to empty byte array");
+            return ByteAccumulator.wrap(new byte[0]);
+        }
+        final Optional<String> contentEncoding = getHeader(HTTPSymbols.CONTENT_ENCODING_HEADER);
+        final boolean identity = !contentEncoding.isPresent() || contentEncoding.get().contains(HTTPSymbols.CONTENT_ENCODING_IDENTITY);
+        final CompressionFormat format = identity ? null : CompressionHandler.determineCompressionFormat(contentEncoding.get());
+        if (!this.bodyModified && this.bodyCoding != null && format == this.bodyCoding) {
+            logger.trace("Body is unmodified, writing it with its original " + this.bodyCoding.name() + " content coding");
             return this.bodyBytes;
         }
-        if (body == null) {
-            logger.trace("Message body was null, defaulting to empty byte array");
-            return new byte[0];
+        final Optional<String> contentType = getHeader(HTTPSymbols.CONTENT_TYPE_HEADER);
+        final Charset charset;
+        if (contentType.isPresent() && !HTTPSymbols.CONTENT_TYPE_TEXT_TYPE_REGEX.matcher(contentType.get()).find()) {
+            logger.trace("Message body did not match pattern: " + HTTPSymbols.CONTENT_TYPE_TEXT_TYPE_REGEX.pattern() + ". Defaulting to raw bytes");
+            charset = null;
+        } else {
+            charset = getCharset();
         }
-        potentialHeader = this.headers.entrySet()
-                .stream()
-                .filter(e -> Pattern.compile(HTTPSymbols.CONTENT_ENCODING_HEADER_REGEX).matcher(e.getKey()).find())
-                .findFirst();
-        if (!potentialHeader.isPresent() || potentialHeader.get().getValue().contains(HTTPSymbols.CONTENT_ENCODING_IDENTITY)) {
+        if (identity) {
             logger.trace(HTTPSymbols.CONTENT_ENCODING_HEADER + " header is not present or contained '" + HTTPSymbols.CONTENT_ENCODING_IDENTITY + "' value");
-            return body.getBytes(getCharset());
+            return encodeContentBuffers(charset);
+        }
+        if (format == null) {
+            if (charset == null) {
+                logger.trace("Raw body has an unknown content coding, writing it as it is");
+                return encodeContentBuffers(null);
+            }
+            throw new CompressionHandlerException("Unknown compression format");
         }
         try {
             logger.trace("Body requires compression");
-            final CompressionFormat format = CompressionHandler.determineCompressionFormat(potentialHeader.get().getValue());
-            if (format == null) {
-                throw new CompressionHandlerException("Unknown compression format");
-            }
-            return CompressionHandler.compress(this.body, getCharset(), format);
-        } catch (IOException | CompressorException e) {
-            logger.error(e, e);
+            return CompressionHandler.compress(encodeContent(charset), format, this.compressionLevel);
+        } catch (final IOException | CompressorException e) {
+            logger.error("Could not apply " + format.name() + " content coding, writing body without it", e);
+            removeHeader(HTTPSymbols.CONTENT_ENCODING_HEADER);
         }
-        logger.trace("Body was determined to have no formatting requirements, defaulting to standard byte retrieval with charset");
-        return body.getBytes(getCharset());
+        return encodeContentBuffers(charset);
     }
 
     /**
-     * Convert the current {@link HTTPMessage} to {@code byte[]}, encoding the body and compressing as need be.
+     * Retrieve the content of the body without any content coding applied, as per {@link HTTPMessage#encodeContent(Charset)}.
+     * Bytes the body was populated with that have no content coding are returned in the chunks they were accumulated
+     * in, so that writing out an untouched body never copies it.
+     *
+     * @param charset {@link Charset} the content is required in, or {@code null} if the content is not textual
+     * @return {@link ByteAccumulator} holding the content of the body
+     */
+    private ByteAccumulator encodeContentBuffers(final Charset charset) {
+        if (!this.bodyModified && this.bodyBytes != null && this.bodyCoding == null && (charset == null || charset.equals(this.bodyCharset))) {
+            return this.bodyBytes;
+        }
+        return ByteAccumulator.wrap(encodeContent(charset));
+    }
+
+    /**
+     * Retrieve the content of the body as bytes without any content coding applied. Bytes the body was populated with
+     * are returned as they are, unless the body has since been replaced or they were decoded with a different
+     * {@link Charset} than the one required, in which case the {@link String} body is encoded.
+     *
+     * @param charset {@link Charset} the content is required in, or {@code null} if the content is not textual
+     * @return {@code byte[]} holding the content of the body
+     */
+    private byte[] encodeContent(final Charset charset) {
+        if (!this.bodyModified && this.bodyBytes != null && (charset == null || charset.equals(this.bodyCharset))) {
+            return contentBytes();
+        }
+        final String content = getBody();
+        if (content == null) {
+            return new byte[0];
+        }
+        return content.getBytes(charset == null ? getCharset() : charset);
+    }
+
+    /**
+     * Serialize the current {@link HTTPMessage} into separate buffers for the start line, the header block and each
+     * slice of the body, encoding the body and compressing as need be. None of these are concatenated, so that they can
+     * be written with a single gathering write, see {@link OutboundBuffers}, without the body being copied.
      *
      * <br/><br/>
      *
      * The structure of the bytes will be directly equivalent to converting any <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a>
      * compliant message.
      *
+     * <br/><br/>
+     *
+     * Since bodies are collected without any transfer coding applied, the {@code Transfer-Encoding} header is removed
+     * and the body is always delimited with a {@code Content-Length} header.
+     *
+     * @return {@link OutboundBuffers} holding the serialized {@link HTTPMessage}
+     */
+    public OutboundBuffers toBuffers() {
+        final ByteAccumulator bb = encodeBody();
+        removeHeader(HTTPSymbols.TRANSFER_ENCODING_HEADER);
+        this.headers.set(HTTPSymbols.CONTENT_LENGTH_HEADER, String.valueOf(bb.size()));
+        logger.trace("Added/updated " + HTTPSymbols.CONTENT_LENGTH_HEADER + " to reflect new body length: " + bb.size());
+        final ByteBuffer[] body = bb.toByteBuffers();
+        final ByteBuffer[] buffers = new ByteBuffer[body.length + 2];
+        buffers[0] = ByteBuffer.wrap(this.startLine.toRaw());
+        buffers[1] = encodeHeaders();
+        System.arraycopy(body, 0, buffers, 2, body.length);
+        return new OutboundBuffers(buffers);
+    }
+
+    /**
+     * Serialize only the start line and headers of the current {@link HTTPMessage}, terminated by the empty line that
+     * precedes the body. Unlike {@link HTTPMessage#toBuffers()} the framing headers are left untouched, so that a body
+     * relayed as it was received remains correctly delimited.
+     *
+     * @return {@link OutboundBuffers} holding the serialized start line and headers of the current {@link HTTPMessage}
+     */
+    public OutboundBuffers toHeadBuffers() {
+        return new OutboundBuffers(
+                ByteBuffer.wrap(this.startLine.toRaw()),
+                encodeHeaders()
+        );
+    }
+
+    /**
+     * Convert the current {@link HTTPMessage} to a single {@code byte[]}, as per {@link HTTPMessage#toBuffers()}. This
+     * copies the whole message, so {@link HTTPMessage#toBuffers()} should be preferred when writing it out.
+     *
      * @return {@code byte[]} representation of the current {@link HTTPMessage}
      */
     public byte[] toRaw() {
-        final byte[] bb = getBody();
-        this.headers.put(HTTPSymbols.CONTENT_LENGTH_HEADER, String.valueOf(bb.length));
-        logger.trace("Added/updated " + HTTPSymbols.CONTENT_LENGTH_HEADER + " to reflect new body length: " + bb.length);
-        return concatAll(
-                this.startLine.toRaw(),
-                headersToString(HTTPSymbols.HTTP_HEADER_NEWLINE_DELIMITER)
-                        .getBytes(StandardCharsets.UTF_8),
-                bb
-        );
+        return toBuffers().toByteArray();
     }
 
     /**
-     * Set the current body raw bytes to a new value
+     * Convert only the start line and headers of the current {@link HTTPMessage} to a single {@code byte[]}, as per
+     * {@link HTTPMessage#toHeadBuffers()}
+     *
+     * @return {@code byte[]} representation of the start line and headers of the current {@link HTTPMessage}
+     */
+    public byte[] toRawHead() {
+        return toHeadBuffers().toByteArray();
+    }
+
+    /**
+     * Set the body to raw bytes, replacing any {@link String} body. The bytes are only decoded if the body is
+     * subsequently retrieved with {@link HTTPMessage#getBody()}, and are written out as they are by
+     * {@link HTTPMessage#toRaw()} unless the body is replaced. The array is taken as-is rather than copied, so it must
+     * not be modified by the caller afterwards.
+     *
+     * <br/><br/>
+     *
+     * The bytes must not have any content coding applied, see
+     * {@link HTTPMessage#withBodyBytes(byte[], Charset, CompressionFormat)} for bytes that do.
      *
      * @param bodyBytes {@code byte[]} representation of an <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a>
      *                                compliant body
+     * @param charset {@link Charset} the bytes are encoded with, defaulting to {@link StandardCharsets#UTF_8} if
+     *                {@code null}
+     */
+    public void withBodyBytes(final byte[] bodyBytes, final Charset charset) {
+        withBodyBytes(bodyBytes, charset, null);
+    }
+
+    /**
+     * Set the body to raw bytes that still have a content coding applied, see
+     * {@link HTTPMessage#withBodyBytes(byte[], Charset)}. The bytes are only decompressed if the content of the body
+     * is subsequently retrieved, so a body that is never replaced is written out with the exact bytes it was
+     * received with, as long as the {@code Content-Encoding} header still names the same coding.
+     *
+     * @param bodyBytes {@code byte[]} of the body with {@code coding} applied
+     * @param charset {@link Charset} the content is encoded with, defaulting to {@link StandardCharsets#UTF_8} if
+     *                {@code null}
+     * @param coding {@link CompressionFormat} applied to {@code bodyBytes}, or {@code null} if there is none
+     */
+    public void withBodyBytes(final byte[] bodyBytes, final Charset charset, final CompressionFormat coding) {
+        withBodyBytes(ByteAccumulator.wrap(bodyBytes), charset, coding);
+    }
+
+    /**
+     * Set the body to raw bytes held in a {@link ByteAccumulator}, see {@link HTTPMessage#withBodyBytes(byte[], Charset, CompressionFormat)}.
+     * The chunks of the accumulator are written out as they are while the body is untouched, and are only copied into a
+     * single array once the content of the body is retrieved. The accumulator must not be written to afterwards.
+     *
+     * @param bodyBytes {@link ByteAccumulator} holding the body with {@code coding} applied
+     * @param charset {@link Charset} the content is encoded with, defaulting to {@link StandardCharsets#UTF_8} if
+     *                {@code null}
+     * @param coding {@link CompressionFormat} applied to {@code bodyBytes}, or {@code null} if there is none
+     */
+    public void withBodyBytes(final ByteAccumulator bodyBytes, final Charset charset, final CompressionFormat coding) {
+        this.bodyBytes = bodyBytes;
+        this.contentBytes = null;
+        this.bodyCharset = charset == null ? StandardCharsets.UTF_8 : charset;
+        this.bodyCoding = coding;
+        this.body = null;
+        this.bodyModified = false;
+    }
+
+    /**
+     * Retrieve the content of the raw bytes the body was populated with as a single array, flattening the chunks they
+     * are held in and decompressing them on the first call if they have a content coding applied. The content is kept
+     * alongside the raw bytes, so it is only produced once and a body that is read but not replaced can still be
+     * written out as it was received.
+     *
+     * @return {@code byte[]} of the content, or {@code null} if the body was only ever given as a {@link String}
+     * @throws CompressionHandlerException If the bytes could not be decompressed
+     */
+    private byte[] contentBytes() {
+        if (this.bodyBytes == null) {
+            return null;
+        }
+        if (this.contentBytes == null && this.bodyCoding == null) {
+            this.contentBytes = this.bodyBytes.toByteArray();
+        } else if (this.contentBytes == null) {
+            try {
+                this.contentBytes = CompressionHandler.decompress(this.bodyBytes.toByteArray(), this.bodyCoding);
+            } catch (final IOException | CompressorException e) {
+                throw new CompressionHandlerException("An error occurred while decompressing body", e);
+            }
+            logger.debug("Decompressed body with format: " + this.bodyCoding.name());
+        }
+        return this.contentBytes;
+    }
+
+    /**
+     * @return {@link CompressionFormat} the raw bytes of the body still carry, or {@code null} if they have none or the
+     * body has been replaced
+     */
+    public CompressionFormat getBodyCoding() {
+        return this.bodyModified ? null : this.bodyCoding;
+    }
+
+    /**
+     * Set the level the body is compressed with when its content coding has to be applied again, such as one chosen
+     * by a {@link com.engineersbox.httpproxy.formatting.compression.CompressionLevelController}
+     *
+     * @param compressionLevel Level to compress with, or {@code null} to use the default level of the compressor
+     */
+    public void withCompressionLevel(final CompressionLevel compressionLevel) {
+        this.compressionLevel = compressionLevel;
+    }
+
+    /**
+     * Retrieve the body as a {@link String}, decoding the raw bytes of the body on the first call if the body was
+     * populated with {@link HTTPMessage#withBodyBytes(byte[], Charset)}
+     *
+     * @return {@link String} representation of the body, or {@code null} if there is no body
+     */
+    public String getBody() {
+        if (this.body == null && this.bodyBytes != null) {
+            this.body = new String(contentBytes(), this.bodyCharset);
+        }
+        return this.body;
+    }
+
+    /**
+     * Retrieve the raw bytes the body was populated with, without decoding them into a {@link String}. Any content
+     * coding is removed first.
+     *
+     * @return {@code byte[]} of the content given to {@link HTTPMessage#withBodyBytes(byte[], Charset, CompressionFormat)},
+     * or {@code null} if the body was only ever given as a {@link String}
+     * @throws CompressionHandlerException If the bytes could not be decompressed
+     */
+    public byte[] getBodyBytes() {
+        return contentBytes();
+    }
+
+    /**
+     * @return {@link Charset} the raw bytes of the body are encoded with, defaulting to {@link StandardCharsets#UTF_8}
      */
-    public void withBodyBytes(final byte[] bodyBytes) {
-        this.bodyBytes = bodyBytes.clone();
+    public Charset getBodyCharset() {
+        return this.bodyCharset;
     }
 
     /**
-     * Set the current string representation of body to a new value
+     * Set the current string representation of body to a new value, which replaces any raw bytes of the body when
+     * the message is converted with {@link HTTPMessage#toRaw()}
      *
      * @param newBody {@link String} representation of an <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a>
      *                compliant body
      */
     public void setBody(final String newBody) {
         this.body = newBody;
+        this.bodyModified = true;
     }
 
     @Override
@@ -221,7 +540,7 @@ public class HTTPMessage<T extends HTTPStartLine> {
             "{ startLine: %s, headers: { %s}, body: %s }",
             this.startLine,
             headersToString(" "),
-            this.body
+            this.body != null || this.bodyBytes == null ? this.body : this.bodyBytes.size() + " bytes"
         );
     }
 
@@ -4,10 +4,15 @@ package com.engineersbox.httpproxy.formatting.http.common;
  * Subset HTTP status codes defined in <a href="https://www.w3.org/Protocols/rfc2616/rfc2616.html" target="_top">RFC 2616</a>
  */
 public enum HTTPStatusCode {
+    _100(100, "Continue"),
     _200(200, "Ok"),
+    _400(400, "Bad Request"),
     _404(404, "Not found"),
     _408(408, "Request Timeout"),
-    _500(500, "Internal server error");
+    _413(413, "Payload Too Large"),
+    _431(431, "Request Header Fields Too Large"),
+    _500(500, "Internal server error"),
+    _503(503, "Service Unavailable");
 
     public final int code;
     public final String message;
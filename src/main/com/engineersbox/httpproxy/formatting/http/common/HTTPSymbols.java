@@ -15,11 +15,14 @@ public class HTTPSymbols {
     public static final Pattern HEADER_REGEX = Pattern.compile("([\\w-]+)" + HEADER_KEY_VALUE_DELIMITER + "(.*)");
 
     public static final String CONTENT_LENGTH_HEADER = "Content-Length";
+    public static final String CONTENT_LENGTH_HEADER_REGEX = "(?i)" + CONTENT_LENGTH_HEADER;
     public static final String CONTENT_TYPE_HEADER = "Content-Type";
     public static final String CONTENT_TYPE_HEADER_REGEX = "(?i)" + CONTENT_TYPE_HEADER;
     public static final String CONTENT_TYPE_CHARSET_KEY = "charset=";
     public static final Pattern CONTENT_TYPE_TEXT_TYPE_REGEX = Pattern.compile("text/\\w*");
+    public static final Pattern CONTENT_TYPE_HTML_REGEX = Pattern.compile("(?i)^\\s*text/html\\b");
     public static final Pattern CONTENT_TYPE_IMAGE_REGEX = Pattern.compile("image/\\w*");
+    public static final Pattern CONTENT_TYPE_COMPRESSIBLE_REGEX = Pattern.compile("(?i)^\\s*(text/|application/((x-)?javascript|ecmascript|json|xml|wasm)\\b|image/svg\\+xml|[\\w.-]+/[\\w.-]+\\+(json|xml)\\b)");
 
     public static final String CONTENT_ENCODING_HEADER = "Content-Encoding";
     public static final String CONTENT_ENCODING_HEADER_REGEX = "(?i)" + CONTENT_ENCODING_HEADER;
@@ -36,4 +39,30 @@ public class HTTPSymbols {
     public static final String TRANSFER_ENCODING_IDENTITY = "identity";
     public static final Pattern TRANSFER_ENCODING_SIZE_REGEX = Pattern.compile("[0-9]+\r\n");
     public static final String TRANSFER_ENCODING_TERMINATION = "0" + HTTP_HEADER_NEWLINE_DELIMITER;
+    public static final String TRANSFER_ENCODING_CHUNKED = "chunked";
+    public static final String TRANSFER_ENCODING_CHUNK_EXTENSION_DELIMITER = ";";
+
+    public static final String CONNECTION_HEADER = "Connection";
+    public static final String CONNECTION_CLOSE = "close";
+    public static final String CONNECTION_KEEP_ALIVE = "keep-alive";
+    public static final String CONNECTION_TOKEN_DELIMITER = ",";
+    public static final String KEEP_ALIVE_HEADER = "Keep-Alive";
+    public static final String KEEP_ALIVE_TIMEOUT = "timeout=";
+    public static final String KEEP_ALIVE_MAX = "max=";
+    public static final String KEEP_ALIVE_PARAMETER_DELIMITER = ", ";
+
+    public static final String EXPECT_HEADER = "Expect";
+    public static final String EXPECT_CONTINUE = "100-continue";
+
+    public static final String HOST_HEADER = "Host";
+    public static final String SERVER_HEADER = "Server";
+    public static final String SET_COOKIE_HEADER = "Set-Cookie";
+    public static final String ACCEPT_ENCODING_HEADER = "Accept-Encoding";
+    public static final String ACCEPT_ENCODING_DELIMITER = ",";
+    public static final String ACCEPT_ENCODING_WILDCARD = "*";
+    public static final String QUALITY_PARAMETER = "q";
+    public static final String VARY_HEADER = "Vary";
+    public static final String VARY_WILDCARD = "*";
+    public static final String ETAG_HEADER = "ETag";
+    public static final String ETAG_WEAK_PREFIX = "W/";
 }
@@ -0,0 +1,55 @@
+package com.engineersbox.httpproxy.formatting.http.response;
+
+import com.engineersbox.httpproxy.buffer.OutboundBuffers;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Response serialized once into an immutable {@code byte[]}, which is shared by every connection it is written to.
+ * Writing it involves no formatting or allocation beyond a read-only view of the shared bytes, so it remains cheap
+ * on failure paths taken while the proxy is overloaded.
+ *
+ * @see PreEncodedResponses
+ */
+public final class PreEncodedResponse {
+
+    public final HTTPResponseStartLine startLine;
+    private final byte[] raw;
+
+    /**
+     * @param message Response to serialize, which is not referenced afterwards
+     */
+    public PreEncodedResponse(final HTTPMessage<HTTPResponseStartLine> message) {
+        this.startLine = message.startLine;
+        this.raw = message.toRaw();
+    }
+
+    /**
+     * @return Amount of bytes in the serialized response
+     */
+    public int length() {
+        return this.raw.length;
+    }
+
+    /**
+     * Create buffers to write the response through, each call having its own position over the shared bytes
+     *
+     * @return {@link OutboundBuffers} over a read-only view of the serialized response
+     */
+    public OutboundBuffers toBuffers() {
+        return new OutboundBuffers(ByteBuffer.wrap(this.raw).asReadOnlyBuffer());
+    }
+
+    /**
+     * Write the serialized response to a stream directly from the shared bytes
+     *
+     * @param out Stream to write to
+     * @throws IOException If the write failed
+     */
+    public void writeTo(final OutputStream out) throws IOException {
+        out.write(this.raw);
+    }
+}
@@ -0,0 +1,66 @@
+package com.engineersbox.httpproxy.formatting.http.response;
+
+import com.engineersbox.httpproxy.configuration.Config;
+import com.google.inject.Inject;
+
+/**
+ * Canned responses written by the proxy itself when a request cannot be served, pre-encoded as
+ * {@link PreEncodedResponse}'s once at startup from {@link StandardResponses}. Bodies that depend on the {@link Config},
+ * such as the target the proxy failed to connect to, are resolved at the same time. A single instance is shared by
+ * all connections.
+ *
+ * <br/><br/>
+ *
+ * All responses carry {@code Connection: close}, as the connection they are written to is always closed afterwards
+ * as per <a href="https://tools.ietf.org/html/rfc7230#section-6.6" target="_top">RFC 7230 Section 6.6</a>.
+ */
+public class PreEncodedResponses {
+
+    /**
+     * {@code 400 (Bad Request)}, written when the framing of a request is invalid
+     */
+    public final PreEncodedResponse badRequest;
+    /**
+     * {@code 408 (Request Timeout)}, written when the server did not respond in time
+     */
+    public final PreEncodedResponse timeout;
+    /**
+     * {@code 413 (Payload Too Large)}, written when the body of a buffered request is larger than
+     * {@link com.engineersbox.httpproxy.configuration.domain.servlet.Messages#maxBodySize}
+     */
+    public final PreEncodedResponse payloadTooLarge;
+    /**
+     * {@code 431 (Request Header Fields Too Large)}, written when the start line and headers of a buffered request are
+     * too large
+     */
+    public final PreEncodedResponse headersTooLarge;
+    /**
+     * {@code 500 (Internal server error)}, written when a connection to the target could not be created
+     */
+    public final PreEncodedResponse connectFailure;
+    /**
+     * {@code 503 (Service Unavailable)}, written when no upstream connection could be leased in time
+     */
+    public final PreEncodedResponse unavailable;
+
+    @Inject
+    public PreEncodedResponses(final Config config) {
+        this.badRequest = new PreEncodedResponse(StandardResponses._400("Invalid request message framing"));
+        this.timeout = new PreEncodedResponse(StandardResponses._408("Timed out waiting for server response"));
+        this.payloadTooLarge = new PreEncodedResponse(StandardResponses._413(String.format(
+                "Request body is larger than the maximum supported size of %d bytes",
+                config.servlet.messages.maxBodySize
+        )));
+        this.headersTooLarge = new PreEncodedResponse(StandardResponses._431("Request headers are too large"));
+        this.connectFailure = new PreEncodedResponse(StandardResponses._500(String.format(
+                "Could not connect to host %s:%d",
+                config.target.host,
+                config.target.port
+        )));
+        this.unavailable = new PreEncodedResponse(StandardResponses._503(String.format(
+                "No connection to host %s:%d is available",
+                config.target.host,
+                config.target.port
+        )));
+    }
+}
@@ -1,12 +1,10 @@
 package com.engineersbox.httpproxy.formatting.http.response;
 
+import com.engineersbox.httpproxy.formatting.http.common.HTTPHeaders;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPStatusCode;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPVersion;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * Collection of standard HTTP responses compliant with <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec6.html#sec6.1.1" target="_top">RFC 2616 Section 6.1.1</a>
  */
@@ -20,7 +18,7 @@ public class StandardResponses {
      */
     public static HTTPMessage<HTTPResponseStartLine> _200(final String body) {
         final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._200();
-        message.body = body;
+        message.setBody(body);
         return message;
     }
 
@@ -30,9 +28,9 @@ public class StandardResponses {
      * @return HTTP 200 formatted {@link HTTPMessage}
      */
     public static HTTPMessage<HTTPResponseStartLine> _200() {
-        final Map<String, String> headers = new HashMap<>();
-        headers.put("Connection", "close");
-        headers.put("Server", "HTTPProxy");
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
         return new HTTPMessage<>(
                 new HTTPResponseStartLine(
                         HTTPStatusCode._200.code,
@@ -43,6 +41,37 @@ public class StandardResponses {
         );
     }
 
+    /**
+     * Create an HTTP 400 (Bad Request) response with a custom body
+     *
+     * @param body Content to use as the body of the response
+     * @return HTTP 400 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _400(final String body) {
+        final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._400();
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Create an HTTP 400 (Bad Request) response
+     *
+     * @return HTTP 400 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _400() {
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
+        return new HTTPMessage<>(
+                new HTTPResponseStartLine(
+                        HTTPStatusCode._400.code,
+                        HTTPStatusCode._400.message,
+                        HTTPVersion.HTTP11
+                ),
+                headers
+        );
+    }
+
     /**
      * Create an HTTP 404 (Not Found) response with a custom body
      *
@@ -51,7 +80,7 @@ public class StandardResponses {
      */
     public static HTTPMessage<HTTPResponseStartLine> _404(final String body) {
         final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._404();
-        message.body = body;
+        message.setBody(body);
         return message;
     }
 
@@ -61,9 +90,9 @@ public class StandardResponses {
      * @return HTTP 404 formatted {@link HTTPMessage}
      */
     public static HTTPMessage<HTTPResponseStartLine> _404() {
-        final Map<String, String> headers = new HashMap<>();
-        headers.put("Connection", "close");
-        headers.put("Server", "HTTPProxy");
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
         return new HTTPMessage<>(
                 new HTTPResponseStartLine(
                         HTTPStatusCode._404.code,
@@ -82,7 +111,7 @@ public class StandardResponses {
      */
     public static HTTPMessage<HTTPResponseStartLine> _408(final String body) {
         final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._408();
-        message.body = body;
+        message.setBody(body);
         return message;
     }
 
@@ -92,9 +121,9 @@ public class StandardResponses {
      * @return HTTP 408 formatted {@link HTTPMessage}
      */
     public static HTTPMessage<HTTPResponseStartLine> _408() {
-        final Map<String, String> headers = new HashMap<>();
-        headers.put("Connection", "close");
-        headers.put("Server", "HTTPProxy");
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
         return new HTTPMessage<>(
                 new HTTPResponseStartLine(
                         HTTPStatusCode._408.code,
@@ -105,6 +134,68 @@ public class StandardResponses {
         );
     }
 
+    /**
+     * Create an HTTP 413 (Payload Too Large) response with a custom body
+     *
+     * @param body Content to use as the body of the response
+     * @return HTTP 413 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _413(final String body) {
+        final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._413();
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Create an HTTP 413 (Payload Too Large) response
+     *
+     * @return HTTP 413 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _413() {
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
+        return new HTTPMessage<>(
+                new HTTPResponseStartLine(
+                        HTTPStatusCode._413.code,
+                        HTTPStatusCode._413.message,
+                        HTTPVersion.HTTP11
+                ),
+                headers
+        );
+    }
+
+    /**
+     * Create an HTTP 431 (Request Header Fields Too Large) response with a custom body
+     *
+     * @param body Content to use as the body of the response
+     * @return HTTP 431 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _431(final String body) {
+        final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._431();
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Create an HTTP 431 (Request Header Fields Too Large) response
+     *
+     * @return HTTP 431 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _431() {
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
+        return new HTTPMessage<>(
+                new HTTPResponseStartLine(
+                        HTTPStatusCode._431.code,
+                        HTTPStatusCode._431.message,
+                        HTTPVersion.HTTP11
+                ),
+                headers
+        );
+    }
+
     /**
      * Create an HTTP 500 (Internal server error) response with a custom body
      *
@@ -113,7 +204,7 @@ public class StandardResponses {
      */
     public static HTTPMessage<HTTPResponseStartLine> _500(final String body) {
         final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._500();
-        message.body = body;
+        message.setBody(body);
         return message;
     }
 
@@ -123,9 +214,9 @@ public class StandardResponses {
      * @return HTTP 500 formatted {@link HTTPMessage}
      */
     public static HTTPMessage<HTTPResponseStartLine> _500() {
-        final Map<String, String> headers = new HashMap<>();
-        headers.put("Connection", "close");
-        headers.put("Server", "HTTPProxy");
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
         return new HTTPMessage<>(
                 new HTTPResponseStartLine(
                         HTTPStatusCode._500.code,
@@ -135,4 +226,35 @@ public class StandardResponses {
                 headers
         );
     }
+
+    /**
+     * Create an HTTP 503 (Service Unavailable) response with a custom body
+     *
+     * @param body Content to use as the body of the response
+     * @return HTTP 503 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _503(final String body) {
+        final HTTPMessage<HTTPResponseStartLine> message = StandardResponses._503();
+        message.setBody(body);
+        return message;
+    }
+
+    /**
+     * Create an HTTP 503 (Service Unavailable) response
+     *
+     * @return HTTP 503 formatted {@link HTTPMessage}
+     */
+    public static HTTPMessage<HTTPResponseStartLine> _503() {
+        final HTTPHeaders headers = new HTTPHeaders(2);
+        headers.add("Connection", "close");
+        headers.add("Server", "HTTPProxy");
+        return new HTTPMessage<>(
+                new HTTPResponseStartLine(
+                        HTTPStatusCode._503.code,
+                        HTTPStatusCode._503.message,
+                        HTTPVersion.HTTP11
+                ),
+                headers
+        );
+    }
 }
@@ -0,0 +1,183 @@
+package com.engineersbox.httpproxy.formatting.pipeline;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.exceptions.http.CompressionHandlerException;
+import com.engineersbox.httpproxy.formatting.compression.CompressionFormat;
+import com.engineersbox.httpproxy.formatting.compression.CompressionHandler;
+import com.engineersbox.httpproxy.formatting.compression.CompressionLevel;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
+import org.apache.commons.compress.compressors.CompressorException;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Incremental processing of a message body in bounded chunks, as a chain of stages:
+ *
+ * <ol>
+ *     <li>Decode: the content coding of the body is removed as it is read, see {@link CompressionHandler#decoding}</li>
+ *     <li>Transform: each {@link BodyStage} in order, such as a {@link TextStage} operating on the decoded text</li>
+ *     <li>Encode: the content coding is applied again to the output of the last stage, see {@link CompressionHandler#encoding}</li>
+ * </ol>
+ *
+ * Only a single chunk of the body is held by the pipeline at a time, so output starts before the whole body has been
+ * received and memory usage does not grow with the size of the body. The stages are flushed after each chunk, so that
+ * a body received slowly is not held back waiting for a full chunk. The chunk buffer is leased from a {@link BufferPool}
+ * for the duration of each run.
+ */
+public class BodyPipeline {
+
+    private final CompressionFormat decodeFormat;
+    private final List<BodyStage> stages;
+    private final CompressionFormat encodeFormat;
+    private final CompressionLevel encodeLevel;
+    private final BufferPool bufferPool;
+    private final int chunkSize;
+
+    /**
+     * @param decodeFormat Content coding of the input body, or {@code null} if it has none
+     * @param stages Transform stages to apply to the decoded body in order
+     * @param encodeFormat Content coding to apply to the output body, or {@code null} for none
+     * @param encodeLevel Level to apply the output coding with, or {@code null} for the default level of the compressor
+     * @param bufferPool Pool to lease the chunk buffer from
+     * @param chunkSize Size of the chunks the body is read in
+     */
+    public BodyPipeline(final CompressionFormat decodeFormat,
+                        final List<BodyStage> stages,
+                        final CompressionFormat encodeFormat,
+                        final CompressionLevel encodeLevel,
+                        final BufferPool bufferPool,
+                        final int chunkSize) {
+        this.decodeFormat = decodeFormat;
+        this.stages = stages;
+        this.encodeFormat = encodeFormat;
+        this.encodeLevel = encodeLevel;
+        this.bufferPool = bufferPool;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Create a pipeline that decodes and re-encodes the body of a message with the content coding given by its
+     * {@code Content-Encoding} header. A coding that is not supported by {@link CompressionHandler} is left as-is, as
+     * is the coding of a body that no stage transforms, which is then passed through without being decompressed.
+     *
+     * @param head Start line and headers of the message
+     * @param stages Transform stages to apply to the decoded body in order
+     * @param bufferPool Pool to lease the chunk buffer from
+     * @param chunkSize Size of the chunks the body is read in
+     * @return Instance of {@link BodyPipeline} for the message body
+     */
+    public static BodyPipeline forMessage(final HTTPMessage<?> head,
+                                          final List<BodyStage> stages,
+                                          final BufferPool bufferPool,
+                                          final int chunkSize) {
+        final Optional<String> contentEncoding = head.getHeader(HTTPSymbols.CONTENT_ENCODING_HEADER);
+        final CompressionFormat format = contentEncoding.isPresent() && !contentEncoding.get().contains(HTTPSymbols.CONTENT_ENCODING_IDENTITY)
+                ? CompressionHandler.determineCompressionFormat(contentEncoding.get())
+                : null;
+        return recoding(format, stages, format, null, bufferPool, chunkSize);
+    }
+
+    /**
+     * Create a pipeline that changes the content coding of a body, such as to one negotiated with the client by
+     * {@link com.engineersbox.httpproxy.formatting.compression.ContentCodingNegotiator}. A body that no stage
+     * transforms and whose coding is unchanged is passed through without being decompressed.
+     *
+     * @param inputFormat Content coding of the input body, or {@code null} if it has none
+     * @param stages Transform stages to apply to the decoded body in order
+     * @param outputFormat Content coding to apply to the output body, or {@code null} for none
+     * @param outputLevel Level to apply the output coding with, or {@code null} for the default level of the compressor
+     * @param bufferPool Pool to lease the chunk buffer from
+     * @param chunkSize Size of the chunks the body is read in
+     * @return Instance of {@link BodyPipeline} for the message body
+     */
+    public static BodyPipeline recoding(final CompressionFormat inputFormat,
+                                        final List<BodyStage> stages,
+                                        final CompressionFormat outputFormat,
+                                        final CompressionLevel outputLevel,
+                                        final BufferPool bufferPool,
+                                        final int chunkSize) {
+        if (stages.isEmpty() && inputFormat == outputFormat) {
+            return new BodyPipeline(null, stages, null, null, bufferPool, chunkSize);
+        }
+        return new BodyPipeline(inputFormat, stages, outputFormat, outputLevel, bufferPool, chunkSize);
+    }
+
+    /**
+     * @return {@code true} if the output body is guaranteed to be byte-for-byte identical in length to the input body,
+     * in which case any {@code Content-Length} of the message remains valid, {@code false} otherwise
+     */
+    public boolean isLengthPreserving() {
+        return this.stages.isEmpty() && this.decodeFormat == null && this.encodeFormat == null;
+    }
+
+    /**
+     * Run a body through the pipeline, reading from {@code body} until it ends and writing the output to {@code sink}.
+     * The {@code sink} is flushed once the body ends, but is not closed. If an error occurs the remainder of the body is
+     * left unread, as the connection it is read from can no longer be reused.
+     *
+     * @param body Stream over the body, without any transfer coding
+     * @param sink Stream to write the output body to
+     * @return Amount of decoded bytes passed through the transform stages
+     * @throws IOException If an I/O error occurs reading the body or writing the output
+     * @throws CompressionHandlerException If the body could not be decoded or encoded
+     */
+    public long run(final InputStream body, final OutputStream sink) throws IOException, CompressionHandlerException {
+        final InputStream decoded;
+        OutputStream stage;
+        try {
+            decoded = this.decodeFormat == null ? body : CompressionHandler.decoding(body, this.decodeFormat);
+            stage = new UnclosableOutputStream(sink);
+            if (this.encodeFormat != null) {
+                stage = CompressionHandler.encoding(stage, this.encodeFormat, this.encodeLevel);
+            }
+        } catch (final CompressorException e) {
+            throw new CompressionHandlerException("Could not create codec stage of body pipeline", e);
+        }
+        for (int i = this.stages.size() - 1; i >= 0; i--) {
+            stage = this.stages.get(i).attach(stage);
+        }
+        final BufferPool.Lease lease = this.bufferPool.acquireHeap(this.chunkSize);
+        final byte[] buffer = lease.array();
+        long transferred = 0;
+        try {
+            int read;
+            while ((read = decoded.read(buffer, 0, this.chunkSize)) != -1) {
+                stage.write(buffer, 0, read);
+                stage.flush();
+                transferred += read;
+            }
+        } finally {
+            lease.release();
+        }
+        stage.close();
+        decoded.close();
+        return transferred;
+    }
+
+    /**
+     * Guards the sink of the pipeline from being closed by the last stage, since it is bound to a connection that may
+     * carry further messages
+     */
+    private static class UnclosableOutputStream extends FilterOutputStream {
+
+        UnclosableOutputStream(final OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            this.out.write(bytes, offset, length);
+        }
+
+        @Override
+        public void close() throws IOException {
+            this.out.flush();
+        }
+    }
+}
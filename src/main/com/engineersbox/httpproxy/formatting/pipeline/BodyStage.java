@@ -0,0 +1,22 @@
+package com.engineersbox.httpproxy.formatting.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * A transform stage of a {@link BodyPipeline}. Stages receive the decoded body in bounded chunks as it is read, and
+ * write their output on to the next stage as soon as it can be determined, rather than waiting for the whole body.
+ */
+public interface BodyStage {
+
+    /**
+     * Create the stream that this stage receives its input through, writing its output to {@code downstream}. Closing
+     * the returned stream must write any output still held by the stage, then close {@code downstream}.
+     *
+     * @param downstream Stream of the next stage in the {@link BodyPipeline}
+     * @return Stream to write the input of this stage to
+     * @throws IOException If the stage could not be created
+     */
+    OutputStream attach(final OutputStream downstream) throws IOException;
+
+}
@@ -0,0 +1,238 @@
+package com.engineersbox.httpproxy.formatting.pipeline;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * A {@link BodyStage} applying a {@link TextTransform} to the text of a body. The bytes of each chunk are decoded with
+ * a {@link CharsetDecoder} as they arrive and the transformed text is encoded again with a {@link CharsetEncoder}, both
+ * of which keep their state between chunks:
+ *
+ * <ul>
+ *     <li>A multi-byte character split across two chunks is held back until its remaining bytes arrive</li>
+ *     <li>A surrogate pair split across two appends to the output is held back until its low surrogate arrives</li>
+ *     <li>Characters left unconsumed by the {@link TextTransform} are carried over ahead of the next chunk</li>
+ * </ul>
+ *
+ * Malformed or unmappable input is substituted with the replacement of the {@link Charset}, rather than failing the
+ * whole body. The decoded text is held in a buffer of bounded size, which only grows if the {@link TextTransform}
+ * leaves too little of it unconsumed for the next character to be decoded.
+ */
+public class TextStage implements BodyStage {
+
+    private static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MAX_SEQUENCE_LENGTH = 16;
+
+    private final Charset charset;
+    private final TextTransform transform;
+    private final int bufferSize;
+
+    public TextStage(final Charset charset, final TextTransform transform) {
+        this(charset, transform, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * @param charset Encoding of the body
+     * @param transform Transform to apply to the decoded text
+     * @param bufferSize Amount of characters decoded, and of bytes encoded, before they are passed on
+     */
+    public TextStage(final Charset charset, final TextTransform transform, final int bufferSize) {
+        this.charset = charset;
+        this.transform = transform;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public OutputStream attach(final OutputStream downstream) {
+        return new DecodingOutputStream(new EncodingAppendable(downstream));
+    }
+
+    /**
+     * Input of the stage, decoding the bytes written to it and passing the text to the {@link TextTransform}
+     */
+    private class DecodingOutputStream extends OutputStream {
+
+        private final CharsetDecoder decoder;
+        private final EncodingAppendable output;
+        private final ByteBuffer undecoded;
+        private final int minimumSpace;
+        private CharBuffer decoded;
+        private boolean closed = false;
+
+        DecodingOutputStream(final EncodingAppendable output) {
+            this.decoder = TextStage.this.charset.newDecoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.output = output;
+            this.undecoded = ByteBuffer.allocate(MAX_SEQUENCE_LENGTH);
+            this.minimumSpace = Math.max((int) Math.ceil(this.decoder.maxCharsPerByte()), 2);
+            this.decoded = CharBuffer.allocate(TextStage.this.bufferSize);
+        }
+
+        @Override
+        public void write(final int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+            final ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+            while (this.undecoded.position() > 0 && in.hasRemaining()) {
+                this.undecoded.put(in.get());
+                this.undecoded.flip();
+                decode(this.undecoded, false);
+                this.undecoded.compact();
+            }
+            decode(in, false);
+            if (in.hasRemaining()) {
+                this.undecoded.put(in);
+            }
+            transform(false);
+        }
+
+        private void decode(final ByteBuffer in, final boolean endOfInput) throws IOException {
+            while (this.decoder.decode(in, this.decoded, endOfInput).isOverflow()) {
+                transform(false);
+            }
+        }
+
+        /**
+         * Pass the decoded text to the {@link TextTransform}, keeping any characters it leaves unconsumed
+         *
+         * @param endOfInput Whether the decoded text is the last of the body
+         * @throws IOException If the transformed text could not be written
+         */
+        private void transform(final boolean endOfInput) throws IOException {
+            this.decoded.flip();
+            TextStage.this.transform.transform(this.decoded, endOfInput, this.output);
+            this.decoded.compact();
+            if (this.decoded.remaining() < this.minimumSpace) {
+                final CharBuffer grown = CharBuffer.allocate(this.decoded.capacity() * 2);
+                this.decoded.flip();
+                grown.put(this.decoded);
+                this.decoded = grown;
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            this.output.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            this.undecoded.flip();
+            decode(this.undecoded, true);
+            while (this.decoder.flush(this.decoded).isOverflow()) {
+                transform(false);
+            }
+            transform(true);
+            this.output.close();
+        }
+    }
+
+    /**
+     * Output of the stage, encoding the text appended to it by the {@link TextTransform} and writing the bytes to the
+     * next stage
+     */
+    private class EncodingAppendable implements Appendable {
+
+        private final CharsetEncoder encoder;
+        private final OutputStream downstream;
+        private final ByteBuffer encoded;
+        private final CharBuffer unencoded;
+        private final char[] single;
+
+        EncodingAppendable(final OutputStream downstream) {
+            this.encoder = TextStage.this.charset.newEncoder()
+                    .onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            this.downstream = downstream;
+            this.encoded = ByteBuffer.allocate(Math.max(TextStage.this.bufferSize, (int) Math.ceil(this.encoder.maxBytesPerChar()) * 2));
+            this.unencoded = CharBuffer.allocate(2);
+            this.single = new char[1];
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq) throws IOException {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(final CharSequence csq, final int start, final int end) throws IOException {
+            final CharBuffer in;
+            if (csq instanceof CharBuffer) {
+                in = ((CharBuffer) csq).duplicate();
+                final int position = in.position();
+                in.limit(position + end);
+                in.position(position + start);
+            } else {
+                in = CharBuffer.wrap(csq, start, end);
+            }
+            encode(in);
+            return this;
+        }
+
+        @Override
+        public Appendable append(final char c) throws IOException {
+            this.single[0] = c;
+            encode(CharBuffer.wrap(this.single));
+            return this;
+        }
+
+        private void encode(final CharBuffer in) throws IOException {
+            while (this.unencoded.position() > 0 && in.hasRemaining()) {
+                this.unencoded.put(in.get());
+                this.unencoded.flip();
+                encode(this.unencoded, false);
+                this.unencoded.compact();
+            }
+            encode(in, false);
+            if (in.hasRemaining()) {
+                this.unencoded.put(in);
+            }
+        }
+
+        private void encode(final CharBuffer in, final boolean endOfInput) throws IOException {
+            CoderResult result;
+            while ((result = this.encoder.encode(in, this.encoded, endOfInput)).isOverflow()) {
+                writeEncoded();
+            }
+            if (result.isError()) {
+                result.throwException();
+            }
+        }
+
+        private void writeEncoded() throws IOException {
+            this.encoded.flip();
+            this.downstream.write(this.encoded.array(), this.encoded.arrayOffset(), this.encoded.limit());
+            this.encoded.clear();
+        }
+
+        void flush() throws IOException {
+            writeEncoded();
+            this.downstream.flush();
+        }
+
+        void close() throws IOException {
+            this.unencoded.flip();
+            encode(this.unencoded, true);
+            while (this.encoder.flush(this.encoded).isOverflow()) {
+                writeEncoded();
+            }
+            writeEncoded();
+            this.downstream.close();
+        }
+    }
+}
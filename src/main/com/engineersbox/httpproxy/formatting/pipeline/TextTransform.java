@@ -0,0 +1,23 @@
+package com.engineersbox.httpproxy.formatting.pipeline;
+
+import java.io.IOException;
+import java.nio.CharBuffer;
+
+/**
+ * Transform of decoded text, applied by a {@link TextStage} to each chunk of a body as it is received
+ */
+public interface TextTransform {
+
+    /**
+     * Transform as much of {@code input} as can be determined, appending the result to {@code output}. Characters left
+     * remaining in {@code input} are carried over, being presented again ahead of the next chunk, so that a transform
+     * can wait on text that spans a chunk boundary.
+     *
+     * @param input Decoded text, positioned at the first character not yet consumed
+     * @param endOfInput Whether {@code input} holds the last of the body, in which case it must be consumed entirely
+     * @param output Destination of the transformed text
+     * @throws IOException If the transformed text could not be written to {@code output}
+     */
+    void transform(final CharBuffer input, final boolean endOfInput, final Appendable output) throws IOException;
+
+}
@@ -126,24 +126,20 @@ public class HandlerResolver implements ResourceResolver {
     }
 
     /**
-     * Retrieves the {@code Content-Type} header from a given {@link Map} of valid <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a>
+     * Retrieves the {@code Content-Type} header from a given {@link HTTPHeaders} of valid <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a>
      * headers. If the header does not exist, this throws {@link ResourceEndpointMatcherException}
      *
      * <br/> <br/>
      *
-     * @param headers {@link Map} of valid <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a> headers
+     * @param headers {@link HTTPHeaders} of valid <a href="https://www.w3.org/Protocols/rfc2616/rfc2616-sec4.html#sec4.2" target="_top">RFC 2616 Section 4.2</a> headers
      * @return {@link String} containing the media type
-     * @throws ResourceEndpointMatcherException If there was no {@code Content-Type} header in the {@link Map}
+     * @throws ResourceEndpointMatcherException If there was no {@code Content-Type} header in the {@link HTTPHeaders}
      */
-    private String getContentTypeHeader(final Map<String, String> headers) throws ResourceEndpointMatcherException {
-        final Optional<Map.Entry<String, String>> header = headers.entrySet()
-                .stream()
-                .filter(e -> Pattern.compile(HTTPSymbols.CONTENT_TYPE_HEADER_REGEX).matcher(e.getKey()).find())
-                .findFirst();
-        if (!header.isPresent()) {
+    private String getContentTypeHeader(final HTTPHeaders headers) throws ResourceEndpointMatcherException {
+        final String contentTypeHeader = headers.get(HTTPSymbols.CONTENT_TYPE_HEADER);
+        if (contentTypeHeader == null) {
             throw new ResourceEndpointMatcherException("Could not find " + HTTPSymbols.CONTENT_TYPE_HEADER_REGEX + " when trying to resolve resource endpoint");
         }
-        final String contentTypeHeader = header.get().getValue();
         String typeValue = contentTypeHeader;
         if (contentTypeHeader.contains(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)) {
             final String contentTypeSplit = contentTypeHeader.split(HTTPSymbols.CONTENT_TYPE_CHARSET_KEY)[0];
@@ -372,6 +368,44 @@ public class HandlerResolver implements ResourceResolver {
         }
     }
 
+    /**
+     * Finds a response resource method annotated with a {@link MediaType} matching the given {@code Content-Type}
+     * header value
+     *
+     * @param contentTypeHeader Media type of the response
+     * @return A matching method
+     * @throws ResourceEndpointMatcherException No matching methods were found
+     */
+    private Method findResponseMethod(final String contentTypeHeader) throws ResourceEndpointMatcherException {
+        return findMethod(
+                this.responseContentResourceURLS,
+                Stream.concat(this.exceptionResources.stream(), this.requestResources.stream()).collect(Collectors.toSet()),
+                m -> {
+            if (!m.getReturnType().isAssignableFrom(HTTPMessage.class)) {
+                return false;
+            }
+            final List<String> patterns = Arrays.asList(m.getAnnotation(MediaType.class).value());
+            return matchHeaderToPatterns(contentTypeHeader.trim(), patterns).isPresent();
+        });
+    }
+
+    /**
+     * Determines whether a response resource method would be matched for the {@code Content-Type} header of the
+     * given {@link HTTPMessage} by {@link HandlerResolver#matchResponse(HTTPMessage)}
+     *
+     * @param head {@link HTTPMessage} containing at least the headers of the response
+     * @return {@code true} if a matching {@link MediaType} method exists, {@code false} otherwise
+     */
+    @Override
+    public boolean hasResponseHandler(final HTTPMessage<HTTPResponseStartLine> head) {
+        try {
+            findResponseMethod(getContentTypeHeader(head.headers));
+            return true;
+        } catch (final ResourceEndpointMatcherException e) {
+            return false;
+        }
+    }
+
     /**
      * Matches the given {@link HTTPMessage} to resources based on the {@link MediaType} contained in the
      * {@code Content-Type} header.
@@ -383,17 +417,7 @@ public class HandlerResolver implements ResourceResolver {
     @Override
     public HTTPMessage<HTTPResponseStartLine> matchResponse(final HTTPMessage<HTTPResponseStartLine> message) {
         try {
-            final String contentTypeHeader = getContentTypeHeader(message.headers);
-            final Method method = findMethod(
-                    this.responseContentResourceURLS,
-                    Stream.concat(this.exceptionResources.stream(), this.requestResources.stream()).collect(Collectors.toSet()),
-                    m -> {
-                if (!m.getReturnType().isAssignableFrom(HTTPMessage.class)) {
-                    return false;
-                }
-                final List<String> patterns = Arrays.asList(m.getAnnotation(MediaType.class).value());
-                return matchHeaderToPatterns(contentTypeHeader.trim(), patterns).isPresent();
-            });
+            final Method method = findResponseMethod(getContentTypeHeader(message.headers));
             logger.trace(String.format(
                     "Invoking method [%s] for response message: %s",
                     method.getName(),
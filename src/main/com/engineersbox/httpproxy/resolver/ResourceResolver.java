@@ -25,4 +25,13 @@ public interface ResourceResolver {
      */
     HTTPMessage<HTTPResponseStartLine> matchResponse(final HTTPMessage<HTTPResponseStartLine> message);
 
+    /**
+     * Determines whether {@link ResourceResolver#matchResponse(HTTPMessage)} would hand a response with the given head
+     * to a resource handler, before its body has been read
+     *
+     * @param head {@link HTTPMessage} containing at least the headers of the response
+     * @return {@code true} if a resource handler exists for the response, {@code false} otherwise
+     */
+    boolean hasResponseHandler(final HTTPMessage<HTTPResponseStartLine> head);
+
 }
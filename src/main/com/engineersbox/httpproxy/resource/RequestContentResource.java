@@ -1,7 +1,9 @@
 package com.engineersbox.httpproxy.resource;
 
 import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
+import com.engineersbox.httpproxy.formatting.http.common.HTTPSymbols;
 import com.engineersbox.httpproxy.formatting.http.request.HTTPRequestStartLine;
 import com.engineersbox.httpproxy.resolver.annotation.Handler;
 import com.engineersbox.httpproxy.resolver.annotation.HandlerType;
@@ -18,18 +20,30 @@ public class RequestContentResource {
     private final Logger logger = LogManager.getLogger(ResponseContentResource.class);
 
     private final Config config;
+    private final UpstreamConnectionPool upstreamPool;
 
     @Inject
-    public RequestContentResource(final Config config) {
+    public RequestContentResource(final Config config, final UpstreamConnectionPool upstreamPool) {
         this.config = config;
+        this.upstreamPool = upstreamPool;
+    }
+
+    /**
+     * Value of the {@code Connection} header to send to the server, keeping the connection alive for reuse by the
+     * {@link UpstreamConnectionPool} if reuse is enabled
+     *
+     * @return {@code keep-alive} if connections are reused, {@code close} otherwise
+     */
+    private String connectionOption() {
+        return this.upstreamPool.isReuseEnabled() ? HTTPSymbols.CONNECTION_KEEP_ALIVE : HTTPSymbols.CONNECTION_CLOSE;
     }
 
     @SuppressWarnings("unused")
     @GET
     @Path("/assets-140/{kind}")
     public HTTPMessage<HTTPRequestStartLine> handleHTMLResponse(final HTTPMessage<HTTPRequestStartLine> message, @PathParam("kind") final String resourceKind) {
-        message.headers.replace("Host", this.config.target.host);
-        message.headers.put("Connection", "close");
+        message.headers.replace(HTTPSymbols.HOST_HEADER, this.config.target.host);
+        message.headers.set(HTTPSymbols.CONNECTION_HEADER, connectionOption());
         logger.debug("Resource kind: " + resourceKind);
         return message;
     }
@@ -38,11 +52,12 @@ public class RequestContentResource {
     @GET
     @Path("/")
     public HTTPMessage<HTTPRequestStartLine> handleHTMLResponse(final HTTPMessage<HTTPRequestStartLine> message) {
-        message.headers.replace("Host", this.config.target.host);
-        message.headers.put("Connection", "close");
+        message.headers.replace(HTTPSymbols.HOST_HEADER, this.config.target.host);
+        message.headers.set(HTTPSymbols.CONNECTION_HEADER, connectionOption());
         logger.debug(String.format(
-                "Replaced host header value to %s and added 'Connection: close'",
-                this.config.target.host
+                "Replaced host header value to %s and added 'Connection: %s'",
+                this.config.target.host,
+                connectionOption()
         ));
         return message;
     }
@@ -1,7 +1,10 @@
 package com.engineersbox.httpproxy.resource;
 
 import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.domain.servlet.HTMLRewriterMode;
 import com.engineersbox.httpproxy.formatting.content.BaseContentFormatter;
+import com.engineersbox.httpproxy.formatting.content.html.HTMLTokenRewriter;
+import com.engineersbox.httpproxy.formatting.content.replacement.CompiledPolicies;
 import com.engineersbox.httpproxy.formatting.http.common.HTTPMessage;
 import com.engineersbox.httpproxy.formatting.http.response.HTTPResponseStartLine;
 import com.engineersbox.httpproxy.resolver.annotation.MediaType;
@@ -11,6 +14,9 @@ import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
 @Handler(HandlerType.RESPONSE_CONTENT)
 public class ResponseContentResource {
 
@@ -18,16 +24,32 @@ public class ResponseContentResource {
 
     private final Config config;
     private final BaseContentFormatter contentFormatter;
+    private final CompiledPolicies compiledPolicies;
 
     @Inject
-    public ResponseContentResource(final Config config, final BaseContentFormatter contentFormatter) {
+    public ResponseContentResource(final Config config,
+                                   final BaseContentFormatter contentFormatter,
+                                   final CompiledPolicies compiledPolicies) {
         this.config = config;
         this.contentFormatter = contentFormatter;
+        this.compiledPolicies = compiledPolicies;
     }
 
     /**
      * Handler for {@code text/html} media types. This will reformat text and {@code link} attributes in HTML element
-     * of the message boyd based on replacement configs supplied in {@link Config}.
+     * of the message boyd based on replacement configs supplied in {@link Config}, as compiled once into
+     * {@link CompiledPolicies}. Text and link replacements are applied together in a single pass over the body.
+     *
+     * <br/><br/>
+     *
+     * Bodies that the {@link com.engineersbox.httpproxy.formatting.content.replacement.LiteralPrefilter} of the
+     * policies rules out are left as they are, without being parsed, so they are written out with the exact bytes they
+     * were received with.
+     *
+     * <br/><br/>
+     *
+     * With the {@link HTMLRewriterMode#STREAMING} rewriter, bodies in an ASCII-compatible charset are rewritten as their
+     * bytes where {@link HTMLTokenRewriter#canRewriteBytes} allows it, without decoding the body or encoding it again.
      *
      * @param message {@link HTTPMessage} to format the body of
      * @return Formatted {@link HTTPMessage} with replaced text and {@code link} attributes
@@ -35,12 +57,55 @@ public class ResponseContentResource {
     @SuppressWarnings("unused")
     @MediaType("text/html")
     public HTTPMessage<HTTPResponseStartLine> handleHTMLResponse(final HTTPMessage<HTTPResponseStartLine> message) {
-        this.contentFormatter.withContentString(message.body);
-        this.contentFormatter.replaceAllMatchingText(this.config.policies.textReplacements);
-        this.contentFormatter.replaceAllMatchingLinks(this.config.policies.linkReplacements);
+        if (rewritesBytes(message)) {
+            return handleHTMLBytes(message);
+        }
+        final String body = message.getBody();
+        if (!this.compiledPolicies.prefilter.mayMatch(body)) {
+            logger.info("No text or link values can match, leaving body untouched");
+            return message;
+        }
+        this.contentFormatter.withContentString(body);
+        this.contentFormatter.replaceAllMatching(
+                this.compiledPolicies.textReplacements,
+                this.compiledPolicies.linkReplacements
+        );
         message.setBody(this.contentFormatter.getContentString());
         logger.info("Replaced all text and link values");
         return message;
     }
 
+    private boolean rewritesBytes(final HTTPMessage<HTTPResponseStartLine> message) {
+        return this.config.servlet.messages.htmlRewriter == HTMLRewriterMode.STREAMING
+                && message.getBodyBytes() != null
+                && HTMLTokenRewriter.canRewriteBytes(message.getBodyCharset(), this.compiledPolicies.prefilter);
+    }
+
+    /**
+     * Rewrite the body of a message as its bytes, viewed as {@link StandardCharsets#ISO_8859_1} characters, with a
+     * {@link HTMLTokenRewriter}. The body is only replaced if a value was changed.
+     *
+     * @param message {@link HTTPMessage} to format the body of
+     * @return Formatted {@link HTTPMessage} with replaced text and {@code link} attributes
+     */
+    private HTTPMessage<HTTPResponseStartLine> handleHTMLBytes(final HTTPMessage<HTTPResponseStartLine> message) {
+        final Charset charset = message.getBodyCharset();
+        final String content = new String(message.getBodyBytes(), StandardCharsets.ISO_8859_1);
+        if (!this.compiledPolicies.prefilter.mayMatch(content)) {
+            logger.info("No text or link values can match, leaving body untouched");
+            return message;
+        }
+        final HTMLTokenRewriter rewriter = new HTMLTokenRewriter(
+                this.compiledPolicies.textReplacements,
+                this.compiledPolicies.linkReplacements,
+                charset
+        );
+        final String rewritten = rewriter.rewrite(content);
+        if (rewriter.hasReplaced()) {
+            message.withBodyBytes(rewritten.getBytes(StandardCharsets.ISO_8859_1), charset);
+        }
+        logger.info("Replaced all text and link values as " + charset.name() + " bytes");
+        return message;
+    }
+
 }
@@ -1,8 +1,11 @@
 package com.engineersbox.httpproxy.servlet;
 
 import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.domain.servlet.ThreadingMode;
 import com.engineersbox.httpproxy.connection.socket.SingletonServerSocketFactory;
 import com.engineersbox.httpproxy.connection.ProxyConnectionAcceptor;
+import com.engineersbox.httpproxy.connection.handler.BackwardTrafficHandler;
+import com.engineersbox.httpproxy.connection.pool.UpstreamConnectionPool;
 import com.engineersbox.httpproxy.connection.threading.ThreadManager;
 import com.google.inject.Inject;
 import org.apache.logging.log4j.LogManager;
@@ -24,6 +27,9 @@ public class ProxyServlet implements AbstractServlet {
     @Inject
     private ThreadManager poolManager;
 
+    @Inject
+    private UpstreamConnectionPool upstreamPool;
+
     private ServerSocket serverSocket;
 
     /**
@@ -40,6 +46,14 @@ public class ProxyServlet implements AbstractServlet {
         } catch (final IOException e) {
             logger.error(e, e);
         }
+        if (config.servlet.threading.mode == ThreadingMode.POOLED) {
+            logger.info(String.format(
+                "Persistent client connections serve at most %d requests [IDLE TIMEOUT: %d] with the %s threading mode",
+                config.servlet.keepAlive.maxRequests > 0 ? config.servlet.keepAlive.maxRequests : BackwardTrafficHandler.POOLED_MAX_REQUESTS,
+                config.servlet.keepAlive.idleTimeout > 0 ? config.servlet.keepAlive.idleTimeout : BackwardTrafficHandler.POOLED_IDLE_TIMEOUT,
+                ThreadingMode.POOLED
+            ));
+        }
         logger.info("Initialised ProxyServlet instance");
     }
 
@@ -63,15 +77,14 @@ public class ProxyServlet implements AbstractServlet {
                 poolManager.submitAcceptor(
                     new ProxyConnectionAcceptor(
                         this.serverSocket.accept(),
-                        config.target.host,
-                        config.target.port,
                         poolManager
-                    ).withSocketConfigs(this.config.servlet.connections)
+                    )
                 );
             }
         } catch (final IOException e) {
             logger.error(e.getMessage(), e);
             this.poolManager.shutdown();
+            this.upstreamPool.shutdown();
         }
     }
 }
@@ -0,0 +1,139 @@
+package com.engineersbox.httpproxy.servlet;
+
+import com.engineersbox.httpproxy.buffer.BufferPool;
+import com.engineersbox.httpproxy.configuration.Config;
+import com.engineersbox.httpproxy.configuration.ConfigModule;
+import com.engineersbox.httpproxy.connection.ConnectionModule;
+import com.engineersbox.httpproxy.connection.eventloop.ChannelExchange;
+import com.engineersbox.httpproxy.connection.eventloop.EventLoop;
+import com.engineersbox.httpproxy.connection.eventloop.EventLoopGroup;
+import com.engineersbox.httpproxy.connection.threading.ThreadManager;
+import com.engineersbox.httpproxy.formatting.FormattingModule;
+import com.engineersbox.httpproxy.resolver.ResolverModule;
+import com.engineersbox.httpproxy.resolver.ResourceResolver;
+import com.google.inject.Guice;
+import com.google.inject.Inject;
+import com.google.inject.Injector;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+
+/**
+ * Implementation of {@link AbstractServlet} to serve an HTTP/1.1 proxy over TCP via non-blocking
+ * {@link java.nio.channels.SocketChannel}'s multiplexed over an {@link EventLoopGroup}
+ */
+public class SelectorProxyServlet implements AbstractServlet {
+
+    private final Logger logger = LogManager.getLogger(SelectorProxyServlet.class.getCanonicalName());
+
+    @Inject
+    public Config config;
+
+    @Inject
+    private ThreadManager poolManager;
+
+    @Inject
+    private BufferPool bufferPool;
+
+    private ServerSocketChannel serverChannel;
+    private Selector acceptSelector;
+    private EventLoopGroup eventLoops;
+    private Injector injector;
+
+    /**
+     * Create a new non-blocking {@link ServerSocketChannel} bound to a binding specified via {@link Config} and start
+     * the {@link EventLoopGroup} that accepted connections are handled by
+     */
+    @Override
+    public void init() {
+        try {
+            this.serverChannel = ServerSocketChannel.open();
+            this.serverChannel.configureBlocking(false);
+            this.serverChannel.bind(
+                new InetSocketAddress(config.servlet.binding.port),
+                config.servlet.connections.acceptorQueueSize
+            );
+            this.acceptSelector = Selector.open();
+            this.serverChannel.register(this.acceptSelector, SelectionKey.OP_ACCEPT);
+            this.eventLoops = new EventLoopGroup(
+                config.servlet.threading.eventLoopPoolSize,
+                config.servlet.connections,
+                config.servlet.upstream,
+                this.bufferPool
+            );
+        } catch (final IOException e) {
+            logger.error(e, e);
+        }
+        this.injector = Guice.createInjector(
+                new ConfigModule(),
+                new FormattingModule(),
+                new ConnectionModule(),
+                new ResolverModule()
+        );
+        logger.info("Initialised SelectorProxyServlet instance");
+    }
+
+    /**
+     * Serve the proxy by waiting on connections to the {@link ServerSocketChannel}. Each accepted connection is
+     * assigned to the next {@link EventLoop} of the {@link EventLoopGroup} as a {@link ChannelExchange}.
+     */
+    @SuppressWarnings("InfiniteLoopStatement")
+    @Override
+    public void serve() {
+        logger.info(
+            "Started serving SelectorProxyServlet on "
+            + config.servlet.binding.host
+            + ":" + config.servlet.binding.port
+            + " for "
+            + config.target.host
+            + ":" + config.target.port
+        );
+        try {
+            while (true) {
+                this.acceptSelector.select();
+                final Iterator<SelectionKey> keys = this.acceptSelector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    keys.next();
+                    keys.remove();
+                    SocketChannel client;
+                    while ((client = this.serverChannel.accept()) != null) {
+                        accept(client);
+                    }
+                }
+            }
+        } catch (final IOException e) {
+            logger.error(e.getMessage(), e);
+            this.eventLoops.shutdown();
+            this.poolManager.shutdown();
+        }
+    }
+
+    private void accept(final SocketChannel client) throws IOException {
+        client.configureBlocking(false);
+        final EventLoop loop = this.eventLoops.next();
+        final ChannelExchange exchange = new ChannelExchange(
+            loop,
+            client,
+            this.config,
+            this.poolManager,
+            this.bufferPool,
+            this.injector,
+            this.injector.getInstance(ResourceResolver.class)
+        );
+        loop.execute(() -> {
+            try {
+                exchange.register();
+            } catch (final IOException e) {
+                logger.error(e.getMessage(), e);
+                exchange.close();
+            }
+        });
+    }
+}